@@ -222,6 +222,7 @@ public final class Isomorphism extends BaseMapping implements Serializable {
                 defaultMCSAlgorithm();
                 break;
             case MCSPlus:
+            case MCSPlusBitset:
                 mcsPlusAlgorithm();
                 break;
             case VFLibMCS:
@@ -245,9 +246,9 @@ public final class Isomorphism extends BaseMapping implements Serializable {
     private synchronized boolean mcsPlusAlgorithm() {
         MCSPlusHandler mcs;
         if (getQuery() instanceof IQueryAtomContainer) {
-            mcs = new MCSPlusHandler((IQueryAtomContainer) getQuery(), getTarget());
+            mcs = new MCSPlusHandler((IQueryAtomContainer) getQuery(), getTarget(), algorithmType);
         } else {
-            mcs = new MCSPlusHandler(getQuery(), getTarget(), isMatchBonds(), isMatchRings(), isMatchAtomType());
+            mcs = new MCSPlusHandler(getQuery(), getTarget(), isMatchBonds(), isMatchRings(), isMatchAtomType(), algorithmType);
         }
         clearMaps();
         getMCSList().addAll(mcs.getAllAtomMapping());
@@ -30,6 +30,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.Stack;
+import org.openscience.smsd.interfaces.ICliqueFinder;
 
 /**
  * This class implements Bron-Kerbosch clique detection algorithm as it is
@@ -43,7 +44,7 @@ import java.util.Stack;
  * 
  * @author Syed Asad Rahman <asad@ebi.ac.uk>
  */
-public final class BKKCKCF {
+public final class BKKCKCF implements ICliqueFinder {
 
     private final Set<List<Integer>> max_Cliques_Set;
     /**
@@ -394,6 +395,7 @@ public final class BKKCKCF {
         return neighbor_vec;
     }
 
+    @Override
     public synchronized int getBestCliqueSize() {
         return best_clique_size;
     }
@@ -402,6 +404,7 @@ public final class BKKCKCF {
      *
      * @return
      */
+    @Override
     public synchronized Collection<List<Integer>> getMaxCliqueSet() {
         //System.out.println("max_Cliques_Set: " + max_Cliques_Set.size());
         return Collections.unmodifiableCollection(max_Cliques_Set);
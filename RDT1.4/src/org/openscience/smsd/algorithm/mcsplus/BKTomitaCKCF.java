@@ -0,0 +1,310 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.mcsplus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.openscience.smsd.interfaces.ICliqueFinder;
+
+/**
+ * Bron-Kerbosch maximum c-clique search with bitset adjacency and Tomita
+ * pivoting, an alternative to {@link BKKCKCF} on large compatibility graphs.
+ *
+ * The nodes adjacent to the current clique are split as in [F. Cazals, C.
+ * Karande: An Algorithm for reporting maximal c-cliques; Theor. Comp. Sc.
+ * (2005); vol 349; pp. 484-490] into candidates (P, reached by a c-edge),
+ * d-nodes (D, reached by d-edges only) and excluded nodes (X). Each branch
+ * skips the candidates adjacent to a pivot chosen from P and X among the nodes
+ * adjacent to all of D; a maximal c-clique missing every other candidate
+ * could be extended by the pivot. Branches that cannot reach the size of the
+ * best clique found are cut, only the largest c-cliques are reported. Unlike
+ * {@link BKKCKCF}, which skips the neighbours of its earlier start nodes, all
+ * of them are reported whatever the node order.
+ *
+ * The node sets are {@code long[]} bitsets allocated per recursion level
+ * up front, the recursion itself does not allocate.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class BKTomitaCKCF implements ICliqueFinder {
+
+    private final int nodeCount;
+    private final int words;
+    /*
+     * compatibility graph node IDs by node index
+     */
+    private final int[] nodeIDs;
+    private final long[][] cAdjacency;
+    private final long[][] dAdjacency;
+    private final long[][] adjacency;
+    /*
+     * P, D, X and branch sets per recursion level
+     */
+    private long[][] candidates;
+    private long[][] dNodes;
+    private long[][] excluded;
+    private long[][] branches;
+    private int[] clique;
+    private int cliqueSize;
+    private int bestCliqueSize;
+    private final List<List<Integer>> maxCliques;
+
+    /**
+     * Creates a new instance of BKTomitaCKCF and runs the search
+     *
+     * @param compGraphNodes (source atom, target atom, node ID) triples
+     * @param cEdges c-edges as pairs of node IDs
+     * @param dEdges d-edges as pairs of node IDs
+     */
+    public BKTomitaCKCF(
+            List<Integer> compGraphNodes,
+            List<Integer> cEdges,
+            List<Integer> dEdges) {
+        this.nodeCount = compGraphNodes.size() / 3;
+        this.words = (nodeCount + 63) >>> 6;
+        this.nodeIDs = new int[nodeCount];
+        Map<Integer, Integer> index = new HashMap<>(nodeCount * 2);
+        Set<Integer> sourceAtoms = new HashSet<>();
+        Set<Integer> targetAtoms = new HashSet<>();
+        for (int i = 0; i < nodeCount; i++) {
+            sourceAtoms.add(compGraphNodes.get(i * 3));
+            targetAtoms.add(compGraphNodes.get(i * 3 + 1));
+            nodeIDs[i] = compGraphNodes.get(i * 3 + 2);
+            index.put(nodeIDs[i], i);
+        }
+        this.cAdjacency = new long[nodeCount][words];
+        this.dAdjacency = new long[nodeCount][words];
+        this.adjacency = new long[nodeCount][words];
+        addEdges(cEdges, cAdjacency, index);
+        addEdges(dEdges, dAdjacency, index);
+        for (int i = 0; i < nodeCount; i++) {
+            for (int w = 0; w < words; w++) {
+                adjacency[i][w] = cAdjacency[i][w] | dAdjacency[i][w];
+            }
+        }
+        /*
+         * Nodes sharing an atom are not adjacent, a clique is at most as
+         * large as the smaller atom set
+         */
+        allocate(Math.min(nodeCount, Math.min(sourceAtoms.size(), targetAtoms.size())) + 1);
+        this.maxCliques = new ArrayList<>();
+        this.bestCliqueSize = 0;
+        search();
+    }
+
+    private static void addEdges(List<Integer> edges, long[][] matrix, Map<Integer, Integer> index) {
+        for (int e = 0; e + 1 < edges.size(); e += 2) {
+            Integer i = index.get(edges.get(e));
+            Integer j = index.get(edges.get(e + 1));
+            if (i == null || j == null || i.equals(j)) {
+                continue;
+            }
+            matrix[i][j >>> 6] |= 1L << j;
+            matrix[j][i >>> 6] |= 1L << i;
+        }
+    }
+
+    private void allocate(int depth) {
+        candidates = new long[depth][words];
+        dNodes = new long[depth][words];
+        excluded = new long[depth][words];
+        branches = new long[depth][words];
+        clique = new int[depth];
+    }
+
+    /*
+     * Safety net should a clique outgrow the atom bound
+     */
+    private void grow() {
+        int depth = candidates.length * 2;
+        long[][] p = candidates;
+        long[][] d = dNodes;
+        long[][] x = excluded;
+        long[][] b = branches;
+        int[] c = clique;
+        allocate(depth);
+        for (int i = 0; i < p.length; i++) {
+            candidates[i] = p[i];
+            dNodes[i] = d[i];
+            excluded[i] = x[i];
+            branches[i] = b[i];
+        }
+        System.arraycopy(c, 0, clique, 0, c.length);
+    }
+
+    /*
+     * Start from each node v in turn; the c-cliques holding an earlier start
+     * node have been reported, those nodes are excluded
+     */
+    private void search() {
+        for (int v = 0; v < nodeCount; v++) {
+            long[] p = candidates[0];
+            long[] d = dNodes[0];
+            long[] x = excluded[0];
+            int vWord = v >>> 6;
+            for (int w = 0; w < words; w++) {
+                long earlier = w < vWord ? -1L : (w == vWord ? (1L << v) - 1 : 0L);
+                p[w] = cAdjacency[v][w] & ~earlier;
+                x[w] = cAdjacency[v][w] & earlier;
+                d[w] = dAdjacency[v][w];
+            }
+            clique[0] = v;
+            cliqueSize = 1;
+            expand(0);
+        }
+    }
+
+    private void expand(int level) {
+        long[] p = candidates[level];
+        long[] d = dNodes[level];
+        long[] x = excluded[level];
+
+        int pCount = cardinality(p);
+        if (pCount == 0) {
+            if (cardinality(x) == 0) {
+                report();
+            }
+            return;
+        }
+        if (cliqueSize + pCount + cardinality(d) < bestCliqueSize) {
+            return;
+        }
+        if (level + 1 == candidates.length) {
+            grow();
+            p = candidates[level];
+            d = dNodes[level];
+            x = excluded[level];
+        }
+
+        long[] b = branches[level];
+        int pivot = choosePivot(p, d, x);
+        for (int w = 0; w < words; w++) {
+            b[w] = pivot < 0 ? p[w] : p[w] & ~adjacency[pivot][w];
+        }
+
+        long[] p1 = candidates[level + 1];
+        long[] d1 = dNodes[level + 1];
+        long[] x1 = excluded[level + 1];
+        for (int w = 0; w < words; w++) {
+            while (b[w] != 0) {
+                long bit = b[w] & -b[w];
+                b[w] ^= bit;
+                int u = (w << 6) + Long.numberOfTrailingZeros(bit);
+                /*
+                 * d-nodes reached by a c-edge of u become candidates, or
+                 * excluded if they were excluded start nodes
+                 */
+                for (int k = 0; k < words; k++) {
+                    long reached = d[k] & cAdjacency[u][k];
+                    long start = k < (clique[0] >>> 6) ? -1L
+                            : (k == (clique[0] >>> 6) ? (1L << clique[0]) - 1 : 0L);
+                    p1[k] = (p[k] & adjacency[u][k]) | (reached & ~start);
+                    x1[k] = (x[k] & adjacency[u][k]) | (reached & start);
+                    d1[k] = d[k] & dAdjacency[u][k];
+                }
+                clique[cliqueSize++] = u;
+                expand(level + 1);
+                cliqueSize--;
+                p[w] &= ~bit;
+                x[w] |= bit;
+                if (cliqueSize + cardinality(p) + cardinality(d) < bestCliqueSize) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /*
+     * Pivot from P and X adjacent to all the d-nodes, covering most of P
+     */
+    private int choosePivot(long[] p, long[] d, long[] x) {
+        int pivot = -1;
+        int covered = -1;
+        for (int w = 0; w < words; w++) {
+            long pool = p[w] | x[w];
+            while (pool != 0) {
+                long bit = pool & -pool;
+                pool ^= bit;
+                int u = (w << 6) + Long.numberOfTrailingZeros(bit);
+                long[] n = adjacency[u];
+                boolean coversD = true;
+                int count = 0;
+                for (int k = 0; k < words; k++) {
+                    if ((d[k] & ~n[k]) != 0) {
+                        coversD = false;
+                        break;
+                    }
+                    count += Long.bitCount(p[k] & n[k]);
+                }
+                if (coversD && count > covered) {
+                    covered = count;
+                    pivot = u;
+                }
+            }
+        }
+        return pivot;
+    }
+
+    private int cardinality(long[] set) {
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            count += Long.bitCount(set[w]);
+        }
+        return count;
+    }
+
+    private void report() {
+        if (cliqueSize < bestCliqueSize) {
+            return;
+        }
+        if (cliqueSize > bestCliqueSize) {
+            maxCliques.clear();
+            bestCliqueSize = cliqueSize;
+        }
+        List<Integer> nodes = new ArrayList<>(cliqueSize);
+        for (int i = 0; i < cliqueSize; i++) {
+            nodes.add(nodeIDs[clique[i]]);
+        }
+        maxCliques.add(nodes);
+    }
+
+    @Override
+    public synchronized int getBestCliqueSize() {
+        return bestCliqueSize;
+    }
+
+    /**
+     *
+     * @return
+     */
+    @Override
+    public synchronized Collection<List<Integer>> getMaxCliqueSet() {
+        return Collections.unmodifiableCollection(maxCliques);
+    }
+}
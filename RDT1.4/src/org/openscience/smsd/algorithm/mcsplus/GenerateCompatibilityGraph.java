@@ -41,6 +41,8 @@ import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
 import org.openscience.cdk.isomorphism.matchers.IQueryBond;
 import org.openscience.smsd.algorithm.matchers.DefaultMatcher;
 import org.openscience.smsd.helper.LabelContainer;
+import org.openscience.smsd.interfaces.Algorithm;
+import org.openscience.smsd.interfaces.ICliqueFinder;
 
 /**
  * This class generates compatibility graph between query and target molecule.
@@ -456,6 +458,20 @@ public final class GenerateCompatibilityGraph implements Serializable {
         return Collections.synchronizedList(compGraphNodes);
     }
 
+    /**
+     * Maximum c-cliques of this compatibility graph
+     *
+     * @param algorithm {@link Algorithm#MCSPlusBitset} for the bitset
+     * Bron-Kerbosch-Tomita search, else the Koch c-clique search
+     * @return clique finder holding the largest c-cliques
+     */
+    public synchronized ICliqueFinder findCliques(Algorithm algorithm) {
+        if (algorithm == Algorithm.MCSPlusBitset) {
+            return new BKTomitaCKCF(compGraphNodes, cEdges, dEdges);
+        }
+        return new BKKCKCF(compGraphNodes, cEdges, dEdges);
+    }
+
     protected synchronized int getCEdgesSize() {
         return cEdgesSize;
     }
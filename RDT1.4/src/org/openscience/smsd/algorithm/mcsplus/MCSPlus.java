@@ -35,6 +35,8 @@ import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
 import org.openscience.smsd.algorithm.mcgregor.McGregor;
+import org.openscience.smsd.interfaces.Algorithm;
+import org.openscience.smsd.interfaces.ICliqueFinder;
 import org.openscience.smsd.tools.IterationManager;
 
 /**
@@ -58,6 +60,7 @@ public final class MCSPlus {
 
     private IterationManager iterationManager = null;
     private final boolean matchAtomType;
+    private final Algorithm algorithm;
 
     /**
      * @return the timeout
@@ -89,6 +92,21 @@ public final class MCSPlus {
      * @param matchAtomType
      */
     public MCSPlus(IAtomContainer ac1, IAtomContainer ac2, boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType) {
+        this(ac1, ac2, shouldMatchBonds, shouldMatchRings, matchAtomType, Algorithm.MCSPlus);
+    }
+
+    /**
+     *
+     * @param ac1
+     * @param ac2
+     * @param shouldMatchBonds
+     * @param shouldMatchRings
+     * @param matchAtomType
+     * @param algorithm {@link Algorithm#MCSPlusBitset} for the bitset clique
+     * search
+     */
+    public MCSPlus(IAtomContainer ac1, IAtomContainer ac2, boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType, Algorithm algorithm) {
+        this.algorithm = algorithm;
         this.shouldMatchRings = shouldMatchRings;
         this.shouldMatchBonds = shouldMatchBonds;
         this.matchAtomType = matchAtomType;
@@ -103,6 +121,18 @@ public final class MCSPlus {
      * @param ac2
      */
     public MCSPlus(IQueryAtomContainer ac1, IAtomContainer ac2) {
+        this(ac1, ac2, Algorithm.MCSPlus);
+    }
+
+    /**
+     *
+     * @param ac1
+     * @param ac2
+     * @param algorithm {@link Algorithm#MCSPlusBitset} for the bitset clique
+     * search
+     */
+    public MCSPlus(IQueryAtomContainer ac1, IAtomContainer ac2, Algorithm algorithm) {
+        this.algorithm = algorithm;
         this.shouldMatchRings = true;
         this.shouldMatchBonds = true;
         this.matchAtomType = true;
@@ -138,7 +168,7 @@ public final class MCSPlus {
 //            System.out.println("C_edges: " + cEdges.size());
 //            System.out.println("D_edges: " + dEdges.size());
 //            System.out.println("comp_graph_nodes: " + comp_graph_nodes);
-            BKKCKCF init = new BKKCKCF(comp_graph_nodes, cEdges, dEdges);
+            ICliqueFinder init = gcg.findCliques(algorithm);
             Stack<List<Integer>> maxCliqueSet = new Stack<>();
             maxCliqueSet.addAll(init.getMaxCliqueSet());
 
@@ -33,6 +33,7 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
 import org.openscience.smsd.AtomAtomMapping;
 import org.openscience.smsd.filters.PostFilter;
+import org.openscience.smsd.interfaces.Algorithm;
 import org.openscience.smsd.interfaces.IResults;
 
 /**
@@ -54,6 +55,7 @@ public final class MCSPlusHandler implements IResults {
     private final boolean shouldMatchBonds;
     private final boolean matchAtomType;
     private final boolean timeout;
+    private final Algorithm algorithm;
 
     /**
      * Constructor for the MCS Plus algorithm class
@@ -66,6 +68,23 @@ public final class MCSPlusHandler implements IResults {
      */
     public MCSPlusHandler(IAtomContainer source, IAtomContainer target,
             boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType) {
+        this(source, target, shouldMatchBonds, shouldMatchRings, matchAtomType, Algorithm.MCSPlus);
+    }
+
+    /**
+     * Constructor for the MCS Plus algorithm class
+     *
+     * @param source
+     * @param target
+     * @param shouldMatchBonds
+     * @param shouldMatchRings
+     * @param matchAtomType
+     * @param algorithm {@link Algorithm#MCSPlusBitset} for the bitset clique
+     * search
+     */
+    public MCSPlusHandler(IAtomContainer source, IAtomContainer target,
+            boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType, Algorithm algorithm) {
+        this.algorithm = algorithm;
         this.source = source;
         this.target = target;
         this.shouldMatchRings = shouldMatchRings;
@@ -83,6 +102,19 @@ public final class MCSPlusHandler implements IResults {
      * @param target
      */
     public MCSPlusHandler(IQueryAtomContainer source, IAtomContainer target) {
+        this(source, target, Algorithm.MCSPlus);
+    }
+
+    /**
+     * Constructor for the MCS Plus algorithm class
+     *
+     * @param source
+     * @param target
+     * @param algorithm {@link Algorithm#MCSPlusBitset} for the bitset clique
+     * search
+     */
+    public MCSPlusHandler(IQueryAtomContainer source, IAtomContainer target, Algorithm algorithm) {
+        this.algorithm = algorithm;
         this.source = source;
         this.target = target;
         this.shouldMatchRings = true;
@@ -103,18 +135,18 @@ public final class MCSPlusHandler implements IResults {
         MCSPlus mcsplus;
 
         if (source instanceof IQueryAtomContainer) {
-            mcsplus = new MCSPlus((IQueryAtomContainer) source, target);
+            mcsplus = new MCSPlus((IQueryAtomContainer) source, target, algorithm);
             List<List<Integer>> overlaps = mcsplus.getOverlaps();
             mappings = Collections.synchronizedList(overlaps);
 
         } else if (!(source instanceof IQueryAtomContainer) && source.getAtomCount() < target.getAtomCount()) {
-            mcsplus = new MCSPlus(source, target, shouldMatchBonds, shouldMatchRings, matchAtomType);
+            mcsplus = new MCSPlus(source, target, shouldMatchBonds, shouldMatchRings, matchAtomType, algorithm);
             List<List<Integer>> overlaps = mcsplus.getOverlaps();
             mappings = Collections.synchronizedList(overlaps);
 
         } else {
             flagExchange = true;
-            mcsplus = new MCSPlus(target, source, shouldMatchBonds, shouldMatchRings, matchAtomType);
+            mcsplus = new MCSPlus(target, source, shouldMatchBonds, shouldMatchRings, matchAtomType, algorithm);
             List<List<Integer>> overlaps = mcsplus.getOverlaps();
             mappings = Collections.synchronizedList(overlaps);
         }
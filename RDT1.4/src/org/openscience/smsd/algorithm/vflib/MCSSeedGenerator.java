@@ -33,10 +33,10 @@ import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 import org.openscience.smsd.AtomAtomMapping;
-import org.openscience.smsd.algorithm.mcsplus.BKKCKCF;
 import org.openscience.smsd.algorithm.mcsplus.GenerateCompatibilityGraph;
 import org.openscience.smsd.algorithm.rgraph.CDKRMapHandler;
 import org.openscience.smsd.interfaces.Algorithm;
+import org.openscience.smsd.interfaces.ICliqueFinder;
 
 /**
  * This class should be used to find MCS between source graph and target graph.
@@ -104,6 +104,7 @@ public class MCSSeedGenerator implements Callable<List<AtomAtomMapping>> {
 //            System.out.println("addUIT " + addUIT.iterator().next().getCount());
                 return addUIT;
             case MCSPlus:
+            case MCSPlusBitset:
                 //            System.out.println("Calling MCSPLUS " + bondMatch + " " + ringMatch + " " + matchAtomType);
                 List<AtomAtomMapping> addKochCliques = addKochCliques();
 //            System.out.println("MCSPLUS " + addKochCliques.iterator().next().getCount());
@@ -133,9 +134,7 @@ public class MCSSeedGenerator implements Callable<List<AtomAtomMapping>> {
         GenerateCompatibilityGraph gcg
                 = new GenerateCompatibilityGraph(ac1, ac2, bondMatch, ringMatch, matchAtomType);
         List<Integer> comp_graph_nodes = gcg.getCompGraphNodes();
-        List<Integer> cEdges = gcg.getCEgdes();
-        List<Integer> dEdges = gcg.getDEgdes();
-        BKKCKCF init = new BKKCKCF(comp_graph_nodes, cEdges, dEdges);
+        ICliqueFinder init = gcg.findCliques(algorithm);
         Stack<List<Integer>> maxCliqueSet = new Stack<>();
         maxCliqueSet.addAll(init.getMaxCliqueSet());
         Collections.sort(maxCliqueSet, (List<Integer> a1, List<Integer> a2) -> a2.size() - a1.size() // assumes you want biggest to smallest
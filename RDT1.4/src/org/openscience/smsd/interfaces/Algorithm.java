@@ -35,6 +35,7 @@ package org.openscience.smsd.interfaces;
  * <lI>3: CDKMCS,
  * <lI>4: SubStructure
  * <lI>5: TurboSubStructure
+ * <lI>6: MCSPlusBitset
  * </OL>
  *
  * 
@@ -58,7 +59,11 @@ public enum Algorithm implements Comparable<Algorithm> {
     /**
      * CDK UIT MCS.
      */
-    CDKMCS(4, "CDK UIT MCS");
+    CDKMCS(4, "CDK UIT MCS"),
+    /**
+     * MCS Plus algorithm with the bitset Bron-Kerbosch-Tomita clique search.
+     */
+    MCSPlusBitset(5, "MCS Plus algorithm with bitset Bron-Kerbosch-Tomita clique search");
     private final int type;
     private final String description;
 
@@ -0,0 +1,164 @@
+/* Copyright (C) 2009-2015  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.mcsplus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.interfaces.Algorithm;
+import org.openscience.smsd.interfaces.ICliqueFinder;
+import static org.openscience.smsd.tools.ExtAtomContainerManipulator.aromatizeMolecule;
+import static org.openscience.smsd.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
+
+/**
+ * {@link BKTomitaCKCF} against {@link BKKCKCF} on the same compatibility
+ * graphs. BKKCKCF skips the neighbours of its earlier start nodes, depending on
+ * the node order it misses some of the largest c-cliques or reports smaller
+ * ones. BKTomitaCKCF must find cliques at least as large, all cliques of
+ * BKKCKCF when these are as large, and only valid c-cliques.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class BKTomitaCKCFTest {
+
+    private static final SmilesParser SMILES_PARSER = new SmilesParser(SilentChemObjectBuilder.getInstance());
+
+    private static final String[][] PAIRS = {
+        {"CC(=O)O", "CC(=O)OCC"},
+        {"c1ccccc1", "c1ccccc1O"},
+        {"c1ccccc1C(=O)O", "OC(=O)c1ccc(N)cc1"},
+        {"C1CCCCC1", "C1CCCC1"},
+        {"OC1C(O)C(O)C(O)C(O)C1O", "OCC1OC(O)C(O)C(O)C1O"},
+        {"NC(CCC(=O)O)C(=O)O", "NC(CC(=O)O)C(=O)O"},
+        {"CC(C)CC(N)C(=O)O", "CC(C)C(N)C(=O)O"},
+        {"c1ccc2ccccc2c1", "c1ccc2c(c1)ccc1ccccc12"},
+        {"OCC1OC(OP(=O)(O)O)C(O)C1O", "OCC1OC(O)C(O)C1OP(=O)(O)O"},
+        {"CCCCCCCCCCCCCCCC(=O)O", "CCCCCCCCCCCCCC(=O)OC"}
+    };
+
+    @Test
+    public void cliquesOfBKKCKCF() throws Exception {
+        for (String[] pair : PAIRS) {
+            for (boolean matchBonds : new boolean[]{true, false}) {
+                GenerateCompatibilityGraph gcg = new GenerateCompatibilityGraph(
+                        molecule(pair[0]), molecule(pair[1]), matchBonds, false, false);
+                ICliqueFinder koch = gcg.findCliques(Algorithm.MCSPlus);
+                ICliqueFinder tomita = gcg.findCliques(Algorithm.MCSPlusBitset);
+                String message = pair[0] + " " + pair[1] + " bonds " + matchBonds;
+                assertTrue(message, koch.getBestCliqueSize() > 0);
+                assertTrue(message, tomita.getBestCliqueSize() >= koch.getBestCliqueSize());
+                Set<List<Integer>> tomitaCliques = cliques(tomita.getMaxCliqueSet());
+                if (tomita.getBestCliqueSize() == koch.getBestCliqueSize()) {
+                    assertTrue(message, tomitaCliques.containsAll(cliques(koch.getMaxCliqueSet())));
+                }
+                assertTrue(message, !tomitaCliques.isEmpty());
+                for (List<Integer> clique : tomitaCliques) {
+                    assertEquals(message, tomita.getBestCliqueSize(), clique.size());
+                    assertTrue(message + " " + clique, isCClique(clique, gcg.getCEgdes(), gcg.getDEgdes()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mcsOfMCSPlus() throws Exception {
+        for (String[] pair : PAIRS) {
+            MCSPlus koch = new MCSPlus(molecule(pair[0]), molecule(pair[1]), true, false, false, Algorithm.MCSPlus);
+            MCSPlus tomita = new MCSPlus(molecule(pair[0]), molecule(pair[1]), true, false, false, Algorithm.MCSPlusBitset);
+            assertTrue(pair[0] + " " + pair[1], tomita.getOverlaps().get(0).size() >= koch.getOverlaps().get(0).size());
+        }
+    }
+
+    private static IAtomContainer molecule(String smiles) throws Exception {
+        IAtomContainer molecule = SMILES_PARSER.parseSmiles(smiles);
+        percieveAtomTypesAndConfigureAtoms(molecule);
+        aromatizeMolecule(molecule);
+        return molecule;
+    }
+
+    /*
+     * Every two nodes are adjacent and the c-edges connect all nodes
+     */
+    private static boolean isCClique(List<Integer> clique, List<Integer> cEdges, List<Integer> dEdges) {
+        Set<List<Integer>> c = edges(cEdges);
+        Set<List<Integer>> all = new HashSet<>(c);
+        all.addAll(edges(dEdges));
+        for (int i = 0; i < clique.size(); i++) {
+            for (int j = i + 1; j < clique.size(); j++) {
+                if (!all.contains(edge(clique.get(i), clique.get(j)))) {
+                    return false;
+                }
+            }
+        }
+        Set<Integer> reached = new HashSet<>();
+        List<Integer> queue = new ArrayList<>();
+        queue.add(clique.get(0));
+        reached.add(clique.get(0));
+        for (int q = 0; q < queue.size(); q++) {
+            for (Integer node : clique) {
+                if (!reached.contains(node) && c.contains(edge(queue.get(q), node))) {
+                    reached.add(node);
+                    queue.add(node);
+                }
+            }
+        }
+        return reached.size() == clique.size();
+    }
+
+    private static Set<List<Integer>> edges(List<Integer> edges) {
+        Set<List<Integer>> set = new HashSet<>();
+        for (int e = 0; e + 1 < edges.size(); e += 2) {
+            set.add(edge(edges.get(e), edges.get(e + 1)));
+        }
+        return set;
+    }
+
+    private static List<Integer> edge(int u, int v) {
+        List<Integer> edge = new ArrayList<>(2);
+        edge.add(Math.min(u, v));
+        edge.add(Math.max(u, v));
+        return edge;
+    }
+
+    /*
+     * Cliques as sets of node IDs, independent of the order of their nodes
+     */
+    private static Set<List<Integer>> cliques(Collection<List<Integer>> cliques) {
+        Set<List<Integer>> set = new HashSet<>();
+        for (List<Integer> clique : cliques) {
+            List<Integer> nodes = new ArrayList<>(clique);
+            Collections.sort(nodes);
+            set.add(nodes);
+        }
+        return set;
+    }
+}
@@ -20,9 +20,10 @@
 package uk.ac.ebi.reactionblast.mechanism;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import static java.lang.System.getProperty;
 import static java.util.Collections.unmodifiableList;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -39,7 +40,6 @@ import static org.openscience.cdk.interfaces.IBond.Stereo.UP;
 import static org.openscience.cdk.interfaces.IBond.Stereo.UP_OR_DOWN;
 import uk.ac.ebi.reactionblast.tools.EBIMatrix;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeMolecule;
-import uk.ac.ebi.reactionblast.tools.ValencyCalculator;
 
 /**
  * This class create the BEMatrix of a set of molecule according to the
@@ -57,6 +57,7 @@ public class BEMatrix extends EBIMatrix implements Serializable {
     private List<IAtom> atomArray = null;
     private final boolean withoutH;
     private final Map<IAtom, IAtom> mappings;
+    private final Map<String, Integer> indexOfID;
 
     /**
      * Class constructor. Creates an empty BEMatrix. Generates the BEMatrix for
@@ -74,32 +75,30 @@ public class BEMatrix extends EBIMatrix implements Serializable {
             Map<IAtom, IAtom> mappings) {
         super(0, 0);
         this.withoutH = skipHydrogen;
-        this.atomArray = new LinkedList<>();
+        this.atomArray = new ArrayList<>();
         this.myMoleculeSet = molSet;
         this.bonds = bonds;
         this.mappings = mappings;
+        this.indexOfID = new HashMap<>();
     }
 
     /**
+     * Dense copy of a sparse BE-matrix, atoms in the same order
+     *
+     * @param sparse
+     */
+    BEMatrix(SparseBEMatrix sparse) {
+        this(sparse.isWithoutHydrogen(), sparse.getMoleculeSet(), sparse.getBonds(), sparse.getMappings());
+        setMatrix(sparse);
+    }
+
+    /**
+     * Builds the matrix of the mapped atoms
      *
      * @throws CDKException
      */
-    void setMatrixAtoms() throws CDKException {
-        //System.out.println("H " + withoutH);
-        initMatrix(0.);
-        atomArray.clear();
-        for (IAtomContainer container : myMoleculeSet.atomContainers()) {
-            for (IAtom atom : container.atoms()) {
-                if (withoutH && atom.getSymbol().matches("H")) {
-                    continue;
-                }
-                if (!mappings.containsKey(atom) && !mappings.containsValue(atom)) {
-                    continue;
-                }
-                atomArray.add(atom);
-            }
-        }
-        setMatrix();
+    public void setMatrixAtoms() throws CDKException {
+        setMatrix(new SparseBEMatrix(withoutH, myMoleculeSet, bonds, mappings));
     }
 
     /**
@@ -114,27 +113,30 @@ public class BEMatrix extends EBIMatrix implements Serializable {
         return (int) getValue(getIndexOfAtomID(a1.getID()), getIndexOfAtomID(a2.getID()));
     }
 
-    private void setMatrix() throws CDKException {
-//        reSizeMatrix(atomArray.size(), atomArray.size());
-        reSizeMatrix(atomArray.size() + 1, atomArray.size() + 1);
-        //free valence electrons on the diagonal
+    /*
+     * free valence electrons on the diagonal, bond orders and the lone pairs
+     * in the last row and column
+     */
+    private void setMatrix(SparseBEMatrix sparse) {
+        atomArray.clear();
+        atomArray.addAll(sparse.getAtoms());
+        indexOfID.clear();
         for (int i = 0; i < atomArray.size(); i++) {
-            setValue(i, i, getFreeValenceElectrons(atomArray.get(i)));
+            indexOfID.put(atomArray.get(i).getID(), i);
         }
-        for (int i = 0; i < atomArray.size(); i++) {
-            for (int j = 0; j < atomArray.size(); j++) {
-                if (i != j) {
-                    setValue(i, j, getBondOrder(atomArray.get(i), atomArray.get(j)));
-                    setValue(j, i, getBondOrder(atomArray.get(i), atomArray.get(j)));
-                }
-            }
+        int n = atomArray.size();
+        reSizeMatrix(n + 1, n + 1);
+        for (int i = 0; i <= n; i++) {
+            setValue(i, i, sparse.getValue(i, i));
+            setValue(n, i, sparse.getValue(n, i));
+            setValue(i, n, sparse.getValue(i, n));
         }
-        //Setting lone pairs
-        for (int i = 0; i < atomArray.size(); i++) {
-            setValue(atomArray.size(), i, 100);
-            setValue(i, atomArray.size(), 100);
+        for (long pair : sparse.getBondedPairs()) {
+            int i = (int) (pair >>> 32);
+            int j = (int) pair;
+            setValue(i, j, sparse.getValue(i, j));
+            setValue(j, i, sparse.getValue(j, i));
         }
-        setValue(atomArray.size(), atomArray.size(), 200);
     }
 
     /**
@@ -172,13 +174,8 @@ public class BEMatrix extends EBIMatrix implements Serializable {
     }
 
     private int getIndexOfAtomID(String atomID) {
-        int ind = -1;
-        for (int i = 0; i < atomArray.size(); i++) {
-            if (atomArray.get(i).getID().equals(atomID)) {
-                ind = i;
-            }
-        }
-        return ind;
+        Integer i = indexOfID.get(atomID);
+        return i == null ? -1 : i;
     }
 
     /**
@@ -194,6 +191,8 @@ public class BEMatrix extends EBIMatrix implements Serializable {
         IAtom appA = atomArray.get(i1);
         atomArray.set(i1, atomArray.get(i2));
         atomArray.set(i2, appA);
+        indexOfID.put(atomArray.get(i1).getID(), i1);
+        indexOfID.put(appA.getID(), i2);
         double appD = 0.0d;
         //column exchange
         for (int i = 0; i < getRowDimension(); i++) {
@@ -209,17 +208,6 @@ public class BEMatrix extends EBIMatrix implements Serializable {
         }
     }
 
-    private double getFreeValenceElectrons(IAtom a) throws CDKException {
-        double freeValEle = 0;
-        for (int i = 0; i < myMoleculeSet.getAtomContainerCount(); i++) {
-            IAtomContainer mol = myMoleculeSet.getAtomContainer(i);
-            if (mol.contains(a)) {
-                freeValEle = ValencyCalculator.getFreeValenceElectrons(mol, a, withoutH);
-            }
-        }
-        return freeValEle;
-    }
-
     /**
      *
      * @param a
@@ -337,24 +325,7 @@ public class BEMatrix extends EBIMatrix implements Serializable {
      * @return
      */
     public double convertBondOrder(IBond bond) {
-        double value;
-        switch (bond.getOrder()) {
-            case QUADRUPLE:
-                value = 4.0;
-                break;
-            case TRIPLE:
-                value = 3.0;
-                break;
-            case DOUBLE:
-                value = 2.0;
-                break;
-            case SINGLE:
-                value = 1.0;
-                break;
-            default:
-                value = 1.0;
-        }
-        return value;
+        return SparseBEMatrix.convertBondOrder(bond);
     }
 
     /**
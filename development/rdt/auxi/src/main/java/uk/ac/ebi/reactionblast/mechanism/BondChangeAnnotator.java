@@ -102,7 +102,7 @@ public final class BondChangeAnnotator extends DUModel {
      */
     @Override
     public synchronized BEMatrix getEductBEMatrix() {
-        return reactantBE;
+        return getDenseReactantBE();
     }
 
     /**
@@ -138,7 +138,7 @@ public final class BondChangeAnnotator extends DUModel {
      */
     @Override
     public synchronized BEMatrix getProductBEMatrix() {
-        return productBE;
+        return getDenseProductBE();
     }
 
     /**
@@ -156,7 +156,7 @@ public final class BondChangeAnnotator extends DUModel {
      */
     @Override
     public synchronized RMatrix getRMatrix() {
-        return reactionMatrix;
+        return getDenseReactionMatrix();
     }
 
     /**
@@ -173,7 +173,7 @@ public final class BondChangeAnnotator extends DUModel {
      */
     @Override
     public synchronized void printBMatrix() {
-        printBEMatrix(reactantBE);
+        printBEMatrix(getDenseReactantBE());
     }
 
     /**
@@ -192,7 +192,7 @@ public final class BondChangeAnnotator extends DUModel {
     @Override
     public synchronized void writeBMatrix(File outputFile) {
         try {
-            MatrixPrinter.writeBEMatrix(outputFile, reactantBE);
+            MatrixPrinter.writeBEMatrix(outputFile, getDenseReactantBE());
         } catch (IOException ex) {
             getLogger(BondChangeAnnotator.class.getName()).log(SEVERE, null, ex);
         }
@@ -203,7 +203,7 @@ public final class BondChangeAnnotator extends DUModel {
      */
     @Override
     public synchronized void printEMatrix() {
-        MatrixPrinter.printBEMatrix(productBE);
+        MatrixPrinter.printBEMatrix(getDenseProductBE());
     }
 
     /**
@@ -213,7 +213,7 @@ public final class BondChangeAnnotator extends DUModel {
     @Override
     public synchronized void writeEMatrix(File outputFile) {
         try {
-            MatrixPrinter.writeBEMatrix(outputFile, productBE);
+            MatrixPrinter.writeBEMatrix(outputFile, getDenseProductBE());
         } catch (IOException ex) {
             getLogger(BondChangeAnnotator.class.getName()).log(SEVERE, null, ex);
         }
@@ -224,7 +224,7 @@ public final class BondChangeAnnotator extends DUModel {
      */
     @Override
     public synchronized void printRMatrix() {
-        MatrixPrinter.printReactionMatrix(reactionMatrix);
+        MatrixPrinter.printReactionMatrix(getDenseReactionMatrix());
     }
 
     /**
@@ -234,7 +234,7 @@ public final class BondChangeAnnotator extends DUModel {
     @Override
     public synchronized void writeRMatrix(File outputFile) {
         try {
-            MatrixPrinter.writeReactionMatrix(outputFile, reactionMatrix);
+            MatrixPrinter.writeReactionMatrix(outputFile, getDenseReactionMatrix());
         } catch (IOException ex) {
             getLogger(BondChangeAnnotator.class.getName()).log(SEVERE, null, ex);
         }
@@ -247,8 +247,8 @@ public final class BondChangeAnnotator extends DUModel {
      */
     protected synchronized void markBondChanges() throws Exception {
 
-        BEMatrix substrateBEMatrix = reactantBE;
-        BEMatrix productBEMatrix = productBE;
+        SparseBEMatrix substrateBEMatrix = reactantBE;
+        SparseBEMatrix productBEMatrix = productBE;
 
         if (DEBUG) {
             System.out.println("markBondChanges method start");
@@ -336,207 +336,198 @@ public final class BondChangeAnnotator extends DUModel {
         if (DEBUG) {
             System.out.println("Marking Bond Changes");
         }
-        int sizeQ = reactionMatrix.getReactantsAtomArray().size();
-        int sizeT = reactionMatrix.getProductsAtomArray().size();
+        int sizeQ = substrateBEMatrix.getAtomCount();
+        int sizeT = productBEMatrix.getAtomCount();
 
-        for (int i = 0; i < reactionMatrix.getRowDimension(); i++) {
-            for (int j = i; j < reactionMatrix.getColumnDimension(); j++) {
+        /*
+         * Only the changed cells and the bonded pairs can give a bond change
+         */
+        for (long cell : reactionMatrix.getCells()) {
+            int i = (int) (cell >>> 32);
+            int j = (int) cell;
+            if (DEBUG) {
+                System.out.println("Marking Bond Changes-1");
+            }
+            if (i != j && reactionMatrix.getValue(i, j) == 0.) {
+                IBond affectedBondReactants = null;
+                IBond affectedBondProducts = null;
+                ECBLAST_BOND_CHANGE_FLAGS bondChangeInformation;
+                if (i < sizeQ && j < sizeQ) {
+                    affectedBondReactants = substrateBEMatrix.getBond(i, j);
+                }
+                if (i < sizeT && j < sizeT) {
+                    affectedBondProducts = productBEMatrix.getBond(i, j);
+                }
+                if (affectedBondReactants == null && affectedBondProducts == null) {
+                    continue;
+                }
+
+                int kekuleEffect = 0;
+                kekuleEffect = isAlternateKekuleChange(affectedBondReactants, affectedBondProducts);
+                if (kekuleEffect == 0) {
+                    bondChangeInformation = BOND_ORDER;
+                    if (affectedBondReactants != null) {
+                        affectedBondReactants.getAtom(0).setFlag(REACTIVE_CENTER, true);
+                        affectedBondReactants.getAtom(1).setFlag(REACTIVE_CENTER, true);
+                        getReactionCenterSet().add(affectedBondReactants.getAtom(0));
+                        getReactionCenterSet().add(affectedBondReactants.getAtom(1));
+                        affectedBondReactants.setProperty(BOND_CHANGE_INFORMATION, bondChangeInformation);
+                    }
+                    if (affectedBondProducts != null) {
+                        affectedBondProducts.getAtom(0).setFlag(REACTIVE_CENTER, true);
+                        affectedBondProducts.getAtom(1).setFlag(REACTIVE_CENTER, true);
+                        getReactionCenterSet().add(affectedBondProducts.getAtom(0));
+                        getReactionCenterSet().add(affectedBondProducts.getAtom(1));
+                        affectedBondProducts.setProperty(BOND_CHANGE_INFORMATION, bondChangeInformation);
+                    }
+                    getBondChangeList().add(new BondChange(affectedBondReactants, affectedBondProducts));
+                }
+            }
+
+            /*
+             * R-Matrix with changes
+             */
+            if (DEBUG) {
+                System.out.println("Marking Bond Changes-2");
+            }
+            if (reactionMatrix.getValue(i, j) != 0.) {
+
+                /*
+                 * DEBUG
+                 */
                 if (DEBUG) {
-                    System.out.println("Marking Bond Changes-1");
+                    System.out.println("Bond Change in R Matrix " + " i "
+                            + (i + 1) + ", j " + (j + 1) + " " + reactionMatrix.getValue(i, j));
                 }
-                if (i != j && reactionMatrix.getValue(i, j) == 0.) {
-                    IBond affectedBondReactants = null;
-                    IBond affectedBondProducts = null;
-                    ECBLAST_BOND_CHANGE_FLAGS bondChangeInformation;
+
+                //Diagonal free valence electron changes 
+                if (i == j) {
+                    IAtom reactantAtom;
+                    IAtom productAtom;
                     try {
-                        if (i < sizeQ && j < sizeQ) {
-                            affectedBondReactants = getBondOfReactantsByRMatrix(reactionMatrix.getReactantAtom(i), reactionMatrix.getReactantAtom(j));
+                        reactantAtom = reactionMatrix.getReactantAtom(i);
+                        if (reactantAtom != null) {
+                            reactantAtom.setFlag(REACTIVE_CENTER, true);
+                            getReactionCenterSet().add(reactantAtom);
                         }
                     } catch (CDKException ex) {
                         getLogger(BondChangeAnnotator.class.getName()).log(SEVERE, null, ex);
                     }
                     try {
-                        if (i < sizeT && j < sizeT) {
-                            affectedBondProducts = getBondOfProductsByRMatrix(reactionMatrix.getProductAtom(i), reactionMatrix.getProductAtom(j));
+                        productAtom = reactionMatrix.getProductAtom(j);
+                        if (productAtom != null) {
+                            productAtom.setFlag(REACTIVE_CENTER, true);
+                            getReactionCenterSet().add(productAtom);
                         }
                     } catch (CDKException ex) {
                         getLogger(BondChangeAnnotator.class.getName()).log(SEVERE, null, ex);
                     }
-                    if (affectedBondReactants == null && affectedBondProducts == null) {
-                        continue;
-                    }
-
-                    int kekuleEffect = 0;
-                    kekuleEffect = isAlternateKekuleChange(affectedBondReactants, affectedBondProducts);
-                    if (kekuleEffect == 0) {
-                        bondChangeInformation = BOND_ORDER;
-                        if (affectedBondReactants != null) {
-                            affectedBondReactants.getAtom(0).setFlag(REACTIVE_CENTER, true);
-                            affectedBondReactants.getAtom(1).setFlag(REACTIVE_CENTER, true);
-                            getReactionCenterSet().add(affectedBondReactants.getAtom(0));
-                            getReactionCenterSet().add(affectedBondReactants.getAtom(1));
-                            affectedBondReactants.setProperty(BOND_CHANGE_INFORMATION, bondChangeInformation);
-                        }
-                        if (affectedBondProducts != null) {
-                            affectedBondProducts.getAtom(0).setFlag(REACTIVE_CENTER, true);
-                            affectedBondProducts.getAtom(1).setFlag(REACTIVE_CENTER, true);
-                            getReactionCenterSet().add(affectedBondProducts.getAtom(0));
-                            getReactionCenterSet().add(affectedBondProducts.getAtom(1));
-                            affectedBondProducts.setProperty(BOND_CHANGE_INFORMATION, bondChangeInformation);
-                        }
-                        getBondChangeList().add(new BondChange(affectedBondReactants, affectedBondProducts));
-                    }
                 }
 
                 /*
-                 * R-Matrix with changes
+                 * off diagonal changes
                  */
+                IBond affectedBondReactants;
+                IBond affectedBondProducts;
+                ECBLAST_BOND_CHANGE_FLAGS bondChangeInformation;
                 if (DEBUG) {
                     System.out.println("Marking Bond Changes-2");
                 }
-                if (reactionMatrix.getValue(i, j) != 0.) {
-
-                    /*
-                     * DEBUG
-                     */
-                    if (DEBUG) {
-                        System.out.println("Bond Change in R Matrix " + " i "
-                                + (i + 1) + ", j " + (j + 1) + " " + reactionMatrix.getValue(i, j));
-                    }
+                affectedBondReactants = substrateBEMatrix.getBond(i, j);
+                affectedBondProducts = productBEMatrix.getBond(i, j);
+                if (affectedBondReactants == null && affectedBondProducts == null) {
+                    continue;
+                }
+                if (affectedBondReactants != null
+                        && affectedBondProducts != null
+                        && affectedBondReactants.getProperties().containsKey(BOND_CHANGE_INFORMATION)
+                        && affectedBondProducts.getProperties().containsKey(BOND_CHANGE_INFORMATION)) {
+                    continue;
+                }
+                int kekuleEffect = isKekuleEffect(affectedBondReactants, affectedBondProducts);
+                if (kekuleEffect == 1) {
+                    continue;
+                }
 
-                    //Diagonal free valence electron changes 
-                    if (i == j) {
-                        IAtom reactantAtom;
-                        IAtom productAtom;
-                        try {
-                            reactantAtom = reactionMatrix.getReactantAtom(i);
-                            if (reactantAtom != null) {
-                                reactantAtom.setFlag(REACTIVE_CENTER, true);
-                                getReactionCenterSet().add(reactantAtom);
-                            }
-                        } catch (CDKException ex) {
-                            getLogger(BondChangeAnnotator.class.getName()).log(SEVERE, null, ex);
-                        }
-                        try {
-                            productAtom = reactionMatrix.getProductAtom(j);
-                            if (productAtom != null) {
-                                productAtom.setFlag(REACTIVE_CENTER, true);
-                                getReactionCenterSet().add(productAtom);
-                            }
-                        } catch (CDKException ex) {
-                            getLogger(BondChangeAnnotator.class.getName()).log(SEVERE, null, ex);
-                        }
-                    }
+                if (DEBUG) {
+                    System.out.println(i + "," + j + " reactionMatrix.getValue(i, j) " + reactionMatrix.getValue(i, j));
+                }
 
-                    /*
-                     * off diagonal changes
-                     */
-                    IBond affectedBondReactants;
-                    IBond affectedBondProducts;
-                    ECBLAST_BOND_CHANGE_FLAGS bondChangeInformation;
+                /*
+                 * Changes in the product
+                 */
+                if (reactionMatrix.getValue(i, j) < 0.0d) {
                     if (DEBUG) {
-                        System.out.println("Marking Bond Changes-2");
+                        System.out.println("Marking Bond Changes-2 product");
                     }
-                    try {
-                        affectedBondReactants = getBondOfReactantsByRMatrix(reactionMatrix.getReactantAtom(i), reactionMatrix.getReactantAtom(j));
-                        affectedBondProducts = getBondOfProductsByRMatrix(reactionMatrix.getProductAtom(i), reactionMatrix.getProductAtom(j));
-                        if (affectedBondReactants == null && affectedBondProducts == null) {
-                            continue;
-                        }
-                        if (affectedBondReactants != null
-                                && affectedBondProducts != null
-                                && affectedBondReactants.getProperties().containsKey(BOND_CHANGE_INFORMATION)
-                                && affectedBondProducts.getProperties().containsKey(BOND_CHANGE_INFORMATION)) {
-                            continue;
-                        }
-                        int kekuleEffect = isKekuleEffect(affectedBondReactants, affectedBondProducts);
-                        if (kekuleEffect == 1) {
-                            continue;
-                        }
-
-                        if (DEBUG) {
-                            System.out.println(i + "," + j + " reactionMatrix.getValue(i, j) " + reactionMatrix.getValue(i, j));
-                        }
 
+                    if (productBEMatrix.getValue(i, j) == 0.0d && affectedBondProducts == null) {
                         /*
-                         * Changes in the product
+                         * Here the bond is cleaved (Reduced)
                          */
-                        if (reactionMatrix.getValue(i, j) < 0.0d) {
-                            if (DEBUG) {
-                                System.out.println("Marking Bond Changes-2 product");
-                            }
-
-                            if (productBEMatrix.getValue(i, j) == 0.0d && affectedBondProducts == null) {
-                                /*
-                                 * Here the bond is cleaved (Reduced)
-                                 */
-                                bondChangeInformation = BOND_CLEAVED;
-                            } else {
-                                bondChangeInformation = BOND_ORDER;
-                            }
-
-                            if (affectedBondReactants != null) {
-
-                                affectedBondReactants.getAtom(0).setFlag(REACTIVE_CENTER, true);
-                                affectedBondReactants.getAtom(1).setFlag(REACTIVE_CENTER, true);
-                                getReactionCenterSet().add(affectedBondReactants.getAtom(0));
-                                getReactionCenterSet().add(affectedBondReactants.getAtom(1));
-                                affectedBondReactants.setProperty(BOND_CHANGE_INFORMATION, bondChangeInformation);
-                            }
-                            if (affectedBondProducts != null) {
-
-                                affectedBondProducts.getAtom(0).setFlag(REACTIVE_CENTER, true);
-                                affectedBondProducts.getAtom(1).setFlag(REACTIVE_CENTER, true);
-                                getReactionCenterSet().add(affectedBondProducts.getAtom(0));
-                                getReactionCenterSet().add(affectedBondProducts.getAtom(1));
-                                affectedBondProducts.setProperty(BOND_CHANGE_INFORMATION, bondChangeInformation);
-                            }
-                        } /*
-                           * Changes in the educt
-                         */ else if (reactionMatrix.getValue(i, j) > 0.d) {
+                        bondChangeInformation = BOND_CLEAVED;
+                    } else {
+                        bondChangeInformation = BOND_ORDER;
+                    }
 
-                            if (DEBUG) {
-                                System.out.println("Marking Bond Changes-2 educt");
-                            }
+                    if (affectedBondReactants != null) {
 
-                            if (substrateBEMatrix.getValue(i, j) == 0.0d && affectedBondReactants == null) {
-                                /*
-                                 * Here the bond is Formed (Gained)
-                                 */
-                                bondChangeInformation = BOND_FORMED;
-                            } else {
-                                bondChangeInformation = BOND_ORDER;
-                            }
+                        affectedBondReactants.getAtom(0).setFlag(REACTIVE_CENTER, true);
+                        affectedBondReactants.getAtom(1).setFlag(REACTIVE_CENTER, true);
+                        getReactionCenterSet().add(affectedBondReactants.getAtom(0));
+                        getReactionCenterSet().add(affectedBondReactants.getAtom(1));
+                        affectedBondReactants.setProperty(BOND_CHANGE_INFORMATION, bondChangeInformation);
+                    }
+                    if (affectedBondProducts != null) {
 
-                            if (affectedBondReactants != null) {
+                        affectedBondProducts.getAtom(0).setFlag(REACTIVE_CENTER, true);
+                        affectedBondProducts.getAtom(1).setFlag(REACTIVE_CENTER, true);
+                        getReactionCenterSet().add(affectedBondProducts.getAtom(0));
+                        getReactionCenterSet().add(affectedBondProducts.getAtom(1));
+                        affectedBondProducts.setProperty(BOND_CHANGE_INFORMATION, bondChangeInformation);
+                    }
+                } /*
+                   * Changes in the educt
+                 */ else if (reactionMatrix.getValue(i, j) > 0.d) {
 
-                                affectedBondReactants.getAtom(0).setFlag(REACTIVE_CENTER, true);
-                                affectedBondReactants.getAtom(1).setFlag(REACTIVE_CENTER, true);
-                                getReactionCenterSet().add(affectedBondReactants.getAtom(0));
-                                getReactionCenterSet().add(affectedBondReactants.getAtom(1));
-                                affectedBondReactants.setProperty(BOND_CHANGE_INFORMATION, bondChangeInformation);
-                            }
-                            if (affectedBondProducts != null) {
+                    if (DEBUG) {
+                        System.out.println("Marking Bond Changes-2 educt");
+                    }
 
-                                affectedBondProducts.getAtom(0).setFlag(REACTIVE_CENTER, true);
-                                affectedBondProducts.getAtom(1).setFlag(REACTIVE_CENTER, true);
-                                getReactionCenterSet().add(affectedBondProducts.getAtom(0));
-                                getReactionCenterSet().add(affectedBondProducts.getAtom(1));
-                                affectedBondProducts.setProperty(BOND_CHANGE_INFORMATION, bondChangeInformation);
-                            }
-                        }
+                    if (substrateBEMatrix.getValue(i, j) == 0.0d && affectedBondReactants == null) {
                         /*
-                         * Store the bond changes
+                         * Here the bond is Formed (Gained)
                          */
-                        if (DEBUG) {
-                            System.out.println("Marking Bond Changes-2 STORED ");
-                        }
+                        bondChangeInformation = BOND_FORMED;
+                    } else {
+                        bondChangeInformation = BOND_ORDER;
+                    }
 
-                        getBondChangeList().add(new BondChange(affectedBondReactants, affectedBondProducts));
-                    } catch (CDKException ex) {
-                        getLogger(BondChangeAnnotator.class.getName()).log(SEVERE, null, ex);
+                    if (affectedBondReactants != null) {
+
+                        affectedBondReactants.getAtom(0).setFlag(REACTIVE_CENTER, true);
+                        affectedBondReactants.getAtom(1).setFlag(REACTIVE_CENTER, true);
+                        getReactionCenterSet().add(affectedBondReactants.getAtom(0));
+                        getReactionCenterSet().add(affectedBondReactants.getAtom(1));
+                        affectedBondReactants.setProperty(BOND_CHANGE_INFORMATION, bondChangeInformation);
+                    }
+                    if (affectedBondProducts != null) {
+
+                        affectedBondProducts.getAtom(0).setFlag(REACTIVE_CENTER, true);
+                        affectedBondProducts.getAtom(1).setFlag(REACTIVE_CENTER, true);
+                        getReactionCenterSet().add(affectedBondProducts.getAtom(0));
+                        getReactionCenterSet().add(affectedBondProducts.getAtom(1));
+                        affectedBondProducts.setProperty(BOND_CHANGE_INFORMATION, bondChangeInformation);
                     }
                 }
+                /*
+                 * Store the bond changes
+                 */
+                if (DEBUG) {
+                    System.out.println("Marking Bond Changes-2 STORED ");
+                }
+
+                getBondChangeList().add(new BondChange(affectedBondReactants, affectedBondProducts));
             }
         }
         if (DEBUG) {
@@ -730,24 +721,6 @@ public final class BondChangeAnnotator extends DUModel {
         }
     }
 
-    private synchronized IBond getBondOfReactantsByRMatrix(IAtom atom1, IAtom atom2) {
-        for (int i = 0; i < reactantSet.getAtomContainerCount(); i++) {
-            if (reactantSet.getAtomContainer(i).getBond(atom1, atom2) != null) {
-                return reactantSet.getAtomContainer(i).getBond(atom1, atom2);
-            }
-        }
-        return null;
-    }
-
-    private synchronized IBond getBondOfProductsByRMatrix(IAtom atom1, IAtom atom2) {
-        for (int i = 0; i < productSet.getAtomContainerCount(); i++) {
-            if (productSet.getAtomContainer(i).getBond(atom1, atom2) != null) {
-                return productSet.getAtomContainer(i).getBond(atom1, atom2);
-            }
-        }
-        return null;
-    }
-
     /**
      *
      * @param affectedBondReactants
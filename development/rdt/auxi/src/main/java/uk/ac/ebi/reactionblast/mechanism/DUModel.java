@@ -39,7 +39,7 @@ import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IMapping;
 import org.openscience.cdk.interfaces.IReaction;
 import org.openscience.cdk.interfaces.IRingSet;
-import org.openscience.smsd.helper.MoleculeInitializer;
+import uk.ac.ebi.reactionblast.tools.MoleculeInitializer;
 import uk.ac.ebi.reactionblast.mechanism.helper.AtomAtomMappingContainer;
 import uk.ac.ebi.reactionblast.mechanism.helper.AtomStereoChangeInformation;
 import uk.ac.ebi.reactionblast.mechanism.helper.BondChange;
@@ -66,9 +66,15 @@ abstract class DUModel extends StereoCenteralityTool implements IChangeCalculato
     final List<AtomStereoChangeInformation> conformationChangeList;
     final List<StereoChange> stereogenicCenters;
     protected final AtomAtomMappingContainer mapping;
-    protected final BEMatrix reactantBE;
-    protected final BEMatrix productBE;
-    protected final RMatrix reactionMatrix;
+    protected final SparseBEMatrix reactantBE;
+    protected final SparseBEMatrix productBE;
+    protected final SparseRMatrix reactionMatrix;
+    /*
+     * dense copies, made if asked for
+     */
+    private BEMatrix denseReactantBE;
+    private BEMatrix denseProductBE;
+    private RMatrix denseReactionMatrix;
     protected final IRingSet queryRingSet;
     protected final IRingSet targetRingSet;
 
@@ -153,10 +159,8 @@ abstract class DUModel extends StereoCenteralityTool implements IChangeCalculato
         }
     }
 
-    private synchronized BEMatrix createBEMatrix(IAtomContainerSet molset, List<IBond> bonds, boolean withoutH, Map<IAtom, IAtom> mappings) throws CDKException {
-        BEMatrix res = new BEMatrix(withoutH, molset, bonds, mappings);
-        res.setMatrixAtoms();
-        return res;
+    private synchronized SparseBEMatrix createBEMatrix(IAtomContainerSet molset, List<IBond> bonds, boolean withoutH, Map<IAtom, IAtom> mappings) throws CDKException {
+        return new SparseBEMatrix(withoutH, molset, bonds, mappings);
     }
 
     /**
@@ -167,8 +171,38 @@ abstract class DUModel extends StereoCenteralityTool implements IChangeCalculato
      * @return
      * @throws CDKException
      */
-    private synchronized RMatrix createRMatrix(BEMatrix reactantBE, BEMatrix productBE, AtomAtomMappingContainer mapping) throws CDKException {
-        return new RMatrix(reactantBE, productBE, mapping);
+    private synchronized SparseRMatrix createRMatrix(SparseBEMatrix reactantBE, SparseBEMatrix productBE, AtomAtomMappingContainer mapping) throws CDKException {
+        return new SparseRMatrix(reactantBE, productBE, mapping);
+    }
+
+    /**
+     * @return dense reactant BE-matrix
+     */
+    synchronized BEMatrix getDenseReactantBE() {
+        if (denseReactantBE == null) {
+            denseReactantBE = new BEMatrix(reactantBE);
+        }
+        return denseReactantBE;
+    }
+
+    /**
+     * @return dense product BE-matrix
+     */
+    synchronized BEMatrix getDenseProductBE() {
+        if (denseProductBE == null) {
+            denseProductBE = new BEMatrix(productBE);
+        }
+        return denseProductBE;
+    }
+
+    /**
+     * @return dense R-matrix
+     */
+    synchronized RMatrix getDenseReactionMatrix() {
+        if (denseReactionMatrix == null) {
+            denseReactionMatrix = new RMatrix(reactionMatrix, getDenseReactantBE(), getDenseProductBE());
+        }
+        return denseReactionMatrix;
     }
 
     @Override
@@ -56,7 +56,7 @@ public final class RMatrix extends EBIMatrix implements Serializable {
     private BEMatrix reactantBEMatrix = null;
     private BEMatrix productBEMatrix = null;
     private AtomAtomMappingContainer myMapping = null;
-    private boolean DEBUG = false;
+    private static final boolean DEBUG = false;
 
     /**
      * Class constructor. Generates the RMatrix of a reaction given the
@@ -126,8 +126,7 @@ public final class RMatrix extends EBIMatrix implements Serializable {
                  */
                 if (r_id_I.equals(p_id_I) && r_id_J.equals(p_id_J)) {
                     double value = productBEMatrix.getValue(i, j) - reactantBEMatrix.getValue(i, j);
-                    boolean aromaticFlag = isAromaticChange(i, j);
-                    if (aromaticFlag && value != 0.0) {
+                    if (value != 0.0 && isAromaticChange(i, j)) {
                         setValue(i, j, 0.0);
                     } else {
                         setValue(i, j, value);
@@ -142,6 +141,27 @@ public final class RMatrix extends EBIMatrix implements Serializable {
         }
     }
 
+    /**
+     * Dense copy of a sparse R-matrix
+     *
+     * @param sparse
+     * @param reactantBE dense copy of the reactant BE-matrix of sparse
+     * @param productBE dense copy of the product BE-matrix of sparse
+     */
+    RMatrix(SparseRMatrix sparse, BEMatrix reactantBE, BEMatrix productBE) {
+        super(sparse.getRowDimension(), sparse.getColumnDimension());
+        initMatrix(0.);
+        this.reactantBEMatrix = reactantBE;
+        this.productBEMatrix = productBE;
+        this.myMapping = sparse.getMapping();
+        for (long cell : sparse.getChangedCells()) {
+            int i = (int) (cell >>> 32);
+            int j = (int) cell;
+            setValue(i, j, sparse.getValue(i, j));
+            setValue(j, i, sparse.getValue(j, i));
+        }
+    }
+
     private synchronized boolean isAromaticChange(int IndexI, int IndexJ) throws CDKException {
 
         IAtom ra1 = getReactantBEMatrix().getAtom(IndexI);
@@ -375,7 +395,7 @@ public final class RMatrix extends EBIMatrix implements Serializable {
         return result.toString();
     }
 
-    private int countAtomOverlap(List<IAtom> atomsE, List<IAtom> atomsP) {
+    static int countAtomOverlap(List<IAtom> atomsE, List<IAtom> atomsP) {
 
         Map<String, Integer> atomUniqueCounter1 = new TreeMap<>();
         Map<String, Integer> atomUniqueCounter2 = new TreeMap<>();
@@ -0,0 +1,359 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mechanism;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import static java.util.Collections.unmodifiableList;
+import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainerSet;
+import org.openscience.cdk.interfaces.IBond;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeMolecule;
+import uk.ac.ebi.reactionblast.tools.ValencyCalculator;
+
+/**
+ * Sparse form of the {@link BEMatrix}: the free valence electrons of each
+ * mapped atom and the order of each bond between them, nothing is stored for
+ * the unbonded pairs. Atoms are found by ID through a map and the matrix is
+ * built in one pass over the atoms and bonds of the molecules.
+ *
+ * The values returned by {@link #getValue(int, int)} are those of the dense
+ * matrix, including the last row and column of the lone pairs.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public final class SparseBEMatrix implements Serializable {
+
+    private static final long serialVersionUID = 0x5be3a7c1d2e9f01L;
+    private static final Logger LOG = getLogger(SparseBEMatrix.class.getName());
+
+    /**
+     *
+     * @param bond
+     * @return bond order as stored in the BE-matrix
+     */
+    static double convertBondOrder(IBond bond) {
+        switch (bond.getOrder()) {
+            case QUADRUPLE:
+                return 4.0;
+            case TRIPLE:
+                return 3.0;
+            case DOUBLE:
+                return 2.0;
+            default:
+                return 1.0;
+        }
+    }
+
+    private static long key(int i, int j) {
+        return i < j ? ((long) i << 32) | j : ((long) j << 32) | i;
+    }
+
+    private final boolean withoutH;
+    private final IAtomContainerSet moleculeSet;
+    private final List<IBond> bonds;
+    private final Map<IAtom, IAtom> mappings;
+    /*
+     * atoms in matrix order, pivoting only changes this order
+     */
+    private final List<IAtom> atomArray;
+    private final int[] atomAt;
+    private final int[] positionOf;
+    private final Map<String, Integer> indexOfID;
+    /*
+     * by atom, in the order the atoms were added
+     */
+    private final IAtomContainer[] containers;
+    private final double[] freeValenceElectrons;
+    /*
+     * bonded pairs of atoms, order read when the matrix is built
+     */
+    private final Map<Long, IBond> bondOfPair;
+    private final Map<Long, Double> orderOfPair;
+
+    /**
+     * Builds the matrix of the mapped atoms of a set of molecules.
+     *
+     * @param skipHydrogen H atoms are not considered
+     * @param molSet molecules
+     * @param bonds bonds of the molecules
+     * @param mappings AAM
+     * @throws CDKException
+     */
+    public SparseBEMatrix(boolean skipHydrogen,
+            IAtomContainerSet molSet,
+            List<IBond> bonds,
+            Map<IAtom, IAtom> mappings) throws CDKException {
+        this.withoutH = skipHydrogen;
+        this.moleculeSet = molSet;
+        this.bonds = bonds;
+        this.mappings = mappings;
+
+        Set<IAtom> mappedProductAtoms = new HashSet<>(mappings.values());
+        List<IAtom> atoms = new ArrayList<>();
+        List<IAtomContainer> atomContainers = new ArrayList<>();
+        for (IAtomContainer container : molSet.atomContainers()) {
+            for (IAtom atom : container.atoms()) {
+                if (withoutH && atom.getSymbol().matches("H")) {
+                    continue;
+                }
+                if (!mappings.containsKey(atom) && !mappedProductAtoms.contains(atom)) {
+                    continue;
+                }
+                atoms.add(atom);
+                atomContainers.add(container);
+            }
+        }
+
+        int n = atoms.size();
+        this.atomArray = atoms;
+        this.atomAt = new int[n];
+        this.positionOf = new int[n];
+        this.indexOfID = new HashMap<>(2 * n);
+        this.containers = atomContainers.toArray(new IAtomContainer[n]);
+        this.freeValenceElectrons = new double[n];
+        Map<IAtom, Integer> atomIndex = new IdentityHashMap<>(2 * n);
+        for (int i = 0; i < n; i++) {
+            IAtom atom = atoms.get(i);
+            atomAt[i] = i;
+            positionOf[i] = i;
+            indexOfID.put(atom.getID(), i);
+            atomIndex.put(atom, i);
+            freeValenceElectrons[i] = ValencyCalculator.getFreeValenceElectrons(containers[i], atom, withoutH);
+        }
+
+        this.bondOfPair = new HashMap<>();
+        this.orderOfPair = new HashMap<>();
+        for (IAtomContainer container : molSet.atomContainers()) {
+            for (IBond bond : container.bonds()) {
+                Integer a = atomIndex.get(bond.getAtom(0));
+                Integer b = atomIndex.get(bond.getAtom(1));
+                if (a == null || b == null || a.equals(b)) {
+                    continue;
+                }
+                long k = key(a, b);
+                if (!bondOfPair.containsKey(k)) {
+                    bondOfPair.put(k, bond);
+                    orderOfPair.put(k, convertBondOrder(bond));
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * @return number of atoms in the matrix
+     */
+    public int getAtomCount() {
+        return atomArray.size();
+    }
+
+    /**
+     *
+     * @return rows of the dense matrix, atoms and the lone pairs
+     */
+    public int getRowDimension() {
+        return atomArray.size() + 1;
+    }
+
+    /**
+     * Value of the dense matrix at row i and column j
+     *
+     * @param i
+     * @param j
+     * @return bond order, free valence electrons on the diagonal
+     */
+    public double getValue(int i, int j) {
+        int n = atomArray.size();
+        if (i == n || j == n) {
+            return i == j ? 200 : 100;
+        }
+        if (i == j) {
+            return freeValenceElectrons[atomAt[i]];
+        }
+        Double order = orderOfPair.get(key(atomAt[i], atomAt[j]));
+        return order == null ? 0 : order;
+    }
+
+    /**
+     *
+     * @param i
+     * @param j
+     * @return bond between the atoms at i and j, null if they are not bonded
+     */
+    public IBond getBond(int i, int j) {
+        if (i == j) {
+            return null;
+        }
+        return bondOfPair.get(key(atomAt[i], atomAt[j]));
+    }
+
+    /**
+     *
+     * @return bonded pairs (i &lt; j) of positions, packed as i &lt;&lt; 32 |
+     * j, sorted
+     */
+    public long[] getBondedPairs() {
+        long[] pairs = new long[bondOfPair.size()];
+        int p = 0;
+        for (long k : bondOfPair.keySet()) {
+            pairs[p++] = key(positionOf[(int) (k >>> 32)], positionOf[(int) k]);
+        }
+        Arrays.sort(pairs);
+        return pairs;
+    }
+
+    /**
+     * Returns the atom at the position pos in [0,..].
+     *
+     * @param pos The position of the atom to be retrieved.
+     * @return The atom at the position pos.
+     * @throws CDKException
+     */
+    public IAtom getAtom(int pos) throws CDKException {
+        if (pos >= atomArray.size()) {
+            throw new CDKException("Passed index out of range");
+        }
+        return atomArray.get(pos);
+    }
+
+    /**
+     *
+     * @return atoms in matrix order
+     */
+    public List<IAtom> getAtoms() {
+        return unmodifiableList(atomArray);
+    }
+
+    /**
+     *
+     * @param atomID
+     * @return position of the atom, -1 if not in the matrix
+     */
+    public int getIndexOfAtomID(String atomID) {
+        Integer i = indexOfID.get(atomID);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     *
+     * @param pos
+     * @return molecule of the atom at pos
+     */
+    public IAtomContainer getAtomContainer(int pos) {
+        return containers[atomAt[pos]];
+    }
+
+    /**
+     * Sorts the atoms as in the list, see
+     * {@link BEMatrix#orderAtomArray(List)}
+     *
+     * @param orderedAtomArray new order of atoms
+     * @return Canonical atom index
+     * @throws CDKException
+     */
+    public int[] orderAtomArray(List<IAtom> orderedAtomArray) throws CDKException {
+        int[] canonicalIndex = new int[orderedAtomArray.size()];
+        if (orderedAtomArray.size() != atomArray.size()) {
+            throw new CDKException("The matrix has not been ordered: " + atomArray.size() + " !=" + orderedAtomArray.size());
+        }
+        for (IAtom orderedAtom : orderedAtomArray) {
+            if (getIndexOfAtomID(orderedAtom.getID()) == -1) {
+                throw new CDKException("The matrix has not been ordered");
+            }
+        }
+        for (int i = 0; i < orderedAtomArray.size(); i++) {
+            int di = getIndexOfAtomID(orderedAtomArray.get(i).getID());
+            if (di != i) {
+                swap(di, i);
+            }
+            canonicalIndex[i] = di;
+        }
+        return canonicalIndex;
+    }
+
+    private void swap(int i1, int i2) {
+        IAtom a1 = atomArray.get(i1);
+        IAtom a2 = atomArray.get(i2);
+        atomArray.set(i1, a2);
+        atomArray.set(i2, a1);
+        int k1 = atomAt[i1];
+        atomAt[i1] = atomAt[i2];
+        atomAt[i2] = k1;
+        positionOf[atomAt[i1]] = i1;
+        positionOf[atomAt[i2]] = i2;
+        indexOfID.put(a2.getID(), i1);
+        indexOfID.put(a1.getID(), i2);
+    }
+
+    /**
+     * Aromatize the molecules
+     *
+     * @throws CDKException
+     */
+    public void setAromaticBond() throws CDKException {
+        for (IAtomContainer m : moleculeSet.atomContainers()) {
+            aromatizeMolecule(m);
+        }
+    }
+
+    /**
+     *
+     * @return true if H atoms are not in the matrix
+     */
+    public boolean isWithoutHydrogen() {
+        return withoutH;
+    }
+
+    /**
+     *
+     * @return the molecules
+     */
+    public IAtomContainerSet getMoleculeSet() {
+        return moleculeSet;
+    }
+
+    /**
+     *
+     * @return the bonds
+     */
+    public List<IBond> getBonds() {
+        return unmodifiableList(bonds);
+    }
+
+    /**
+     *
+     * @return AAM
+     */
+    public Map<IAtom, IAtom> getMappings() {
+        return mappings;
+    }
+}
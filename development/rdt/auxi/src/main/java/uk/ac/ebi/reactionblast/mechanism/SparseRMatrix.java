@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mechanism;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import static java.util.Arrays.sort;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static java.util.logging.Level.SEVERE;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.openscience.cdk.CDKConstants.ISAROMATIC;
+import static org.openscience.cdk.CDKConstants.ISINRING;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
+import uk.ac.ebi.reactionblast.mechanism.helper.AtomAtomMappingContainer;
+
+/**
+ * Sparse form of the {@link RMatrix}: the product minus the reactant
+ * {@link SparseBEMatrix}, stored for the cells that change. Only the
+ * diagonal and the pairs bonded on either side can change, so the matrix is
+ * built from the bonds instead of all the pairs of atoms.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public final class SparseRMatrix implements Serializable {
+
+    private static final long serialVersionUID = 0x3e1f6b2d94a7c05L;
+    private static final Logger LOG = getLogger(SparseRMatrix.class.getName());
+
+    private static long key(int i, int j) {
+        return i < j ? ((long) i << 32) | j : ((long) j << 32) | i;
+    }
+
+    private final SparseBEMatrix reactantBE;
+    private final SparseBEMatrix productBE;
+    private final AtomAtomMappingContainer mapping;
+    private final int dimension;
+    private final Map<Long, Double> changes;
+    private final long[] cells;
+
+    /**
+     * Generates the RMatrix of a reaction given the BE-matrices of reactants
+     * and products. The product matrix is sorted as the reactant one.
+     *
+     * @param reactantBE Reactants BE-matrix
+     * @param productBE Products BE-matrix
+     * @param mapping Atom-Atom mappings between reactant and products atoms
+     * @throws CDKException if atoms remain unmapped
+     */
+    public SparseRMatrix(SparseBEMatrix reactantBE, SparseBEMatrix productBE, AtomAtomMappingContainer mapping) throws CDKException {
+        int expectedOverlap = RMatrix.countAtomOverlap(reactantBE.getAtoms(), productBE.getAtoms());
+        if (expectedOverlap != mapping.getSize()) {
+            throw new CDKException("Unable to construct a reaction matrix; "
+                    + ((productBE.getRowDimension() - (mapping.getSize() + 1)))
+                    + " atom(s) remain unmapped!.");
+        }
+        this.reactantBE = reactantBE;
+        this.productBE = productBE;
+        this.mapping = mapping;
+        this.dimension = reactantBE.getRowDimension();
+        try {
+            reactantBE.setAromaticBond();
+            productBE.setAromaticBond();
+        } catch (CDKException ex) {
+            getLogger(SparseRMatrix.class.getName()).log(SEVERE, null, ex);
+        }
+        List<IAtom> orderedAtoms = new ArrayList<>();
+        for (int i = 0; i < reactantBE.getAtomCount(); i++) {
+            IAtom mappedProductAtom = mapping.getMappedProductAtom(reactantBE.getAtom(i));
+            if (mappedProductAtom != null) {
+                orderedAtoms.add(mappedProductAtom);
+            }
+        }
+        productBE.orderAtomArray(orderedAtoms);
+
+        int mapped = mapping.getSize();
+        if (mapped > reactantBE.getAtomCount() || mapped > productBE.getAtomCount()) {
+            throw new CDKException("Passed index out of range");
+        }
+        /*
+         * the mapped atoms are in the first rows of both matrices
+         */
+        this.changes = new HashMap<>();
+        for (int i = 0; i < mapped; i++) {
+            setChange(i, i);
+        }
+        for (long pair : reactantBE.getBondedPairs()) {
+            setChange((int) (pair >>> 32), (int) pair);
+        }
+        for (long pair : productBE.getBondedPairs()) {
+            setChange((int) (pair >>> 32), (int) pair);
+        }
+
+        /*
+         * cells to be read by the bond change annotation: changed or bonded
+         */
+        long[] r = reactantBE.getBondedPairs();
+        long[] p = productBE.getBondedPairs();
+        long[] all = new long[r.length + p.length + changes.size()];
+        int n = 0;
+        for (long k : r) {
+            if ((int) k < dimension) {
+                all[n++] = k;
+            }
+        }
+        for (long k : p) {
+            if ((int) k < dimension) {
+                all[n++] = k;
+            }
+        }
+        for (long k : changes.keySet()) {
+            all[n++] = k;
+        }
+        sort(all, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || all[i] != all[distinct - 1]) {
+                all[distinct++] = all[i];
+            }
+        }
+        this.cells = new long[distinct];
+        System.arraycopy(all, 0, cells, 0, distinct);
+    }
+
+    private void setChange(int i, int j) throws CDKException {
+        int mapped = mapping.getSize();
+        if (i >= mapped || j >= mapped || changes.containsKey(key(i, j))) {
+            return;
+        }
+        /*
+         * Match ids for unbalanced reactions
+         */
+        if (!reactantBE.getAtom(i).getID().equals(productBE.getAtom(i).getID())
+                || !reactantBE.getAtom(j).getID().equals(productBE.getAtom(j).getID())) {
+            return;
+        }
+        double value = productBE.getValue(i, j) - reactantBE.getValue(i, j);
+        if (value != 0.0 && !isAromaticChange(i, j)) {
+            changes.put(key(i, j), value);
+        }
+    }
+
+    private boolean isAromaticChange(int i, int j) {
+        IBond rb = reactantBE.getBond(i, j);
+        IBond pb = productBE.getBond(i, j);
+        return rb != null && pb != null
+                && rb.getFlag(ISINRING) && pb.getFlag(ISINRING)
+                && rb.getFlag(ISAROMATIC) && pb.getFlag(ISAROMATIC);
+    }
+
+    /**
+     * Value of the dense matrix at row i and column j
+     *
+     * @param i
+     * @param j
+     * @return change of the bond order, or of the free valence electrons on
+     * the diagonal
+     */
+    public double getValue(int i, int j) {
+        Double value = changes.get(key(i, j));
+        return value == null ? 0 : value;
+    }
+
+    /**
+     *
+     * @return rows of the dense matrix
+     */
+    public int getRowDimension() {
+        return dimension;
+    }
+
+    /**
+     *
+     * @return columns of the dense matrix
+     */
+    public int getColumnDimension() {
+        return dimension;
+    }
+
+    /**
+     * Cells (i &lt;= j) which have changed or are bonded in the reactants or
+     * products, in row major order. No other cell has to be read to find the
+     * bond changes.
+     *
+     * @return cells packed as i &lt;&lt; 32 | j
+     */
+    public long[] getCells() {
+        return cells.clone();
+    }
+
+    /**
+     *
+     * @return cells (i &lt;= j) with a non zero value, packed as i &lt;&lt; 32
+     * | j
+     */
+    public long[] getChangedCells() {
+        long[] changed = new long[changes.size()];
+        int n = 0;
+        for (long k : changes.keySet()) {
+            changed[n++] = k;
+        }
+        sort(changed);
+        return changed;
+    }
+
+    /**
+     * Returns the reactant atom in the idx-th position
+     *
+     * @param idx
+     * @return the reactant atom, null if idx is out of bounds
+     * @throws CDKException
+     */
+    public IAtom getReactantAtom(int idx) throws CDKException {
+        return idx < reactantBE.getRowDimension() && idx > -1 ? reactantBE.getAtom(idx) : null;
+    }
+
+    /**
+     * Returns the product atom in the idx-th position
+     *
+     * @param idx
+     * @return the product atom, null if idx is out of bounds
+     * @throws CDKException
+     */
+    public IAtom getProductAtom(int idx) throws CDKException {
+        return idx < productBE.getRowDimension() && idx > -1 ? productBE.getAtom(idx) : null;
+    }
+
+    /**
+     * @return the reactant BE-matrix
+     */
+    public SparseBEMatrix getReactantBEMatrix() {
+        return reactantBE;
+    }
+
+    /**
+     * @return the product BE-matrix
+     */
+    public SparseBEMatrix getProductBEMatrix() {
+        return productBE;
+    }
+
+    /**
+     * @return the mapping
+     */
+    public AtomAtomMappingContainer getMapping() {
+        return mapping;
+    }
+}
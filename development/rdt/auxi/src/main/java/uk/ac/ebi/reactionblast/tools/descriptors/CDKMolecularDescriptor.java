@@ -47,7 +47,7 @@ import org.openscience.cdk.qsar.result.DoubleResult;
 import org.openscience.cdk.qsar.result.IntegerResult;
 import static org.openscience.cdk.tools.manipulator.AtomContainerManipulator.getBondArray;
 import static org.openscience.cdk.tools.manipulator.AtomContainerManipulator.getHeavyAtoms;
-import org.openscience.smsd.helper.MoleculeInitializer;
+import uk.ac.ebi.reactionblast.tools.MoleculeInitializer;
 import uk.ac.ebi.reactionblast.interfaces.IMolDescriptors;
 import uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.checkAndCleanMolecule;
@@ -0,0 +1,441 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mechanism;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.openscience.cdk.CDKConstants.ATOM_ATOM_MAPPING;
+import static org.openscience.cdk.CDKConstants.ISAROMATIC;
+import static org.openscience.cdk.CDKConstants.ISINRING;
+import org.openscience.cdk.Mapping;
+import org.openscience.cdk.Reaction;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainerSet;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IMapping;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.io.MDLRXNV2000Reader;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+import uk.ac.ebi.reactionblast.mechanism.helper.AtomAtomMappingContainer;
+import uk.ac.ebi.reactionblast.mechanism.helper.BondChange;
+import uk.ac.ebi.reactionblast.mechanism.interfaces.ECBLAST_BOND_CHANGE_FLAGS;
+import static uk.ac.ebi.reactionblast.mechanism.interfaces.ECBLAST_BOND_CHANGE_FLAGS.BOND_CLEAVED;
+import static uk.ac.ebi.reactionblast.mechanism.interfaces.ECBLAST_BOND_CHANGE_FLAGS.BOND_FORMED;
+import static uk.ac.ebi.reactionblast.mechanism.interfaces.ECBLAST_BOND_CHANGE_FLAGS.BOND_ORDER;
+import static uk.ac.ebi.reactionblast.mechanism.interfaces.ECBLAST_FLAGS.BOND_CHANGE_INFORMATION;
+import uk.ac.ebi.reactionblast.tools.MoleculeInitializer;
+import uk.ac.ebi.reactionblast.tools.StandardizeReaction;
+import uk.ac.ebi.reactionblast.tools.ValencyCalculator;
+
+/**
+ * The sparse BE- and R-matrices of the bond change annotation, and the dense
+ * copies made from them, must hold the values of the dense matrices the
+ * annotator used to build, and the bond changes found by walking the sparse
+ * cells must be those found by walking the whole dense R-matrix.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class SparseMatrixTest {
+
+    private static final Logger LOG = getLogger(SparseMatrixTest.class.getName());
+
+    private static final String MACIE_RXN = "rxn/macie/";
+    private static final String RHEA_RXN_DIR = "rxn/rhea/";
+    private static final String[] MACIE_REACTIONS = {
+        "M0001.ov", "M0002.ov", "M0003.ov", "M0004.ov", "M0005.ov", "M0006.ov", "0001.stg02", "0005.stg02"};
+    private static final String[] RHEA_REACTIONS = {"10001", "10002", "10050", "11150", "14163"};
+    /*
+     * Reactions mapped by hand: an ester and an amide hydrolysis, a
+     * Diels-Alder cycloaddition and a transesterification
+     */
+    private static final String[] MAPPED_REACTIONS = {
+        "[CH3:1][C:2](=[O:3])[O:4][CH3:5].[OH2:6]>>[CH3:1][C:2](=[O:3])[OH:6].[OH:4][CH3:5]",
+        "[O:1]=[C:2]([NH2:3])[CH2:4][CH2:5][CH2:6][CH3:7].[OH2:8]>>[O:1]=[C:2]([OH:8])[CH2:4][CH2:5][CH2:6][CH3:7].[NH3:3]",
+        "[CH2:1]=[CH:2][CH:3]=[CH2:4].[CH2:5]=[CH2:6]>>[CH2:1]1[CH:2]=[CH:3][CH2:4][CH2:5][CH2:6]1",
+        "[CH3:1][C:2](=[O:3])[O:4][c:5]1[cH:6][cH:7][cH:8][cH:9][cH:10]1.[CH3:11][OH:12]>>[CH3:1][C:2](=[O:3])[O:12][CH3:11].[OH:4][c:5]1[cH:6][cH:7][cH:8][cH:9][cH:10]1"};
+
+    @Test
+    public void MACIEReactions() throws Exception {
+        for (String reactionID : MACIE_REACTIONS) {
+            compare(map(MACIE_RXN, reactionID), reactionID);
+        }
+    }
+
+    @Test
+    public void RheaReactions() throws Exception {
+        for (String reactionID : RHEA_REACTIONS) {
+            compare(map(RHEA_RXN_DIR, reactionID), reactionID);
+        }
+    }
+
+    /*
+     * The mapper leaves the heavy atoms of some fixtures unmapped, these
+     * reactions are sure to change bonds between mapped heavy atoms
+     */
+    @Test
+    public void MappedReactions() throws Exception {
+        SmilesParser smilesParser = new SmilesParser(SilentChemObjectBuilder.getInstance());
+        for (String smiles : MAPPED_REACTIONS) {
+            IReaction reaction = smilesParser.parseReactionSmiles(smiles);
+            reaction.setID(smiles);
+            assertTrue(smiles, compare(withMappings(reaction), smiles) > 0);
+        }
+    }
+
+    /*
+     * @return number of bond changes read off the R-matrix
+     */
+    private int compare(IReaction reaction, String reactionID) throws Exception {
+        for (IAtomContainer ac : reaction.getReactants().atomContainers()) {
+            MoleculeInitializer.initializeMolecule(ac);
+        }
+        for (IAtomContainer ac : reaction.getProducts().atomContainers()) {
+            MoleculeInitializer.initializeMolecule(ac);
+        }
+        Map<IAtom, IAtom> mappings = new IdentityHashMap<>();
+        for (IMapping m : reaction.mappings()) {
+            mappings.put((IAtom) m.getChemObject(0), (IAtom) m.getChemObject(1));
+        }
+        DenseBE reactantBE = new DenseBE(reaction.getReactants(), mappings);
+        DenseBE productBE = new DenseBE(reaction.getProducts(), mappings);
+
+        BondChangeAnnotator annotator = new BondChangeAnnotator(reaction, true);
+
+        assertBE(reactionID, reactantBE, annotator.reactantBE);
+        assertBE(reactionID, reactantBE, annotator.getEductBEMatrix());
+        assertBE(reactionID, productBE, annotator.productBE);
+        assertBE(reactionID, productBE, annotator.getProductBEMatrix());
+
+        DenseR reactionMatrix = new DenseR(reactantBE, productBE, annotator.getMappingContainer());
+        SparseRMatrix sparseR = annotator.reactionMatrix;
+        RMatrix denseR = annotator.getRMatrix();
+        int n = reactionMatrix.atomsR.size();
+        assertEquals(reactionID, n + 1, sparseR.getRowDimension());
+        for (int i = 0; i < n; i++) {
+            assertEquals(reactionID, reactionMatrix.atomsR.get(i), sparseR.getReactantAtom(i));
+            assertEquals(reactionID, reactionMatrix.atomsP.get(i), sparseR.getProductAtom(i));
+            for (int j = 0; j < n; j++) {
+                assertEquals(reactionID + " R " + i + "," + j, reactionMatrix.values[i][j], sparseR.getValue(i, j), 0.0);
+                assertEquals(reactionID + " R " + i + "," + j, reactionMatrix.values[i][j], denseR.getValue(i, j), 0.0);
+            }
+        }
+
+        List<IBond[]> changes = new ArrayList<>();
+        Map<IBond, ECBLAST_BOND_CHANGE_FLAGS> flags = reactionMatrix.markBondChanges(annotator, changes);
+        List<IBond> bonds = new ArrayList<>();
+        for (IAtomContainer ac : reaction.getReactants().atomContainers()) {
+            for (IBond bond : ac.bonds()) {
+                bonds.add(bond);
+            }
+        }
+        for (IAtomContainer ac : reaction.getProducts().atomContainers()) {
+            for (IBond bond : ac.bonds()) {
+                bonds.add(bond);
+            }
+        }
+        for (IBond bond : bonds) {
+            if (reactionMatrix.inMatrix(bond)) {
+                assertEquals(reactionID + " bond " + bonds.indexOf(bond),
+                        flags.get(bond), bond.getProperty(BOND_CHANGE_INFORMATION));
+            }
+        }
+        List<String> found = new ArrayList<>();
+        for (BondChange bc : annotator.getBondChangeList()) {
+            if (reactionMatrix.inMatrix(bc.getReactantBond()) || reactionMatrix.inMatrix(bc.getProductBond())) {
+                found.add(bonds.indexOf(bc.getReactantBond()) + ":" + bonds.indexOf(bc.getProductBond()));
+            }
+        }
+        List<String> expected = new ArrayList<>();
+        for (IBond[] change : changes) {
+            expected.add(bonds.indexOf(change[0]) + ":" + bonds.indexOf(change[1]));
+        }
+        Collections.sort(expected);
+        Collections.sort(found);
+        assertEquals(reactionID, expected, found);
+        return found.size();
+    }
+
+    private static void assertBE(String reactionID, DenseBE expected, SparseBEMatrix actual) throws Exception {
+        assertEquals(reactionID, expected.atoms.size(), actual.getAtomCount());
+        for (int i = 0; i < expected.atoms.size(); i++) {
+            int k = actual.getAtoms().indexOf(expected.atoms.get(i));
+            assertTrue(reactionID, k >= 0);
+            for (int j = 0; j < expected.atoms.size(); j++) {
+                int l = actual.getAtoms().indexOf(expected.atoms.get(j));
+                assertEquals(reactionID + " BE " + i + "," + j, expected.values[i][j], actual.getValue(k, l), 0.0);
+            }
+        }
+    }
+
+    private static void assertBE(String reactionID, DenseBE expected, BEMatrix actual) throws Exception {
+        assertEquals(reactionID, expected.atoms.size() + 1, actual.getRowDimension());
+        for (int i = 0; i < expected.atoms.size(); i++) {
+            int k = actual.getAtoms().indexOf(expected.atoms.get(i));
+            assertTrue(reactionID, k >= 0);
+            for (int j = 0; j < expected.atoms.size(); j++) {
+                int l = actual.getAtoms().indexOf(expected.atoms.get(j));
+                assertEquals(reactionID + " BE " + i + "," + j, expected.values[i][j], actual.getValue(k, l), 0.0);
+            }
+        }
+    }
+
+    private IReaction map(String dir, String reactionID) throws Exception {
+        IReaction reaction;
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(dir + reactionID + ".rxn");
+        try (MDLRXNV2000Reader reader = new MDLRXNV2000Reader(ins)) {
+            reaction = reader.read(new Reaction());
+            reaction.setID(reactionID);
+        }
+        ReactionMechanismTool rmt = new ReactionMechanismTool(reaction, true, new StandardizeReaction());
+        return withMappings(rmt.getSelectedSolution().getReaction());
+    }
+
+    /*
+     * The mapped reaction as it reads from a mapped RXN file: a mapping per
+     * pair of atoms with the same mapping number, both with that number as
+     * ID, and no bond change marks
+     */
+    private static IReaction withMappings(IReaction mapped) {
+        IReaction reaction = new Reaction();
+        reaction.setID(mapped.getID());
+        reaction.setReactants(mapped.getReactants());
+        reaction.setProducts(mapped.getProducts());
+        Map<Integer, IAtom> reactantAtoms = new HashMap<>();
+        int unmapped = 0;
+        for (IAtomContainer ac : mapped.getReactants().atomContainers()) {
+            for (IAtom atom : ac.atoms()) {
+                Integer number = atom.getProperty(ATOM_ATOM_MAPPING);
+                if (number != null && number > 0) {
+                    reactantAtoms.put(number, atom);
+                }
+                atom.setID("u" + (++unmapped));
+            }
+            for (IBond bond : ac.bonds()) {
+                bond.removeProperty(BOND_CHANGE_INFORMATION);
+            }
+        }
+        for (IAtomContainer ac : mapped.getProducts().atomContainers()) {
+            for (IAtom atom : ac.atoms()) {
+                Integer number = atom.getProperty(ATOM_ATOM_MAPPING);
+                IAtom reactantAtom = number == null ? null : reactantAtoms.get(number);
+                if (reactantAtom != null) {
+                    reactantAtom.setID(String.valueOf(number));
+                    atom.setID(String.valueOf(number));
+                    reaction.addMapping(new Mapping(reactantAtom, atom));
+                } else {
+                    atom.setID("u" + (++unmapped));
+                }
+            }
+            for (IBond bond : ac.bonds()) {
+                bond.removeProperty(BOND_CHANGE_INFORMATION);
+            }
+        }
+        return reaction;
+    }
+
+    /*
+     * The dense BE-matrix as BEMatrix.setMatrixAtoms() built it, without the
+     * lone pair row and column
+     */
+    private static class DenseBE {
+
+        final IAtomContainerSet molSet;
+        final List<IAtom> atoms;
+        final double[][] values;
+
+        DenseBE(IAtomContainerSet molSet, Map<IAtom, IAtom> mappings) throws Exception {
+            this.molSet = molSet;
+            this.atoms = new ArrayList<>();
+            for (IAtomContainer container : molSet.atomContainers()) {
+                for (IAtom atom : container.atoms()) {
+                    if (atom.getSymbol().matches("H")) {
+                        continue;
+                    }
+                    if (!mappings.containsKey(atom) && !mappings.containsValue(atom)) {
+                        continue;
+                    }
+                    atoms.add(atom);
+                }
+            }
+            int n = atoms.size();
+            this.values = new double[n][n];
+            for (int i = 0; i < n; i++) {
+                for (IAtomContainer mol : molSet.atomContainers()) {
+                    if (mol.contains(atoms.get(i))) {
+                        values[i][i] = ValencyCalculator.getFreeValenceElectrons(mol, atoms.get(i), true);
+                    }
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (i != j) {
+                        IBond bond = getBond(atoms.get(i), atoms.get(j));
+                        values[i][j] = bond == null ? 0.0 : convertBondOrder(bond);
+                    }
+                }
+            }
+        }
+
+        IBond getBond(IAtom a, IAtom b) {
+            for (IAtomContainer mol : molSet.atomContainers()) {
+                IBond bond = mol.getBond(a, b);
+                if (bond != null) {
+                    return bond;
+                }
+            }
+            return null;
+        }
+
+        IAtomContainer getAtomContainer(IAtom atom) {
+            for (IAtomContainer mol : molSet.atomContainers()) {
+                if (mol.contains(atom)) {
+                    return mol;
+                }
+            }
+            return null;
+        }
+
+        private static double convertBondOrder(IBond bond) {
+            switch (bond.getOrder()) {
+                case QUADRUPLE:
+                    return 4.0;
+                case TRIPLE:
+                    return 3.0;
+                case DOUBLE:
+                    return 2.0;
+                default:
+                    return 1.0;
+            }
+        }
+    }
+
+    /*
+     * The dense R-matrix as RMatrix built it, the product atoms in the order
+     * of the reactant atoms they are mapped to
+     */
+    private static class DenseR {
+
+        final DenseBE reactantBE;
+        final DenseBE productBE;
+        final List<IAtom> atomsR;
+        final List<IAtom> atomsP;
+        final double[][] values;
+
+        DenseR(DenseBE reactantBE, DenseBE productBE, AtomAtomMappingContainer mapping) {
+            this.reactantBE = reactantBE;
+            this.productBE = productBE;
+            this.atomsR = reactantBE.atoms;
+            this.atomsP = new ArrayList<>();
+            for (IAtom atomR : atomsR) {
+                atomsP.add(mapping.getMappedProductAtom(atomR));
+            }
+            int n = atomsR.size();
+            this.values = new double[n][n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (atomsR.get(i).getID().equals(atomsP.get(i).getID())
+                            && atomsR.get(j).getID().equals(atomsP.get(j).getID())) {
+                        double value = productValue(i, j) - reactantBE.values[i][j];
+                        values[i][j] = isAromaticChange(i, j) ? 0.0 : value;
+                    }
+                }
+            }
+        }
+
+        double productValue(int i, int j) {
+            return productBE.values[productBE.atoms.indexOf(atomsP.get(i))][productBE.atoms.indexOf(atomsP.get(j))];
+        }
+
+        boolean isAromaticChange(int i, int j) {
+            IBond rb = reactantBE.getAtomContainer(atomsR.get(i)).getBond(atomsR.get(i), atomsR.get(j));
+            IBond pb = productBE.getAtomContainer(atomsP.get(i)).getBond(atomsP.get(i), atomsP.get(j));
+            return rb != null && pb != null
+                    && rb.getFlag(ISINRING) && pb.getFlag(ISINRING)
+                    && rb.getFlag(ISAROMATIC) && pb.getFlag(ISAROMATIC);
+        }
+
+        boolean inMatrix(IBond bond) {
+            if (bond == null) {
+                return false;
+            }
+            return (atomsR.contains(bond.getAtom(0)) && atomsR.contains(bond.getAtom(1)))
+                    || (atomsP.contains(bond.getAtom(0)) && atomsP.contains(bond.getAtom(1)));
+        }
+
+        /*
+         * The walk of BondChangeAnnotator.markBondChanges() over every cell
+         * of the upper triangle of the dense R-matrix
+         */
+        Map<IBond, ECBLAST_BOND_CHANGE_FLAGS> markBondChanges(BondChangeAnnotator annotator, List<IBond[]> changes) {
+            Map<IBond, ECBLAST_BOND_CHANGE_FLAGS> flags = new IdentityHashMap<>();
+            int n = atomsR.size();
+            for (int i = 0; i < n; i++) {
+                for (int j = i; j < n; j++) {
+                    IBond rb = i == j ? null : reactantBE.getBond(atomsR.get(i), atomsR.get(j));
+                    IBond pb = i == j ? null : productBE.getBond(atomsP.get(i), atomsP.get(j));
+                    if (rb == null && pb == null) {
+                        continue;
+                    }
+                    if (values[i][j] == 0.) {
+                        if (annotator.isAlternateKekuleChange(rb, pb) == 0) {
+                            mark(flags, rb, pb, BOND_ORDER, changes);
+                        }
+                        continue;
+                    }
+                    if (rb != null && pb != null && flags.containsKey(rb) && flags.containsKey(pb)) {
+                        continue;
+                    }
+                    if (annotator.isKekuleEffect(rb, pb) == 1) {
+                        continue;
+                    }
+                    if (values[i][j] < 0.0d) {
+                        mark(flags, rb, pb, productValue(i, j) == 0.0d && pb == null ? BOND_CLEAVED : BOND_ORDER, changes);
+                    } else {
+                        mark(flags, rb, pb, reactantBE.values[i][j] == 0.0d && rb == null ? BOND_FORMED : BOND_ORDER, changes);
+                    }
+                }
+            }
+            return flags;
+        }
+
+        private void mark(Map<IBond, ECBLAST_BOND_CHANGE_FLAGS> flags, IBond rb, IBond pb,
+                ECBLAST_BOND_CHANGE_FLAGS flag, List<IBond[]> changes) {
+            if (rb != null) {
+                flags.put(rb, flag);
+            }
+            if (pb != null) {
+                flags.put(pb, flag);
+            }
+            changes.add(new IBond[]{rb, pb});
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainerSet;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IMapping;
+import org.openscience.cdk.interfaces.IReaction;
+import uk.ac.ebi.reactionblast.tools.MoleculeInitializer;
+import uk.ac.ebi.reactionblast.mechanism.BEMatrix;
+import uk.ac.ebi.reactionblast.mechanism.MappingSolution;
+import uk.ac.ebi.reactionblast.mechanism.RMatrix;
+import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+import uk.ac.ebi.reactionblast.mechanism.SparseBEMatrix;
+import uk.ac.ebi.reactionblast.mechanism.SparseRMatrix;
+import uk.ac.ebi.reactionblast.mechanism.helper.AtomAtomMappingContainer;
+import uk.ac.ebi.reactionblast.tools.StandardizeReaction;
+
+/**
+ * BE- and R-matrices of the selected mapping of each reaction, built sparse
+ * (as {@link uk.ac.ebi.reactionblast.mechanism.BondChangeAnnotator} does) and
+ * dense. Run with {@code -prof gc} to compare the allocation of the two.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class BEMatrixBenchmark extends CorpusBenchmark {
+
+    private static final Logger LOG = getLogger(BEMatrixBenchmark.class.getName());
+    private List<IReaction> mapped;
+    private List<Input> input;
+
+    /**
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void prepare() throws Exception {
+        mapped = new ArrayList<>();
+        for (IReaction reaction : copy(corpus)) {
+            ReactionMechanismTool rmt = new ReactionMechanismTool(reaction, true, new StandardizeReaction());
+            MappingSolution s = rmt.getSelectedSolution();
+            if (s != null) {
+                mapped.add(s.getReaction());
+            }
+        }
+        if (mapped.isEmpty()) {
+            throw new IllegalStateException("No mapped " + size + " reactions in " + dataset);
+        }
+    }
+
+    /**
+     * The matrices aromatize the molecules, each invocation gets fresh copies
+     *
+     * @throws Exception
+     */
+    @Setup(Level.Invocation)
+    public void copyReactions() throws Exception {
+        input = new ArrayList<>();
+        for (IReaction reaction : copy(mapped)) {
+            input.add(new Input(reaction));
+        }
+    }
+
+    /**
+     *
+     * @param bh
+     * @throws Exception
+     */
+    @Benchmark
+    public void sparse(Blackhole bh) throws Exception {
+        for (Input in : input) {
+            SparseBEMatrix reactantBE = new SparseBEMatrix(true, in.reactants, in.reactantBonds, in.mappings);
+            SparseBEMatrix productBE = new SparseBEMatrix(true, in.products, in.productBonds, in.mappings);
+            bh.consume(new SparseRMatrix(reactantBE, productBE, in.mapping));
+        }
+    }
+
+    /**
+     *
+     * @param bh
+     * @throws Exception
+     */
+    @Benchmark
+    public void dense(Blackhole bh) throws Exception {
+        for (Input in : input) {
+            BEMatrix reactantBE = new BEMatrix(true, in.reactants, in.reactantBonds, in.mappings);
+            reactantBE.setMatrixAtoms();
+            BEMatrix productBE = new BEMatrix(true, in.products, in.productBonds, in.mappings);
+            productBE.setMatrixAtoms();
+            bh.consume(new RMatrix(reactantBE, productBE, in.mapping));
+        }
+    }
+
+    /*
+     * What the bond change annotator hands to the matrices
+     */
+    private static class Input {
+
+        final IAtomContainerSet reactants;
+        final IAtomContainerSet products;
+        final List<IBond> reactantBonds;
+        final List<IBond> productBonds;
+        final Map<IAtom, IAtom> mappings;
+        final AtomAtomMappingContainer mapping;
+
+        Input(IReaction reaction) throws Exception {
+            reactants = reaction.getReactants();
+            products = reaction.getProducts();
+            reactantBonds = bonds(reactants);
+            productBonds = bonds(products);
+            mappings = new HashMap<>();
+            for (IMapping m : reaction.mappings()) {
+                mappings.put((IAtom) m.getChemObject(0), (IAtom) m.getChemObject(1));
+            }
+            mapping = new AtomAtomMappingContainer(reaction, true);
+        }
+
+        private static List<IBond> bonds(IAtomContainerSet molSet) throws Exception {
+            List<IBond> bonds = new ArrayList<>();
+            for (IAtomContainer ac : molSet.atomContainers()) {
+                MoleculeInitializer.initializeMolecule(ac);
+                for (IBond bond : ac.bonds()) {
+                    bonds.add(bond);
+                }
+            }
+            return bonds;
+        }
+    }
+}
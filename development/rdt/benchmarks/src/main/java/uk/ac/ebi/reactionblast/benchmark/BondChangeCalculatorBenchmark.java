@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openscience.cdk.interfaces.IReaction;
+import uk.ac.ebi.reactionblast.mechanism.BondChangeCalculator;
+import uk.ac.ebi.reactionblast.mechanism.MappingSolution;
+import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+import uk.ac.ebi.reactionblast.tools.StandardizeReaction;
+
+/**
+ * {@link BondChangeCalculator} on the selected mapping of each reaction.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class BondChangeCalculatorBenchmark extends CorpusBenchmark {
+
+    private static final Logger LOG = getLogger(BondChangeCalculatorBenchmark.class.getName());
+    private List<IReaction> mapped;
+    private List<IReaction> input;
+
+    /**
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void prepare() throws Exception {
+        mapped = new ArrayList<>();
+        for (IReaction reaction : copy(corpus)) {
+            ReactionMechanismTool rmt = new ReactionMechanismTool(reaction, true, new StandardizeReaction());
+            MappingSolution s = rmt.getSelectedSolution();
+            if (s != null) {
+                mapped.add(s.getReaction());
+            }
+        }
+        if (mapped.isEmpty()) {
+            throw new IllegalStateException("No mapped " + size + " reactions in " + dataset);
+        }
+    }
+
+    /**
+     *
+     * @throws CloneNotSupportedException
+     */
+    @Setup(Level.Invocation)
+    public void copyReactions() throws CloneNotSupportedException {
+        input = copy(mapped);
+    }
+
+    /**
+     *
+     * @param bh
+     * @throws Exception
+     */
+    @Benchmark
+    public void bondChanges(Blackhole bh) throws Exception {
+        for (IReaction reaction : input) {
+            bh.consume(new BondChangeCalculator(reaction));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IReaction;
+import uk.ac.ebi.reactionblast.mapping.container.CDKReactionBuilder;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.cloneWithIDs;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.removeHydrogensExceptSingleAndPreserveAtomID;
+import static uk.ac.ebi.reactionblast.tools.ExtReactionManipulatorTool.deepClone;
+import uk.ac.ebi.reactionblast.tools.StandardizeReaction;
+
+/**
+ * Common state of the pipeline benchmarks: a sample of the bundled RXN
+ * corpora selected by dataset and size class. One benchmark operation
+ * processes every reaction of the sample.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public abstract class CorpusBenchmark {
+
+    private static final Logger LOG = getLogger(CorpusBenchmark.class.getName());
+
+    /**
+     * RXN dataset (directory under core/src/test/resources/rxn)
+     */
+    @Param({"kegg", "rhea", "macie", "infochem", "metrxn"})
+    public String dataset;
+
+    /**
+     * reaction size class
+     */
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public SizeBucket size;
+
+    /**
+     * number of reactions per operation
+     */
+    @Param({"5"})
+    public int reactions;
+
+    /**
+     * reactions as read from the RXN files
+     */
+    protected List<IReaction> corpus;
+
+    /**
+     * Loads the corpus, then calls {@link #prepare()}. JMH does not order the
+     * trial setups of a class hierarchy, so subclasses override prepare()
+     * rather than declaring their own.
+     *
+     * @throws Exception
+     */
+    @Setup(Level.Trial)
+    public final void setUp() throws Exception {
+        corpus = RXNCorpus.load(dataset, size, reactions);
+        prepare();
+    }
+
+    /**
+     * Trial level preparation of the input, run once the corpus is loaded
+     *
+     * @throws Exception
+     */
+    protected void prepare() throws Exception {
+    }
+
+    /**
+     *
+     * @param reactions
+     * @return deep copies of the reactions (IDs and mappings preserved)
+     * @throws CloneNotSupportedException
+     */
+    protected static List<IReaction> copy(List<IReaction> reactions) throws CloneNotSupportedException {
+        List<IReaction> copies = new ArrayList<>(reactions.size());
+        for (IReaction reaction : reactions) {
+            copies.add(deepClone(reaction));
+        }
+        return copies;
+    }
+
+    /**
+     * Standardize a reaction the way CallableAtomMappingTool does before the
+     * mapping models are called
+     *
+     * @param reaction
+     * @return standardized reaction
+     * @throws Exception
+     */
+    protected static IReaction standardize(IReaction reaction) throws Exception {
+        IReaction standardized = new StandardizeReaction().standardize(reaction);
+        return CDKReactionBuilder.preprocessStandardizedReaction(standardized);
+    }
+
+    /**
+     * Label atoms, perceive atom types and drop hydrogens as the Reactor does
+     * before the game theory models are run
+     *
+     * @param standardized
+     * @return copy of the reaction ready for the mapping models
+     * @throws CloneNotSupportedException
+     * @throws CDKException
+     */
+    protected static IReaction prepareForMapping(IReaction standardized) throws CloneNotSupportedException, CDKException {
+        IReaction prepared = standardized.getBuilder().newInstance(IReaction.class);
+        prepared.setID(standardized.getID());
+        int counter = 1;
+        for (IAtomContainer mol : standardized.getReactants().atomContainers()) {
+            prepared.addReactant(prepareMolecule(mol, counter), standardized.getReactantCoefficient(mol));
+            counter += mol.getAtomCount();
+        }
+        counter = 1;
+        for (IAtomContainer mol : standardized.getProducts().atomContainers()) {
+            prepared.addProduct(prepareMolecule(mol, counter), standardized.getProductCoefficient(mol));
+            counter += mol.getAtomCount();
+        }
+        return prepared;
+    }
+
+    private static IAtomContainer prepareMolecule(IAtomContainer mol, int firstAtomID) throws CloneNotSupportedException, CDKException {
+        IAtomContainer copy = cloneWithIDs(mol);
+        copy.setID(mol.getID());
+        for (int i = 0; i < copy.getAtomCount(); i++) {
+            copy.getAtom(i).setID(String.valueOf(firstAtomID + i));
+            copy.getAtom(i).setProperty("index", i);
+        }
+        percieveAtomTypesAndConfigureAtoms(copy);
+        return removeHydrogensExceptSingleAndPreserveAtomID(copy);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openscience.cdk.interfaces.IReaction;
+import uk.ac.ebi.reactionblast.mapping.algorithm.CalculationProcess;
+import uk.ac.ebi.reactionblast.mapping.graph.MCSCache;
+import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
+
+/**
+ * One game theory mapping model (GameTheoryMax, GameTheoryMin,
+ * GameTheoryMixture or GameTheoryRings, including the scoring matrix) run
+ * through {@link CalculationProcess} on a standardized reaction.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class GameTheoryBenchmark extends CorpusBenchmark {
+
+    private static final Logger LOG = getLogger(GameTheoryBenchmark.class.getName());
+
+    /**
+     * mapping model
+     */
+    @Param({"MIN", "MAX", "MIX", "RINGS"})
+    public IMappingAlgorithm theory;
+
+    private List<IReaction> prepared;
+    private List<IReaction> input;
+
+    /**
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void prepare() throws Exception {
+        prepared = new ArrayList<>();
+        for (IReaction reaction : copy(corpus)) {
+            prepared.add(prepareForMapping(standardize(reaction)));
+        }
+    }
+
+    /**
+     *
+     * @throws CloneNotSupportedException
+     */
+    @Setup(Level.Invocation)
+    public void copyReactions() throws CloneNotSupportedException {
+        input = copy(prepared);
+    }
+
+    /**
+     *
+     * @param bh
+     */
+    @Benchmark
+    public void model(Blackhole bh) {
+        for (IReaction reaction : input) {
+            CalculationProcess process = new CalculationProcess(true, reaction, theory, new MCSCache());
+            bh.consume(process.getDelta());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openscience.cdk.interfaces.IReaction;
+import uk.ac.ebi.reactionblast.mapping.algorithm.GameTheoryMatrix;
+import uk.ac.ebi.reactionblast.mapping.algorithm.Holder;
+import uk.ac.ebi.reactionblast.mapping.container.ReactionContainer;
+import uk.ac.ebi.reactionblast.mapping.graph.GraphMatcher;
+import uk.ac.ebi.reactionblast.mapping.graph.MCSCache;
+import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
+import static uk.ac.ebi.reactionblast.tools.ExtReactionManipulatorTool.deepClone;
+
+/**
+ * All-by-all MCS round of {@link GraphMatcher#matcher(Holder)} for one mapping
+ * model, with an empty MCS cache.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class GraphMatcherBenchmark extends CorpusBenchmark {
+
+    private static final Logger LOG = getLogger(GraphMatcherBenchmark.class.getName());
+
+    /**
+     * mapping model
+     */
+    @Param({"MIN", "MAX", "MIX", "RINGS"})
+    public IMappingAlgorithm theory;
+
+    private List<IReaction> prepared;
+    private List<Holder> holders;
+
+    /**
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void prepare() throws Exception {
+        prepared = new ArrayList<>();
+        for (IReaction reaction : copy(corpus)) {
+            prepared.add(prepareForMapping(standardize(reaction)));
+        }
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @Setup(Level.Invocation)
+    public void buildHolders() throws Exception {
+        holders = new ArrayList<>();
+        for (IReaction reaction : prepared) {
+            GameTheoryMatrix matrix = new GameTheoryMatrix(theory, deepClone(reaction), true, new MCSCache());
+            Holder mh = matrix.getMatrixHolder();
+            ReactionContainer rc = mh.getReactionContainer();
+            for (int i = 0; i < rc.getEductCount(); i++) {
+                rc.setEductModified(i, true);
+            }
+            for (int j = 0; j < rc.getProductCount(); j++) {
+                rc.setProductModified(j, true);
+            }
+            mh.setMCSCache(new MCSCache());
+            holders.add(mh);
+        }
+    }
+
+    /**
+     *
+     * @param bh
+     * @throws InterruptedException
+     */
+    @Benchmark
+    public void matcher(Blackhole bh) throws InterruptedException {
+        for (Holder mh : holders) {
+            bh.consume(GraphMatcher.matcher(mh));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import static java.lang.System.getProperty;
+import java.util.ArrayList;
+import static java.util.Arrays.sort;
+import java.util.List;
+import static java.util.logging.Level.WARNING;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.Reaction;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IReaction;
+import uk.ac.ebi.reactionblast.tools.rxnfile.MDLRXNV2000Reader;
+
+/**
+ * Loads benchmark reactions from the RXN files shipped with the core tests
+ * (core/src/test/resources/rxn/&lt;dataset&gt;). The location can be changed
+ * with the system property {@value #CORPUS_PROPERTY}.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class RXNCorpus {
+
+    /**
+     * System property for the directory holding the dataset directories
+     */
+    public static final String CORPUS_PROPERTY = "rdt.benchmark.corpus";
+    private static final String[] DEFAULT_LOCATIONS = {
+        "core/src/test/resources/rxn",
+        "../core/src/test/resources/rxn"
+    };
+    private static final Logger LOG = getLogger(RXNCorpus.class.getName());
+
+    private RXNCorpus() {
+    }
+
+    /**
+     *
+     * @return the directory holding the dataset directories
+     * @throws IOException
+     */
+    public static File getCorpusDirectory() throws IOException {
+        String path = getProperty(CORPUS_PROPERTY);
+        if (path != null) {
+            File dir = new File(path);
+            if (dir.isDirectory()) {
+                return dir;
+            }
+            throw new IOException("RXN corpus not found! " + path);
+        }
+        for (String location : DEFAULT_LOCATIONS) {
+            File dir = new File(location);
+            if (dir.isDirectory()) {
+                return dir;
+            }
+        }
+        throw new IOException("RXN corpus not found, set -D" + CORPUS_PROPERTY);
+    }
+
+    /**
+     * Read the first reactions of a dataset (in file name order) that fall
+     * in the given size class.
+     *
+     * @param dataset kegg, rhea, macie, infochem, metrxn...
+     * @param bucket
+     * @param limit maximum number of reactions
+     * @return reactions, with the file name as ID
+     * @throws IOException
+     */
+    public static List<IReaction> load(String dataset, SizeBucket bucket, int limit) throws IOException {
+        File dir = new File(getCorpusDirectory(), dataset);
+        File[] files = dir.listFiles((File d, String name) -> name.toLowerCase().endsWith(".rxn"));
+        if (files == null) {
+            throw new IOException("Dataset not found! " + dir);
+        }
+        sort(files);
+        List<IReaction> reactions = new ArrayList<>();
+        for (File file : files) {
+            if (reactions.size() >= limit) {
+                break;
+            }
+            IReaction reaction = read(file);
+            if (reaction != null && bucket.contains(reaction)) {
+                reactions.add(reaction);
+            }
+        }
+        if (reactions.isEmpty()) {
+            throw new IllegalStateException("No " + bucket + " reactions in " + dir);
+        }
+        return reactions;
+    }
+
+    private static IReaction read(File file) {
+        try (MDLRXNV2000Reader reader = new MDLRXNV2000Reader(new FileInputStream(file))) {
+            IReaction reaction = reader.read(new Reaction());
+            reaction.setID(file.getName().split("(?i)\\.rxn$")[0]);
+            return reaction;
+        } catch (IOException | CDKException ex) {
+            LOG.log(WARNING, "Unable to read " + file, ex);
+        }
+        return null;
+    }
+}
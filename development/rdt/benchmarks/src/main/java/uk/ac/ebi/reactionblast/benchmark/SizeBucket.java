@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.benchmark;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IReaction;
+
+/**
+ * Reaction size classes, by the number of heavy atoms on both sides of the
+ * reaction.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public enum SizeBucket {
+
+    /**
+     * up to 40 heavy atoms
+     */
+    SMALL(0, 40),
+    /**
+     * 41 to 100 heavy atoms
+     */
+    MEDIUM(41, 100),
+    /**
+     * more than 100 heavy atoms
+     */
+    LARGE(101, Integer.MAX_VALUE);
+
+    private final int minAtoms;
+    private final int maxAtoms;
+
+    SizeBucket(int minAtoms, int maxAtoms) {
+        this.minAtoms = minAtoms;
+        this.maxAtoms = maxAtoms;
+    }
+
+    /**
+     *
+     * @param reaction
+     * @return true if the reaction belongs to this size class
+     */
+    public boolean contains(IReaction reaction) {
+        int size = getHeavyAtomCount(reaction);
+        return size >= minAtoms && size <= maxAtoms;
+    }
+
+    /**
+     *
+     * @param reaction
+     * @return number of heavy atoms in the reactants and products
+     */
+    public static int getHeavyAtomCount(IReaction reaction) {
+        int count = 0;
+        for (IAtomContainer ac : reaction.getReactants().atomContainers()) {
+            count += getHeavyAtomCount(ac);
+        }
+        for (IAtomContainer ac : reaction.getProducts().atomContainers()) {
+            count += getHeavyAtomCount(ac);
+        }
+        return count;
+    }
+
+    private static int getHeavyAtomCount(IAtomContainer ac) {
+        int count = 0;
+        for (IAtom a : ac.atoms()) {
+            if (!"H".equals(a.getSymbol())) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
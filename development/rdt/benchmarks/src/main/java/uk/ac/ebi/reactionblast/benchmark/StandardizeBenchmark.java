@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.benchmark;
+
+import java.util.List;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openscience.cdk.interfaces.IReaction;
+import uk.ac.ebi.reactionblast.mapping.container.CDKReactionBuilder;
+import uk.ac.ebi.reactionblast.tools.StandardizeReaction;
+
+/**
+ * Reaction standardization: {@link StandardizeReaction} (including 2D layout)
+ * and {@link CDKReactionBuilder#standardize(IReaction)} on its own.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class StandardizeBenchmark extends CorpusBenchmark {
+
+    private static final Logger LOG = getLogger(StandardizeBenchmark.class.getName());
+    private List<IReaction> input;
+
+    /**
+     *
+     * @throws CloneNotSupportedException
+     */
+    @Setup(Level.Invocation)
+    public void copyReactions() throws CloneNotSupportedException {
+        input = copy(corpus);
+    }
+
+    /**
+     *
+     * @param bh
+     * @throws Exception
+     */
+    @Benchmark
+    public void standardizeReaction(Blackhole bh) throws Exception {
+        for (IReaction reaction : input) {
+            bh.consume(new StandardizeReaction().standardize(reaction));
+        }
+    }
+
+    /**
+     *
+     * @param bh
+     * @throws Exception
+     */
+    @Benchmark
+    public void reactionBuilder(Blackhole bh) throws Exception {
+        for (IReaction reaction : input) {
+            bh.consume(new CDKReactionBuilder().standardize(reaction));
+        }
+    }
+}
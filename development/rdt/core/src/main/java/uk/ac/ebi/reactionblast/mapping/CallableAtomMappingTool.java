@@ -27,29 +27,33 @@ import static java.lang.System.gc;
 import static java.lang.System.out;
 import static java.util.Collections.unmodifiableMap;
 import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.CompletionService;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
-import java.util.logging.Logger;
+import java.util.concurrent.ForkJoinTask;
 import org.openscience.cdk.interfaces.IReaction;
 import org.openscience.cdk.tools.ILoggingTool;
 import static org.openscience.cdk.tools.LoggingToolFactory.createLoggingTool;
 import uk.ac.ebi.reactionblast.interfaces.IStandardizer;
+import uk.ac.ebi.reactionblast.mapping.graph.MCSCache;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
 import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MAX;
 import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MIN;
 import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.RINGS;
 import uk.ac.ebi.reactionblast.tools.rxnfile.MDLV2000RXNWriter;
 import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MIX;
-import java.util.logging.Level;
 import uk.ac.ebi.reactionblast.tools.ExtReactionManipulatorTool;
 import static java.util.Collections.synchronizedMap;
 import uk.ac.ebi.reactionblast.mapping.container.CDKReactionBuilder;
 import static java.lang.String.valueOf;
-import static java.util.concurrent.Executors.newCachedThreadPool;
-import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingThreadPool.submit;
+import uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MOLECULE_CLONES;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.REACTION_CLONES;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Stage.STANDARDIZATION;
+import uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.StageTimer;
 
 /**
  *
@@ -88,6 +92,11 @@ public class CallableAtomMappingTool implements Serializable {
         }
     }
     private Map<IMappingAlgorithm, Reactor> solution = null;
+    private final MappingMetrics metrics;
+    private final boolean removeHydrogen;
+    private IReaction cleanedReaction;
+    private IReaction sharedReaction;
+    private MCSCache mcsCache;
 
     /**
      * Takes a standardizer to standardize the reaction before mapping.
@@ -101,34 +110,150 @@ public class CallableAtomMappingTool implements Serializable {
             IReaction reaction,
             IStandardizer standardizer,
             boolean removeHydrogen) throws Exception {
+        this(reaction, standardizer, removeHydrogen, new MappingMetrics());
+    }
+
+    /**
+     * Takes a standardizer to standardize the reaction before mapping.
+     *
+     * @param reaction
+     * @param standardizer
+     * @param removeHydrogen
+     * @param metrics timings and counters of the mapping are added here
+     * @throws Exception
+     */
+    public CallableAtomMappingTool(
+            IReaction reaction,
+            IStandardizer standardizer,
+            boolean removeHydrogen,
+            MappingMetrics metrics) throws Exception {
+        this(reaction, standardizer, removeHydrogen, metrics, true);
+    }
+
+    /**
+     * Takes a standardizer to standardize the reaction before mapping. If
+     * allModels is false only the standardization is done here and the models
+     * are run with {@link #map(IMappingAlgorithm)} or
+     * {@link #start(IMappingAlgorithm...)}.
+     *
+     * @param reaction
+     * @param standardizer
+     * @param removeHydrogen
+     * @param metrics timings and counters of the mapping are added here
+     * @param allModels run all the mapping models in parallel
+     * @throws Exception
+     */
+    public CallableAtomMappingTool(
+            IReaction reaction,
+            IStandardizer standardizer,
+            boolean removeHydrogen,
+            MappingMetrics metrics,
+            boolean allModels) throws Exception {
         solution = synchronizedMap(new EnumMap<IMappingAlgorithm, Reactor>(IMappingAlgorithm.class));
+        this.metrics = metrics;
+        this.removeHydrogen = removeHydrogen;
 
         logger.info("\n|++++++++++++++++++++++++++++|");
         logger.info(" Standardize Reaction");
 
-        IReaction cleanedReaction;
         try {
-            cleanedReaction = standardizer.standardize(reaction);
-            cleanedReaction = CDKReactionBuilder.preprocessStandardizedReaction(cleanedReaction);
-            generateAtomAtomMapping(cleanedReaction, removeHydrogen);
+            StageTimer timer = metrics.start(STANDARDIZATION);
+            try {
+                cleanedReaction = standardizer.standardize(reaction);
+                cleanedReaction = CDKReactionBuilder.preprocessStandardizedReaction(cleanedReaction);
+            } finally {
+                timer.stop();
+            }
+            /*
+             * MCS solutions computed by one model are reused by the others
+             */
+            mcsCache = new MCSCache(metrics);
+            /*
+             * One labelled copy is read by all the models, each model clones
+             * the molecules it matches and edits
+             */
+            sharedReaction = Reactor.prepare(copy(cleanedReaction));
+            if (allModels) {
+                generateAtomAtomMapping();
+            }
         } catch (Exception e) {
             logger.debug("ERROR: in AtomMappingTool: " + e.getMessage());
             logger.error(e);
         }
     }
 
-    private synchronized void generateAtomAtomMapping(
-            IReaction cleanedReaction, boolean removeHydrogen) {
-        ExecutorService executor = null;
-        if (DEBUG) {
-            executor = newSingleThreadExecutor();
-        } else {
-            executor = newCachedThreadPool();
+    /**
+     * Run one mapping model, unless it has already been run
+     *
+     * @param model
+     * @return the mapped reaction, null if the reaction could not be mapped
+     */
+    public Reactor map(IMappingAlgorithm model) {
+        if (solution.containsKey(model)) {
+            return solution.get(model);
         }
-        int jobCounter = 0;
+        ForkJoinTask<Reactor> job = start(model).get(model);
         try {
-            CompletionService<Reactor> cs = new ExecutorCompletionService<>(executor);
+            return collect(job);
+        } finally {
+            /*
+             * Drops the model if it has not started yet, a running
+             * ForkJoinTask is not interrupted and runs to its end
+             */
+            if (job != null) {
+                job.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Start the mapping models on the shared pool in the given order, without
+     * waiting for them. Each is waited for with {@link #collect(ForkJoinTask)},
+     * the ones no longer needed can be cancelled: a model that has not started
+     * yet is dropped, a running one is not interrupted but no longer waited
+     * for.
+     *
+     * @param models
+     * @return the pending models in the given order, no job for a model the
+     * reaction could not be prepared for
+     */
+    public synchronized Map<IMappingAlgorithm, ForkJoinTask<Reactor>> start(IMappingAlgorithm... models) {
+        Map<IMappingAlgorithm, ForkJoinTask<Reactor>> jobs = new LinkedHashMap<>();
+        if (sharedReaction == null) {
+            return jobs;
+        }
+        for (IMappingAlgorithm model : models) {
+            MappingThread thread = new MappingThread("IMappingAlgorithm." + model.name(),
+                    sharedReaction, model, removeHydrogen, mcsCache);
+            jobs.put(model, submit(thread));
+        }
+        return jobs;
+    }
 
+    /**
+     * Wait for a model started with {@link #start(IMappingAlgorithm...)}
+     *
+     * @param job
+     * @return the mapped reaction, null if the reaction could not be mapped
+     */
+    public Reactor collect(ForkJoinTask<Reactor> job) {
+        if (job == null) {
+            return null;
+        }
+        try {
+            Reactor chosen = job.get();
+            putSolution(chosen.getAlgorithm(), chosen);
+            return chosen;
+        } catch (InterruptedException | ExecutionException e) {
+            logger.debug("ERROR: in AtomMappingTool: " + e.getMessage());
+            logger.error(e);
+        }
+        return null;
+    }
+
+    private synchronized void generateAtomAtomMapping() {
+        List<ForkJoinTask<Reactor>> jobs = new ArrayList<>();
+        try {
             if (DEBUG) {
                 out.println("\nSTEP 2: Calling Mapping Models\n");
             }
@@ -139,9 +264,8 @@ public class CallableAtomMappingTool implements Serializable {
             logger.info("\n|++++++++++++++++++++++++++++|");
             logger.info("a) Global Model: ");
 
-            MappingThread maxThread = new MappingThread("IMappingAlgorithm.MAX", ExtReactionManipulatorTool.deepClone(cleanedReaction), MAX, removeHydrogen);
-            cs.submit(maxThread);
-            jobCounter++;
+            MappingThread maxThread = new MappingThread("IMappingAlgorithm.MAX", sharedReaction, MAX, removeHydrogen, mcsCache);
+            jobs.add(submit(maxThread));
 
             /*
              * MIN Algorithm
@@ -149,9 +273,8 @@ public class CallableAtomMappingTool implements Serializable {
             logger.info("\n|++++++++++++++++++++++++++++|");
             logger.info("c) Local Model: ");
 
-            MappingThread minThread = new MappingThread("IMappingAlgorithm.MIN", ExtReactionManipulatorTool.deepClone(cleanedReaction), MIN, removeHydrogen);
-            cs.submit(minThread);
-            jobCounter++;
+            MappingThread minThread = new MappingThread("IMappingAlgorithm.MIN", sharedReaction, MIN, removeHydrogen, mcsCache);
+            jobs.add(submit(minThread));
 
             /*
              * MIX Algorithm
@@ -159,9 +282,8 @@ public class CallableAtomMappingTool implements Serializable {
             logger.info("\n|++++++++++++++++++++++++++++|");
             logger.info("b) Mixture Model: ");
 
-            MappingThread maxMixtureThread = new MappingThread("IMappingAlgorithm.MIX", ExtReactionManipulatorTool.deepClone(cleanedReaction), MIX, removeHydrogen);
-            cs.submit(maxMixtureThread);
-            jobCounter++;
+            MappingThread maxMixtureThread = new MappingThread("IMappingAlgorithm.MIX", sharedReaction, MIX, removeHydrogen, mcsCache);
+            jobs.add(submit(maxMixtureThread));
 
             /*
              * RINGS Minimization
@@ -169,37 +291,51 @@ public class CallableAtomMappingTool implements Serializable {
             logger.info("\n|++++++++++++++++++++++++++++|");
             logger.info("d) Rings Model: ");
 
-            MappingThread ringThread = new MappingThread("IMappingAlgorithm.RINGS", ExtReactionManipulatorTool.deepClone(cleanedReaction), RINGS, removeHydrogen);
-            cs.submit(ringThread);
-            jobCounter++;
+            MappingThread ringThread = new MappingThread("IMappingAlgorithm.RINGS", sharedReaction, RINGS, removeHydrogen, mcsCache);
+            jobs.add(submit(ringThread));
 
             /*
              * Collect the results
              */
-            for (int i = 0; i < jobCounter; i++) {
-                Reactor chosen = cs.take().get();
+            for (ForkJoinTask<Reactor> job : jobs) {
+                Reactor chosen = job.get();
                 putSolution(chosen.getAlgorithm(), chosen);
             }
-            executor.shutdown();
-            /*
-             Wait until all threads are finish
-             *
-             */
-            while (!executor.isTerminated()) {
+            if (DEBUG) {
+                out.println("MCS cache hits " + mcsCache.getHitCount() + ", misses " + mcsCache.getMissCount());
             }
             gc();
         } catch (InterruptedException | ExecutionException e) {
             logger.debug("ERROR: in AtomMappingTool: " + e.getMessage());
             logger.error(e);
-        } catch (CloneNotSupportedException ex) {
-            Logger.getLogger(CallableAtomMappingTool.class.getName()).log(Level.SEVERE, null, ex);
         } finally {
-            executor.shutdown();
+            /*
+             * On failure the models which have not started yet are dropped
+             * from the shared pool; a running ForkJoinTask is not interrupted
+             * (cancel ignores mayInterruptIfRunning) and runs to its end
+             */
+            for (ForkJoinTask<Reactor> job : jobs) {
+                job.cancel(false);
+            }
         }
 
         logger.info("!!!!Atom-Atom Mapping Done!!!!");
     }
 
+    private IReaction copy(IReaction reaction) throws CloneNotSupportedException {
+        IReaction copy = ExtReactionManipulatorTool.deepClone(reaction);
+        metrics.count(REACTION_CLONES);
+        metrics.count(MOLECULE_CLONES, copy.getReactantCount() + copy.getProductCount());
+        return copy;
+    }
+
+    /**
+     * @return timings and counters of the mapping
+     */
+    public MappingMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * @return the solution
      */
@@ -24,6 +24,7 @@ import static java.util.logging.Logger.getLogger;
 import org.openscience.cdk.interfaces.IReaction;
 import org.openscience.cdk.tools.ILoggingTool;
 import static org.openscience.cdk.tools.LoggingToolFactory.createLoggingTool;
+import uk.ac.ebi.reactionblast.mapping.graph.MCSCache;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
 
 /**
@@ -37,20 +38,25 @@ class MappingThread implements Callable<Reactor> {
     private final IReaction cleanedReaction;
     private final IMappingAlgorithm algorithm;
     private final boolean removeHydrogen;
+    private final MCSCache mcsCache;
 
     /**
      *
-     * @param reaction to be mapped (only balanced reactions are mapped)
+     * @param reaction to be mapped (only balanced reactions are mapped),
+     * prepared by {@link Reactor#prepare(IReaction)} and shared read-only
+     * between the models
      * @param removeHydrogen true (map without hydrogen, for faster mapping)
      * else false for complete with Hydrogen
      * @param algorithm
+     * @param mcsCache MCS solutions shared between the mapping models
      *
      * @return Mapped Object
      */
-    MappingThread(String message, IReaction cleanedReaction, IMappingAlgorithm algorithm, boolean removeHydrogen) {
+    MappingThread(String message, IReaction cleanedReaction, IMappingAlgorithm algorithm, boolean removeHydrogen, MCSCache mcsCache) {
         this.cleanedReaction = cleanedReaction;
         this.algorithm = algorithm;
         this.removeHydrogen = removeHydrogen;
+        this.mcsCache = mcsCache;
         logger.info("|++++++++++++++++++++++++++++|");
         logger.info("|Atom Atom Mapping Tool Initialized for " + message);
     }
@@ -59,7 +65,7 @@ class MappingThread implements Callable<Reactor> {
     public Reactor call() throws Exception {
         try {
             Reactor reactor;
-            reactor = new Reactor(cleanedReaction, removeHydrogen, algorithm);
+            reactor = new Reactor(cleanedReaction, removeHydrogen, algorithm, mcsCache, true);
             logger.info("|Done " + reactor.getAlgorithm() + " |");
             return reactor;
         } catch (Exception ex) {
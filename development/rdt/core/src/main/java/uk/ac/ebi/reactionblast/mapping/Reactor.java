@@ -75,7 +75,11 @@ import static org.openscience.cdk.smiles.SmilesGenerator.unique;
 import static org.openscience.cdk.tools.manipulator.AtomContainerSetManipulator.getTotalFormalCharge;
 import uk.ac.ebi.reactionblast.mapping.algorithm.CalculationProcess;
 import uk.ac.ebi.reactionblast.mapping.container.MoleculeMoleculeMapping;
+import uk.ac.ebi.reactionblast.mapping.graph.MCSCache;
 import uk.ac.ebi.reactionblast.mapping.helper.AbstractReactor;
+import uk.ac.ebi.reactionblast.mapping.helper.AtomIndex;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MOLECULE_CLONES;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.REACTION_CLONES;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.cloneWithIDs;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
@@ -102,9 +106,9 @@ public class Reactor extends AbstractReactor implements Serializable {
     private final List<IBond> pBonds;
     private final boolean partialMapping;
     private final IMappingAlgorithm algorithm;
+    private final MCSCache mcsCache;
     private MoleculeMoleculeMapping reactionBlastMolMapping;
-    private Integer substrateAtomCounter;
-    private Integer productAtomCounter;
+    private final boolean sharedReaction;
     private int delta;
     private boolean balanceFlag;
     private IReaction reactionWithUniqueSTOICHIOMETRY;
@@ -116,24 +120,45 @@ public class Reactor extends AbstractReactor implements Serializable {
      * @param balanceReaction eg. balance hydrogens in the reaction if its not
      * balanced
      * @param partialMapping (without Hydrogens is set True, its faster)
+     * @param mcsCache MCS solutions shared between the mapping models
      * @throws Exception
      */
     Reactor(IReaction reaction,
             boolean partialMapping,
-            IMappingAlgorithm algorithm)
+            IMappingAlgorithm algorithm,
+            MCSCache mcsCache)
+            throws Exception {
+        this(reaction, partialMapping, algorithm, mcsCache, false);
+    }
+
+    /**
+     *
+     * @param reaction Reaction
+     * @param balanceReaction eg. balance hydrogens in the reaction if its not
+     * balanced
+     * @param partialMapping (without Hydrogens is set True, its faster)
+     * @param mcsCache MCS solutions shared between the mapping models
+     * @param sharedReaction true if the reaction was prepared with
+     * {@link #prepare(IReaction)} and is shared read-only with other models
+     * @throws Exception
+     */
+    Reactor(IReaction reaction,
+            boolean partialMapping,
+            IMappingAlgorithm algorithm,
+            MCSCache mcsCache,
+            boolean sharedReaction)
             throws Exception {
 
         this.partialMapping = partialMapping;
         this.algorithm = algorithm;
+        this.mcsCache = mcsCache;
         this.reactionWithUniqueSTOICHIOMETRY = reaction;
+        this.sharedReaction = sharedReaction;
         this.balanceFlag = true;
 
         this.rBonds = synchronizedList(new ArrayList<IBond>());
         this.pBonds = synchronizedList(new ArrayList<IBond>());
 
-        this.substrateAtomCounter = 1;
-        this.productAtomCounter = 1;
-
         try {
 //        System.err.println("In Reaction");
 //        SmilesGenerator withAtomClasses = SmilesGenerator.unique().aromatic().withAtomClasses();
@@ -143,13 +168,17 @@ public class Reactor extends AbstractReactor implements Serializable {
                 out.println("|++++++++++++++++++++++++++++|");
                 out.println("|i. Reactor Initialized");
             }
-            cleanMapping(reaction);
+            if (!sharedReaction) {
+                cleanMapping(reaction);
+            }
             if (DEBUG) {
                 out.println("|++++++++++++++++++++++++++++|");
                 super.printReaction(reaction);
                 out.println("|ii. Create Mapping Objects");
             }
-            labelAtoms();
+            if (!sharedReaction) {
+                labelAtoms(reaction);
+            }
             bondCollection();
             checkReactionBalance();
             if (DEBUG) {
@@ -180,12 +209,33 @@ public class Reactor extends AbstractReactor implements Serializable {
                 + ", mapping=" + createReactionSMILES + '}';
     }
 
-    private synchronized void labelAtoms() {
+    /**
+     * Clears the mapping of the reaction and labels its atoms, once for all
+     * the models sharing it read-only.
+     *
+     * @param reaction a copy of the reaction to be mapped
+     * @return the reaction, to be handed to the models with sharedReaction
+     * set
+     */
+    static IReaction prepare(IReaction reaction) {
+        cleanMapping(reaction);
+        labelAtoms(reaction);
+        for (IAtomContainer mol : reaction.getReactants().atomContainers()) {
+            indexAtoms(mol);
+        }
+        for (IAtomContainer mol : reaction.getProducts().atomContainers()) {
+            indexAtoms(mol);
+        }
+        return reaction;
+    }
+
+    private static void labelAtoms(IReaction reaction) {
 //        System.out.println("----------------------------");
-        for (int i = 0; i < reactionWithUniqueSTOICHIOMETRY.getReactantCount(); i++) {
-            IAtomContainer container = reactionWithUniqueSTOICHIOMETRY.getReactants().getAtomContainer(i);
+        int substrateAtomCounter = 1;
+        for (int i = 0; i < reaction.getReactantCount(); i++) {
+            IAtomContainer container = reaction.getReactants().getAtomContainer(i);
             for (int k = 0; k < container.getAtomCount(); k++) {
-                String counter = (substrateAtomCounter).toString();
+                String counter = valueOf(substrateAtomCounter);
                 substrateAtomCounter += 1;
                 IAtom atom = container.getAtom(k);
                 atom.setID(counter);
@@ -193,10 +243,11 @@ public class Reactor extends AbstractReactor implements Serializable {
         }
 
 //        System.out.println("+++++++++++++++++");
-        for (int j = 0; j < reactionWithUniqueSTOICHIOMETRY.getProductCount(); j++) {
-            IAtomContainer container = reactionWithUniqueSTOICHIOMETRY.getProducts().getAtomContainer(j);
+        int productAtomCounter = 1;
+        for (int j = 0; j < reaction.getProductCount(); j++) {
+            IAtomContainer container = reaction.getProducts().getAtomContainer(j);
             for (int k = 0; k < container.getAtomCount(); k++) {
-                String counter = (productAtomCounter).toString();
+                String counter = valueOf(productAtomCounter);
                 productAtomCounter += 1;
                 IAtom atom = container.getAtom(k);
                 atom.setID(counter);
@@ -204,6 +255,12 @@ public class Reactor extends AbstractReactor implements Serializable {
         }
     }
 
+    private static void indexAtoms(IAtomContainer mol) {
+        for (int index = 0; index < mol.getAtomCount(); index++) {
+            mol.getAtom(index).setProperty("index", index);
+        }
+    }
+
     private synchronized void bondCollection() {
 
         for (int i = 0; i < reactionWithUniqueSTOICHIOMETRY.getReactantCount(); i++) {
@@ -279,7 +336,7 @@ public class Reactor extends AbstractReactor implements Serializable {
         try {
             IReaction reactionCopy = copyReaction(reactionWithUniqueSTOICHIOMETRY, partialMapping);
             CalculationProcess calP
-                    = new CalculationProcess(partialMapping, reactionCopy, getAlgorithm());
+                    = new CalculationProcess(partialMapping, reactionCopy, getAlgorithm(), mcsCache);
             delta = calP.getDelta();
             IReaction mappedReaction = calP.getMappedReaction();
             reactionWithUniqueSTOICHIOMETRY = getMapping(mappedReaction);
@@ -292,6 +349,7 @@ public class Reactor extends AbstractReactor implements Serializable {
     private synchronized IReaction getMapping(IReaction coreMappedReaction) throws IOException, CDKException, CloneNotSupportedException {
 
         IReaction mappedReaction = deepClone(reactionWithUniqueSTOICHIOMETRY);
+        countClone(mappedReaction);
         cleanMapping(mappedReaction);
 
 //        printReaction(mappedReaction);
@@ -428,9 +486,10 @@ public class Reactor extends AbstractReactor implements Serializable {
         *
          */
         Map<IAtom, IAtom> mappings = new HashMap<>();
+        AtomIndex productIndex = new AtomIndex(mappedReaction.getProducts().atomContainers());
         for (IAtomContainer ac1 : mappedReaction.getReactants().atomContainers()) {
             for (IAtom atom1 : ac1.atoms()) {
-                IAtom atom2 = getContainerAtomByID(mappedReaction.getProducts(), atom1.getID());
+                IAtom atom2 = productIndex.getAtomByID(atom1.getID());
                 if (atom2 != null) {
                     mappings.put(atom1, atom2);
                 }
@@ -667,12 +726,11 @@ public class Reactor extends AbstractReactor implements Serializable {
         for (int i = 0; i < orignalReaction.getReactantCount(); i++) {
             IAtomContainer mol = orignalReaction.getReactants().getAtomContainer(i);
             Double st = orignalReaction.getReactantCoefficient(mol);
-            IAtomContainer newMol = cloneWithIDs(mol);
-            for (int index = 0; index < mol.getAtomCount(); index++) {
-                mol.getAtom(index).setProperty("index", index);
-                IAtom atom = newMol.getAtom(index);
-                atom.setProperty("index", index);
+            if (!sharedReaction) {
+                indexAtoms(mol);
             }
+            IAtomContainer newMol = cloneWithIDs(mol);
+            indexAtoms(newMol);
 //            System.out.println("Hydrogen Before: " + newMol.getAtomCount());
 
             percieveAtomTypesAndConfigureAtoms(newMol);
@@ -685,12 +743,11 @@ public class Reactor extends AbstractReactor implements Serializable {
         for (int i = 0; i < orignalReaction.getProductCount(); i++) {
             IAtomContainer mol = orignalReaction.getProducts().getAtomContainer(i);
             Double st = orignalReaction.getProductCoefficient(mol);
-            IAtomContainer newMol = cloneWithIDs(mol);
-            for (int index = 0; index < mol.getAtomCount(); index++) {
-                mol.getAtom(index).setProperty("index", index);
-                IAtom atom = newMol.getAtom(index);
-                atom.setProperty("index", index);
+            if (!sharedReaction) {
+                indexAtoms(mol);
             }
+            IAtomContainer newMol = cloneWithIDs(mol);
+            indexAtoms(newMol);
 //            System.out.println("Hydrogen Before " + newMol.getAtomCount());
 
             percieveAtomTypesAndConfigureAtoms(newMol);
@@ -704,9 +761,17 @@ public class Reactor extends AbstractReactor implements Serializable {
         copiedReaction.setID(orignalReaction.getID());
         copiedReaction.setDirection(orignalReaction.getDirection());
         copiedReaction.notifyChanged();
+        countClone(copiedReaction);
         return copiedReaction;
     }
 
+    private void countClone(IReaction copy) {
+        if (mcsCache != null) {
+            mcsCache.getMetrics().count(REACTION_CLONES);
+            mcsCache.getMetrics().count(MOLECULE_CLONES, copy.getReactantCount() + copy.getProductCount());
+        }
+    }
+
     /**
      *
      * @param id
@@ -841,17 +906,6 @@ public class Reactor extends AbstractReactor implements Serializable {
         this.reactionBlastMolMapping = reactionBlastMolMapping;
     }
 
-    private synchronized IAtom getContainerAtomByID(IAtomContainerSet products, String mappingID) {
-        for (IAtomContainer ac : products.atomContainers()) {
-            for (IAtom atom : ac.atoms()) {
-                if (atom.getID().equals(mappingID)) {
-                    return atom;
-                }
-            }
-        }
-        return null;
-    }
-
     /*
      * Set ATOM_ATOM_MAPPING flag in this method. This flag is very important as 
      * rest of the code will read/use this flag to determine the AAM.
@@ -20,6 +20,7 @@ package uk.ac.ebi.reactionblast.mapping.algorithm;
 
 import java.io.IOException;
 import java.io.Serializable;
+import static java.lang.Boolean.getBoolean;
 import static java.lang.String.valueOf;
 import static java.lang.System.out;
 import java.util.BitSet;
@@ -30,10 +31,13 @@ import static java.util.Calendar.MILLISECOND;
 import static java.util.Calendar.MINUTE;
 import static java.util.Calendar.MONTH;
 import static java.util.Calendar.YEAR;
-import java.util.Collection;
 import java.util.GregorianCalendar;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import static java.util.Collections.emptySet;
 import static java.util.logging.Level.SEVERE;
 import static java.util.logging.Logger.getLogger;
 import org.openscience.cdk.PseudoAtom;
@@ -49,11 +53,16 @@ import org.openscience.smsd.Isomorphism;
 import static org.openscience.smsd.interfaces.Algorithm.DEFAULT;
 import static uk.ac.ebi.reactionblast.fingerprints.tools.Similarity.getTanimotoSimilarity;
 import uk.ac.ebi.reactionblast.mapping.container.ReactionContainer;
+import uk.ac.ebi.reactionblast.mapping.graph.Combination;
 import static uk.ac.ebi.reactionblast.mapping.graph.GraphMatcher.matcher;
 import uk.ac.ebi.reactionblast.mapping.graph.MCSSolution;
+import uk.ac.ebi.reactionblast.mapping.graph.MCSSolutionStore;
 import uk.ac.ebi.reactionblast.mapping.helper.Debugger;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.GAME_THEORY_ITERATIONS;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MATRIX_CELLS_REEVALUATED;
 import uk.ac.ebi.reactionblast.mapping.interfaces.BestMatch;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IGameTheory;
+import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.RINGS;
 
 /**
  * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
@@ -65,6 +74,26 @@ public abstract class BaseGameTheory extends Debugger implements IGameTheory, Se
     private final static ILoggingTool logger
             = createLoggingTool(BaseGameTheory.class);
     private static final long serialVersionUID = 1698688633678282L;
+    /**
+     * System property, if true every cell of the matrices is matched again
+     * after a winner selection round, not only the rows and columns of the
+     * modified molecules, and no MCS job is deferred; the cells of the
+     * unmodified molecules are scored from their new best match
+     */
+    public static final String FULL_UPDATE_PROPERTY = "rdt.gametheory.full";
+
+    /*
+     * cells whose MCS job was deferred in the last update
+     */
+    private Set<Combination> deferredCells = new TreeSet<>();
+    /*
+     * scores of the cells restored from their best match, valid while their
+     * molecules are not modified and their best match is at the revision
+     * they were read at (the handlers put new mappings into a holder clone
+     * sharing the same best matches)
+     */
+    private Map<Combination, double[]> keptScores = new TreeMap<>();
+    private Map<Combination, Long> keptRevisions = new TreeMap<>();
 
     /**
      * Checks if a PseudoAtom is present
@@ -81,6 +110,17 @@ public abstract class BaseGameTheory extends Debugger implements IGameTheory, Se
         return false;
     }
 
+    /**
+     * Counts a winner selection round of a model in the reaction's metrics
+     *
+     * @param mh matrix holder
+     */
+    protected static void countIteration(Holder mh) {
+        if (mh != null && mh.getMCSCache() != null) {
+            mh.getMCSCache().getMetrics().count(GAME_THEORY_ITERATIONS);
+        }
+    }
+
     /**
      *
      * @return @throws IOException
@@ -114,19 +154,91 @@ public abstract class BaseGameTheory extends Debugger implements IGameTheory, Se
      */
     @Override
     public synchronized void UpdateMatrix(Holder mh, boolean removeHydrogen) throws InterruptedException {
+        UpdateMatrix(mh, removeHydrogen, false);
+    }
+
+    /**
+     * Updates the matrices after a winner selection round. If deferCells is
+     * true, the graph matcher defers the MCS jobs which can not beat the best
+     * kept cell of their row or column; a deferred cell is scored 0, as every
+     * cell matched in a round is, and it is matched in the next update unless
+     * its molecule was modified in between. Its scores in that update are the
+     * ones of a cell kept from the round it was deferred in, so the winners
+     * are the same. Only for rounds followed by the winner selection alone,
+     * the mapping rules and the RINGS model read every cell.
+     *
+     * @param mh matrix holder
+     * @param removeHydrogen
+     * @param deferCells defer the MCS jobs which can not win the next round
+     * @throws InterruptedException
+     */
+    protected synchronized void UpdateMatrix(Holder mh, boolean removeHydrogen, boolean deferCells) throws InterruptedException {
+        if (DEBUG) {
+            out.println("**********Updated Matrix And Calculate Similarity**************");
+        }
+        MCSSolutionStore mcsSolutions = mh.getMCSSolutions();
+        Set<Combination> pendingCells = deferredCells;
+        deferredCells = new TreeSet<>();
         try {
-            if (DEBUG) {
-                out.println("**********Updated Matrix And Calculate Similarity**************");
+            if (getBoolean(FULL_UPDATE_PROPERTY)) {
+                /*
+                 * every cell is matched again, the ones of unmodified
+                 * molecules are scored from their new best match as kept
+                 * cells are; nothing is deferred
+                 */
+                ReactionContainer reactionStructureInformation = mh.getReactionContainer();
+                pendingCells = new TreeSet<>();
+                for (int substrateIndex = 0; substrateIndex < reactionStructureInformation.getEductCount(); substrateIndex++) {
+                    for (int productIndex = 0; productIndex < reactionStructureInformation.getProductCount(); productIndex++) {
+                        pendingCells.add(new Combination(substrateIndex, productIndex));
+                    }
+                }
+                deferCells = false;
             }
+            mcsSolutions = matcher(mh, pendingCells,
+                    deferCells && !mh.getTheory().equals(RINGS) ? deferredCells : null);
+        } catch (Exception e) {
+            logger.error("Error in matching molecules, check Graph Matcher module! ", e.toString());
+        }
+        updateCells(mcsSolutions, mh, pendingCells);
+    }
+
+    /**
+     *
+     * @param mcsSolutions
+     * @param mh matrix holder
+     * @param removeHydrogen
+     * @throws Exception
+     */
+    @Override
+    public synchronized void UpdateMatrix(MCSSolutionStore mcsSolutions, Holder mh, boolean removeHydrogen) throws Exception {
+        updateCells(mcsSolutions, mh, emptySet());
+    }
+
+    /*
+     * The cells in the rows and columns of the modified molecules are scored
+     * with the new MCS solutions, the deferred ones with none. The other cells
+     * are restored from their previous best match, the pending ones once
+     * their new MCS solution is stored as their best match; a cell restored
+     * in an earlier update of the same holder gets the scores it got then.
+     */
+    private void updateCells(MCSSolutionStore mcsSolutions, Holder mh, Set<Combination> pendingCells) {
+        try {
             ReactionContainer reactionStructureInformation = mh.getReactionContainer();
-            Collection<MCSSolution> mcsSolutions = null;
-            try {
-                mcsSolutions = matcher(mh);
-            } catch (Exception e) {
-                logger.error("Error in matching molecules, check Graph Matcher module! ", e.toString());
+            int eductCount = reactionStructureInformation.getEductCount();
+            int productCount = reactionStructureInformation.getProductCount();
+            BitSet dirtyRows = new BitSet(eductCount);
+            BitSet dirtyColumns = new BitSet(productCount);
+            for (int substrateIndex = 0; substrateIndex < eductCount; substrateIndex++) {
+                dirtyRows.set(substrateIndex, reactionStructureInformation.isEductModified(substrateIndex));
+            }
+            for (int productIndex = 0; productIndex < productCount; productIndex++) {
+                dirtyColumns.set(productIndex, reactionStructureInformation.isProductModified(productIndex));
             }
-            for (int substrateIndex = 0; substrateIndex < reactionStructureInformation.getEductCount(); substrateIndex++) {
-                for (int productIndex = 0; productIndex < reactionStructureInformation.getProductCount(); productIndex++) {
+
+            int reevaluated = 0;
+            for (int substrateIndex = 0; substrateIndex < eductCount; substrateIndex++) {
+                for (int productIndex = 0; productIndex < productCount; productIndex++) {
                     try {
                         IAtomContainer educt = reactionStructureInformation.getEduct(substrateIndex);
                         IAtomContainer product = reactionStructureInformation.getProduct(productIndex);
@@ -135,16 +247,29 @@ public abstract class BaseGameTheory extends Debugger implements IGameTheory, Se
                                     + mh.getGraphSimilarityMatrix().getValue(substrateIndex, productIndex));
                         }
                         if ((educt != null && product != null)
-                                && (reactionStructureInformation.getEduct(substrateIndex).getAtomCount() > 0
-                                && reactionStructureInformation.getProduct(productIndex).getAtomCount() > 0)
+                                && (educt.getAtomCount() > 0
+                                && product.getAtomCount() > 0)
                                 || mh.getGraphSimilarityMatrix().getValue(substrateIndex, productIndex) == -1) {
-                            if (reactionStructureInformation.isEductModified(substrateIndex)
-                                    || reactionStructureInformation.isProductModified(productIndex)) {
+                            Combination c = new Combination(substrateIndex, productIndex);
+                            if (deferredCells.contains(c)) {
+                                keptScores.remove(c);
+                                refillMatrixWithNoData(mh, substrateIndex, productIndex);
+                            } else if (dirtyRows.get(substrateIndex) || dirtyColumns.get(productIndex)) {
+                                keptScores.remove(c);
+                                refillMatrixWithNewData(mh, substrateIndex, productIndex, mcsSolutions);
+                                reevaluated++;
+                            } else if (pendingCells.contains(c)) {
                                 refillMatrixWithNewData(mh, substrateIndex, productIndex, mcsSolutions);
+                                keepScores(mh, c, refillMatrixWithOldData(mh, substrateIndex, productIndex));
+                                reevaluated++;
+                            } else if (keptScores.get(c) != null
+                                    && keptRevisions.get(c) == mh.getBestMatchContainer().getRevision(substrateIndex, productIndex)) {
+                                refillMatrixWithKeptData(mh, substrateIndex, productIndex, keptScores.get(c));
                             } else {
-                                refillMatrixWithOldData(mh, substrateIndex, productIndex);
+                                keepScores(mh, c, refillMatrixWithOldData(mh, substrateIndex, productIndex));
                             }
                         } else {
+                            keptScores.remove(new Combination(substrateIndex, productIndex));
                             mh.getGraphSimilarityMatrix().setValue(substrateIndex, productIndex, 0.0);
                             mh.getStereoMatrix().setValue(substrateIndex, productIndex, 0.0);
                             mh.getCliqueMatrix().setValue(substrateIndex, productIndex, 0.0);
@@ -157,6 +282,12 @@ public abstract class BaseGameTheory extends Debugger implements IGameTheory, Se
                     }
                 }
             }
+            if (DEBUG) {
+                out.println("Matrix cells re-evaluated: " + reevaluated + " of " + (eductCount * productCount));
+            }
+            if (mh.getMCSCache() != null) {
+                mh.getMCSCache().getMetrics().count(MATRIX_CELLS_REEVALUATED, reevaluated);
+            }
         } catch (Exception e) {
             logger.error("Error in matching molecules, check Graph Matcher module! ", e.toString());
         }
@@ -172,62 +303,11 @@ public abstract class BaseGameTheory extends Debugger implements IGameTheory, Se
         }
     }
 
-    /**
-     *
-     * @param mcsSolutions
-     * @param mh matrix holder
-     * @param removeHydrogen
-     * @throws Exception
-     */
-    @Override
-    public synchronized void UpdateMatrix(Collection<MCSSolution> mcsSolutions, Holder mh, boolean removeHydrogen) throws Exception {
-        try {
-//        System.out.println("**********Updated Matrix And Calculate Similarity**************");
-            ReactionContainer reactionStructureInformation = mh.getReactionContainer();
-
-            for (int substrateIndex = 0; substrateIndex < reactionStructureInformation.getEductCount(); substrateIndex++) {
-                for (int productIndex = 0; productIndex < reactionStructureInformation.getProductCount(); productIndex++) {
-
-                    IAtomContainer educt = reactionStructureInformation.getEduct(substrateIndex);
-                    IAtomContainer product = reactionStructureInformation.getProduct(productIndex);
-
-                    if ((educt != null && product != null)
-                            && (reactionStructureInformation.getEduct(substrateIndex).getAtomCount() > 0
-                            && reactionStructureInformation.getProduct(productIndex).getAtomCount() > 0)
-                            || mh.getGraphSimilarityMatrix().getValue(substrateIndex, productIndex) == -1) {
-                        if (reactionStructureInformation.isEductModified(substrateIndex)
-                                || reactionStructureInformation.isProductModified(productIndex)) {
-                            refillMatrixWithNewData(mh, substrateIndex, productIndex, mcsSolutions);
-                        } else {
-                            refillMatrixWithOldData(mh, substrateIndex, productIndex);
-                        }
-                    } else {
-                        mh.getGraphSimilarityMatrix().setValue(substrateIndex, productIndex, 0.0);
-                        mh.getStereoMatrix().setValue(substrateIndex, productIndex, 0.0);
-                        mh.getCliqueMatrix().setValue(substrateIndex, productIndex, 0.0);
-                        mh.getFragmentMatrix().setValue(substrateIndex, productIndex, 0.0);
-                        mh.getEnergyMatrix().setValue(substrateIndex, productIndex, 0.0);
-                        mh.getFPSimilarityMatrix().setValue(substrateIndex, productIndex, 0.0);
-                    }
-                }
-            }
-
-
-            /*
-             * reset mapping flags to FALSE to allow remapping if needed
-             *
-             */
-            resetFLAGS(mh);
-        } catch (Exception e) {
-            logger.error("Error in matching molecules, check Graph Matcher module! ", e.toString());
-        }
-    }
-
     private synchronized void refillMatrixWithNewData(
             Holder holder,
             int substrateIndex,
             int productIndex,
-            Collection<MCSSolution> mcsSolutions) {
+            MCSSolutionStore mcsSolutions) {
         if (DEBUG) {
             out.println("**********Generate MCS And Calculate Similarity**************");
         }
@@ -318,38 +398,32 @@ public abstract class BaseGameTheory extends Debugger implements IGameTheory, Se
             int targetPosition,
             IAtomContainer educt,
             IAtomContainer product,
-            Collection<MCSSolution> mcsSolutions) throws CDKException {
+            MCSSolutionStore mcsSolutions) throws CDKException {
 
-        for (MCSSolution solution : mcsSolutions) {
-            if (solution.getQueryPosition() == queryPosition
-                    && solution.getTargetPosition() == targetPosition) {
-                if (solution.getAtomAtomMapping().isEmpty()) {
-                    Set<String> atomMaps = new HashSet<>();
+        MCSSolution solution = mcsSolutions.get(queryPosition, targetPosition, educt, product);
+        if (solution != null && solution.getAtomAtomMapping().isEmpty()) {
+            Set<String> atomMaps = new HashSet<>();
 
-                    for (IAtom a : educt.atoms()) {
-                        atomMaps.add(a.getSymbol());
-                    }
-                    boolean mappingPossible = false;
-                    for (IAtom a : product.atoms()) {
-                        if (atomMaps.contains(a.getSymbol())) {
-                            mappingPossible = true;
-                        }
-                    }
-                    atomMaps.clear();
-                    if (mappingPossible) {
-                        if (DEBUG) {
-                            out.println("Expected Mapping");
-                            out.println(educt.getID() + " ED: " + unique().aromatic().create(educt));
-                            out.println(product.getID() + " PD: " + unique().aromatic().create(product));
-                        }
-                        return quickMapping(educt, product, queryPosition, targetPosition);
-                    }
+            for (IAtom a : educt.atoms()) {
+                atomMaps.add(a.getSymbol());
+            }
+            boolean mappingPossible = false;
+            for (IAtom a : product.atoms()) {
+                if (atomMaps.contains(a.getSymbol())) {
+                    mappingPossible = true;
                 }
-                return solution;
+            }
+            atomMaps.clear();
+            if (mappingPossible) {
+                if (DEBUG) {
+                    out.println("Expected Mapping");
+                    out.println(educt.getID() + " ED: " + unique().aromatic().create(educt));
+                    out.println(product.getID() + " PD: " + unique().aromatic().create(product));
+                }
+                return quickMapping(educt, product, queryPosition, targetPosition);
             }
         }
-
-        return null;
+        return solution;
     }
 
     private MCSSolution quickMapping(IAtomContainer educt, IAtomContainer product, int queryPosition, int targetPosition) {
@@ -373,17 +447,83 @@ public abstract class BaseGameTheory extends Debugger implements IGameTheory, Se
     private void resetFLAGS(Holder mh) throws Exception {
         ReactionContainer reactionStructureInformation = mh.getReactionContainer();
         /*
-         * Reset all the flags
+         * Reset all the flags, once per molecule
          */
         for (int substrateIndex = 0; substrateIndex < reactionStructureInformation.getEductCount(); substrateIndex++) {
-            for (int productIndex = 0; productIndex < reactionStructureInformation.getProductCount(); productIndex++) {
-                reactionStructureInformation.setEductModified(substrateIndex, false);
-                reactionStructureInformation.setProductModified(productIndex, false);
+            reactionStructureInformation.setEductModified(substrateIndex, false);
+        }
+        for (int productIndex = 0; productIndex < reactionStructureInformation.getProductCount(); productIndex++) {
+            reactionStructureInformation.setProductModified(productIndex, false);
+        }
+    }
+
+    /*
+     * A deferred cell has no MCS yet, its best match is empty and its scores
+     * are 0 but the fingerprint similarity. A matched cell also has a clique
+     * and similarity of 0 in the round after its MCS; its energy, fragment
+     * and stereo scores and its best match are only read for the cells the
+     * isomorphism checks (clique above 0) or ChooseWinner (similarity above
+     * 0) select, so the 0 of a deferred cell is never read. It is matched
+     * and scored in the next update, before the game can end.
+     */
+    private void refillMatrixWithNoData(Holder holder, int substrateIndex, int productIndex) throws IOException, CDKException {
+        ReactionContainer reactionContainer = holder.getReactionContainer();
+        BestMatch initMcsAtom = holder.getBestMatchContainer();
+        IAtomContainer educt = reactionContainer.getEduct(substrateIndex);
+        IAtomContainer product = reactionContainer.getProduct(productIndex);
+        initMcsAtom.putBestMapping(substrateIndex, productIndex, new AtomAtomMapping(educt, product));
+        initMcsAtom.setTotalFragmentCount(substrateIndex, productIndex, 0);
+        initMcsAtom.setBondEnergy(substrateIndex, productIndex, 0.0);
+        initMcsAtom.setStereoScore(substrateIndex, productIndex, 0.0);
+        initMcsAtom.setGraphSimilarity(substrateIndex, productIndex, 0.0);
+
+        double fpSim = 0.0;
+        BitSet a = reactionContainer.getFingerPrintofEduct(substrateIndex);
+        BitSet b = reactionContainer.getFingerPrintofProduct(productIndex);
+        if (a != null && b != null) {
+            try {
+                fpSim = getTanimotoSimilarity(a, b);
+            } catch (Exception ex) {
+                logger.error(SEVERE, null, ex);
             }
         }
+        holder.getCliqueMatrix().setValue(substrateIndex, productIndex, 0.0);
+        holder.getGraphSimilarityMatrix().setValue(substrateIndex, productIndex, 0.0);
+        holder.getStereoMatrix().setValue(substrateIndex, productIndex, 0.0);
+        holder.getFragmentMatrix().setValue(substrateIndex, productIndex, 0.0);
+        holder.getEnergyMatrix().setValue(substrateIndex, productIndex, 0.0);
+        holder.getFPSimilarityMatrix().setValue(substrateIndex, productIndex, fpSim);
     }
 
-    private void refillMatrixWithOldData(Holder holder, int substrateIndex, int productIndex) {
+    /*
+     * The scores are kept with the revision of the best match they were read
+     * from, any later change to that best match invalidates them
+     */
+    private void keepScores(Holder holder, Combination c, double[] scores) {
+        if (scores == null) {
+            keptScores.remove(c);
+            return;
+        }
+        keptScores.put(c, scores);
+        keptRevisions.put(c, holder.getBestMatchContainer().getRevision(c.getRowIndex(), c.getColIndex()));
+    }
+
+    /*
+     * The scores a cell was restored with, its best match is unchanged since
+     */
+    private void refillMatrixWithKeptData(Holder holder, int substrateIndex, int productIndex, double[] scores) {
+        holder.getCliqueMatrix().setValue(substrateIndex, productIndex, scores[0]);
+        holder.getGraphSimilarityMatrix().setValue(substrateIndex, productIndex, scores[1]);
+        holder.getStereoMatrix().setValue(substrateIndex, productIndex, scores[2]);
+        holder.getFragmentMatrix().setValue(substrateIndex, productIndex, scores[3]);
+        holder.getEnergyMatrix().setValue(substrateIndex, productIndex, scores[4]);
+        holder.getFPSimilarityMatrix().setValue(substrateIndex, productIndex, scores[5]);
+    }
+
+    /*
+     * Returns the scores the cell is restored with, null if it is not
+     */
+    private double[] refillMatrixWithOldData(Holder holder, int substrateIndex, int productIndex) {
         //        System.out.println("**********Generate MCS And Calculate Similarity**************");
         try {
             ReactionContainer reactionContainer = holder.getReactionContainer();
@@ -438,10 +578,12 @@ public abstract class BaseGameTheory extends Debugger implements IGameTheory, Se
             holder.getFragmentMatrix().setValue(substrateIndex, productIndex, fragmentVal);
             holder.getEnergyMatrix().setValue(substrateIndex, productIndex, energyVal);
             holder.getFPSimilarityMatrix().setValue(substrateIndex, productIndex, fpSim);
+            return new double[]{mappingSize, graphSimilarity, stereoVal, fragmentVal, energyVal, fpSim};
         } catch (CDKException ex) {
             logger.debug(SEVERE, null, ex);
         } catch (IOException ex) {
             logger.error(SEVERE, null, ex);
         }
+        return null;
     }
 }
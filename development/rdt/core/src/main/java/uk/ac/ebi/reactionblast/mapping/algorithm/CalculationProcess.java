@@ -30,6 +30,9 @@ import org.openscience.cdk.tools.ILoggingTool;
 import static org.openscience.cdk.tools.LoggingToolFactory.createLoggingTool;
 import static uk.ac.ebi.reactionblast.mapping.algorithm.GameTheoryFactory.make;
 import uk.ac.ebi.reactionblast.mapping.container.MoleculeMoleculeMapping;
+import uk.ac.ebi.reactionblast.mapping.graph.MCSCache;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Stage.GAME_THEORY;
+import uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.StageTimer;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IGameTheory;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
 import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MAX;
@@ -52,23 +55,26 @@ public class CalculationProcess extends IsomeraseHandler implements Serializable
     private int delta = 0;
     private MoleculeMoleculeMapping reactionBlastMolMapping;
     private final IMappingAlgorithm algorithm;
+    private final MCSCache mcsCache;
 
     /**
      *
      * @param removeHydrogen
      * @param reaction
      * @param algorithm
+     * @param mcsCache MCS solutions shared between the mapping models
      */
     public CalculationProcess(
             boolean removeHydrogen,
             IReaction reaction,
-            IMappingAlgorithm algorithm) {
+            IMappingAlgorithm algorithm,
+            MCSCache mcsCache) {
 
         /*
          * This case handles rings cases where 6 membered ring reduces to 5 membered rings Example KEGG reaction R01432
          * of Isomerase class
          */
-        super(reaction);
+        super(reaction, mcsCache);
 
 //        System.out.println("I am CalculationProcess");
         this.removeHydrogen = removeHydrogen;
@@ -76,10 +82,22 @@ public class CalculationProcess extends IsomeraseHandler implements Serializable
         logger.debug("Performing Atom-Atom Mapping ....... " + reaction.getID() + " .......");
         logger.debug("\n|++++++++++++++++++++++++++++|");
         this.algorithm = algorithm;
+        this.mcsCache = mcsCache;
         run();
     }
 
     private synchronized void run() {
+        StageTimer timer = mcsCache != null ? mcsCache.getMetrics().start(GAME_THEORY) : null;
+        try {
+            calculate();
+        } finally {
+            if (timer != null) {
+                timer.stop();
+            }
+        }
+    }
+
+    private void calculate() {
         switch (algorithm) {
             case MIN:
                 logger.debug("Processing Reaction for Local Minimum: ");
@@ -123,7 +141,7 @@ public class CalculationProcess extends IsomeraseHandler implements Serializable
             }
 
             GameTheoryMatrix EDSH
-                    = new GameTheoryMatrix(theory, reaction, removeHydrogen);
+                    = new GameTheoryMatrix(theory, reaction, removeHydrogen, mcsCache);
 
             IGameTheory gameTheory = make(theory,
                     reaction,
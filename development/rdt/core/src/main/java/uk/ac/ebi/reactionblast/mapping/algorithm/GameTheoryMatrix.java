@@ -53,6 +53,11 @@ import uk.ac.ebi.reactionblast.mapping.container.BestMatchContainer;
 import uk.ac.ebi.reactionblast.mapping.container.HydrogenFreeFingerPrintContainer;
 import uk.ac.ebi.reactionblast.mapping.container.MoleculeMoleculeMapping;
 import uk.ac.ebi.reactionblast.mapping.container.ReactionContainer;
+import uk.ac.ebi.reactionblast.mapping.graph.MCSCache;
+import uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MOLECULE_CLONES;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Stage.FINGERPRINTS;
+import uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.StageTimer;
 import uk.ac.ebi.reactionblast.mapping.interfaces.BestMatch;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IGraphTheoryMatrix;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
@@ -95,6 +100,7 @@ public class GameTheoryMatrix extends BaseGameTheory implements IGraphTheoryMatr
     private final ReactionContainer structureMapObj;
     private final BestMatch bestMatchContainer;
     private final IMappingAlgorithm theory;
+    private final MCSCache mcsCache;
 
     /**
      * Creates a new instance of GameTheoryMatrix
@@ -102,13 +108,16 @@ public class GameTheoryMatrix extends BaseGameTheory implements IGraphTheoryMatr
      * @param theory
      * @param reaction
      * @param removeHydrogen
+     * @param mcsCache MCS solutions shared between the mapping models
      * @throws Exception
      */
     public GameTheoryMatrix(
             IMappingAlgorithm theory,
             IReaction reaction,
-            boolean removeHydrogen) throws Exception {
+            boolean removeHydrogen,
+            MCSCache mcsCache) throws Exception {
         this.theory = theory;
+        this.mcsCache = mcsCache;
         this.removeHydrogen = removeHydrogen;
         this.reaction = reaction;
         this.reactionID = reaction.getID();
@@ -124,7 +133,11 @@ public class GameTheoryMatrix extends BaseGameTheory implements IGraphTheoryMatr
         this.reactionBlastMolMapping = new MoleculeMoleculeMapping();
 
         try {
+            MappingMetrics metrics = mcsCache != null ? mcsCache.getMetrics() : new MappingMetrics();
+            StageTimer fingerprints = metrics.start(FINGERPRINTS);
             StoichiometricCoefficientReplicator_Structure_FingerPrint_MapGenerator();
+            fingerprints.stop();
+            metrics.count(MOLECULE_CLONES, eductCounter.size() + productCounter.size());
             BuildScoringMatrix();
         } catch (Exception e) {
             logger.error(e);
@@ -142,6 +155,7 @@ public class GameTheoryMatrix extends BaseGameTheory implements IGraphTheoryMatr
                     structureMapObj,
                     bestMatchContainer,
                     hydFreeFPContainer);
+            matrixHolder.setMCSCache(mcsCache);
             this.reactionBlastMolMapping.setMolMappings(reactionID, matrixHolder.getMappingMolPair());
             /*
              * Set FLAGS to True, to allow MCS calculation
@@ -116,7 +116,19 @@ final class GameTheoryMax extends BaseGameTheory {
         GenerateMapping();
     }
 
+    /*
+     * Winner selection rounds until no winner is left, the rows and columns
+     * of the molecules mapped in a round are updated before the next one
+     */
     private synchronized void GenerateMapping() throws Exception {
+        while (searchWinners()) {
+            UpdateMapping();
+            UpdateMatrix(mh, removeHydrogen, true);
+        }
+    }
+
+    private synchronized boolean searchWinners() throws Exception {
+        countIteration(mh);
         if (DEBUG) {
             out.println("**********Orignal Matrix**************");
             printMatrixAtomContainer(mh, eductList, productList);
@@ -142,15 +154,7 @@ final class GameTheoryMax extends BaseGameTheory {
         if (DEBUG) {
             printFlagMatrix(winner, eductList, productList);
         }
-        if (winner.getFlag()) {
-
-//            System.out.println("**********Updated Mapping**************");
-            UpdateMapping();
-//            System.out.println("**********Updated Matrix**************");
-            UpdateMatrix(mh, removeHydrogen);
-//            System.out.println("**********Generate Mapping**************");
-            GenerateMapping();
-        }
+        return winner.getFlag();
     }
 
     private synchronized void UpdateMapping() throws Exception {
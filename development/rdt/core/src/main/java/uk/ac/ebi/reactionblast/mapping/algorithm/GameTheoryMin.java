@@ -144,8 +144,22 @@ final class GameTheoryMin extends BaseGameTheory {
         }
     }
 
+    /*
+     * Winner selection rounds until no winner is left, the rows and columns
+     * of the molecules mapped in a round are updated before the next one. The
+     * mapping rules are only tried in the first round.
+     */
     private synchronized void GenerateMapping(boolean flag) throws Exception {
         boolean ruleMatchingFlag = flag;
+        while (searchWinners(ruleMatchingFlag)) {
+            ruleMatchingFlag = true;
+            UpdateMapping();
+            UpdateMatrix(mh, removeHydrogen, true);
+        }
+    }
+
+    private synchronized boolean searchWinners(boolean ruleMatchingFlag) throws Exception {
+        countIteration(mh);
         if (DEBUG) {
 //            System.out.println("**********Orignal Matrix**************");
             printMatrixAtomContainer(mh, eductList, productList);
@@ -165,7 +179,6 @@ final class GameTheoryMin extends BaseGameTheory {
                 mh = Selector.modifyMatrix(ruleBasedMappingHandler.getMatrixHolder());
                 conditionmet = true;
             }
-            ruleMatchingFlag = true;
         }
 
         if (!conditionmet) {
@@ -194,20 +207,7 @@ final class GameTheoryMin extends BaseGameTheory {
         if (DEBUG) {
             printFlagMatrix(winner, eductList, productList);
         }
-        if (winner.getFlag()) {
-            if (DEBUG) {
-                out.println("**********Updated Mapping**************");
-            }
-            UpdateMapping();
-            if (DEBUG) {
-                out.println("**********Updated Matrix**************");
-            }
-            UpdateMatrix(mh, removeHydrogen);
-            if (DEBUG) {
-                out.println("**********Generate Mapping**************");
-            }
-            GenerateMapping(ruleMatchingFlag);
-        }
+        return winner.getFlag();
     }
 
     private synchronized void UpdateMapping() throws Exception {
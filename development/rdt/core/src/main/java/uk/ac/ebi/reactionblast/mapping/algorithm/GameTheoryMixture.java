@@ -149,8 +149,22 @@ final class GameTheoryMixture extends BaseGameTheory {
         }
     }
 
+    /*
+     * Winner selection rounds until no winner is left, the rows and columns
+     * of the molecules mapped in a round are updated before the next one. The
+     * mapping rules are only tried in the first round.
+     */
     private synchronized void GenerateMapping(boolean flag) throws Exception {
         boolean ruleMatchingFlag = flag;
+        while (searchWinners(ruleMatchingFlag)) {
+            ruleMatchingFlag = true;
+            UpdateMapping();
+            UpdateMatrix(mh, removeHydrogen, true);
+        }
+    }
+
+    private synchronized boolean searchWinners(boolean ruleMatchingFlag) throws Exception {
+        countIteration(mh);
         if (DEBUG) {
             printMatrixAtomContainer(mh, eductList, productList);
             out.println("**********Orignal Matrix**************");
@@ -169,22 +183,13 @@ final class GameTheoryMixture extends BaseGameTheory {
                 }
                 mh = Selector.modifyMatrix(ruleBasedMappingHandler.getMatrixHolder());
             }
-            ruleMatchingFlag = true;
         }
 
         winner.searchWinners(educts, products, mh);
         if (DEBUG) {
             printFlagMatrix(winner, eductList, productList);
         }
-        if (winner.getFlag()) {
-
-//            System.out.println("**********Updated Mapping**************");
-            UpdateMapping();
-//            System.out.println("**********Updated Matrix**************");
-            UpdateMatrix(mh, removeHydrogen);
-//            System.out.println("**********Generate Mapping**************");
-            GenerateMapping(ruleMatchingFlag);
-        }
+        return winner.getFlag();
     }
 
     private synchronized void UpdateMapping() throws Exception {
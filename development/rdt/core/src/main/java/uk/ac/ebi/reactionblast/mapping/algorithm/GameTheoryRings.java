@@ -157,7 +157,19 @@ final class GameTheoryRings extends BaseGameTheory {
         }
     }
 
+    /*
+     * Winner selection rounds until no winner is left, the rows and columns
+     * of the molecules mapped in a round are updated before the next one
+     */
     private synchronized void GenerateMapping() throws Exception {
+        while (searchWinners()) {
+            UpdateMapping();
+            UpdateMatrix(mh, removeHydrogen);
+        }
+    }
+
+    private synchronized boolean searchWinners() throws Exception {
+        countIteration(mh);
         if (DEBUG) {
             out.println("**********Orignal Matrix**************");
             printMatrixAtomContainer(mh, eductList, productList);
@@ -178,15 +190,7 @@ final class GameTheoryRings extends BaseGameTheory {
         winner.searchWinners(educts, products, mh);
 
 //        printFlagMatrix(winner, eductList, productList);
-        if (winner.getFlag()) {
-
-//            System.out.println("**********Updated Mapping**************");
-            UpdateMapping();
-//            System.out.println("**********Updated Matrix**************");
-            UpdateMatrix(mh, removeHydrogen);
-//            System.out.println("**********Generate Mapping**************");
-            GenerateMapping();
-        }
+        return winner.getFlag();
     }
 
     private synchronized void UpdateMapping() throws Exception {
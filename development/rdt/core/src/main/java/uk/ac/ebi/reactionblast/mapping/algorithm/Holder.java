@@ -33,6 +33,8 @@ import static uk.ac.ebi.reactionblast.fingerprints.tools.Similarity.getTanimotoS
 import uk.ac.ebi.reactionblast.mapping.container.HydrogenFreeFingerPrintContainer;
 import uk.ac.ebi.reactionblast.mapping.container.ReactionContainer;
 import uk.ac.ebi.reactionblast.mapping.container.helper.MolMapping;
+import uk.ac.ebi.reactionblast.mapping.graph.MCSCache;
+import uk.ac.ebi.reactionblast.mapping.graph.MCSSolutionStore;
 import uk.ac.ebi.reactionblast.mapping.helper.Debugger;
 import uk.ac.ebi.reactionblast.mapping.interfaces.BestMatch;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
@@ -59,6 +61,7 @@ public class Holder extends Debugger implements Cloneable, Serializable {
     private final EBIMatrix fpSimMatrixWithoutHydrogen;
     private final int row;
     private final int coloumn;
+    private final MCSSolutionStore mcsSolutions;
 
     /*
      Local methods
@@ -70,6 +73,7 @@ public class Holder extends Debugger implements Cloneable, Serializable {
     private String reactionID;
     private HydrogenFreeFingerPrintContainer hydFPFree;
     private IMappingAlgorithm theory;
+    private MCSCache mcsCache;
 
     /**
      *
@@ -125,6 +129,7 @@ public class Holder extends Debugger implements Cloneable, Serializable {
                 = new EBIMatrix(row, coloumn);
         this.energyMatrix = new EBIMatrix(row, coloumn);
         this.mappingMolPair = synchronizedList(new ArrayList<MolMapping>());
+        this.mcsSolutions = new MCSSolutionStore();
         if (DEBUG) {
             out.println("initialize the Matrix");
         }
@@ -242,6 +247,7 @@ public class Holder extends Debugger implements Cloneable, Serializable {
     public synchronized Object clone() throws CloneNotSupportedException {
         Holder mhClone = new Holder(this.row, this.coloumn);
         mhClone.setTheory(this.getTheory());
+        mhClone.setMCSCache(this.getMCSCache());
 
         double[][] arrayCopy = this.getGraphSimilarityMatrix().getArrayCopy();
         EBIMatrix matrix = mhClone.getGraphSimilarityMatrix();
@@ -307,4 +313,27 @@ public class Holder extends Debugger implements Cloneable, Serializable {
     public void setTheory(IMappingAlgorithm theory) {
         this.theory = theory;
     }
+
+    /**
+     * @return the MCS cache shared by the mapping models of this reaction
+     */
+    public MCSCache getMCSCache() {
+        return mcsCache;
+    }
+
+    /**
+     * @param mcsCache the MCS cache to set
+     */
+    public void setMCSCache(MCSCache mcsCache) {
+        this.mcsCache = mcsCache;
+    }
+
+    /**
+     * MCS solutions of the matrix cells, a clone starts with an empty store
+     *
+     * @return the MCS solutions of this holder
+     */
+    public MCSSolutionStore getMCSSolutions() {
+        return mcsSolutions;
+    }
 }
@@ -46,7 +46,8 @@ import org.openscience.cdk.interfaces.IRingSet;
 import org.openscience.cdk.ringsearch.SSSRFinder;
 import org.openscience.cdk.smiles.SmilesGenerator;
 import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
-import org.openscience.smsd.helper.MoleculeInitializer;
+import uk.ac.ebi.reactionblast.mapping.graph.MCSCache;
+import uk.ac.ebi.reactionblast.tools.MoleculeInitializer;
 
 /**
  *
@@ -67,6 +68,10 @@ class IsomeraseHandler {
         MoleculeInitializer.initializeMolecule(atomContainer);
     }
 
+    private static void initializeMolecule(IAtomContainer atomContainer, MCSCache mcsCache) throws CDKException {
+        MoleculeInitializer.initializeMolecule(atomContainer, mcsCache == null ? null : mcsCache.getRings());
+    }
+
     private final Map<IRingSet, IAtomContainer> ringContainerCountR;
     private final Map<IRingSet, IAtomContainer> ringContainerCountP;
     private final IRingSet sssrEduct;
@@ -76,6 +81,16 @@ class IsomeraseHandler {
     protected final IReaction reaction;
 
     IsomeraseHandler(IReaction reaction) {
+        this(reaction, null);
+    }
+
+    /**
+     *
+     * @param reaction
+     * @param mcsCache the rings of the molecules are looked up in its ring
+     * cache, null to perceive them
+     */
+    IsomeraseHandler(IReaction reaction, MCSCache mcsCache) {
         this.reaction = reaction;
         ringContainerCountR = getRingContainerCount(reaction.getReactants());
         ringContainerCountP = getRingContainerCount(reaction.getProducts());
@@ -84,12 +99,12 @@ class IsomeraseHandler {
             IAtomContainer educt = ringContainerCountR.values().iterator().next();
             IAtomContainer product = ringContainerCountP.values().iterator().next();
             try {
-                initializeMolecule(educt);
+                initializeMolecule(educt, mcsCache);
             } catch (CDKException ex) {
                 getLogger(GameTheoryRings.class.getName()).log(SEVERE, null, ex);
             }
             try {
-                initializeMolecule(product);
+                initializeMolecule(product, mcsCache);
             } catch (CDKException ex) {
                 getLogger(GameTheoryRings.class.getName()).log(SEVERE, null, ex);
             }
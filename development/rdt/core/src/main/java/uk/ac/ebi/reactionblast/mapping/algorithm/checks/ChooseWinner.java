@@ -44,9 +44,10 @@ import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.smsd.AtomAtomMapping;
-import org.openscience.smsd.tools.BondEnergies;
 import uk.ac.ebi.reactionblast.mapping.algorithm.Holder;
+import uk.ac.ebi.reactionblast.mapping.container.CompiledMolecule;
 import uk.ac.ebi.reactionblast.mapping.interfaces.BestMatch;
+import uk.ac.ebi.reactionblast.tools.BondEnergyTable;
 import uk.ac.ebi.reactionblast.tools.EBIMatrix;
 
 /**
@@ -147,6 +148,12 @@ public class ChooseWinner extends Selector implements Serializable {
 //                        System.out.println(" maxValue J " + maxValueJ);
                         if (maxValueI && maxValueJ) {
 
+                            /*
+                             * Only the cells with the global maximum
+                             * similarity are flagged, a cell below it can
+                             * not win nor stop another one from winning (the
+                             * deferred MCS jobs of GraphMatcher rely on it)
+                             */
                             if (similarity > maximumSimilarity) {
                                 maximumSimilarity = similarity;
                                 initFlagMatrix();
@@ -318,16 +325,24 @@ public class ChooseWinner extends Selector implements Serializable {
     }
 
     private double getMappedCarbonsInMolecules(AtomAtomMapping atomMatch) {
+        /*
+         * mapped C-C bonds of the query, counted from both ends
+         */
+        Map<IAtom, IAtom> mappings = atomMatch.getMappingsByAtoms();
+        IAtomContainer container = atomMatch.getQuery();
+        CompiledMolecule query = CompiledMolecule.of(container);
+        int carbon = CompiledMolecule.code("C");
         double carbonScore = 0.0;
-        for (IAtom a : atomMatch.getQuery().atoms()) {
-            for (IAtom b : atomMatch.getQuery().atoms()) {
-                if (a != b && atomMatch.getMappingsByAtoms().containsKey(a)
-                        && atomMatch.getMappingsByAtoms().containsKey(b)) {
-                    IBond bond = atomMatch.getQuery().getBond(a, b);
-                    if (bond != null && a.getSymbol().equals("C") && b.getSymbol().equals("C")) {
-                        carbonScore += 1;
-                    }
-                }
+        for (int k = 0; k < query.getBondCount(); k++) {
+            int u = query.getBondFrom(k);
+            if (u < 0) {
+                continue;
+            }
+            int v = query.getBondTo(k);
+            if (query.getElement(u) == carbon && query.getElement(v) == carbon
+                    && mappings.containsKey(container.getAtom(u))
+                    && mappings.containsKey(container.getAtom(v))) {
+                carbonScore += 2;
             }
         }
         return carbonScore;
@@ -505,9 +520,9 @@ public class ChooseWinner extends Selector implements Serializable {
         return totalBondEnergy;
     }
 
-    private synchronized static double getEnergy(IAtomContainer educt, IAtomContainer product) throws CDKException {
+    private static double getEnergy(IAtomContainer educt, IAtomContainer product) throws CDKException {
         Double eEnergy = 0.0;
-        BondEnergies bondEnergy = BondEnergies.getInstance();
+        BondEnergyTable bondEnergy = BondEnergyTable.getInstance();
         for (int i = 0; i < educt.getBondCount(); i++) {
             IBond bond = educt.getBond(i);
             eEnergy += getBondEnergy(bond, bondEnergy);
@@ -520,7 +535,7 @@ public class ChooseWinner extends Selector implements Serializable {
         return (eEnergy + pEnergy);
     }
 
-    private synchronized static double getBondEnergy(IBond bond, BondEnergies bondEnergy) {
+    private static double getBondEnergy(IBond bond, BondEnergyTable bondEnergy) {
         double energy = 0.0;
         if ((bond.getAtom(0).getFlag(999) == true && bond.getAtom(1).getFlag(999) == false)
                 || (bond.getAtom(0).getFlag(999) == false && bond.getAtom(1).getFlag(999) == true)) {
@@ -0,0 +1,371 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mapping.algorithm.checks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import static java.lang.System.getProperty;
+import java.util.ArrayList;
+import java.util.Collections;
+import static java.util.Collections.unmodifiableList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static java.util.logging.Level.SEVERE;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * Parsed molecules of the mapping rules, shared by all the
+ * {@link RuleBasedMappingHandler}s. The molecules are never matched
+ * directly, the handlers match copies (see {@link Rule#newQuery()}) as the
+ * substructure search perceives rings on its input.
+ *
+ * Extra pair rules are read from the file named by {@value #RULES_PROPERTY}
+ * or added with {@link #addRules(File)}, one rule per line:
+ * <pre>
+ * name  SMILES of the educt  SMILES of the product
+ * </pre> separated by tabs or blanks, lines starting with # are skipped.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public final class MappingRules {
+
+    /**
+     * System property for a file of extra pair rules
+     */
+    public static final String RULES_PROPERTY = "rdt.mapping.rules";
+    private static final Logger LOG = getLogger(MappingRules.class.getName());
+    private static volatile MappingRules instance;
+
+    /**
+     * Molecules of the built in rules
+     */
+    public enum Cofactor {
+
+        WATER("O"),
+        PHOSPHATE("OP(O)(O)=O"),
+        SULPHATE("O=S(=O)(O)O"),
+        /*
+         * L-Glutamate with L-Glutamine
+         */
+        L_GLUTAMATE("N[C@@H](CCC(O)=O)C(O)=O"),
+        L_GLUTAMINE("N[C@@H](CCC(N)=O)C(O)=O"),
+        /*
+         * 2-Oxoglutarate to D-Glutamate
+         */
+        TWO_OXOGLUTARATE("OC(=O)CCC(=O)C(O)=O"),
+        D_GLUTAMATE("N[C@H](CCC(O)=O)C(O)=O"),
+        /*
+         * Acetate C00033
+         */
+        ACETATE("CC(O)=O"),
+        ATP("NC1=NC=NC2=C1N=CN2[C@@H]1O[C@H](COP(O)(=O)OP(O)(=O)OP(O)(O)=O)[C@@H](O)[C@H]1O"),
+        ADP("NC1=NC=NC2=C1N=CN2[C@@H]1O[C@H](COP(O)(=O)OP(O)(O)=O)[C@@H](O)[C@H]1O"),
+        COA("CC(C)(COP(O)(=O)OP(O)(=O)OC[C@H]1O[C@H]([C@H](O)[C@@H]1OP(O)(O)=O)N1C=NC2=C1N=CN=C2N)[C@@H](O)C(=O)NCCC(=O)NCCS"),
+        ACETYL_COA("CC(=O)SCCNC(=O)CCNC(=O)[C@H](O)C(C)(C)COP(O)(=O)OP(O)(=O)OC[C@H]1O[C@H]([C@H](O)[C@@H]1OP(O)(O)=O)N1C=NC2=C1N=CN=C2N"),
+        C00003("NC(=O)C1=CC=C[N+](=C1)[C@@H]1O[C@H](COP(O)(=O)OP(O)(=O)OC[C@H]2O[C@H]([C@H](O)[C@@H]2O)N2C=NC3=C(N)N=CN=C23)[C@@H](O)[C@H]1O"),
+        C00006("NC(=O)C1=C[N+](=CC=C1)[C@@H]1O[C@H](COP(O)(=O)OP(O)(=O)OC[C@H]2O[C@H]([C@H](OP(O)(O)=O)[C@@H]2O)N2C=NC3=C2N=CN=C3N)[C@@H](O)[C@H]1O"),
+        C00004("NC(=O)C1=CN(C=CC1)[C@@H]1O[C@H](COP(O)(=O)OP(O)(=O)OC[C@H]2O[C@H]([C@H](O)[C@@H]2O)N2C=NC3=C2N=CN=C3N)[C@@H](O)[C@H]1O"),
+        C00005("NC(=O)C1=CN(C=CC1)[C@@H]1O[C@H](COP(O)(=O)OP(O)(=O)OC[C@H]2O[C@H]([C@H](OP(O)(O)=O)[C@@H]2O)N2C=NC3=C2N=CN=C3N)[C@@H](O)[C@H]1O");
+
+        private final String smiles;
+
+        Cofactor(String smiles) {
+            this.smiles = smiles;
+        }
+
+        /**
+         *
+         * @return SMILES of the molecule
+         */
+        public String getSmiles() {
+            return smiles;
+        }
+    }
+
+    /**
+     *
+     * @return the shared rules
+     */
+    public static MappingRules getRules() {
+        MappingRules r = instance;
+        if (r == null) {
+            synchronized (MappingRules.class) {
+                r = instance;
+                if (r == null) {
+                    try {
+                        r = new MappingRules();
+                        String file = getProperty(RULES_PROPERTY);
+                        if (file != null) {
+                            r = r.with(new File(file));
+                        }
+                    } catch (CDKException | IOException ex) {
+                        LOG.log(SEVERE, "Error in reading the mapping rules", ex);
+                        r = null;
+                    }
+                    if (r == null) {
+                        try {
+                            r = new MappingRules();
+                        } catch (CDKException ex) {
+                            throw new IllegalStateException("Built in mapping rules not parsed", ex);
+                        }
+                    }
+                    instance = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Add the pair rules of a file to the shared rules
+     *
+     * @param file
+     * @throws IOException
+     * @throws CDKException
+     */
+    public static synchronized void addRules(File file) throws IOException, CDKException {
+        instance = getRules().with(file);
+    }
+
+    private final Map<Cofactor, Rule> cofactors;
+    private final List<PairRule> pairRules;
+
+    private MappingRules() throws CDKException {
+        SmilesParser smilesParser = new SmilesParser(getInstance());
+        this.cofactors = new EnumMap<>(Cofactor.class);
+        for (Cofactor c : Cofactor.values()) {
+            cofactors.put(c, new Rule(c.name(), c.getSmiles(), smilesParser));
+        }
+        this.pairRules = Collections.emptyList();
+    }
+
+    private MappingRules(MappingRules rules, List<PairRule> pairRules) {
+        this.cofactors = rules.cofactors;
+        this.pairRules = unmodifiableList(pairRules);
+    }
+
+    private MappingRules with(File file) throws IOException, CDKException {
+        try (Reader reader = new FileReader(file)) {
+            return with(reader);
+        }
+    }
+
+    private MappingRules with(Reader reader) throws IOException, CDKException {
+        SmilesParser smilesParser = new SmilesParser(getInstance());
+        List<PairRule> rules = new ArrayList<>(this.pairRules);
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (fields.length != 3) {
+                throw new CDKException("Expected name, educt and product SMILES in the rule: " + line);
+            }
+            rules.add(new PairRule(fields[0],
+                    new Rule(fields[0], fields[1], smilesParser),
+                    new Rule(fields[0], fields[2], smilesParser)));
+        }
+        return new MappingRules(this, rules);
+    }
+
+    /**
+     *
+     * @param cofactor
+     * @return rule of the cofactor
+     */
+    public Rule getRule(Cofactor cofactor) {
+        return cofactors.get(cofactor);
+    }
+
+    /**
+     *
+     * @return pair rules read from files
+     */
+    public List<PairRule> getPairRules() {
+        return pairRules;
+    }
+
+    /**
+     * Atom count, element counts and a bit per element pair of the bonds of a
+     * molecule. A substructure of a molecule can not have more atoms of an
+     * element, nor an element pair missing in the larger one.
+     */
+    public static final class Signature {
+
+        private final int atomCount;
+        private final Map<String, Integer> elements;
+        private final long bonds;
+
+        /**
+         *
+         * @param ac hydrogen free molecule
+         */
+        public Signature(IAtomContainer ac) {
+            this.atomCount = ac.getAtomCount();
+            this.elements = new HashMap<>();
+            for (IAtom atom : ac.atoms()) {
+                Integer count = elements.get(atom.getSymbol());
+                elements.put(atom.getSymbol(), count == null ? 1 : count + 1);
+            }
+            long bits = 0L;
+            for (IBond bond : ac.bonds()) {
+                String a = bond.getAtom(0).getSymbol();
+                String b = bond.getAtom(1).getSymbol();
+                int hash = a.compareTo(b) <= 0 ? 31 * a.hashCode() + b.hashCode() : 31 * b.hashCode() + a.hashCode();
+                bits |= 1L << (hash & 63);
+            }
+            this.bonds = bits;
+        }
+
+        /**
+         *
+         * @return number of atoms
+         */
+        public int getAtomCount() {
+            return atomCount;
+        }
+
+        /**
+         *
+         * @param other
+         * @return false if this molecule can not be a substructure of the
+         * other
+         */
+        public boolean mayBeSubgraphOf(Signature other) {
+            if (atomCount > other.atomCount || (bonds & ~other.bonds) != 0L) {
+                return false;
+            }
+            for (Map.Entry<String, Integer> e : elements.entrySet()) {
+                Integer count = other.elements.get(e.getKey());
+                if (count == null || count < e.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A parsed rule molecule and its signature
+     */
+    public static final class Rule {
+
+        private final String name;
+        private final IAtomContainer molecule;
+        private final Signature signature;
+
+        private Rule(String name, String smiles, SmilesParser smilesParser) throws CDKException {
+            this.name = name;
+            this.molecule = smilesParser.parseSmiles(smiles);
+            this.signature = new Signature(molecule);
+        }
+
+        /**
+         *
+         * @return name of the rule
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         *
+         * @return number of atoms
+         */
+        public int getAtomCount() {
+            return signature.getAtomCount();
+        }
+
+        /**
+         *
+         * @return signature of the molecule
+         */
+        public Signature getSignature() {
+            return signature;
+        }
+
+        /**
+         *
+         * @return a copy of the molecule to match
+         */
+        public IAtomContainer newQuery() {
+            try {
+                return molecule.clone();
+            } catch (CloneNotSupportedException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    /**
+     * Educt and product of a rule read from a file
+     */
+    public static final class PairRule {
+
+        private final String name;
+        private final Rule educt;
+        private final Rule product;
+
+        private PairRule(String name, Rule educt, Rule product) {
+            this.name = name;
+            this.educt = educt;
+            this.product = product;
+        }
+
+        /**
+         *
+         * @return name of the rule
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         *
+         * @return the educt
+         */
+        public Rule getEduct() {
+            return educt;
+        }
+
+        /**
+         *
+         * @return the product
+         */
+        public Rule getProduct() {
+            return product;
+        }
+    }
+}
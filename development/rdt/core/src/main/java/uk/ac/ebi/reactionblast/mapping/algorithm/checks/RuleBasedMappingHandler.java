@@ -22,7 +22,9 @@ import java.io.IOException;
 import java.io.Serializable;
 import static java.lang.System.err;
 import static java.lang.System.out;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import static java.util.logging.Level.SEVERE;
@@ -34,9 +36,29 @@ import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import static org.openscience.cdk.smiles.SmilesGenerator.unique;
-import org.openscience.cdk.smiles.SmilesParser;
 import org.openscience.smsd.Substructure;
 import uk.ac.ebi.reactionblast.mapping.algorithm.Holder;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.ACETATE;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.ACETYL_COA;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.ADP;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.ATP;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.C00003;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.C00004;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.C00005;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.C00006;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.COA;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.D_GLUTAMATE;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.L_GLUTAMATE;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.L_GLUTAMINE;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.PHOSPHATE;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.SULPHATE;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.TWO_OXOGLUTARATE;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.WATER;
+import uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.getRules;
+import uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.PairRule;
+import uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Rule;
+import uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Signature;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.removeHydrogens;
 
 /**
@@ -59,24 +81,12 @@ public final class RuleBasedMappingHandler implements Serializable {
     private final Map<Integer, Integer> matchedRowColoumn;
 
     /*
-     * SMARTS parser
+     * Shared rule molecules, copied here on first use
      */
-    private IAtomContainer smartsWater;
-    private IAtomContainer smartsPhosphate;
-    private IAtomContainer smartsSulphate;
-    private IAtomContainer smartsL_Glutamate;
-    private IAtomContainer smartsL_Glutamine;
-    private IAtomContainer smartsTwoOxoglutarate;
-    private IAtomContainer smartsD_Glutamate;
-    private IAtomContainer smartsAcetate;
-    private IAtomContainer smartsATP;
-    private IAtomContainer smartsADP;
-    private IAtomContainer smartsCoA;
-    private IAtomContainer smartsAcetyl_CoA;
-    private IAtomContainer smartsC00003;
-    private IAtomContainer smartsC00006;
-    private IAtomContainer smartsC00004;
-    private IAtomContainer smartsC00005;
+    private final MappingRules rules;
+    private final Map<Rule, IAtomContainer> queries;
+    private final List<Molecule> educts;
+    private final List<Molecule> products;
 
     /**
      *
@@ -87,26 +97,38 @@ public final class RuleBasedMappingHandler implements Serializable {
      * @throws IOException
      */
     public RuleBasedMappingHandler(Holder matrixHolder, List<String> EdMapOrignal, List<String> PdMapOrignal) throws CDKException, IOException {
-        setRulesSmiles();
+        this.rules = getRules();
+        this.queries = new IdentityHashMap<>();
         if (DEBUG) {
             out.println("Mapping Rules Checked");
         }
         this.matrixHolder = matrixHolder;
         this.matchedRowColoumn = new HashMap<>();
         setRuleMatched(false);
+        /*
+         * Hydrogen free copies of the molecules, each is matched against
+         * several rules
+         */
+        this.educts = new ArrayList<>();
+        for (int i = 0; i < this.matrixHolder.getReactionContainer().getEductCount(); i++) {
+            educts.add(new Molecule(this.matrixHolder.getReactionContainer().getEduct(i)));
+        }
+        this.products = new ArrayList<>();
+        for (int j = 0; j < this.matrixHolder.getReactionContainer().getProductCount(); j++) {
+            products.add(new Molecule(this.matrixHolder.getReactionContainer().getProduct(j)));
+        }
 
         int smallestMatchedReactant = Integer.MAX_VALUE;
         int smallestMatchedProduct = Integer.MAX_VALUE;
         for (int i = 0; i < this.matrixHolder.getReactionContainer().getEductCount(); i++) {
-            IAtomContainer ac1 = new AtomContainer(this.matrixHolder.getReactionContainer().getEduct(i));
-            ac1 = removeHydrogens(ac1);
+            Molecule ac1 = educts.get(i);
             if (DEBUG) {
-                out.println("Educt " + unique().create(ac1));
+                out.println("Educt " + unique().create(ac1.getContainer()));
             }
 
-            if (ac1.getAtomCount() >= getSmartsPhosphate().getAtomCount()
-                    || ac1.getAtomCount() >= getSmartsSulphate().getAtomCount()) {
-                if (isMatch(getSmartsPhosphate(), ac1) || isMatch(getSmartsSulphate(), ac1)) {
+            if (ac1.getAtomCount() >= atomCount(PHOSPHATE)
+                    || ac1.getAtomCount() >= atomCount(SULPHATE)) {
+                if (isMatch(PHOSPHATE, ac1) || isMatch(SULPHATE, ac1)) {
                     if (smallestMatchedReactant > ac1.getAtomCount()) {
                         smallestMatchedReactant = ac1.getAtomCount();
                     }
@@ -117,14 +139,13 @@ public final class RuleBasedMappingHandler implements Serializable {
             out.println("smallestMatchedReactant " + smallestMatchedReactant);
         }
         for (int j = 0; j < this.matrixHolder.getReactionContainer().getProductCount(); j++) {
-            IAtomContainer ac2 = new AtomContainer(this.matrixHolder.getReactionContainer().getProduct(j));
-            ac2 = removeHydrogens(ac2);
+            Molecule ac2 = products.get(j);
             if (DEBUG) {
-                out.println("Product " + unique().create(ac2));
+                out.println("Product " + unique().create(ac2.getContainer()));
             }
-            if (ac2.getAtomCount() >= getSmartsPhosphate().getAtomCount()
-                    || ac2.getAtomCount() >= getSmartsSulphate().getAtomCount()) {
-                if (isMatch(getSmartsPhosphate(), ac2) || isMatch(getSmartsSulphate(), ac2)) {
+            if (ac2.getAtomCount() >= atomCount(PHOSPHATE)
+                    || ac2.getAtomCount() >= atomCount(SULPHATE)) {
+                if (isMatch(PHOSPHATE, ac2) || isMatch(SULPHATE, ac2)) {
                     if (smallestMatchedProduct > ac2.getAtomCount()) {
                         smallestMatchedProduct = ac2.getAtomCount();
                     }
@@ -137,26 +158,22 @@ public final class RuleBasedMappingHandler implements Serializable {
         }
         try {
             for (int i = 0; i < this.matrixHolder.getReactionContainer().getEductCount(); i++) {
-                IAtomContainer educt = this.matrixHolder.getReactionContainer().getEduct(i);
-                IAtomContainer ac1 = new AtomContainer(educt);
-                ac1 = removeHydrogens(ac1);
+                Molecule ac1 = educts.get(i);
                 if (DEBUG) {
-                    out.println("\n\n\nEduct " + unique().create(ac1));
+                    out.println("\n\n\nEduct " + unique().create(ac1.getContainer()));
                     out.println("Educt found " + ac1.getAtomCount());
                 }
 
                 for (int j = 0; j < this.matrixHolder.getReactionContainer().getProductCount(); j++) {
-                    IAtomContainer product = this.matrixHolder.getReactionContainer().getProduct(j);
-                    IAtomContainer ac2 = new AtomContainer(product);
-                    ac2 = removeHydrogens(ac2);
+                    Molecule ac2 = products.get(j);
 
                     if (DEBUG) {
-                        out.println("Product " + unique().create(ac2));
+                        out.println("Product " + unique().create(ac2.getContainer()));
                         out.println("Product found " + ac2.getAtomCount());
                     }
                     if (DEBUG) {
-                        out.println("Match 1 Water " + isMatch(getSmartsWater(), ac1));
-                        out.println("Match 2 Phos " + isMatch(getSmartsPhosphate(), ac2));
+                        out.println("Match 1 Water " + isMatch(WATER, ac1));
+                        out.println("Match 2 Phos " + isMatch(PHOSPHATE, ac2));
                         out.println("Water " + ac1.getAtomCount());
                         out.println("Phos " + ac2.getAtomCount());
                         out.println("smallest R phosphate " + smallestMatchedReactant);
@@ -171,8 +188,8 @@ public final class RuleBasedMappingHandler implements Serializable {
                     Rule 1_A water and Phosphate
                      */
                     if (ac1.getAtomCount() == 1
-                            && isMatch(getSmartsWater(), ac1)
-                            && isMatch(getSmartsPhosphate(), ac2)
+                            && isMatch(WATER, ac1)
+                            && isMatch(PHOSPHATE, ac2)
                             && ac2.getAtomCount() == smallestMatchedProduct) {
                         if (DEBUG) {
                             out.println("Match ");
@@ -188,8 +205,8 @@ public final class RuleBasedMappingHandler implements Serializable {
                     } else /*
                         Rule 1_B phophate and water
                      */ if (ac2.getAtomCount() == 1
-                            && isMatch(getSmartsWater(), ac2)
-                            && isMatch(getSmartsPhosphate(), ac1)
+                            && isMatch(WATER, ac2)
+                            && isMatch(PHOSPHATE, ac1)
                             && ac1.getAtomCount() == smallestMatchedReactant) {
                         if (DEBUG) {
                             out.println("Match ");
@@ -207,8 +224,8 @@ public final class RuleBasedMappingHandler implements Serializable {
                     Rule 1_C water and Sulphate
                      */
                     if (ac1.getAtomCount() == 1
-                            && isMatch(getSmartsWater(), ac1)
-                            && isMatch(getSmartsSulphate(), ac2)
+                            && isMatch(WATER, ac1)
+                            && isMatch(SULPHATE, ac2)
                             && ac2.getAtomCount() == smallestMatchedProduct) {
                         if (DEBUG) {
                             out.println("Match ");
@@ -224,8 +241,8 @@ public final class RuleBasedMappingHandler implements Serializable {
                     } else /*
                         Rule 1_D Sulphate and water
                      */ if (ac2.getAtomCount() == 1
-                            && isMatch(getSmartsWater(), ac2)
-                            && isMatch(getSmartsSulphate(), ac1)
+                            && isMatch(WATER, ac2)
+                            && isMatch(SULPHATE, ac1)
                             && ac1.getAtomCount() == smallestMatchedReactant) {
                         if (DEBUG) {
                             out.println("Match ");
@@ -241,9 +258,9 @@ public final class RuleBasedMappingHandler implements Serializable {
                     }/*
                         Rule 2 L_Glutamate and L_Glutamine
                      */ else if ((ac1.getAtomCount() == 10 && ac2.getAtomCount() == 10
-                            && isMatch(getSmartsL_Glutamate(), ac1) && isMatch(getSmartsL_Glutamine(), ac2))
+                            && isMatch(L_GLUTAMATE, ac1) && isMatch(L_GLUTAMINE, ac2))
                             || (ac1.getAtomCount() == 10 && ac2.getAtomCount() == 10
-                            && isMatch(getSmartsL_Glutamine(), ac1) && isMatch(getSmartsL_Glutamate(), ac2))) {
+                            && isMatch(L_GLUTAMINE, ac1) && isMatch(L_GLUTAMATE, ac2))) {
                         setRuleMatched(true);
                         matchedRowColoumn.put(i, j);
                         if (DEBUG) {
@@ -252,9 +269,9 @@ public final class RuleBasedMappingHandler implements Serializable {
                     } /*
                         Rule 3 D_Glutamate and TwoOxoglutarate
                      */ else if ((ac2.getAtomCount() == 10 && ac1.getAtomCount() == 10
-                            && isMatch(getSmartsTwoOxoglutarate(), ac2) && isMatch(getSmartsD_Glutamate(), ac1))
+                            && isMatch(TWO_OXOGLUTARATE, ac2) && isMatch(D_GLUTAMATE, ac1))
                             || (ac1.getAtomCount() == 10 && ac2.getAtomCount() == 10
-                            && isMatch(getSmartsTwoOxoglutarate(), ac1) && isMatch(getSmartsD_Glutamate(), ac2))) {
+                            && isMatch(TWO_OXOGLUTARATE, ac1) && isMatch(D_GLUTAMATE, ac2))) {
 
                         setRuleMatched(true);
                         matchedRowColoumn.put(i, j);
@@ -264,10 +281,10 @@ public final class RuleBasedMappingHandler implements Serializable {
 
                     }/*
                         Rule 4 water and Acetate
-                     */ else if ((ac1.getAtomCount() == 1 && isMatch(getSmartsWater(), ac1)
-                            && ac2.getAtomCount() >= getSmartsAcetate().getAtomCount() && isMatch(getSmartsAcetate(), ac2))
-                            || (ac2.getAtomCount() == 1 && isMatch(getSmartsWater(), ac2)
-                            && ac1.getAtomCount() >= getSmartsAcetate().getAtomCount() && isMatch(getSmartsAcetate(), ac1))) {
+                     */ else if ((ac1.getAtomCount() == 1 && isMatch(WATER, ac1)
+                            && ac2.getAtomCount() >= atomCount(ACETATE) && isMatch(ACETATE, ac2))
+                            || (ac2.getAtomCount() == 1 && isMatch(WATER, ac2)
+                            && ac1.getAtomCount() >= atomCount(ACETATE) && isMatch(ACETATE, ac1))) {
                         if (DEBUG) {
                             out.println("Rule 4 Water and Acetate found");
                         }
@@ -275,10 +292,10 @@ public final class RuleBasedMappingHandler implements Serializable {
                         matchedRowColoumn.put(i, j);
                     }/*
                         Rule 5 ADP_ATP
-                     */ else if ((ac1.getAtomCount() == getSmartsATP().getAtomCount() && isMatch(getSmartsATP(), ac1)
-                            && isMatch(getSmartsADP(), ac2))
-                            || (ac2.getAtomCount() == getSmartsADP().getAtomCount() && isMatch(getSmartsADP(), ac2)
-                            && isMatch(getSmartsATP(), ac1))) {
+                     */ else if ((ac1.getAtomCount() == atomCount(ATP) && isMatch(ATP, ac1)
+                            && isMatch(ADP, ac2))
+                            || (ac2.getAtomCount() == atomCount(ADP) && isMatch(ADP, ac2)
+                            && isMatch(ATP, ac1))) {
                         if (DEBUG) {
                             out.println("Rule 5 ADP_ATP found");
                         }
@@ -286,10 +303,10 @@ public final class RuleBasedMappingHandler implements Serializable {
                         matchedRowColoumn.put(i, j);
                     }/*
                         Rule 6 CoA_Acetyl_CoA
-                     */ else if ((ac1.getAtomCount() == getSmartsCoA().getAtomCount() && isMatch(getSmartsCoA(), ac1)
-                            && isMatch(getSmartsAcetyl_CoA(), ac2))
-                            || (ac2.getAtomCount() == getSmartsAcetyl_CoA().getAtomCount() && isMatch(getSmartsAcetyl_CoA(), ac2)
-                            && isMatch(getSmartsCoA(), ac1))) {
+                     */ else if ((ac1.getAtomCount() == atomCount(COA) && isMatch(COA, ac1)
+                            && isMatch(ACETYL_COA, ac2))
+                            || (ac2.getAtomCount() == atomCount(ACETYL_COA) && isMatch(ACETYL_COA, ac2)
+                            && isMatch(COA, ac1))) {
                         if (DEBUG) {
                             out.println("Rule 6 CoA_Acetyl_CoA found");
                         }
@@ -297,10 +314,10 @@ public final class RuleBasedMappingHandler implements Serializable {
                         matchedRowColoumn.put(i, j);
                     }/*
                         Rule 7 C00003_C00006
-                     */ else if ((ac1.getAtomCount() == getSmartsC00003().getAtomCount() && isMatch(getSmartsC00003(), ac1)
-                            && isMatch(getSmartsC00006(), ac2))
-                            || (ac2.getAtomCount() == getSmartsC00006().getAtomCount() && isMatch(getSmartsC00006(), ac2)
-                            && isMatch(getSmartsC00003(), ac1))) {
+                     */ else if ((ac1.getAtomCount() == atomCount(C00003) && isMatch(C00003, ac1)
+                            && isMatch(C00006, ac2))
+                            || (ac2.getAtomCount() == atomCount(C00006) && isMatch(C00006, ac2)
+                            && isMatch(C00003, ac1))) {
                         if (DEBUG) {
                             out.println("Rule 7 C00003_C00006 found");
                         }
@@ -308,19 +325,24 @@ public final class RuleBasedMappingHandler implements Serializable {
                         matchedRowColoumn.put(i, j);
                     }/*
                         Rule 8 C00004_C00005
-                     */ else if ((ac1.getAtomCount() == getSmartsC00004().getAtomCount() && isMatch(getSmartsC00004(), ac1)
-                            && isMatch(getSmartsC00005(), ac2))
-                            || (ac2.getAtomCount() == getSmartsC00005().getAtomCount() && isMatch(getSmartsC00005(), ac2)
-                            && isMatch(getSmartsC00004(), ac1))) {
+                     */ else if ((ac1.getAtomCount() == atomCount(C00004) && isMatch(C00004, ac1)
+                            && isMatch(C00005, ac2))
+                            || (ac2.getAtomCount() == atomCount(C00005) && isMatch(C00005, ac2)
+                            && isMatch(C00004, ac1))) {
                         if (DEBUG) {
                             out.println("Rule 8 C00004_C00005 found");
                         }
                         setRuleMatched(true);
                         matchedRowColoumn.put(i, j);
+                    }/*
+                        Pair rules read from file
+                     */ else if (isPairRuleMatch(ac1, ac2)) {
+                        setRuleMatched(true);
+                        matchedRowColoumn.put(i, j);
                     }
                 }
             }
-        } catch (IOException | CDKException ex) {
+        } catch (CDKException ex) {
             getLogger(RuleBasedMappingHandler.class.getName()).
                     log(WARNING, "Error in Matching Rules", ex);
         }
@@ -381,6 +403,63 @@ public final class RuleBasedMappingHandler implements Serializable {
         this.ruleMatched = ruleMatched;
     }
 
+    private boolean isPairRuleMatch(Molecule ac1, Molecule ac2) {
+        for (PairRule pairRule : rules.getPairRules()) {
+            Rule educt = pairRule.getEduct();
+            Rule product = pairRule.getProduct();
+            if ((ac1.getAtomCount() == educt.getAtomCount() && isMatch(educt, ac1)
+                    && isMatch(product, ac2))
+                    || (ac2.getAtomCount() == product.getAtomCount() && isMatch(product, ac2)
+                    && isMatch(educt, ac1))) {
+                if (DEBUG) {
+                    out.println("Rule " + pairRule.getName() + " found");
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int atomCount(Cofactor cofactor) {
+        return rules.getRule(cofactor).getAtomCount();
+    }
+
+    private boolean isMatch(Cofactor cofactor, Molecule molecule) {
+        return isMatch(rules.getRule(cofactor), molecule);
+    }
+
+    /*
+     * The smaller of the two is searched in the larger one, the signatures
+     * reject most pairs before the substructure search
+     */
+    private boolean isMatch(Rule rule, Molecule molecule) {
+        Boolean match = molecule.matches.get(rule);
+        if (match == null) {
+            if (rule.getAtomCount() <= molecule.getAtomCount()) {
+                match = rule.getSignature().mayBeSubgraphOf(molecule.signature)
+                        && isMatch(query(rule), molecule.getContainer());
+            } else {
+                match = molecule.signature.mayBeSubgraphOf(rule.getSignature())
+                        && isMatch(query(rule), molecule.getContainer());
+            }
+            molecule.matches.put(rule, match);
+        }
+        return match;
+    }
+
+    private IAtomContainer query(Cofactor cofactor) {
+        return query(rules.getRule(cofactor));
+    }
+
+    private IAtomContainer query(Rule rule) {
+        IAtomContainer query = queries.get(rule);
+        if (query == null) {
+            query = rule.newQuery();
+            queries.put(rule, query);
+        }
+        return query;
+    }
+
     private boolean isMatch(IAtomContainer ac1, IAtomContainer ac2) {
         if (ac1.getAtomCount() <= ac2.getAtomCount()) {
             try {
@@ -412,217 +491,84 @@ public final class RuleBasedMappingHandler implements Serializable {
         return false;
     }
 
-    private void setRulesSmiles() throws CDKException {
-        /*
-         * water with phosphate
-         */
-
-        final String waterSMILES = "O";
-        final String phosphateSMILES = "OP(O)(O)=O";
-
-        final String sulphateSMILES = "O=S(=O)(O)O";
-        /*
-         * L-Glutamate with L-Glutamine
-         */
-        final String lGlutamate = "N[C@@H](CCC(O)=O)C(O)=O";
-        final String lGlutamine = "N[C@@H](CCC(N)=O)C(O)=O";
-        /*
-         * 2-Oxoglutarate to D-Glutamate
-         */
-        final String twoOxoglutarate = "OC(=O)CCC(=O)C(O)=O";
-        final String dGlutamate = "N[C@H](CCC(O)=O)C(O)=O";
-
-        /*
-         * Acetate C00033
-         */
-        final String acetate = "CC(O)=O";
-
-        /*
-         * ADP_ATP
-         */
-        final String ATP = "NC1=NC=NC2=C1N=CN2[C@@H]1O[C@H](COP(O)(=O)OP(O)(=O)OP(O)(O)=O)[C@@H](O)[C@H]1O";
-        final String ADP = "NC1=NC=NC2=C1N=CN2[C@@H]1O[C@H](COP(O)(=O)OP(O)(O)=O)[C@@H](O)[C@H]1O";
-
-        /*
-         * CoA_Acetyl_CoA
-         */
-        final String CoA = "CC(C)(COP(O)(=O)OP(O)(=O)OC[C@H]1O[C@H]([C@H](O)[C@@H]1OP(O)(O)=O)N1C=NC2=C1N=CN=C2N)[C@@H](O)C(=O)NCCC(=O)NCCS";
-        final String Acetyl_CoA = "CC(=O)SCCNC(=O)CCNC(=O)[C@H](O)C(C)(C)COP(O)(=O)OP(O)(=O)OC[C@H]1O[C@H]([C@H](O)[C@@H]1OP(O)(O)=O)N1C=NC2=C1N=CN=C2N";
-
-
-        /*
-         * C00003_C00006
-         */
-        final String C00003 = "NC(=O)C1=CC=C[N+](=C1)[C@@H]1O[C@H](COP(O)(=O)OP(O)(=O)OC[C@H]2O[C@H]([C@H](O)[C@@H]2O)N2C=NC3=C(N)N=CN=C23)[C@@H](O)[C@H]1O";
-        final String C00006 = "NC(=O)C1=C[N+](=CC=C1)[C@@H]1O[C@H](COP(O)(=O)OP(O)(=O)OC[C@H]2O[C@H]([C@H](OP(O)(O)=O)[C@@H]2O)N2C=NC3=C2N=CN=C3N)[C@@H](O)[C@H]1O";
-
-        /*
-         * C00004_C00005
-         */
-        final String C00004 = "NC(=O)C1=CN(C=CC1)[C@@H]1O[C@H](COP(O)(=O)OP(O)(=O)OC[C@H]2O[C@H]([C@H](O)[C@@H]2O)N2C=NC3=C2N=CN=C3N)[C@@H](O)[C@H]1O";
-        final String C00005 = "NC(=O)C1=CN(C=CC1)[C@@H]1O[C@H](COP(O)(=O)OP(O)(=O)OC[C@H]2O[C@H]([C@H](OP(O)(O)=O)[C@@H]2O)N2C=NC3=C2N=CN=C3N)[C@@H](O)[C@H]1O";
-
-        SmilesParser smilesParser = new SmilesParser(getInstance());
-        /*
-         * Rule 1
-         */
-        smartsWater = smilesParser.parseSmiles(waterSMILES);
-        smartsPhosphate = smilesParser.parseSmiles(phosphateSMILES);
-        smartsSulphate = smilesParser.parseSmiles(sulphateSMILES);
-
-        /*
-         * Rule 2
-         */
-        smartsL_Glutamate = smilesParser.parseSmiles(lGlutamate);
-        smartsL_Glutamine = smilesParser.parseSmiles(lGlutamine);
-
-        /*
-         * Rule 3
-         */
-        smartsTwoOxoglutarate = smilesParser.parseSmiles(twoOxoglutarate);
-        smartsD_Glutamate = smilesParser.parseSmiles(dGlutamate);
-
-        /*
-         * Rule 4 water tends to attack acetate when Phophate is not present
-         */
-        smartsAcetate = smilesParser.parseSmiles(acetate);
-
-        /*
-         * Rule 5 AT_ADP
-         */
-        smartsATP = smilesParser.parseSmiles(ATP);
-        smartsADP = smilesParser.parseSmiles(ADP);
-
-        /*
-         * Rule 6 CoA_Acetyl_CoA
-         */
-        smartsCoA = smilesParser.parseSmiles(CoA);
-        smartsAcetyl_CoA = smilesParser.parseSmiles(Acetyl_CoA);
-
-        /*
-         * Rule 7 C00003_C00006
-         */
-        smartsC00003 = smilesParser.parseSmiles(C00003);
-        smartsC00006 = smilesParser.parseSmiles(C00006);
-
-        /*
-         * Rule 8 C00004_C00005
-         */
-        smartsC00004 = smilesParser.parseSmiles(C00004);
-        smartsC00005 = smilesParser.parseSmiles(C00005);
-
-    }
-
-    /**
-     * @return the smartsWater
-     */
-    private IAtomContainer getSmartsWater() {
-        return smartsWater;
-    }
-
-    /**
-     * @return the smartsPhosphate
-     */
-    private IAtomContainer getSmartsPhosphate() {
-        return smartsPhosphate;
-    }
-
-    /**
-     * @return the smartsL_Glutamate
-     */
-    private IAtomContainer getSmartsL_Glutamate() {
-        return smartsL_Glutamate;
-    }
-
-    /**
-     * @return the smartsL_Glutamine
-     */
-    private IAtomContainer getSmartsL_Glutamine() {
-        return smartsL_Glutamine;
-    }
-
-    /**
-     * @return the smartsTwoOxoglutarate
-     */
-    private IAtomContainer getSmartsTwoOxoglutarate() {
-        return smartsTwoOxoglutarate;
-    }
-
-    /**
-     * @return the smartsD_Glutamate
-     */
-    private IAtomContainer getSmartsD_Glutamate() {
-        return smartsD_Glutamate;
-    }
-
-    /**
-     * @return the smartsAcetate
-     */
-    private IAtomContainer getSmartsAcetate() {
-        return smartsAcetate;
-    }
-
-    /**
-     * @return the smartsSulphate
-     */
-    private IAtomContainer getSmartsSulphate() {
-        return smartsSulphate;
-    }
-
     /**
      * @return the smartsATP
      */
     public IAtomContainer getSmartsATP() {
-        return smartsATP;
+        return query(ATP);
     }
 
     /**
      * @return the smartsADP
      */
     public IAtomContainer getSmartsADP() {
-        return smartsADP;
+        return query(ADP);
     }
 
     /**
      * @return the smartsCoA
      */
     public IAtomContainer getSmartsCoA() {
-        return smartsCoA;
+        return query(COA);
     }
 
     /**
      * @return the smartsAcetyl_CoA
      */
     public IAtomContainer getSmartsAcetyl_CoA() {
-        return smartsAcetyl_CoA;
+        return query(ACETYL_COA);
     }
 
     /**
      * @return the smartsC00003
      */
     public IAtomContainer getSmartsC00003() {
-        return smartsC00003;
+        return query(C00003);
     }
 
     /**
      * @return the smartsC00006
      */
     public IAtomContainer getSmartsC00006() {
-        return smartsC00006;
+        return query(C00006);
     }
 
     /**
      * @return the smartsC00004
      */
     public IAtomContainer getSmartsC00004() {
-        return smartsC00004;
+        return query(C00004);
     }
 
     /**
      * @return the smartsC00005
      */
     public IAtomContainer getSmartsC00005() {
-        return smartsC00005;
+        return query(C00005);
     }
 
+    /*
+     * Hydrogen free molecule of the reaction with its signature and the
+     * rules already matched against it
+     */
+    private static final class Molecule {
+
+        private final IAtomContainer container;
+        private final Signature signature;
+        private final Map<Rule, Boolean> matches;
+
+        Molecule(IAtomContainer ac) {
+            this.container = removeHydrogens(new AtomContainer(ac));
+            this.signature = new Signature(container);
+            this.matches = new IdentityHashMap<>();
+        }
+
+        IAtomContainer getContainer() {
+            return container;
+        }
+
+        int getAtomCount() {
+            return signature.getAtomCount();
+        }
+    }
 }
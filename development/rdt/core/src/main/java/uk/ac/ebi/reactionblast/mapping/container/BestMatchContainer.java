@@ -24,6 +24,7 @@ import java.io.Serializable;
 import static java.util.Collections.synchronizedMap;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import static java.util.logging.Level.SEVERE;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
@@ -63,6 +64,11 @@ public class BestMatchContainer extends BestMatch implements Serializable {
     private final Map<IKey, Double> bondBreakingEnergy;
     private final Map<IKey, Double> stereoScore;
     private final Map<IKey, Double> similarity;
+    /*
+     * one counter for all the containers, a revision is never reused
+     */
+    private static final AtomicLong REVISIONS = new AtomicLong();
+    private final Map<IKey, Long> revision;
 
     //~--- constructors -------------------------------------------------------
     /**
@@ -74,6 +80,7 @@ public class BestMatchContainer extends BestMatch implements Serializable {
         bondBreakingEnergy = synchronizedMap(new HashMap<IKey, Double>());
         stereoScore = synchronizedMap(new HashMap<IKey, Double>());
         similarity = synchronizedMap(new HashMap<IKey, Double>());
+        revision = synchronizedMap(new HashMap<IKey, Long>());
         // System.out.println("FingerPrint Map Created");
     }
 
@@ -94,6 +101,7 @@ public class BestMatchContainer extends BestMatch implements Serializable {
         bondBreakingEnergy.clear();
         stereoScore.clear();
         similarity.clear();
+        revision.clear();
     }
 
     /**
@@ -111,6 +119,7 @@ public class BestMatchContainer extends BestMatch implements Serializable {
         bondBreakingEnergy.remove(key);
         stereoScore.remove(key);
         similarity.remove(key);
+        revision.put(key, REVISIONS.incrementAndGet());
     }
 
     //~--- get methods --------------------------------------------------------
@@ -175,6 +184,7 @@ public class BestMatchContainer extends BestMatch implements Serializable {
     public synchronized void setBondEnergy(int indexI, int indexJ, double value) {
         IKey key = new Key(indexI, indexJ);
         bondBreakingEnergy.put(key, value);
+        revision.put(key, REVISIONS.incrementAndGet());
     }
 
     /**
@@ -188,6 +198,20 @@ public class BestMatchContainer extends BestMatch implements Serializable {
     public synchronized void setTotalFragmentCount(int indexI, int indexJ, Integer value) {
         IKey key = new Key(indexI, indexJ);
         fragmentCount.put(key, value);
+        revision.put(key, REVISIONS.incrementAndGet());
+    }
+
+    /**
+     * String IKey = substrateIndex + "_" + productIndex;
+     *
+     * @param indexI
+     * @param indexJ
+     * @return
+     */
+    @Override
+    public synchronized long getRevision(int indexI, int indexJ) {
+        IKey key = new Key(indexI, indexJ);
+        return revision.containsKey(key) ? revision.get(key) : 0L;
     }
 
     //~--- set methods --------------------------------------------------------
@@ -204,6 +228,7 @@ public class BestMatchContainer extends BestMatch implements Serializable {
             throws IOException {
         IKey key = new Key(indexI, indexJ);
         mcsAtomMap.put(key, matchingAtoms);
+        revision.put(key, REVISIONS.incrementAndGet());
     }
 
     /**
@@ -232,6 +257,7 @@ public class BestMatchContainer extends BestMatch implements Serializable {
     public synchronized void setStereoScore(int indexI, int indexJ, double stereoVal) {
         IKey key = new Key(indexI, indexJ);
         stereoScore.put(key, stereoVal);
+        revision.put(key, REVISIONS.incrementAndGet());
     }
 
     /**
@@ -258,6 +284,7 @@ public class BestMatchContainer extends BestMatch implements Serializable {
     public synchronized void setGraphSimilarity(int indexI, int indexJ, double _simVal) {
         IKey key = new Key(indexI, indexJ);
         similarity.put(key, _simVal);
+        revision.put(key, REVISIONS.incrementAndGet());
     }
 
     /**
@@ -47,7 +47,6 @@ import org.openscience.smsd.Substructure;
 import uk.ac.ebi.reactionblast.containers.MolContainer;
 import uk.ac.ebi.reactionblast.fingerprints.FingerprintGenerator;
 import uk.ac.ebi.reactionblast.fingerprints.interfaces.IFingerprintGenerator;
-import static uk.ac.ebi.reactionblast.fingerprints.tools.Similarity.getTanimotoSimilarity;
 import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
 import uk.ac.ebi.reactionblast.tools.AtomContainerSetComparator;
 import uk.ac.ebi.reactionblast.tools.BasicDebugger;
@@ -68,6 +67,7 @@ import static java.util.Arrays.sort;
 import static java.util.Collections.sort;
 import static java.util.logging.Logger.getLogger;
 import static org.openscience.cdk.geometry.GeometryTools.has2DCoordinates;
+import static uk.ac.ebi.reactionblast.tools.LayoutCheck.isLazyLayout;
 import static org.openscience.cdk.tools.manipulator.AtomContainerManipulator.getBondArray;
 import uk.ac.ebi.reactionblast.mapping.helper.MappingHandler;
 
@@ -84,6 +84,10 @@ public class CDKReactionBuilder extends BasicDebugger implements Serializable {
     private int moleculeCounter = 0; //Counter to create Unique Molecules
     private final Map<String, Double> stoichiometryMap;
     private final Map<String, BitSet> fingerprintMap;
+    /*
+     Molecule IDs by fingerprint, candidates for an identical molecule
+     */
+    private final Map<BitSet, List<String>> fingerprintIndex;
     private final Map<String, IAtomContainer> moleculeMap;
 
     /**
@@ -94,6 +98,7 @@ public class CDKReactionBuilder extends BasicDebugger implements Serializable {
         reactionSet = getInstance().newInstance(IReactionSet.class);
         stoichiometryMap = synchronizedMap(new HashMap<String, Double>());
         fingerprintMap = synchronizedMap(new HashMap<String, BitSet>());
+        fingerprintIndex = synchronizedMap(new HashMap<BitSet, List<String>>());
         moleculeMap = synchronizedMap(new HashMap<String, IAtomContainer>());
     }
 
@@ -314,6 +319,7 @@ public class CDKReactionBuilder extends BasicDebugger implements Serializable {
             standardizedReaction.setDirection(BIDIRECTIONAL);
         }
         fingerprintMap.clear();
+        fingerprintIndex.clear();
         moleculeMap.clear();
         stoichiometryMap.clear();
 
@@ -351,20 +357,10 @@ public class CDKReactionBuilder extends BasicDebugger implements Serializable {
                     }
                     //Loop for Unique Mol ID Creation
                     if (!fingerprint_Present_Mol.isEmpty()) {
-                        if (!isValuePresent(fingerprint_Present_Mol)) {
-                            if (molID == null) {
-                                moleculeCounter += 1;
-                                int val = moleculeCounter + 100000;
-                                String Temp = Integer.toString(val);
-                                molID = Temp.replaceFirst("1", "M");
-                                molecule.setID(molID);
-                            }
-                            fingerprintMap.put(molID, fingerprint_Present_Mol);
-                            moleculeMap.put(molID, molecule);
-                        } else if (isValuePresent(fingerprint_Present_Mol)
-                                && isAtomContainerPresent(getMoleculeID(fingerprint_Present_Mol), molecule)) {
+                        String presentMolID = getMoleculeID(fingerprint_Present_Mol, molecule);
+                        if (presentMolID != null) {
                             if (molID == null) {
-                                molID = getMoleculeID(fingerprint_Present_Mol);
+                                molID = presentMolID;
                                 molecule.setID(molID);
                             }
                         } else {
@@ -375,8 +371,7 @@ public class CDKReactionBuilder extends BasicDebugger implements Serializable {
                                 molID = Temp.replaceFirst("1", "M");
                                 molecule.setID(molID);
                             }
-                            fingerprintMap.put(molID, fingerprint_Present_Mol);
-                            moleculeMap.put(molID, molecule);
+                            addMolecule(molID, fingerprint_Present_Mol, molecule);
                         }
                     } else {
                         err.println("error: Fingerprint can't be generated for this molecule " + SmilesGenerator.generic().create(molecule));
@@ -452,32 +447,40 @@ public class CDKReactionBuilder extends BasicDebugger implements Serializable {
 
     /**
      *
-     * @param value
-     * @throws java.io.IOException
-     * @return
+     * @param molID
+     * @param fingerprint
+     * @param molecule
      */
-    private boolean isValuePresent(BitSet value) throws IOException, Exception {
-        for (BitSet bitset : fingerprintMap.values()) {
-            if (getTanimotoSimilarity(value, bitset) == 1.0) {
-                return true;
+    private void addMolecule(String molID, BitSet fingerprint, IAtomContainer molecule) {
+        BitSet previous = fingerprintMap.put(molID, fingerprint);
+        if (previous != null) {
+            List<String> ids = fingerprintIndex.get(previous);
+            if (ids != null) {
+                ids.remove(molID);
             }
         }
-        return false;
+        fingerprintIndex.computeIfAbsent(fingerprint, k -> new ArrayList<>()).add(molID);
+        moleculeMap.put(molID, molecule);
     }
 
     /**
+     * Look up the molecules with the same fingerprint (an exact match, as
+     * the Tanimoto score 1.0 used before) and check them for identity.
      *
      * @param bitset
-     * @return
-     * @throws java.io.IOException
+     * @param molecule
+     * @return ID of the identical molecule already seen, null if none
+     * @throws Exception
      */
-    private String getMoleculeID(BitSet bitset) throws IOException, Exception {
-        for (Map.Entry<String, BitSet> map : fingerprintMap.entrySet()) {
-            if (getTanimotoSimilarity(map.getValue(), bitset) == 1.0) {
-                return map.getKey();
+    private String getMoleculeID(BitSet bitset, IAtomContainer molecule) throws Exception {
+        List<String> ids = fingerprintIndex.get(bitset);
+        if (ids != null) {
+            for (String id : ids) {
+                if (isAtomContainerPresent(id, molecule)) {
+                    return id;
+                }
             }
         }
-        //System.err.println("Error: Unable to Find AtomContainer ID!!!");
         return null;
     }
 
@@ -804,7 +807,7 @@ public class CDKReactionBuilder extends BasicDebugger implements Serializable {
         /*
         Generate 2D Diagram without cloning
          */
-        if (!has2DCoordinates(cloneMolecule)) {
+        if (!isLazyLayout() && !has2DCoordinates(cloneMolecule)) {
             try {
                 /*
                 Clone it else it will loose mol ID
@@ -0,0 +1,558 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mapping.container;
+
+import static java.lang.System.identityHashCode;
+import static java.util.Arrays.binarySearch;
+import static java.util.Arrays.fill;
+import static java.util.Arrays.sort;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.openscience.cdk.CDKConstants.ISAROMATIC;
+import static org.openscience.cdk.CDKConstants.UNSET;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+/**
+ * Immutable snapshot of a molecule in arrays: element and atom type codes,
+ * atomic numbers, adjacency (CSR), bond orders, aromaticity, ring bonds and
+ * the element histogram. The prefilters and scores of the mapping read it
+ * instead of walking the {@link IAtomContainer}.
+ *
+ * {@link #of(IAtomContainer)} compiles the container as it is. A snapshot
+ * records the revision of its container (see {@link #isSnapshotOf}), so a
+ * caller reading a molecule more than once, such as the MCS cache of a
+ * reaction, keeps it until the molecule is modified. Snapshots are immutable
+ * and may be shared between threads; the bridges are only searched when a
+ * ring or fragment query is made. A snapshot holds no atom or bond of its
+ * container, atoms and bonds are read from the container by index.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public final class CompiledMolecule {
+
+    private static final Logger LOG = getLogger(CompiledMolecule.class.getName());
+    /*
+     * codes of the element symbols and atom type names, 0 is null
+     */
+    private static final Map<String, Integer> CODES = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_CODE = new AtomicInteger(1);
+
+    /**
+     *
+     * @param container
+     * @return snapshot of the current state of the container
+     */
+    public static CompiledMolecule of(IAtomContainer container) {
+        return new CompiledMolecule(container);
+    }
+
+    /**
+     *
+     * @param key element symbol or atom type name
+     * @return code of the key, shared by all the snapshots
+     */
+    public static int code(String key) {
+        if (key == null) {
+            return 0;
+        }
+        Integer code = CODES.get(key);
+        if (code == null) {
+            code = CODES.computeIfAbsent(key, k -> NEXT_CODE.getAndIncrement());
+        }
+        return code;
+    }
+
+    /**
+     * Revision of a container: which atoms and bonds, in which order, and
+     * every atom and bond field a snapshot reads (symbol, atom type key,
+     * atomic number, bond atoms, bond order and aromaticity). The mapping
+     * modifies a molecule by removing matched atoms and bonds, which changes
+     * it, as does retyping or aromatizing it again.
+     *
+     * @param container
+     * @return revision stamp of the container
+     */
+    public static long revision(IAtomContainer container) {
+        long stamp = 31L * container.getAtomCount() + container.getBondCount();
+        for (int i = 0; i < container.getAtomCount(); i++) {
+            IAtom atom = container.getAtom(i);
+            stamp = 31L * stamp + identityHashCode(atom);
+            stamp = 31L * stamp + Objects.hashCode(atom.getSymbol());
+            stamp = 31L * stamp + Objects.hashCode(typeKey(atom));
+            stamp = 31L * stamp + Objects.hashCode(atom.getAtomicNumber());
+            stamp = 31L * stamp + (atom.getFlag(ISAROMATIC) ? 1 : 0);
+        }
+        for (int k = 0; k < container.getBondCount(); k++) {
+            IBond bond = container.getBond(k);
+            stamp = 31L * stamp + identityHashCode(bond);
+            stamp = 31L * stamp + identityHashCode(bond.getAtom(0));
+            stamp = 31L * stamp + identityHashCode(bond.getAtom(1));
+            stamp = 31L * stamp + (bond.getOrder() == null ? 0 : bond.getOrder().ordinal() + 1);
+            stamp = 31L * stamp + (bond.getFlag(ISAROMATIC) ? 1 : 0);
+        }
+        return stamp;
+    }
+
+    /*
+     * atom type key of the MCS size estimate
+     */
+    private static String typeKey(IAtom atom) {
+        return atom.getHybridization() == UNSET ? atom.getSymbol() : atom.getAtomTypeName();
+    }
+
+    private final int[] elements;
+    private final int[] types;
+    private final int[] atomicNumbers;
+    private final boolean[] aromaticAtoms;
+    private final int[] start;
+    private final int[] neighbours;
+    private final int[] neighbourBonds;
+    private final int[] bondFrom;
+    private final int[] bondTo;
+    private final int[] bondOrders;
+    private final boolean[] aromaticBonds;
+    private final long revision;
+    /*
+     * searched on the first ring or fragment query
+     */
+    private volatile Bridges bridges;
+    /*
+     * element histogram, sorted by code
+     */
+    private final int[] histogramCodes;
+    private final int[] histogramCounts;
+    private final int[] typeCodes;
+    private final int[] typeCounts;
+
+    private CompiledMolecule(IAtomContainer container) {
+        this.revision = revision(container);
+        int n = container.getAtomCount();
+        int m = container.getBondCount();
+        this.elements = new int[n];
+        this.types = new int[n];
+        this.atomicNumbers = new int[n];
+        this.aromaticAtoms = new boolean[n];
+        Map<IAtom, Integer> atomIndex = new IdentityHashMap<>(2 * n);
+        for (int i = 0; i < n; i++) {
+            IAtom atom = container.getAtom(i);
+            atomIndex.put(atom, i);
+            elements[i] = code(atom.getSymbol());
+            types[i] = code(typeKey(atom));
+            atomicNumbers[i] = atom.getAtomicNumber() == null ? 0 : atom.getAtomicNumber();
+            aromaticAtoms[i] = atom.getFlag(ISAROMATIC);
+        }
+
+        this.bondFrom = new int[m];
+        this.bondTo = new int[m];
+        this.bondOrders = new int[m];
+        this.aromaticBonds = new boolean[m];
+        this.start = new int[n + 1];
+        for (int k = 0; k < m; k++) {
+            IBond bond = container.getBond(k);
+            IBond.Order order = bond.getOrder();
+            bondOrders[k] = order == null || order == IBond.Order.UNSET ? 0 : order.numeric();
+            aromaticBonds[k] = bond.getFlag(ISAROMATIC);
+            Integer u = atomIndex.get(bond.getAtom(0));
+            Integer v = atomIndex.get(bond.getAtom(1));
+            if (u == null || v == null || u.equals(v)) {
+                bondFrom[k] = bondTo[k] = -1;
+                continue;
+            }
+            bondFrom[k] = u;
+            bondTo[k] = v;
+            start[u + 1]++;
+            start[v + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            start[i + 1] += start[i];
+        }
+        this.neighbours = new int[start[n]];
+        this.neighbourBonds = new int[start[n]];
+        int[] fill = new int[n];
+        for (int k = 0; k < m; k++) {
+            int u = bondFrom[k];
+            int v = bondTo[k];
+            if (u < 0) {
+                continue;
+            }
+            neighbours[start[u] + fill[u]] = v;
+            neighbourBonds[start[u] + fill[u]++] = k;
+            neighbours[start[v] + fill[v]] = u;
+            neighbourBonds[start[v] + fill[v]++] = k;
+        }
+
+        int[][] h = histogram(elements);
+        this.histogramCodes = h[0];
+        this.histogramCounts = h[1];
+        h = histogram(types);
+        this.typeCodes = h[0];
+        this.typeCounts = h[1];
+    }
+
+    /*
+     * Tarjan's bridges by an iterative depth first search
+     */
+    private Bridges getBridges() {
+        Bridges b = bridges;
+        if (b == null) {
+            b = new Bridges();
+            bridges = b;
+        }
+        return b;
+    }
+
+    /*
+     * depth first search: atom below each bridge (-1 if not a bridge),
+     * subtree sizes, component roots and the size of the smallest component
+     */
+    private final class Bridges {
+
+        private final int[] bridgeChild;
+        private final int[] subtree;
+        private final int[] rootOf;
+        private final int smallestComponent;
+
+        Bridges() {
+            this.bridgeChild = new int[bondOrders.length];
+            this.subtree = new int[elements.length];
+            this.rootOf = new int[elements.length];
+            this.smallestComponent = search();
+        }
+
+        private int search() {
+            int n = elements.length;
+            int[] order = new int[n];
+            int[] low = new int[n];
+            int[] parentBond = new int[n];
+            int[] next = new int[n];
+            int[] stack = new int[n];
+            fill(bridgeChild, -1);
+            int counter = 0;
+            int smallest = n;
+            for (int root = 0; root < n; root++) {
+                if (order[root] != 0) {
+                    continue;
+                }
+                int top = 0;
+                stack[top++] = root;
+                order[root] = low[root] = ++counter;
+                parentBond[root] = -1;
+                next[root] = start[root];
+                subtree[root] = 1;
+                rootOf[root] = root;
+                while (top > 0) {
+                    int u = stack[top - 1];
+                    if (next[u] < start[u + 1]) {
+                        int p = next[u]++;
+                        int v = neighbours[p];
+                        if (neighbourBonds[p] == parentBond[u]) {
+                            continue;
+                        }
+                        if (order[v] == 0) {
+                            order[v] = low[v] = ++counter;
+                            parentBond[v] = neighbourBonds[p];
+                            next[v] = start[v];
+                            subtree[v] = 1;
+                            rootOf[v] = root;
+                            stack[top++] = v;
+                        } else if (order[v] < low[u]) {
+                            low[u] = order[v];
+                        }
+                    } else {
+                        top--;
+                        if (top > 0) {
+                            int parent = stack[top - 1];
+                            subtree[parent] += subtree[u];
+                            if (low[u] < low[parent]) {
+                                low[parent] = low[u];
+                            }
+                            if (low[u] > order[parent]) {
+                                bridgeChild[parentBond[u]] = u;
+                            }
+                        }
+                    }
+                }
+                if (subtree[root] < smallest) {
+                    smallest = subtree[root];
+                }
+            }
+            return smallest;
+        }
+    }
+
+    private static int[][] histogram(int[] codes) {
+        int[] sorted = codes.clone();
+        sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                distinct++;
+            }
+        }
+        int[] keys = new int[distinct];
+        int[] counts = new int[distinct];
+        int j = -1;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                keys[++j] = sorted[i];
+            }
+            counts[j]++;
+        }
+        return new int[][]{keys, counts};
+    }
+
+    /**
+     *
+     * @param container
+     * @return true if the container has not been modified since this
+     * snapshot was compiled from it
+     */
+    public boolean isSnapshotOf(IAtomContainer container) {
+        return revision == revision(container);
+    }
+
+    /**
+     *
+     * @return number of atoms
+     */
+    public int getAtomCount() {
+        return elements.length;
+    }
+
+    /**
+     *
+     * @return number of bonds
+     */
+    public int getBondCount() {
+        return bondOrders.length;
+    }
+
+    /**
+     *
+     * @param i
+     * @return code of the element symbol
+     */
+    public int getElement(int i) {
+        return elements[i];
+    }
+
+    /**
+     *
+     * @param i
+     * @return atomic number, 0 if not set
+     */
+    public int getAtomicNumber(int i) {
+        return atomicNumbers[i];
+    }
+
+    /**
+     *
+     * @param i
+     * @return true if the atom is aromatic
+     */
+    public boolean isAromatic(int i) {
+        return aromaticAtoms[i];
+    }
+
+    /**
+     *
+     * @param i
+     * @return number of neighbours
+     */
+    public int getDegree(int i) {
+        return start[i + 1] - start[i];
+    }
+
+    /**
+     *
+     * @param i
+     * @param j 0 to degree - 1
+     * @return index of the j-th neighbour of atom i
+     */
+    public int getNeighbour(int i, int j) {
+        return neighbours[start[i] + j];
+    }
+
+    /**
+     *
+     * @param i
+     * @param j 0 to degree - 1
+     * @return index of the bond to the j-th neighbour of atom i
+     */
+    public int getNeighbourBond(int i, int j) {
+        return neighbourBonds[start[i] + j];
+    }
+
+    /**
+     *
+     * @param k
+     * @return index of the first atom of the bond, -1 if the bond is not
+     * between two atoms of the molecule
+     */
+    public int getBondFrom(int k) {
+        return bondFrom[k];
+    }
+
+    /**
+     *
+     * @param k
+     * @return index of the second atom of the bond
+     */
+    public int getBondTo(int k) {
+        return bondTo[k];
+    }
+
+    /**
+     *
+     * @param k
+     * @return numeric bond order, 0 if not set
+     */
+    public int getBondOrder(int k) {
+        return bondOrders[k];
+    }
+
+    /**
+     *
+     * @param k
+     * @return true if the bond is aromatic
+     */
+    public boolean isAromaticBond(int k) {
+        return aromaticBonds[k];
+    }
+
+    /**
+     *
+     * @param k
+     * @return true if the bond is in a ring (not a bridge)
+     */
+    public boolean isRingBond(int k) {
+        return bondFrom[k] >= 0 && getBridges().bridgeChild[k] < 0;
+    }
+
+    /**
+     *
+     * @param i
+     * @return true if the atom is in a ring
+     */
+    public boolean isRingAtom(int i) {
+        Bridges b = getBridges();
+        for (int p = start[i]; p < start[i + 1]; p++) {
+            if (b.bridgeChild[neighbourBonds[p]] < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Atom count of the smallest molecule left when a bond is removed
+     *
+     * @param k
+     * @return smallest fragment size
+     */
+    public int getSmallestFragmentSize(int k) {
+        Bridges b = getBridges();
+        int size = b.smallestComponent;
+        int child = b.bridgeChild[k];
+        if (child >= 0) {
+            int below = b.subtree[child];
+            int above = b.subtree[b.rootOf[child]] - below;
+            size = Math.min(size, Math.min(below, above));
+        }
+        return size;
+    }
+
+    /**
+     *
+     * @param element code of an element symbol
+     * @return number of atoms of the element
+     */
+    public int getElementCount(int element) {
+        int i = binarySearch(histogramCodes, element);
+        return i < 0 ? 0 : histogramCounts[i];
+    }
+
+    /**
+     *
+     * @param other
+     * @return true if the other molecule has at least as many atoms of each
+     * element as this one
+     */
+    public boolean isElementSubsetOf(CompiledMolecule other) {
+        int j = 0;
+        for (int i = 0; i < histogramCodes.length; i++) {
+            while (j < other.histogramCodes.length && other.histogramCodes[j] < histogramCodes[i]) {
+                j++;
+            }
+            if (j == other.histogramCodes.length || other.histogramCodes[j] != histogramCodes[i]
+                    || other.histogramCounts[j] < histogramCounts[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *
+     * @param other
+     * @return number of atoms of this molecule whose atom type (element if
+     * no hybridization is set) is found in the other
+     */
+    public int countAtomTypesIn(CompiledMolecule other) {
+        int common = 0;
+        int j = 0;
+        for (int i = 0; i < typeCodes.length; i++) {
+            while (j < other.typeCodes.length && other.typeCodes[j] < typeCodes[i]) {
+                j++;
+            }
+            if (j < other.typeCodes.length && other.typeCodes[j] == typeCodes[i]) {
+                common += typeCounts[i];
+            }
+        }
+        return common;
+    }
+
+    /**
+     *
+     * @param other
+     * @return number of atoms of the same element that can be paired between
+     * the two molecules
+     */
+    public int countCommonElements(CompiledMolecule other) {
+        int common = 0;
+        int j = 0;
+        for (int i = 0; i < histogramCodes.length; i++) {
+            while (j < other.histogramCodes.length && other.histogramCodes[j] < histogramCodes[i]) {
+                j++;
+            }
+            if (j < other.histogramCodes.length && other.histogramCodes[j] == histogramCodes[i]) {
+                common += Math.min(histogramCounts[i], other.histogramCounts[j]);
+            }
+        }
+        return common;
+    }
+}
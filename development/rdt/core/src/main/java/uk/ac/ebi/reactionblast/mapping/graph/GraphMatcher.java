@@ -19,20 +19,22 @@
 package uk.ac.ebi.reactionblast.mapping.graph;
 
 import java.io.IOException;
-import static java.lang.Runtime.getRuntime;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.lang.System.gc;
+import static java.lang.System.nanoTime;
 import static java.lang.System.out;
 import java.util.ArrayList;
 import java.util.Collection;
-import static java.util.Collections.unmodifiableCollection;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
 import static java.util.logging.Level.SEVERE;
 import static java.util.logging.Level.WARNING;
 import java.util.logging.Logger;
@@ -48,13 +50,21 @@ import static org.openscience.cdk.tools.LoggingToolFactory.createLoggingTool;
 import org.openscience.smsd.AtomAtomMapping;
 import org.openscience.smsd.Substructure;
 import uk.ac.ebi.reactionblast.mapping.algorithm.Holder;
+import uk.ac.ebi.reactionblast.mapping.container.CompiledMolecule;
 import uk.ac.ebi.reactionblast.mapping.container.ReactionContainer;
+import uk.ac.ebi.reactionblast.mapping.helper.AtomIndex;
 import uk.ac.ebi.reactionblast.mapping.helper.Debugger;
+import uk.ac.ebi.reactionblast.mapping.interfaces.BestMatch;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MCS_DEFERRED;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MCS_PREFILTERED;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Stage.MCS;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingThreadPool.getParallelism;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingThreadPool.submit;
+import static java.util.Collections.emptySet;
 import static java.util.Collections.synchronizedCollection;
-import static java.util.concurrent.Executors.newCachedThreadPool;
-import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static java.util.logging.Logger.getLogger;
 import static org.openscience.cdk.graph.Cycles.all;
+import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.RINGS;
 
 /**
  * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
@@ -68,23 +78,71 @@ public class GraphMatcher extends Debugger {
     private static final Logger LOG = getLogger(GraphMatcher.class.getName());
 
     /**
+     * Not synchronized: the holder, its reaction container and MCS solutions
+     * belong to one model and the {@link MCSCache} of the reaction is thread
+     * safe, so the models of a reaction and the reactions of a batch run their
+     * MCS rounds concurrently on the shared pool.
      *
      * @param mh
-     * @return
+     * @return the MCS solutions of the holder, updated for the pairs of the
+     * modified molecules
      * @throws InterruptedException
      */
-    public synchronized static Collection<MCSSolution> matcher(Holder mh) throws InterruptedException {
-        ExecutorService executor = null;
-        Collection<MCSSolution> mcsSolutions = synchronizedCollection(new ArrayList<MCSSolution>());
+    public static MCSSolutionStore matcher(Holder mh) throws InterruptedException {
+        return matcher(mh, emptySet(), null);
+    }
+
+    /**
+     * Matches the pairs of the modified molecules and the pending cells. If
+     * deferredCells is given, a job is deferred when the graph similarity
+     * bound of its MCS size, U / (A + B - U) for the element bound U, is below
+     * the best graph similarity of the cells kept from the last round in its
+     * row or column. The job gets no solution and is added to deferredCells,
+     * the caller scores it 0 and passes it back as pending in the next round.
+     * Pending cells are never deferred again.
+     *
+     * @param mh
+     * @param pendingCells cells of unmodified molecules deferred in the last
+     * round, matched in this one
+     * @param deferredCells receives the deferred cells, null to match every
+     * job
+     * @return the MCS solutions of the holder, updated for the pairs of the
+     * modified molecules and the pending cells, but the deferred cells
+     * @throws InterruptedException
+     */
+    public static MCSSolutionStore matcher(Holder mh, Set<Combination> pendingCells,
+            Set<Combination> deferredCells) throws InterruptedException {
+        long start = nanoTime();
+        try {
+            return match(mh, pendingCells, deferredCells);
+        } finally {
+            if (mh.getMCSCache() != null) {
+                mh.getMCSCache().getMetrics().addWallTime(MCS, nanoTime() - start);
+            }
+        }
+    }
+
+    private static MCSSolutionStore match(Holder mh, Set<Combination> pendingCells,
+            Set<Combination> deferredCells) throws InterruptedException {
+        MCSSolutionStore mcsSolutions = mh.getMCSSolutions();
 
 //        System.out.println(threadsAvailable + " threads to be used for graph matching for " + mh.getTheory());
         Set<Combination> jobReplicatorList = new TreeSet<>();
-        int taskCounter = 0;
 
         try {
             ReactionContainer reactionStructureInformation = mh.getReactionContainer();
             Integer eductCount = reactionStructureInformation.getEductCount();
             Integer productCount = reactionStructureInformation.getProductCount();
+            for (int substrateIndex = 0; substrateIndex < eductCount; substrateIndex++) {
+                if (reactionStructureInformation.isEductModified(substrateIndex)) {
+                    mcsSolutions.invalidateQuery(substrateIndex);
+                }
+            }
+            for (int productIndex = 0; productIndex < productCount; productIndex++) {
+                if (reactionStructureInformation.isProductModified(productIndex)) {
+                    mcsSolutions.invalidateTarget(productIndex);
+                }
+            }
             for (int substrateIndex = 0; substrateIndex < eductCount; substrateIndex++) {
                 for (int productIndex = 0; productIndex < productCount; productIndex++) {
                     IAtomContainer educt = reactionStructureInformation.getEduct(substrateIndex);
@@ -93,10 +151,10 @@ public class GraphMatcher extends Debugger {
                             && (reactionStructureInformation.getEduct(substrateIndex).getAtomCount() > 0
                             && reactionStructureInformation.getProduct(productIndex).getAtomCount() > 0)
                             || mh.getGraphSimilarityMatrix().getValue(substrateIndex, productIndex) == -1) {
+                        Combination c = new Combination(substrateIndex, productIndex);
                         if (reactionStructureInformation.isEductModified(substrateIndex)
-                                || reactionStructureInformation.isProductModified(productIndex)) {
-
-                            Combination c = new Combination(substrateIndex, productIndex);
+                                || reactionStructureInformation.isProductModified(productIndex)
+                                || pendingCells.contains(c)) {
                             jobReplicatorList.add(c);
                         }
                     }
@@ -104,7 +162,7 @@ public class GraphMatcher extends Debugger {
             }
 
             if (jobReplicatorList.isEmpty()) {
-                return unmodifiableCollection(mcsSolutions);
+                return mcsSolutions;
             }
             Map<Combination, Set<Combination>> jobMap = new TreeMap<>();
 
@@ -137,26 +195,23 @@ public class GraphMatcher extends Debugger {
             }
 
             /*
-             Assign the threads
+             MCS jobs run on the shared mapping pool
              */
-            int threadsAvailable = getRuntime().availableProcessors() - 1;
-            if (threadsAvailable == 0) {
-                threadsAvailable = 1;
-            }
-
-            if (threadsAvailable > jobMap.size()) {
-                threadsAvailable = jobMap.size();
-            }
             if (DEBUG) {
-                out.println(threadsAvailable + " threads requested for MCS in " + mh.getTheory());
+                out.println(getParallelism() + " threads available for MCS in " + mh.getTheory());
             }
-
-            if (DEBUG) {
-                executor = newSingleThreadExecutor();
-            } else {
-                executor = newCachedThreadPool();
+            List<ForkJoinTask<MCSSolution>> jobs = new ArrayList<>();
+            Collection<MCSSolution> threadedUniqueMCSSolutions = synchronizedCollection(new ArrayList<MCSSolution>());
+            MCSCache mcsCache = mh.getMCSCache();
+            Map<Combination, String> cacheKeys = new TreeMap<>();
+            Map<IAtomContainer, CompiledMolecule> compiled = new IdentityHashMap<>();
+            Function<IAtomContainer, CompiledMolecule> compiler = mcsCache == null
+                    ? CompiledMolecule::of : mcsCache::getCompiled;
+            double[] rowBest = new double[eductCount];
+            double[] columnBest = new double[productCount];
+            if (deferredCells != null) {
+                setKeptCellScores(mh, jobReplicatorList, rowBest, columnBest);
             }
-            CompletionService<MCSSolution> callablesQueue = new ExecutorCompletionService<>(executor);
 
             for (Combination c : jobMap.keySet()) {
                 int substrateIndex = c.getRowIndex();
@@ -164,6 +219,46 @@ public class GraphMatcher extends Debugger {
                 IAtomContainer educt = reactionStructureInformation.getEduct(substrateIndex);
                 IAtomContainer product = reactionStructureInformation.getProduct(productIndex);
 
+                /*
+                 * The MCS can not be larger than the atoms of the same element
+                 * found on both sides, with none in common the solution is
+                 * empty and no MCS job is needed
+                 */
+                CompiledMolecule compiledEduct = compiled.computeIfAbsent(educt, compiler);
+                CompiledMolecule compiledProduct = compiled.computeIfAbsent(product, compiler);
+                int bound = getMCSUpperBound(compiledEduct, compiledProduct);
+                if (bound == 0) {
+                    threadedUniqueMCSSolutions.add(new MCSSolution(substrateIndex, productIndex,
+                            educt, product, new AtomAtomMapping(educt, product)));
+                    if (mcsCache != null) {
+                        mcsCache.getMetrics().count(MCS_PREFILTERED);
+                    }
+                    continue;
+                }
+
+                /*
+                 * A kept cell of the row or column scores better than this
+                 * pair can, it is likely to win the next round and modify the
+                 * molecule this MCS is computed for. Deferring is safe:
+                 * ChooseWinner only picks the cells with the global maximum
+                 * similarity, which is at least the kept cell's score and so
+                 * above the bound of this cell; the cell can neither win nor
+                 * stop a winner. With the bound below the size of the smaller
+                 * molecule it can not be the substructure match the
+                 * isomorphism checks look for either. Until it is matched in
+                 * the next update the cell is scored 0, as a matched cell is.
+                 */
+                if (deferredCells != null && !pendingCells.contains(c)
+                        && bound < min(educt.getAtomCount(), product.getAtomCount())
+                        && getGraphSimilarity(bound, educt.getAtomCount(), product.getAtomCount())
+                        < max(rowBest[substrateIndex], columnBest[productIndex])) {
+                    deferredCells.add(c);
+                    if (mcsCache != null) {
+                        mcsCache.getMetrics().count(MCS_DEFERRED);
+                    }
+                    continue;
+                }
+
                 /*
                  Ring matcher is set true if both sides have rings else it set to false (IMP for MCS)
                  */
@@ -241,15 +336,39 @@ public class GraphMatcher extends Debugger {
                         break;
                 }
                 if (mcsThread != null) {
-                    callablesQueue.submit(mcsThread);
-                    taskCounter++;
+                    mcsThread.setCompiled(compiledEduct, compiledProduct);
+                    if (mcsCache != null) {
+                        mcsThread.setTimeBudget(mcsCache.getPairTimeout(), mcsCache.getDeadline());
+                        mcsThread.setMetrics(mcsCache.getMetrics());
+                    }
+                    /*
+                     Reuse the solution if another model has matched this pair
+                     */
+                    if (mcsCache != null) {
+                        String key = MCSCache.getKey(educt, product,
+                                mcsThread.bondMatcher, mcsThread.ringMatcher, mcsThread.atomMatcher,
+                                !mh.getTheory().equals(RINGS), ringSizeEqual,
+                                eductCount == 1 && productCount == 1);
+                        MCSSolution cached = mcsCache.get(key, substrateIndex, productIndex);
+                        if (cached != null) {
+                            threadedUniqueMCSSolutions.add(cached);
+                            continue;
+                        }
+                        cacheKeys.put(c, key);
+                    }
+                    jobs.add(submit(mcsThread));
                 }
             }
 
-            Collection<MCSSolution> threadedUniqueMCSSolutions = synchronizedCollection(new ArrayList<MCSSolution>());
-            for (int count = 0; count < taskCounter; count++) {
-                MCSSolution isomorphism = callablesQueue.take().get();
+            for (ForkJoinTask<MCSSolution> job : jobs) {
+                MCSSolution isomorphism = job.get();
                 threadedUniqueMCSSolutions.add(isomorphism);
+                if (mcsCache != null && isomorphism != null) {
+                    String key = cacheKeys.get(new Combination(isomorphism.getQueryPosition(), isomorphism.getTargetPosition()));
+                    if (key != null) {
+                        mcsCache.put(key, isomorphism);
+                    }
+                }
             }
 
 //                List<Future<MCSSolution>> invokeAll = executor.invokeAll(callablesQueue);
@@ -260,13 +379,6 @@ public class GraphMatcher extends Debugger {
 //                        mcsSolutions.add(isomorphism);
 //                    }
 //                }
-            // This will make the executor accept no new threads
-            // and finish all existing threads in the queue
-            executor.shutdown();
-            // Wait until all threads are finish
-            while (!executor.isTerminated()) {
-            }
-
             if (DEBUG) {
                 out.println("Gathering MCS solution from the Thread");
             }
@@ -280,16 +392,9 @@ public class GraphMatcher extends Debugger {
                     out.println("MCS " + "i " + queryPosition + " J " + targetPosition + " size " + mcs.getAtomAtomMapping().getCount());
                 }
 
-                Combination removeKey = null;
-                for (Combination c : jobMap.keySet()) {
-                    if (c.getRowIndex() == queryPosition && c.getColIndex() == targetPosition) {
-                        removeKey = c;
-                        MCSSolution replicatedMCS = replicateMappingOnContainers(mh, c, mcs);
-                        mcsSolutions.add(replicatedMCS);
-                    }
-                }
-                if (removeKey != null) {
-                    jobMap.remove(removeKey);
+                Combination key = new Combination(queryPosition, targetPosition);
+                if (jobMap.remove(key) != null) {
+                    mcsSolutions.put(replicateMappingOnContainers(mh, key, mcs));
                 }
             }
             jobReplicatorList.clear();
@@ -297,12 +402,8 @@ public class GraphMatcher extends Debugger {
 
         } catch (IOException | CDKException | ExecutionException | InterruptedException | CloneNotSupportedException ex) {
             logger.error(SEVERE, null, ex);
-        } finally {
-            if (executor != null) {
-                executor.shutdown();
-            }
         }
-        return unmodifiableCollection(mcsSolutions);
+        return mcsSolutions;
     }
 
     /**
@@ -335,10 +436,11 @@ public class GraphMatcher extends Debugger {
 
             AtomAtomMapping atomAtomMapping = mcs.getAtomAtomMapping();
             AtomAtomMapping atomAtomMappingNew = new AtomAtomMapping(q, t);
-            for (IAtom a : atomAtomMapping.getMappingsByAtoms().keySet()) {
-                IAtom atomByID1 = getAtomByID(q, a);
-                IAtom b = atomAtomMapping.getMappingsByAtoms().get(a);
-                IAtom atomByID2 = getAtomByID(t, b);
+            AtomIndex queryIndex = new AtomIndex(q);
+            AtomIndex targetIndex = new AtomIndex(t);
+            for (Map.Entry<IAtom, IAtom> m : atomAtomMapping.getMappingsByAtoms().entrySet()) {
+                IAtom atomByID1 = queryIndex.getAtomByID(m.getKey().getID());
+                IAtom atomByID2 = targetIndex.getAtomByID(m.getValue().getID());
                 if (DEBUG) {
                     out.println("atomByID1 " + atomByID1.getID() + " atomByID2 " + atomByID2.getID());
                 }
@@ -348,23 +450,65 @@ public class GraphMatcher extends Debugger {
                     logger.error(WARNING, "UnExpected NULL ATOM FOUND");
                 }
             }
-            return new MCSSolution(solution.getRowIndex(), solution.getColIndex(), q, t, atomAtomMappingNew);
+            MCSSolution replicatedMCS = new MCSSolution(solution.getRowIndex(), solution.getColIndex(), q, t, atomAtomMappingNew);
+            replicatedMCS.setApproximate(mcs.isApproximate());
+            return replicatedMCS;
         } catch (IOException | CDKException ex) {
             getLogger(GraphMatcher.class.getName()).log(SEVERE, null, ex);
         }
         return null;
     }
 
-    private static IAtom getAtomByID(IAtomContainer ac, IAtom atom) {
-        if (atom.getID() == null) {
-            return null;
+    /**
+     *
+     * @param educt
+     * @param product
+     * @return upper bound of the MCS size, the number of atoms that can be
+     * paired by element
+     */
+    static int getMCSUpperBound(CompiledMolecule educt, CompiledMolecule product) {
+        return educt.countCommonElements(product);
+    }
+
+    /**
+     *
+     * @param mappingSize MCS size
+     * @param eductCount atoms of the educt
+     * @param productCount atoms of the product
+     * @return graph similarity of the MCS, it grows with the MCS size and the
+     * upper bound of the MCS size gives its upper bound
+     */
+    static double getGraphSimilarity(int mappingSize, int eductCount, int productCount) {
+        return mappingSize / (double) (eductCount + productCount - mappingSize);
+    }
+
+    /*
+     * Best graph similarity per row and column of the cells which are not
+     * matched in this round, scored from their best match
+     */
+    private static void setKeptCellScores(Holder mh, Set<Combination> jobs,
+            double[] rowBest, double[] columnBest) throws IOException, CDKException {
+        ReactionContainer reactionStructureInformation = mh.getReactionContainer();
+        BestMatch bestMatch = mh.getBestMatchContainer();
+        if (bestMatch == null) {
+            return;
         }
-        for (IAtom a : ac.atoms()) {
-            if (a.getID().equals(atom.getID())) {
-                return a;
+        for (int substrateIndex = 0; substrateIndex < rowBest.length; substrateIndex++) {
+            for (int productIndex = 0; productIndex < columnBest.length; productIndex++) {
+                IAtomContainer educt = reactionStructureInformation.getEduct(substrateIndex);
+                IAtomContainer product = reactionStructureInformation.getProduct(productIndex);
+                if (educt == null || product == null
+                        || educt.getAtomCount() == 0 || product.getAtomCount() == 0
+                        || jobs.contains(new Combination(substrateIndex, productIndex))
+                        || !bestMatch.containsKey(substrateIndex, productIndex)) {
+                    continue;
+                }
+                int mappingSize = bestMatch.getAtomMatch(substrateIndex, productIndex).getCount();
+                double similarity = getGraphSimilarity(mappingSize, educt.getAtomCount(), product.getAtomCount());
+                rowBest[substrateIndex] = max(rowBest[substrateIndex], similarity);
+                columnBest[productIndex] = max(columnBest[productIndex], similarity);
             }
         }
-        return null;
     }
 
     /**
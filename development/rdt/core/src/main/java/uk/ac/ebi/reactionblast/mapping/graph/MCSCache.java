@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mapping.graph;
+
+import java.io.Serializable;
+import static java.lang.Long.getLong;
+import static java.lang.System.currentTimeMillis;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.openscience.cdk.CDKConstants.ISAROMATIC;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import uk.ac.ebi.reactionblast.mapping.container.CompiledMolecule;
+import uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MCS_CACHE_HITS;
+import uk.ac.ebi.reactionblast.tools.PerceivedRings;
+
+/**
+ * Reaction scoped store of MCS solutions. The MAX, MIN, MIX and RINGS models
+ * (and the successive game theory iterations within a model) often ask for
+ * the same educt/product pair; the first solution computed is reused by the
+ * others.
+ *
+ * A pair is identified by a canonical signature of both containers (atoms
+ * sorted by ID with element, charge, hydrogens and aromaticity; bonds by their
+ * atom IDs, order and aromaticity) together with the matcher settings handed
+ * to the {@link MCSThread}. Atom IDs are part of the key as solutions are
+ * replicated on the reaction containers by atom ID.
+ *
+ * It also carries the optional wall-clock budget of the reaction's MCS
+ * searches: each pair may take at most {@value #PAIR_TIMEOUT_PROPERTY} ms and
+ * all the pairs together {@value #REACTION_TIMEOUT_PROPERTY} ms from the
+ * creation of the cache (system properties, 0 or unset disables the limit).
+ * With a budget the {@link MCSThread} runs the MCS search as a task of its own
+ * and stops waiting for it once the budget is spent; a pair over budget falls
+ * back on a cheaper match flagged as approximate in its {@link MCSSolution}.
+ * Approximate solutions are not cached, a model with time left searches the
+ * pair again.
+ *
+ * The {@link CompiledMolecule} snapshots of the reaction's containers are
+ * kept here as well, one per container until the container is modified, so
+ * the prefilters of the models and of their iterations share them. So are
+ * the rings perceived for the molecules of the reaction, the models prepare
+ * clones of the same molecules (see {@link #getRings()}).
+ *
+ * The {@link MappingMetrics} of the reaction travel with the cache to the
+ * matchers and the game theory models.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MCSCache implements Serializable {
+
+    private static final long serialVersionUID = 0x1a2b3c4d5e6fL;
+    private static final Logger LOG = getLogger(MCSCache.class.getName());
+
+    /**
+     * System property for the MCS time budget (ms) of one educt/product pair
+     */
+    public static final String PAIR_TIMEOUT_PROPERTY = "rdt.mcs.pair.timeout";
+    /**
+     * System property for the MCS time budget (ms) of a reaction
+     */
+    public static final String REACTION_TIMEOUT_PROPERTY = "rdt.mcs.reaction.timeout";
+    private static final long DEFAULT_PAIR_TIMEOUT = 0;
+    private static final long DEFAULT_REACTION_TIMEOUT = 0;
+
+    private final Map<String, MCSSolution> solutions;
+    private final AtomicInteger hits;
+    private final AtomicInteger misses;
+    private final long pairTimeout;
+    private final long deadline;
+    private final MappingMetrics metrics;
+    private transient Map<IAtomContainer, CompiledMolecule> compiled;
+    private transient PerceivedRings.Cache rings;
+
+    /**
+     *
+     */
+    public MCSCache() {
+        this(new MappingMetrics());
+    }
+
+    /**
+     *
+     * @param metrics metrics of the reaction
+     */
+    public MCSCache(MappingMetrics metrics) {
+        this(getLong(PAIR_TIMEOUT_PROPERTY, DEFAULT_PAIR_TIMEOUT),
+                getLong(REACTION_TIMEOUT_PROPERTY, DEFAULT_REACTION_TIMEOUT), metrics);
+    }
+
+    /**
+     *
+     * @param pairTimeout MCS time budget (ms) of one pair, 0 for no limit
+     * @param reactionTimeout MCS time budget (ms) of the reaction, 0 for no
+     * limit
+     */
+    public MCSCache(long pairTimeout, long reactionTimeout) {
+        this(pairTimeout, reactionTimeout, new MappingMetrics());
+    }
+
+    /**
+     *
+     * @param pairTimeout MCS time budget (ms) of one pair, 0 for no limit
+     * @param reactionTimeout MCS time budget (ms) of the reaction, 0 for no
+     * limit
+     * @param metrics metrics of the reaction
+     */
+    public MCSCache(long pairTimeout, long reactionTimeout, MappingMetrics metrics) {
+        this.solutions = new ConcurrentHashMap<>();
+        this.hits = new AtomicInteger();
+        this.misses = new AtomicInteger();
+        this.pairTimeout = pairTimeout;
+        this.deadline = reactionTimeout > 0 ? currentTimeMillis() + reactionTimeout : 0;
+        this.metrics = metrics;
+    }
+
+    /**
+     *
+     * @param educt
+     * @param product
+     * @param bondMatcher
+     * @param ringMatcher
+     * @param atomMatcher
+     * @param substructureCheck false for the RINGS model, which skips the
+     * substructure shortcut
+     * @param perfectRings
+     * @param singlePair true if the reaction has one educt and one product
+     * @return cache key for this MCS job
+     */
+    public static String getKey(IAtomContainer educt, IAtomContainer product,
+            boolean bondMatcher, boolean ringMatcher, boolean atomMatcher,
+            boolean substructureCheck, boolean perfectRings, boolean singlePair) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(bondMatcher ? 'B' : 'b')
+                .append(ringMatcher ? 'R' : 'r')
+                .append(atomMatcher ? 'A' : 'a')
+                .append(substructureCheck ? 'S' : 's')
+                .append(perfectRings ? 'P' : 'p')
+                .append(singlePair ? 'U' : 'u');
+        sb.append('|');
+        appendSignature(sb, educt);
+        sb.append('|');
+        appendSignature(sb, product);
+        return sb.toString();
+    }
+
+    private static void appendSignature(StringBuilder sb, IAtomContainer ac) {
+        List<String> atoms = new ArrayList<>(ac.getAtomCount());
+        for (int i = 0; i < ac.getAtomCount(); i++) {
+            IAtom a = ac.getAtom(i);
+            atoms.add(atomID(a, i)
+                    + ':' + a.getSymbol()
+                    + ':' + a.getFormalCharge()
+                    + ':' + a.getImplicitHydrogenCount()
+                    + ':' + (a.getFlag(ISAROMATIC) ? 1 : 0));
+        }
+        atoms.sort(null);
+        List<String> bonds = new ArrayList<>(ac.getBondCount());
+        for (IBond b : ac.bonds()) {
+            String id1 = atomID(b.getAtom(0), ac.getAtomNumber(b.getAtom(0)));
+            String id2 = atomID(b.getAtom(1), ac.getAtomNumber(b.getAtom(1)));
+            if (id1.compareTo(id2) > 0) {
+                String tmp = id1;
+                id1 = id2;
+                id2 = tmp;
+            }
+            bonds.add(id1 + '-' + id2
+                    + ':' + b.getOrder()
+                    + ':' + (b.getFlag(ISAROMATIC) ? 1 : 0));
+        }
+        bonds.sort(null);
+        for (String a : atoms) {
+            sb.append(a).append(';');
+        }
+        sb.append('/');
+        for (String b : bonds) {
+            sb.append(b).append(';');
+        }
+    }
+
+    /*
+     MCSThread falls back on the atom index when no ID is set
+     */
+    private static String atomID(IAtom atom, int index) {
+        return atom.getID() == null ? String.valueOf(index) : atom.getID();
+    }
+
+    /**
+     *
+     * @param key
+     * @param queryPosition
+     * @param targetPosition
+     * @return the cached solution re-indexed on the requested positions, or
+     * null if this pair has not been matched yet
+     */
+    public MCSSolution get(String key, int queryPosition, int targetPosition) {
+        MCSSolution cached = solutions.get(key);
+        if (cached == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        metrics.count(MCS_CACHE_HITS);
+        MCSSolution mcs = new MCSSolution(queryPosition, targetPosition,
+                cached.getQueryContainer(), cached.getTargetContainer(), cached.getAtomAtomMapping());
+        mcs.setEnergy(cached.getEnergy());
+        mcs.setFragmentSize(cached.getFragmentSize());
+        mcs.setStereoScore(cached.getStereoScore());
+        mcs.setApproximate(cached.isApproximate());
+        return mcs;
+    }
+
+    /**
+     *
+     * @param key
+     * @param solution exact solution to cache, approximate solutions are
+     * ignored
+     */
+    public void put(String key, MCSSolution solution) {
+        if (solution != null && !solution.isApproximate()) {
+            solutions.putIfAbsent(key, solution);
+        }
+    }
+
+    /**
+     *
+     * @param container educt or product of the reaction
+     * @return snapshot of the container, compiled again only if the
+     * container was modified since the last call
+     */
+    public synchronized CompiledMolecule getCompiled(IAtomContainer container) {
+        if (compiled == null) {
+            compiled = new IdentityHashMap<>();
+        }
+        CompiledMolecule snapshot = compiled.get(container);
+        if (snapshot == null || !snapshot.isSnapshotOf(container)) {
+            snapshot = CompiledMolecule.of(container);
+            compiled.put(container, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return MCS time budget (ms) of one pair, 0 if unlimited
+     */
+    public long getPairTimeout() {
+        return pairTimeout;
+    }
+
+    /**
+     * @return time (ms since epoch) by which the reaction's MCS searches
+     * should be over, 0 if unlimited
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @return metrics of the reaction
+     */
+    public MappingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return number of MCS jobs answered from the cache
+     */
+    public int getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of MCS jobs computed
+     */
+    public int getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of cached solutions
+     */
+    public int size() {
+        return solutions.size();
+    }
+
+    /**
+     *
+     * @return rings perceived for the molecules of the reaction, by
+     * connectivity
+     */
+    public synchronized PerceivedRings.Cache getRings() {
+        if (rings == null) {
+            rings = new PerceivedRings.Cache();
+        }
+        return rings;
+    }
+
+    /**
+     * clears all the cached solutions, snapshots and rings
+     */
+    public void clear() {
+        solutions.clear();
+        synchronized (this) {
+            compiled = null;
+            rings = null;
+        }
+    }
+}
@@ -40,6 +40,7 @@ public class MCSSolution implements Serializable {
     private Integer stereoScore;
     private Integer fragmentSize;
     private Double energy;
+    private volatile boolean approximate;
 
     /**
      *
@@ -59,6 +60,22 @@ public class MCSSolution implements Serializable {
         this.energy = null;
         this.fragmentSize = null;
         this.stereoScore = null;
+        this.approximate = false;
+    }
+
+    /**
+     * @return true if the MCS search ran out of time and this is a cheaper
+     * (possibly partial) mapping
+     */
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    /**
+     * @param approximate the approximate flag to set
+     */
+    public void setApproximate(boolean approximate) {
+        this.approximate = approximate;
     }
 
     /**
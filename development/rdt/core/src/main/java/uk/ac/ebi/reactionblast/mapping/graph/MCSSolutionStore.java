@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mapping.graph;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+/**
+ * MCS solutions of a matrix holder indexed by their educt/product positions.
+ * The game theory models look up the solution of a matrix cell directly
+ * instead of scanning all the solutions of the round.
+ *
+ * Each solution is stored with a structural hash (atom and bond counts, atom
+ * symbols) of its two containers; a lookup against containers which no longer
+ * match returns null. The rows and columns of the molecules modified by a
+ * game theory round are invalidated before the next round of MCS.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MCSSolutionStore implements Serializable {
+
+    private static final long serialVersionUID = 0x5c3e9a71d2b4L;
+    private static final Logger LOG = getLogger(MCSSolutionStore.class.getName());
+
+    private final Map<Long, Entry> solutions;
+
+    /**
+     *
+     */
+    public MCSSolutionStore() {
+        this.solutions = new HashMap<>();
+    }
+
+    /**
+     * Stores the solution at its query/target positions, replacing any
+     * previous solution of the pair.
+     *
+     * @param solution MCS solution
+     */
+    public synchronized void put(MCSSolution solution) {
+        solutions.put(key(solution.getQueryPosition(), solution.getTargetPosition()),
+                new Entry(solution,
+                        structuralHash(solution.getQueryContainer()),
+                        structuralHash(solution.getTargetContainer())));
+    }
+
+    /**
+     *
+     * @param queryPosition educt index
+     * @param targetPosition product index
+     * @param query educt at the query position
+     * @param target product at the target position
+     * @return the solution of the pair, null if there is none or if it was
+     * computed on different containers
+     */
+    public synchronized MCSSolution get(int queryPosition, int targetPosition,
+            IAtomContainer query, IAtomContainer target) {
+        Entry entry = solutions.get(key(queryPosition, targetPosition));
+        if (entry == null
+                || entry.queryHash != structuralHash(query)
+                || entry.targetHash != structuralHash(target)) {
+            return null;
+        }
+        return entry.solution;
+    }
+
+    /**
+     * Removes the solutions of an educt (matrix row).
+     *
+     * @param queryPosition educt index
+     */
+    public synchronized void invalidateQuery(int queryPosition) {
+        for (Iterator<Long> it = solutions.keySet().iterator(); it.hasNext();) {
+            if ((int) (it.next() >> 32) == queryPosition) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes the solutions of a product (matrix column).
+     *
+     * @param targetPosition product index
+     */
+    public synchronized void invalidateTarget(int targetPosition) {
+        for (Iterator<Long> it = solutions.keySet().iterator(); it.hasNext();) {
+            if (it.next().intValue() == targetPosition) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     *
+     * @return number of stored solutions
+     */
+    public synchronized int size() {
+        return solutions.size();
+    }
+
+    /**
+     *
+     */
+    public synchronized void clear() {
+        solutions.clear();
+    }
+
+    private static long key(int queryPosition, int targetPosition) {
+        return ((long) queryPosition << 32) | (targetPosition & 0xffffffffL);
+    }
+
+    private static int structuralHash(IAtomContainer container) {
+        if (container == null) {
+            return 0;
+        }
+        int hash = 31 * container.getAtomCount() + container.getBondCount();
+        for (IAtom atom : container.atoms()) {
+            hash = 31 * hash + (atom.getSymbol() == null ? 0 : atom.getSymbol().hashCode());
+        }
+        return hash;
+    }
+
+    private static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 0x5c3e9a71d2b5L;
+        private final MCSSolution solution;
+        private final int queryHash;
+        private final int targetHash;
+
+        Entry(MCSSolution solution, int queryHash, int targetHash) {
+            this.solution = solution;
+            this.queryHash = queryHash;
+            this.targetHash = targetHash;
+        }
+    }
+}
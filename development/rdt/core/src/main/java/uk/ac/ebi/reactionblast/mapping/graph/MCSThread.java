@@ -21,15 +21,18 @@ package uk.ac.ebi.reactionblast.mapping.graph;
 import static java.lang.System.currentTimeMillis;
 import static java.lang.System.nanoTime;
 import static java.lang.System.out;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import static java.util.logging.Level.SEVERE;
 import java.util.logging.Logger;
-import static org.openscience.cdk.CDKConstants.UNSET;
 import org.openscience.cdk.aromaticity.Aromaticity;
 import static org.openscience.cdk.aromaticity.ElectronDonation.daylight;
 import org.openscience.cdk.exception.CDKException;
@@ -42,13 +45,22 @@ import org.openscience.smsd.AtomAtomMapping;
 import org.openscience.smsd.BaseMapping;
 import org.openscience.smsd.Isomorphism;
 import org.openscience.smsd.Substructure;
+import uk.ac.ebi.reactionblast.mapping.container.CompiledMolecule;
+import uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingThreadPool.getParallelism;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MCS_APPROXIMATE;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MCS_CALLS;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MCS_CDKMCS;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MCS_DEFAULT;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MCS_SUBSTRUCTURE;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Stage.MCS;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.currentThreadCpuTime;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
 import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.RINGS;
 import uk.ac.ebi.reactionblast.tools.labelling.ICanonicalMoleculeLabeller;
 import uk.ac.ebi.reactionblast.tools.labelling.SmilesMoleculeLabeller;
 import org.openscience.smsd.interfaces.Algorithm;
 import static java.lang.String.valueOf;
-import static java.util.Collections.sort;
 import static java.util.logging.Logger.getLogger;
 import static org.openscience.cdk.graph.Cycles.all;
 import static org.openscience.cdk.graph.Cycles.relevant;
@@ -62,6 +74,19 @@ public class MCSThread implements Callable<MCSSolution> {
     private static final boolean DEBUG1 = false;
     private static final boolean DEBUG2 = false;
     private static final Logger LOG = getLogger(MCSThread.class.getName());
+    private static final AtomicInteger SEARCH_THREADS = new AtomicInteger();
+    /*
+     * Runs the searches of pairs with a time budget, see exactMCS(). It has
+     * as many threads as the mapping pool, so searches given up on can not
+     * keep more cores busy than the mapping itself would.
+     */
+    private static final ThreadPoolExecutor SEARCHES = new ThreadPoolExecutor(
+            getParallelism(), getParallelism(), 0L, MILLISECONDS, new LinkedBlockingQueue<>(),
+            (Runnable r) -> {
+                Thread t = new Thread(r, "rdt-mcs-search-" + SEARCH_THREADS.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
 
     private boolean stereoFlag;
     private boolean fragmentFlag;
@@ -115,6 +140,12 @@ public class MCSThread implements Callable<MCSSolution> {
     private boolean hasRings;
     private Integer eductCount;
     private Integer productCount;
+    private long pairTimeout;
+    private long reactionDeadline;
+    private long callStart;
+    private MappingMetrics metrics;
+    private CompiledMolecule compiled1;
+    private CompiledMolecule compiled2;
 
     /**
      *
@@ -144,6 +175,7 @@ public class MCSThread implements Callable<MCSSolution> {
         this.theory = theory;
         this.atomMatcher = atomMatcher;
         this.labeller = new SmilesMoleculeLabeller();
+        this.metrics = new MappingMetrics();
 
         if (DEBUG1) {
             aromaticity = new Aromaticity(daylight(), or(all(), relevant()));
@@ -152,7 +184,7 @@ public class MCSThread implements Callable<MCSSolution> {
 
     }
 
-    synchronized void printMatch(BaseMapping isomorphism) {
+    void printMatch(BaseMapping isomorphism) {
         int overlap = isomorphism.getFirstAtomMapping().isEmpty() ? 0
                 : isomorphism.getFirstAtomMapping().getCount();
 
@@ -164,7 +196,22 @@ public class MCSThread implements Callable<MCSSolution> {
     }
 
     @Override
-    public synchronized MCSSolution call() throws Exception {
+    public MCSSolution call() throws Exception {
+        metrics.count(MCS_CALLS);
+        long cpu = currentThreadCpuTime();
+        callStart = currentTimeMillis();
+        try {
+            if (isOverBudget()) {
+                LOG.warning("MCS time budget of the reaction spent, approximating " + compound1.getID() + " " + compound2.getID());
+                return approximateMCS();
+            }
+            return match();
+        } finally {
+            metrics.addCpuTime(MCS, currentThreadCpuTime() - cpu);
+        }
+    }
+
+    private MCSSolution match() throws Exception {
         try {
             if (!theory.equals(RINGS)) {
                 if (DEBUG1) {
@@ -183,12 +230,14 @@ public class MCSThread implements Callable<MCSSolution> {
                 /*
                  Check if MCS matching required or not very IMP step
                  */
-                boolean possibleVFmatch12 = isPossibleSubgraphMatch(getCompound1(), getCompound2());
+                CompiledMolecule molecule1 = getCompiled1();
+                CompiledMolecule molecule2 = getCompiled2();
+                boolean possibleVFmatch12 = isPossibleSubgraphMatch(molecule1, molecule2);
                 if (DEBUG1) {
                     out.println("VF Matcher " + possibleVFmatch12);
                 }
 
-                boolean possibleVFmatch21 = isPossibleSubgraphMatch(getCompound2(), getCompound1());
+                boolean possibleVFmatch21 = isPossibleSubgraphMatch(molecule2, molecule1);
                 if (DEBUG1) {
                     out.println("VF Matcher " + possibleVFmatch21);
                 }
@@ -219,6 +268,7 @@ public class MCSThread implements Callable<MCSSolution> {
                             printMatch(substructure);
                             out.println("\" Time:\" " + time);
                         }
+                        metrics.count(MCS_SUBSTRUCTURE);
                         return mcs;
                     } else if (DEBUG1) {
                         out.println("not a Substructure 5");
@@ -257,6 +307,7 @@ public class MCSThread implements Callable<MCSSolution> {
                             printMatch(substructure);
                             out.println("\" Time:\" " + time);
                         }
+                        metrics.count(MCS_SUBSTRUCTURE);
                         return mcs;
                     } else if (DEBUG1) {
                         out.println("not a Substructure 6");
@@ -326,107 +377,170 @@ public class MCSThread implements Callable<MCSSolution> {
         this.energyFlag = energyFlag;
     }
 
-    private boolean isPossibleSubgraphMatch(IAtomContainer q, IAtomContainer t) {
-
-        Map<String, Integer> atomUniqueCounter1 = new TreeMap<>();
-        Map<String, Integer> atomUniqueCounter2 = new TreeMap<>();
+    private boolean isPossibleSubgraphMatch(CompiledMolecule q, CompiledMolecule t) {
+        /*
+         * every element of the query must be found in the target, at least
+         * as many times
+         */
+        return q.isElementSubsetOf(t);
+    }
 
-        for (IAtom a : q.atoms()) {
-            if (!atomUniqueCounter1.containsKey(a.getSymbol())) {
-                atomUniqueCounter1.put(a.getSymbol(), 1);
-            } else {
-                int counter = atomUniqueCounter1.get(a.getSymbol()) + 1;
-                atomUniqueCounter1.put(a.getSymbol(), counter);
-            }
-        }
+    private int expectedMaxGraphmatch() {
 
-        for (IAtom b : t.atoms()) {
-            if (!atomUniqueCounter2.containsKey(b.getSymbol())) {
-                atomUniqueCounter2.put(b.getSymbol(), 1);
-            } else {
-                int counter = atomUniqueCounter2.get(b.getSymbol()) + 1;
-                atomUniqueCounter2.put(b.getSymbol(), counter);
-            }
+        /*
+         a={c,c,c,o,n}
+         b={c,c,c,p}
+       
+         expectedMaxGraphmatch=3;
+         */
+        int common = getCompiled1().countAtomTypesIn(getCompiled2());
+        if (DEBUG2) {
+            out.println("common " + common);
         }
+        return common;
+    }
 
-        if (atomUniqueCounter1.size() > atomUniqueCounter2.size()) {
-            return false;
+    MCSSolution mcs() {
+//        System.out.println("MCS called");
+        if (callStart > 0 && isOverBudget()) {
+            LOG.warning("MCS time budget spent, approximating " + compound1.getID() + " " + compound2.getID());
+            return approximateMCS();
         }
+        return exactMCS();
+    }
 
-        List<String> difference = new LinkedList<>(atomUniqueCounter1.keySet());
-        difference.removeAll(atomUniqueCounter2.keySet());
+    private boolean isOverBudget() {
+        return remainingBudget() <= 0;
+    }
 
-        if (DEBUG2) {
-            out.println("atomUniqueCounter1 " + atomUniqueCounter1);
-            out.println("atomUniqueCounter2 " + atomUniqueCounter2);
-            out.println("diff " + difference.size());
+    /*
+     * Time (ms) left to the pair, Long.MAX_VALUE if no budget is set
+     */
+    private long remainingBudget() {
+        long now = currentTimeMillis();
+        long remaining = Long.MAX_VALUE;
+        if (reactionDeadline > 0) {
+            remaining = reactionDeadline - now;
         }
+        if (pairTimeout > 0) {
+            remaining = Math.min(remaining, pairTimeout - (now - callStart));
+        }
+        return remaining;
+    }
 
-        if (difference.isEmpty()) {
-            if (!atomUniqueCounter1.keySet().stream().noneMatch((k) -> (atomUniqueCounter1.get(k) > atomUniqueCounter2.get(k)))) {
-                return false;
-            }
+    /*
+     * With a time budget the search runs as a task of its own and is given up
+     * once the budget is spent, the pair is then approximated. SMSD does not
+     * check for interrupts, so the abandoned search runs on in the background
+     * until its own iteration limits stop it, but the mapping no longer waits
+     * for it. Searches queued behind abandoned ones time out in turn, so an
+     * overloaded search pool degrades into approximations rather than more
+     * threads. The wait is a managed block, a mapping pool worker waiting here
+     * lets the pool run its other jobs on a spare thread.
+     */
+    private MCSSolution exactMCS() {
+        long remaining = callStart > 0 ? remainingBudget() : Long.MAX_VALUE;
+        if (remaining == Long.MAX_VALUE) {
+            return searchMCS(compound1, compound2);
         }
+        /*
+         * the search gets copies, it may still run when the pair is approximated
+         */
+        IAtomContainer ac1;
+        IAtomContainer ac2;
+        try {
+            ac1 = duplicate(compound1);
+            ac2 = duplicate(compound2);
+        } catch (CloneNotSupportedException ex) {
+            getLogger(MCSThread.class.getName()).log(SEVERE, "Error in computing MCS ", ex);
+            return null;
+        }
+        FutureTask<MCSSolution> search = new FutureTask<>(() -> searchMCS(ac1, ac2));
+        SEARCHES.execute(search);
+        SearchBlocker blocker = new SearchBlocker(search, currentTimeMillis() + remaining);
+        try {
+            ForkJoinPool.managedBlock(blocker);
+            return blocker.get();
+        } catch (TimeoutException ex) {
+            giveUp(search);
+            LOG.warning("MCS search ran out of time, approximating " + compound1.getID() + " " + compound2.getID());
+            return approximateMCS();
+        } catch (InterruptedException ex) {
+            giveUp(search);
+            Thread.currentThread().interrupt();
+            return approximateMCS();
+        } catch (ExecutionException ex) {
+            getLogger(MCSThread.class.getName()).log(SEVERE, "Error in computing MCS ", ex.getCause());
+        }
+        return null;
+    }
 
-        return difference.isEmpty();
+    /*
+     * A search that has not started yet is dropped from the queue
+     */
+    private static void giveUp(FutureTask<MCSSolution> search) {
+        search.cancel(true);
+        SEARCHES.remove(search);
     }
 
-    private int expectedMaxGraphmatch(IAtomContainer q, IAtomContainer t) {
+    /*
+     * Waits for a search until the deadline (ms since epoch)
+     */
+    private static class SearchBlocker implements ForkJoinPool.ManagedBlocker {
 
-        /*
-         a={c,c,c,o,n}
-         b={c,c,c,p}
-       
-         expectedMaxGraphmatch=3;
-         */
-        List<String> atomUniqueCounter1 = new ArrayList<>();
-        List<String> atomUniqueCounter2 = new ArrayList<>();
+        private final FutureTask<MCSSolution> search;
+        private final long deadline;
+        private boolean timedOut;
 
-        for (IAtom a : q.atoms()) {
-            String hyb = a.getHybridization() == UNSET
-                    ? a.getSymbol() : a.getAtomTypeName();
-            atomUniqueCounter1.add(hyb);
+        SearchBlocker(FutureTask<MCSSolution> search, long deadline) {
+            this.search = search;
+            this.deadline = deadline;
+            this.timedOut = false;
         }
 
-        for (IAtom b : t.atoms()) {
-            String hyb = b.getHybridization() == UNSET
-                    ? b.getSymbol() : b.getAtomTypeName();
-            atomUniqueCounter2.add(hyb);
+        @Override
+        public boolean block() throws InterruptedException {
+            long remaining = deadline - currentTimeMillis();
+            if (remaining > 0) {
+                try {
+                    search.get(remaining, MILLISECONDS);
+                } catch (ExecutionException | TimeoutException ex) {
+                    /*
+                     * reported by get()
+                     */
+                }
+            }
+            timedOut = !search.isDone();
+            return true;
         }
 
-        sort(atomUniqueCounter1);
-        sort(atomUniqueCounter2);
-
-        if (atomUniqueCounter1.isEmpty()) {
-            return 0;
+        @Override
+        public boolean isReleasable() {
+            return search.isDone() || currentTimeMillis() >= deadline;
         }
-        List<String> common = new LinkedList<>(atomUniqueCounter1);
-        common.retainAll(atomUniqueCounter2);
 
-        if (DEBUG2) {
-            out.println("atomUniqueCounter1 " + atomUniqueCounter1);
-            out.println("atomUniqueCounter2 " + atomUniqueCounter2);
-            out.println("common " + common.size());
+        MCSSolution get() throws InterruptedException, ExecutionException, TimeoutException {
+            if (timedOut || !search.isDone()) {
+                throw new TimeoutException();
+            }
+            return search.get();
         }
-        atomUniqueCounter1.clear();
-        atomUniqueCounter2.clear();
-        return common.size();
     }
 
-    synchronized MCSSolution mcs() {
-//        System.out.println("MCS called");
+    private MCSSolution searchMCS(IAtomContainer query, IAtomContainer target) {
         try {
             /*
              * 0: default Isomorphism, 1: MCSPlus, 2: VFLibMCS, 3: CDKMCS
              */
             Isomorphism isomorphism;
-            int expectedMaxGraphmatch = expectedMaxGraphmatch(getCompound1(), getCompound2());
+            int expectedMaxGraphmatch = expectedMaxGraphmatch();
 
             if (eductCount == 1 && productCount == 1) {
                 /*
                  * This handles large aliphatics to ring system (ex: R09907)
                  */
-                isomorphism = new Isomorphism(getCompound1(), getCompound2(), Algorithm.DEFAULT, false, isPerfectRings(), false);
+                isomorphism = new Isomorphism(query, target, Algorithm.DEFAULT, false, hasRings, false);
+                metrics.count(MCS_DEFAULT);
             } else if (expectedMaxGraphmatch > 30) {
 //                System.out.println("CDK MCS called");
 //                System.out.println("getCompound1() " + getCompound1().getAtomCount());
@@ -435,12 +549,14 @@ public class MCSThread implements Callable<MCSSolution> {
                 /*
                  * This handles large aliphatics to ring system (ex: R06466)
                  */
-                isomorphism = new Isomorphism(getCompound1(), getCompound2(), Algorithm.CDKMCS, false, isPerfectRings(), !isPerfectRings());
+                isomorphism = new Isomorphism(query, target, Algorithm.CDKMCS, false, hasRings, !hasRings);
+                metrics.count(MCS_CDKMCS);
             } else {
 //                System.out.println("Default called");
 //                System.out.println("getCompound1() " + getCompound1().getAtomCount());
 //                System.out.println("getCompound2() " + getCompound2().getAtomCount());
-                isomorphism = new Isomorphism(getCompound1(), getCompound2(), Algorithm.DEFAULT, false, isPerfectRings(), !isPerfectRings());
+                isomorphism = new Isomorphism(query, target, Algorithm.DEFAULT, false, hasRings, !hasRings);
+                metrics.count(MCS_DEFAULT);
             }
 
             isomorphism.setChemFilters(stereoFlag, fragmentFlag, energyFlag);
@@ -452,7 +568,7 @@ public class MCSThread implements Callable<MCSSolution> {
              *
              */
 
-            MCSSolution mcs = new MCSSolution(getQueryPosition(), getTargetPosition(),
+            MCSSolution mcs = new MCSSolution(queryPosition, targetPosition,
                     isomorphism.getQuery(), isomorphism.getTarget(), isomorphism.getFirstAtomMapping());
             mcs.setEnergy(isomorphism.getEnergyScore(0));
             mcs.setFragmentSize(isomorphism.getFragmentSize(0));
@@ -472,6 +588,51 @@ public class MCSThread implements Callable<MCSSolution> {
         return null;
     }
 
+    /*
+     * Cheaper fallback once the time budget is spent: a bond insensitive
+     * substructure match of the smaller molecule, else an empty mapping.
+     * Either way the solution is flagged as approximate.
+     */
+    private MCSSolution approximateMCS() {
+        MCSSolution mcs = null;
+        try {
+            mcs = substructureMCS();
+        } catch (CloneNotSupportedException | CDKException ex) {
+            getLogger(MCSThread.class.getName()).log(SEVERE, "Error in computing substructure ", ex);
+        }
+        if (mcs == null) {
+            mcs = new MCSSolution(queryPosition, targetPosition,
+                    compound1, compound2, new AtomAtomMapping(compound1, compound2));
+        }
+        mcs.setApproximate(true);
+        metrics.count(MCS_APPROXIMATE);
+        return mcs;
+    }
+
+    private MCSSolution substructureMCS() throws CloneNotSupportedException, CDKException {
+        IAtomContainer ac1 = duplicate(compound1);
+        IAtomContainer ac2 = duplicate(compound2);
+        if (ac1.getAtomCount() <= ac2.getAtomCount()) {
+            Substructure substructure = new Substructure(ac1, ac2, false, false, hasRings, true);
+            if (substructure.isSubgraph()) {
+                return new MCSSolution(queryPosition, targetPosition,
+                        substructure.getQuery(), substructure.getTarget(), substructure.getFirstAtomMapping());
+            }
+        } else {
+            Substructure substructure = new Substructure(ac2, ac1, false, false, hasRings, true);
+            if (substructure.isSubgraph()) {
+                AtomAtomMapping aam = new AtomAtomMapping(substructure.getTarget(), substructure.getQuery());
+                Map<IAtom, IAtom> mappings = substructure.getFirstAtomMapping().getMappingsByAtoms();
+                mappings.keySet().stream().forEach((atom1) -> {
+                    aam.put(mappings.get(atom1), atom1);
+                });
+                return new MCSSolution(queryPosition, targetPosition,
+                        substructure.getTarget(), substructure.getQuery(), aam);
+            }
+        }
+        return null;
+    }
+
     private IAtomContainer duplicate(IAtomContainer ac) throws CloneNotSupportedException {
         IAtomContainer a = ac.clone();
         a.setID(ac.getID());
@@ -509,6 +670,50 @@ public class MCSThread implements Callable<MCSSolution> {
         return targetPosition;
     }
 
+    /**
+     * @param pairTimeout MCS time budget (ms) of this pair, 0 for no limit
+     * @param reactionDeadline time (ms since epoch) by which the reaction's MCS
+     * searches should be over, 0 for no limit
+     */
+    void setTimeBudget(long pairTimeout, long reactionDeadline) {
+        this.pairTimeout = pairTimeout;
+        this.reactionDeadline = reactionDeadline;
+    }
+
+    /**
+     * @param metrics metrics of the reaction
+     */
+    void setMetrics(MappingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param educt snapshot of the educt, as the matcher compiled it
+     * @param product snapshot of the product, as the matcher compiled it
+     */
+    void setCompiled(CompiledMolecule educt, CompiledMolecule product) {
+        this.compiled1 = educt;
+        this.compiled2 = product;
+    }
+
+    /*
+     * the copies of the thread have the atoms of the educt and product in
+     * the same order, their snapshots are the same
+     */
+    private CompiledMolecule getCompiled1() {
+        if (compiled1 == null) {
+            compiled1 = CompiledMolecule.of(compound1);
+        }
+        return compiled1;
+    }
+
+    private CompiledMolecule getCompiled2() {
+        if (compiled2 == null) {
+            compiled2 = CompiledMolecule.of(compound2);
+        }
+        return compiled2;
+    }
+
     void setHasPerfectRings(boolean ring) {
         this.hasRings = ring;
     }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mapping.helper;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.openscience.cdk.CDKConstants.ATOM_ATOM_MAPPING;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IReaction;
+import static uk.ac.ebi.reactionblast.tools.ExtReactionManipulatorTool.getAllProducts;
+import static uk.ac.ebi.reactionblast.tools.ExtReactionManipulatorTool.getAllReactants;
+
+/**
+ * Atoms of one side of a reaction (or of a molecule) by atom ID and by atom
+ * atom mapping number. The first atom wins if an ID or a number is repeated,
+ * as in a scan of the containers. Build it after the IDs and the mapping
+ * numbers are set, it is not updated.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public final class AtomIndex {
+
+    private static final Logger LOG = getLogger(AtomIndex.class.getName());
+
+    /**
+     *
+     * @param reaction
+     * @return index of the reactant atoms
+     */
+    public static AtomIndex ofReactants(IReaction reaction) {
+        return new AtomIndex(getAllReactants(reaction).atomContainers());
+    }
+
+    /**
+     *
+     * @param reaction
+     * @return index of the product atoms
+     */
+    public static AtomIndex ofProducts(IReaction reaction) {
+        return new AtomIndex(getAllProducts(reaction).atomContainers());
+    }
+
+    private final Map<String, IAtom> byID;
+    private final Map<Integer, IAtom> byMappingNumber;
+
+    /**
+     *
+     * @param container
+     */
+    public AtomIndex(IAtomContainer container) {
+        this.byID = new HashMap<>(2 * container.getAtomCount());
+        this.byMappingNumber = new HashMap<>(2 * container.getAtomCount());
+        add(container);
+    }
+
+    /**
+     *
+     * @param containers
+     */
+    public AtomIndex(Iterable<IAtomContainer> containers) {
+        this.byID = new HashMap<>();
+        this.byMappingNumber = new HashMap<>();
+        for (IAtomContainer container : containers) {
+            add(container);
+        }
+    }
+
+    private void add(IAtomContainer container) {
+        for (IAtom atom : container.atoms()) {
+            if (atom.getID() != null) {
+                byID.putIfAbsent(atom.getID(), atom);
+            }
+            Integer mappingNumber = atom.getProperty(ATOM_ATOM_MAPPING);
+            if (mappingNumber != null) {
+                byMappingNumber.putIfAbsent(mappingNumber, atom);
+            }
+        }
+    }
+
+    /**
+     *
+     * @param id
+     * @return atom with this ID, null if none
+     */
+    public IAtom getAtomByID(String id) {
+        return id == null ? null : byID.get(id);
+    }
+
+    /**
+     *
+     * @param mappingNumber
+     * @return atom with this atom atom mapping number, null if none
+     */
+    public IAtom getAtomByMappingNumber(int mappingNumber) {
+        return byMappingNumber.get(mappingNumber);
+    }
+}
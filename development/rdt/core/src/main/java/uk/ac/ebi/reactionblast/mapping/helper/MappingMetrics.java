@@ -0,0 +1,344 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mapping.helper;
+
+import java.io.Serializable;
+import static java.lang.System.nanoTime;
+import static java.lang.management.ManagementFactory.getThreadMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+
+/**
+ * Timings and counters of the mapping of a reaction (or, once merged, of a
+ * batch of reactions).
+ *
+ * Wall and CPU time are recorded per {@link Stage} by the threads doing the
+ * work and summed, so with the mapping models running in parallel a stage may
+ * take more time than the reaction itself. The stages nest: fingerprints and
+ * MCS rounds are part of the game theory stage, and all stages are part of
+ * TOTAL. CPU time is 0 if the JVM does not support thread CPU time
+ * measurement.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MappingMetrics implements Serializable {
+
+    private static final long serialVersionUID = 0x6d6574726963L;
+    private static final Logger LOG = getLogger(MappingMetrics.class.getName());
+    private static final ThreadMXBean THREADS = getThreadMXBean();
+
+    /**
+     * Timed stages of the mapping
+     */
+    public enum Stage {
+
+        /**
+         * whole mapping and annotation of a reaction
+         */
+        TOTAL,
+        /**
+         * reaction standardization and preprocessing
+         */
+        STANDARDIZATION,
+        /**
+         * molecule fingerprints of the mapping models
+         */
+        FINGERPRINTS,
+        /**
+         * MCS rounds of the mapping models (wall time of the rounds, CPU time
+         * of the MCS jobs)
+         */
+        MCS,
+        /**
+         * scoring matrices and game theory iterations of the mapping models
+         */
+        GAME_THEORY,
+        /**
+         * bond change calculation of each mapping solution
+         */
+        BOND_CHANGES
+    }
+
+    /**
+     * Event counters
+     */
+    public enum Counter {
+
+        /**
+         * reactions measured, counted by ReactionMechanismTool (or the
+         * mapping cache answering in its place) only
+         */
+        REACTIONS,
+        /**
+         * MCS jobs computed
+         */
+        MCS_CALLS,
+        /**
+         * MCS jobs answered from the MCS cache
+         */
+        MCS_CACHE_HITS,
+        /**
+         * MCS jobs solved by a substructure search
+         */
+        MCS_SUBSTRUCTURE,
+        /**
+         * MCS searches using the DEFAULT algorithm
+         */
+        MCS_DEFAULT,
+        /**
+         * MCS searches using the CDKMCS algorithm
+         */
+        MCS_CDKMCS,
+        /**
+         * MCS jobs over their time budget, approximated
+         */
+        MCS_APPROXIMATE,
+        /**
+         * MCS jobs skipped as the molecules have no element in common
+         */
+        MCS_PREFILTERED,
+        /**
+         * MCS jobs deferred by a round as a kept cell of their row or column
+         * scores better than their bound
+         */
+        MCS_DEFERRED,
+        /**
+         * mapping models skipped in fast mode
+         */
+        MODELS_SKIPPED,
+        /**
+         * reaction centre fingerprints and transformation pairs never
+         * generated, as their mapping solution was not selected
+         */
+        REACTION_CENTRES_SKIPPED,
+        /**
+         * game theory iterations (winner selection rounds) of all models
+         */
+        GAME_THEORY_ITERATIONS,
+        /**
+         * game theory matrix cells matched and scored again as their educt or
+         * product was modified
+         */
+        MATRIX_CELLS_REEVALUATED,
+        /**
+         * reactions cloned
+         */
+        REACTION_CLONES,
+        /**
+         * molecules cloned
+         */
+        MOLECULE_CLONES,
+        /**
+         * reactions answered from the mapping cache
+         */
+        MAPPING_CACHE_HITS
+    }
+
+    private final AtomicLongArray wallTime;
+    private final AtomicLongArray cpuTime;
+    private final AtomicLongArray counters;
+
+    /**
+     *
+     */
+    public MappingMetrics() {
+        this.wallTime = new AtomicLongArray(Stage.values().length);
+        this.cpuTime = new AtomicLongArray(Stage.values().length);
+        this.counters = new AtomicLongArray(Counter.values().length);
+    }
+
+    /**
+     *
+     * @param metrics
+     * @return sum of the metrics
+     */
+    public static MappingMetrics aggregate(Collection<MappingMetrics> metrics) {
+        MappingMetrics sum = new MappingMetrics();
+        for (MappingMetrics m : metrics) {
+            sum.merge(m);
+        }
+        return sum;
+    }
+
+    /**
+     * @return CPU time (ns) of the current thread, 0 if not supported
+     */
+    public static long currentThreadCpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0L;
+    }
+
+    /**
+     * Start timing a stage on the current thread; stop the timer on the same
+     * thread.
+     *
+     * @param stage
+     * @return running timer
+     */
+    public StageTimer start(Stage stage) {
+        return new StageTimer(this, stage);
+    }
+
+    /**
+     *
+     * @param stage
+     * @param nanos
+     */
+    public void addWallTime(Stage stage, long nanos) {
+        wallTime.addAndGet(stage.ordinal(), nanos);
+    }
+
+    /**
+     *
+     * @param stage
+     * @param nanos
+     */
+    public void addCpuTime(Stage stage, long nanos) {
+        cpuTime.addAndGet(stage.ordinal(), nanos);
+    }
+
+    /**
+     *
+     * @param counter
+     */
+    public void count(Counter counter) {
+        counters.incrementAndGet(counter.ordinal());
+    }
+
+    /**
+     *
+     * @param counter
+     * @param delta
+     */
+    public void count(Counter counter, long delta) {
+        counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    /**
+     *
+     * @param stage
+     * @return wall time (ns) spent in this stage
+     */
+    public long getWallTime(Stage stage) {
+        return wallTime.get(stage.ordinal());
+    }
+
+    /**
+     *
+     * @param stage
+     * @return CPU time (ns) spent in this stage
+     */
+    public long getCpuTime(Stage stage) {
+        return cpuTime.get(stage.ordinal());
+    }
+
+    /**
+     *
+     * @param counter
+     * @return counter value
+     */
+    public long getCount(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    /**
+     * Add the timings and counters of another run to this one
+     *
+     * @param other
+     */
+    public void merge(MappingMetrics other) {
+        if (other == null) {
+            return;
+        }
+        for (int i = 0; i < wallTime.length(); i++) {
+            wallTime.addAndGet(i, other.wallTime.get(i));
+            cpuTime.addAndGet(i, other.cpuTime.get(i));
+        }
+        for (int i = 0; i < counters.length(); i++) {
+            counters.addAndGet(i, other.counters.get(i));
+        }
+    }
+
+    /**
+     * @return the metrics as a JSON object, times in milliseconds
+     */
+    public String toJSON() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"stages\":{");
+        Stage[] stages = Stage.values();
+        for (int i = 0; i < stages.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('"').append(stages[i].name()).append("\":{")
+                    .append("\"wall_ms\":").append(millis(getWallTime(stages[i])))
+                    .append(",\"cpu_ms\":").append(millis(getCpuTime(stages[i])))
+                    .append('}');
+        }
+        sb.append("},\"counters\":{");
+        Counter[] names = Counter.values();
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('"').append(names[i].name()).append("\":").append(getCount(names[i]));
+        }
+        sb.append("}}");
+        return sb.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    @Override
+    public String toString() {
+        return toJSON();
+    }
+
+    /**
+     * Wall and CPU time of one stage on one thread
+     */
+    public static class StageTimer {
+
+        private final MappingMetrics metrics;
+        private final Stage stage;
+        private final long wallStart;
+        private final long cpuStart;
+
+        StageTimer(MappingMetrics metrics, Stage stage) {
+            this.metrics = metrics;
+            this.stage = stage;
+            this.wallStart = nanoTime();
+            this.cpuStart = currentThreadCpuTime();
+        }
+
+        /**
+         * Add the time since the start to the stage
+         */
+        public void stop() {
+            metrics.addWallTime(stage, nanoTime() - wallStart);
+            metrics.addCpuTime(stage, currentThreadCpuTime() - cpuStart);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mapping.helper;
+
+import static java.lang.Integer.getInteger;
+import static java.lang.Runtime.getRuntime;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import static java.util.concurrent.ForkJoinTask.adapt;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+
+/**
+ * Process wide work-stealing pool shared by all the mapping stages (mapping
+ * models and the MCS jobs they fan out).
+ *
+ * Jobs submitted from a pool thread are forked on that thread's queue, so a
+ * model waiting on its MCS jobs helps to run them instead of blocking a
+ * thread. The parallelism defaults to the number of processors and can be set
+ * with the system property {@value #THREADS_PROPERTY} or
+ * {@link #setParallelism(int)}.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public final class MappingThreadPool {
+
+    /**
+     * System property for the number of mapping threads
+     */
+    public static final String THREADS_PROPERTY = "rdt.mapping.threads";
+    private static final Logger LOG = getLogger(MappingThreadPool.class.getName());
+    private static volatile ForkJoinPool pool;
+
+    private MappingThreadPool() {
+    }
+
+    /**
+     *
+     * @return the shared mapping pool
+     */
+    public static ForkJoinPool getPool() {
+        ForkJoinPool p = pool;
+        if (p == null) {
+            synchronized (MappingThreadPool.class) {
+                p = pool;
+                if (p == null) {
+                    int threads = getInteger(THREADS_PROPERTY, getRuntime().availableProcessors());
+                    p = newPool(threads);
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Replace the shared pool by one with the given number of threads. Jobs
+     * already running on the old pool are allowed to finish.
+     *
+     * @param threads
+     */
+    public static synchronized void setParallelism(int threads) {
+        ForkJoinPool old = pool;
+        if (old != null && old.getParallelism() == Math.max(threads, 1)) {
+            return;
+        }
+        pool = newPool(threads);
+        if (old != null) {
+            old.shutdown();
+        }
+    }
+
+    /**
+     *
+     * @return number of threads of the shared pool
+     */
+    public static int getParallelism() {
+        return getPool().getParallelism();
+    }
+
+    /**
+     * Submit a job to the shared pool; wait for it with get() or join().
+     *
+     * @param <T>
+     * @param job
+     * @return the pending job
+     */
+    public static <T> ForkJoinTask<T> submit(Callable<T> job) {
+        ForkJoinPool p = getPool();
+        ForkJoinTask<T> task = adapt(job);
+        Thread current = Thread.currentThread();
+        if (current instanceof ForkJoinWorkerThread
+                && ((ForkJoinWorkerThread) current).getPool() == p) {
+            task.fork();
+        } else {
+            p.execute(task);
+        }
+        return task;
+    }
+
+    private static ForkJoinPool newPool(int threads) {
+        return new ForkJoinPool(Math.max(threads, 1),
+                (ForkJoinPool forkJoinPool) -> {
+                    ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                    t.setName("rdt-mapping-" + t.getPoolIndex());
+                    t.setDaemon(true);
+                    return t;
+                }, null, false);
+    }
+}
@@ -104,6 +104,17 @@ public abstract class BestMatch {
      */
     public abstract int getTotalFragmentCount(int indexI, int indexJ);
 
+    /**
+     * Revision of the cell, changed by every call that modifies it (the
+     * clear, the erase, the mapping and the score setters). Revisions are
+     * not reused across containers; a cell never modified is at 0.
+     *
+     * @param indexI
+     * @param indexJ
+     * @return
+     */
+    public abstract long getRevision(int indexI, int indexJ);
+
     /**
      * String IKey = substrateIndex + "_" + productIndex;
      *
@@ -19,10 +19,9 @@
 package uk.ac.ebi.reactionblast.mapping.interfaces;
 
 import java.io.IOException;
-import java.util.Collection;
 import uk.ac.ebi.reactionblast.mapping.algorithm.Holder;
 import uk.ac.ebi.reactionblast.mapping.container.MoleculeMoleculeMapping;
-import uk.ac.ebi.reactionblast.mapping.graph.MCSSolution;
+import uk.ac.ebi.reactionblast.mapping.graph.MCSSolutionStore;
 
 /**
  * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
@@ -67,5 +66,5 @@ public interface IGameTheory {
      * @param removeHydrogen
      * @throws Exception
      */
-    public void UpdateMatrix(Collection<MCSSolution> mcsSolutions, Holder mh, boolean removeHydrogen) throws Exception;
+    public void UpdateMatrix(MCSSolutionStore mcsSolutions, Holder mh, boolean removeHydrogen) throws Exception;
 }
@@ -26,6 +26,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import static java.util.Collections.unmodifiableCollection;
+import static java.util.Collections.unmodifiableMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -35,25 +37,24 @@ import java.util.TreeMap;
 import java.util.logging.Logger;
 import org.openscience.cdk.Mapping;
 import org.openscience.cdk.exception.CDKException;
-import static org.openscience.cdk.graph.ConnectivityChecker.isConnected;
-import static org.openscience.cdk.graph.ConnectivityChecker.partitionIntoMolecules;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IAtomContainerSet;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IReaction;
 import org.openscience.cdk.tools.CDKHydrogenAdder;
-import org.openscience.smsd.tools.BondEnergies;
-import static org.openscience.smsd.tools.BondEnergies.getInstance;
 import uk.ac.ebi.reactionblast.fingerprints.Feature;
 import uk.ac.ebi.reactionblast.fingerprints.PatternFingerprinter;
 import uk.ac.ebi.reactionblast.fingerprints.interfaces.IPatternFingerprinter;
+import uk.ac.ebi.reactionblast.mechanism.helper.BridgeFragments;
+import uk.ac.ebi.reactionblast.mechanism.helper.CircularSMILESGenerator;
 import uk.ac.ebi.reactionblast.mechanism.helper.MoleculeMoleculePair;
 import uk.ac.ebi.reactionblast.mechanism.interfaces.AbstractChangeCalculator;
 import static java.util.Collections.synchronizedMap;
 import java.util.HashMap;
 import static org.openscience.cdk.CDKConstants.REACTIVE_CENTER;
 import uk.ac.ebi.reactionblast.mechanism.helper.ReactionMappingUtility;
+import uk.ac.ebi.reactionblast.tools.BondEnergyTable;
 import uk.ac.ebi.reactionblast.tools.ExtReactionManipulatorTool;
 import static java.util.logging.Level.SEVERE;
 import static org.openscience.cdk.CDKConstants.ATOM_ATOM_MAPPING;
@@ -83,6 +84,9 @@ public class BondChangeCalculator extends AbstractChangeCalculator implements IB
     private final IPatternFingerprinter orderChangesWFingerprint;
     private final IPatternFingerprinter stereoChangesWFingerprint;
     private final IPatternFingerprinter reactionCenterWFingerprint;
+    private final Map<Integer, IPatternFingerprinter> reactionCenterFormedCleavedFingerprint;
+    private final Map<Integer, IPatternFingerprinter> reactionCenterOrderChangeFingerprint;
+    private final Map<Integer, IPatternFingerprinter> reactionCenterStereoChangeFingerprint;
     private final Set<MoleculeMoleculePair> reactionMoleculeMoleculePairList;
 
     private final Map<IAtom, IAtom> mappings;
@@ -90,6 +94,8 @@ public class BondChangeCalculator extends AbstractChangeCalculator implements IB
     private int energySum;
     private int energyDelta;
     private int totalSmallestFragmentSize;
+    private boolean bondChangesComputed;
+    private boolean reactionCentresComputed;
 
     private final Set<IBond> bondCleavedFormedChanges;
     private final Map<IBond, IBond> bondOrderChanges;
@@ -105,7 +111,7 @@ public class BondChangeCalculator extends AbstractChangeCalculator implements IB
             System.out.println("Bond Change Calculator START");
         }
 
-        BondEnergies be = getInstance();
+        BondEnergyTable be = BondEnergyTable.getInstance();
         int rEnergy = 0;
         int pEnergy = 0;
 
@@ -150,17 +156,24 @@ public class BondChangeCalculator extends AbstractChangeCalculator implements IB
             System.out.println("Bond Fingerprints Calculation BEGIN");
         }
         /*
-         * Bond formed and cleaved fingerprints
+         * The bond change fingerprints are only needed for the selected
+         * mapping, they are generated on first access
          */
-
-        if (DEBUG) {
-            System.out.println("Bond C/F Fingerprints Calculation BEGIN");
-        }
         this.formedCleavedWFingerprint = new PatternFingerprinter();
         this.formedCleavedWFingerprint.setFingerprintID(mappedReaction.getID() + ":" + "Bond Cleaved and Formed");
+        this.orderChangesWFingerprint = new PatternFingerprinter();
+        this.orderChangesWFingerprint.setFingerprintID(mappedReaction.getID() + ":" + "Bond Order Change");
+        this.stereoChangesWFingerprint = new PatternFingerprinter();
+        this.stereoChangesWFingerprint.setFingerprintID(mappedReaction.getID() + ":" + "Bond Stereo Change");
+        this.bondChangesComputed = false;
 
+        /*
+         * Energies and fragment sizes of the formed and cleaved bonds score
+         * every mapping; fragment sizes of all the bonds of a molecule are
+         * computed at once
+         */
+        Map<IAtomContainer, BridgeFragments> fragments = new IdentityHashMap<>();
         for (IBond bond : bondCleavedFormedChanges) {
-            this.formedCleavedWFingerprint.add(new Feature(ReactionMappingUtility.getCanonicalisedBondChangePattern(bond), 1.0));
             IAtomContainer container = getAtomContainer(bond, allReactants);
             if (container == null) {
                 pEnergy += be.getEnergies(bond);
@@ -168,113 +181,219 @@ public class BondChangeCalculator extends AbstractChangeCalculator implements IB
             } else {
                 rEnergy += be.getEnergies(bond);
             }
-            IAtomContainer cloneReactant = container.getBuilder().newInstance(IAtomContainer.class, container);
-            int chippedBondIndex = container.getBondNumber(bond);
-            this.totalSmallestFragmentSize += chipTheBondCountSmallestFragmentSize(cloneReactant, chippedBondIndex);
+            BridgeFragments bridges = fragments.get(container);
+            if (bridges == null) {
+                bridges = new BridgeFragments(container);
+                fragments.put(container, bridges);
+            }
+            this.totalSmallestFragmentSize += bridges.getSmallestFragmentSize(bond);
             this.energySum += be.getEnergies(bond);
 
         }
-        if (DEBUG) {
-            System.out.println("Bond C/F Fingerprints Calculation END");
-        }
 
-        if (DEBUG) {
-            System.out.println("Bond Order Fingerprints Calculation BEGIN");
-        }
         /*
-         * Bond Order Change fingerprints
+         * The reaction centre fingerprint and the Mol-Mol Pairs (MMP) are only
+         * needed for the selected mapping, they are generated on first access
          */
-        this.orderChangesWFingerprint = new PatternFingerprinter();
-        this.orderChangesWFingerprint.setFingerprintID(mappedReaction.getID() + ":" + "Bond Order Change");
-
-        for (Map.Entry<IBond, IBond> bond : bondOrderChanges.entrySet()) {
-            this.orderChangesWFingerprint.add(new Feature(ReactionMappingUtility.getCanonicalisedBondChangePattern(bond.getKey(), bond.getValue()), 1.0));
-        }
+        this.reactionCenterWFingerprint = new PatternFingerprinter();
+        this.reactionCenterWFingerprint.setFingerprintID(mappedReaction.getID() + ":" + "Reaction Center");
+        this.reactionMoleculeMoleculePairList = new LinkedHashSet<>();
+        this.reactionCenterFormedCleavedFingerprint = new TreeMap<>();
+        this.reactionCenterOrderChangeFingerprint = new TreeMap<>();
+        this.reactionCenterStereoChangeFingerprint = new TreeMap<>();
+        this.reactionCentresComputed = false;
 
         if (DEBUG) {
-            System.out.println("Bond Order Fingerprints Calculation END");
+            System.out.println("Bond Fingerprints Calculation END");
         }
 
+        setEnergyDelta(rEnergy - pEnergy);
+    }
+
+    /**
+     * Generate the bond formed/cleaved, order change and stereo change
+     * fingerprints, once
+     *
+     * @throws CDKException
+     */
+    private synchronized void computeBondChanges() throws CDKException {
+        if (bondChangesComputed) {
+            return;
+        }
         if (DEBUG) {
-            System.out.println("Bond Stereo Fingerprints Calculation BEGIN");
+            System.out.println("Bond Change Fingerprints Calculation BEGIN");
+        }
+        /*
+         * Built aside and kept only once complete, a failed pass leaves them
+         * empty and the next call starts again
+         */
+        IPatternFingerprinter formedCleaved = new PatternFingerprinter();
+        for (IBond bond : bondCleavedFormedChanges) {
+            formedCleaved.add(new Feature(ReactionMappingUtility.getCanonicalisedBondChangePattern(bond), 1.0));
+        }
+        IPatternFingerprinter orderChanges = new PatternFingerprinter();
+        for (Map.Entry<IBond, IBond> bond : bondOrderChanges.entrySet()) {
+            orderChanges.add(new Feature(ReactionMappingUtility.getCanonicalisedBondChangePattern(bond.getKey(), bond.getValue()), 1.0));
         }
         /*
          * Stereo centre fingerprints (Chirality (R/S), (E/Z) configurations)
          */
-        this.stereoChangesWFingerprint = new PatternFingerprinter();
-        this.stereoChangesWFingerprint.setFingerprintID(mappedReaction.getID() + ":" + "Bond Stereo Change");
-
+        IPatternFingerprinter stereoChanges = new PatternFingerprinter();
         for (IAtom atom : atomStereoChanges) {
-            this.stereoChangesWFingerprint.add(new Feature(ReactionMappingUtility.getCanonicalisedAtomChangePattern(atom), 1.0));
+            stereoChanges.add(new Feature(ReactionMappingUtility.getCanonicalisedAtomChangePattern(atom), 1.0));
         }
-
+        formedCleavedWFingerprint.add(formedCleaved);
+        orderChangesWFingerprint.add(orderChanges);
+        stereoChangesWFingerprint.add(stereoChanges);
+        bondChangesComputed = true;
         if (DEBUG) {
-            System.out.println("Bond Stereo Fingerprints Calculation END");
+            System.out.println("Bond Change Fingerprints Calculation END");
         }
+    }
 
+    /**
+     * Generate Reaction centre Fingerprint and Mol-Mol Pairs (MMP), once
+     *
+     * @throws CDKException
+     */
+    private synchronized void computeReactionCentres() throws CDKException {
+        if (reactionCentresComputed) {
+            return;
+        }
         if (DEBUG) {
             System.out.println("RC Fingerprints Calculation BEGIN");
         }
 
+        IAtomContainerSet allReactants = ExtReactionManipulatorTool.getAllReactants(mappedReaction);
+        IAtomContainerSet allProducts = ExtReactionManipulatorTool.getAllProducts(mappedReaction);
+
+        int circleDiameter = 3;
         /*
-         * Generate Reaction centre Fingerprint and Mol-Mol Pairs (MMP)
+         * Circular SMILES are shared by the centre fingerprint and the MMPs
          */
-        this.reactionCenterWFingerprint = new PatternFingerprinter();
-        this.reactionCenterWFingerprint.setFingerprintID(mappedReaction.getID() + ":" + "Reaction Center");
+        CircularSMILESGenerator environments = new CircularSMILESGenerator(true);
 
-        this.reactionMoleculeMoleculePairList = new LinkedHashSet<>();
+        /*
+         * Built aside and kept only once complete, a failed pass leaves them
+         * empty and the next call starts again
+         */
+        IPatternFingerprinter centre = new PatternFingerprinter();
+        Set<MoleculeMoleculePair> pairs = new LinkedHashSet<>();
+        Map<Integer, IPatternFingerprinter> formedCleaved = new TreeMap<>();
+        Map<Integer, IPatternFingerprinter> orderChange = new TreeMap<>();
+        Map<Integer, IPatternFingerprinter> stereoChange = new TreeMap<>();
+        try {
+            for (Map.Entry<IAtom, IAtom> map : mappings.entrySet()) {
 
-        int circleDiameter = 3;
+                if (map.getKey().getSymbol().equals("H")) {
+                    continue;
+                }
 
-        for (Map.Entry<IAtom, IAtom> map : mappings.entrySet()) {
+                IAtomContainer atomContainerR = getAtomContainer(map.getKey(), allReactants);
+                IAtomContainer atomContainerP = getAtomContainer(map.getValue(), allProducts);
 
-            if (map.getKey().getSymbol().equals("H")) {
-                continue;
-            }
+                List<String> rcR = new ArrayList<>();
 
-            IAtomContainer atomContainerR = getAtomContainer(map.getKey(), allReactants);
-            IAtomContainer atomContainerP = getAtomContainer(map.getValue(), allProducts);
+                if (map.getKey().getFlag(REACTIVE_CENTER)) {
+                    for (int i = 0; i < circleDiameter; i++) {
+                        String circularSMILES = environments.getCircularSMILES(atomContainerR, map.getKey(), i);
+                        centre.add(new Feature(circularSMILES, 1.0));
+                        rcR.add(circularSMILES);
+                    }
+                }
 
-            List<String> rcR = new ArrayList<>();
+                List<String> rcP = new ArrayList<>();
 
-            if (map.getKey().getFlag(REACTIVE_CENTER)) {
-                for (int i = 0; i < circleDiameter; i++) {
-                    String circularSMILES = getCircularSMILES(atomContainerR, map.getKey(), i, true);
-                    reactionCenterWFingerprint.add(new Feature(circularSMILES, 1.0));
-                    rcR.add(circularSMILES);
+                if (map.getValue().getFlag(REACTIVE_CENTER)) {
+                    for (int i = 0; i < circleDiameter; i++) {
+                        String circularSMILES = environments.getCircularSMILES(atomContainerP, map.getValue(), i);
+                        centre.add(new Feature(circularSMILES, 1.0));
+                        rcP.add(circularSMILES);
+                    }
                 }
-            }
-
-            List<String> rcP = new ArrayList<>();
 
-            if (map.getValue().getFlag(REACTIVE_CENTER)) {
-                for (int i = 0; i < circleDiameter; i++) {
-                    String circularSMILES = getCircularSMILES(atomContainerP, map.getValue(), i, true);
-                    reactionCenterWFingerprint.add(new Feature(circularSMILES, 1.0));
-                    rcP.add(circularSMILES);
+                if (map.getKey().getFlag(REACTIVE_CENTER) && map.getValue().getFlag(REACTIVE_CENTER)) {
+                    for (int i = 0; i < circleDiameter; i++) {
+                        StringBuilder mmp = new StringBuilder();
+                        mmp.append(rcR.get(i)).append(">>").append(rcP.get(i));
+                        centre.add(new Feature(mmp.toString(), 1.0));
+                    }
+                    MoleculeMoleculePair molMolPair = getMolMolPair(map.getKey(), map.getValue(), atomContainerR, atomContainerP, environments);
+                    pairs.add(molMolPair);
                 }
             }
 
-            if (map.getKey().getFlag(REACTIVE_CENTER) && map.getValue().getFlag(REACTIVE_CENTER)) {
-                for (int i = 0; i < circleDiameter; i++) {
-                    StringBuilder mmp = new StringBuilder();
-                    mmp.append(rcR.get(i)).append(">>").append(rcP.get(i));
-                    reactionCenterWFingerprint.add(new Feature(mmp.toString(), 1.0));
+            /*
+             * Circular SMILES of the atoms of the changed bonds and stereo
+             * centres, by level
+             */
+            for (IBond bond : bondCleavedFormedChanges) {
+                IAtomContainer container = getAtomContainer(bond, allReactants);
+                if (container == null) {
+                    container = getAtomContainer(bond, allProducts);
+                }
+                for (IAtom atom : bond.atoms()) {
+                    addCircularFeatures(formedCleaved, "Formed/Cleaved",
+                            container, atom, circleDiameter, environments);
+                }
+            }
+            for (Map.Entry<IBond, IBond> map : bondOrderChanges.entrySet()) {
+                IAtomContainer containerR = getAtomContainer(map.getKey(), allReactants);
+                for (IAtom atom : map.getKey().atoms()) {
+                    addCircularFeatures(orderChange, "Order Change",
+                            containerR, atom, circleDiameter, environments);
+                }
+                IAtomContainer containerP = getAtomContainer(map.getValue(), allProducts);
+                for (IAtom atom : map.getValue().atoms()) {
+                    addCircularFeatures(orderChange, "Order Change",
+                            containerP, atom, circleDiameter, environments);
                 }
-                MoleculeMoleculePair molMolPair = getMolMolPair(map.getKey(), map.getValue(), atomContainerR, atomContainerP);
-                this.reactionMoleculeMoleculePairList.add(molMolPair);
             }
+            for (IAtom atom : atomStereoChanges) {
+                IAtomContainer container = getAtomContainer(atom, allReactants);
+                if (container == null) {
+                    container = getAtomContainer(atom, allProducts);
+                }
+                addCircularFeatures(stereoChange, "Stereo Change",
+                        container, atom, circleDiameter, environments);
+            }
+            reactionCenterWFingerprint.add(centre);
+        } catch (Exception ex) {
+            throw new CDKException("Unable to generate the reaction centres: " + ex.getMessage(), ex);
         }
+        reactionMoleculeMoleculePairList.addAll(pairs);
+        reactionCenterFormedCleavedFingerprint.putAll(formedCleaved);
+        reactionCenterOrderChangeFingerprint.putAll(orderChange);
+        reactionCenterStereoChangeFingerprint.putAll(stereoChange);
+        reactionCentresComputed = true;
 
         if (DEBUG) {
             System.out.println("RC Fingerprints Calculation END");
         }
+    }
 
-        if (DEBUG) {
-            System.out.println("Bond Fingerprints Calculation END");
+    private void addCircularFeatures(Map<Integer, IPatternFingerprinter> levels, String name,
+            IAtomContainer container, IAtom atom, int circleDiameter,
+            CircularSMILESGenerator environments) throws Exception {
+        if (container == null || atom.getSymbol().equals("H")) {
+            return;
+        }
+        for (int i = 0; i < circleDiameter; i++) {
+            if (!levels.containsKey(i)) {
+                IPatternFingerprinter fp = new PatternFingerprinter();
+                fp.setFingerprintID(mappedReaction.getID() + ":" + name + " Reaction Center at Level: " + i);
+                levels.put(i, fp);
+            }
+            levels.get(i).add(new Feature(environments.getCircularSMILES(container, atom, i), 1.0));
         }
+    }
 
-        setEnergyDelta(rEnergy - pEnergy);
+    /**
+     * @return true if the reaction centre fingerprint and the transformation
+     * pairs have been generated
+     */
+    public synchronized boolean isReactionCentreComputed() {
+        return reactionCentresComputed;
     }
 
     /**
@@ -283,11 +402,13 @@ public class BondChangeCalculator extends AbstractChangeCalculator implements IB
      */
     @Override
     public synchronized IPatternFingerprinter getOrderChangesWFingerprint() throws CDKException {
+        computeBondChanges();
         return orderChangesWFingerprint;
     }
 
     @Override
     public synchronized IPatternFingerprinter getStereoChangesWFingerprint() throws CDKException {
+        computeBondChanges();
         return stereoChangesWFingerprint;
     }
 
@@ -297,6 +418,7 @@ public class BondChangeCalculator extends AbstractChangeCalculator implements IB
      */
     @Override
     public synchronized IPatternFingerprinter getFormedCleavedWFingerprint() throws CDKException {
+        computeBondChanges();
         return formedCleavedWFingerprint;
     }
 
@@ -308,6 +430,7 @@ public class BondChangeCalculator extends AbstractChangeCalculator implements IB
      */
     @Override
     public synchronized IPatternFingerprinter getReactionCenterWFingerprint() throws CDKException {
+        computeReactionCentres();
         return reactionCenterWFingerprint;
     }
 
@@ -871,16 +994,53 @@ public class BondChangeCalculator extends AbstractChangeCalculator implements IB
     }
 
     @Override
-    public Collection<MoleculeMoleculePair> getReactionCentreTransformationPairs() {
+    public synchronized Collection<MoleculeMoleculePair> getReactionCentreTransformationPairs() throws CDKException {
+        computeReactionCentres();
         return unmodifiableCollection(reactionMoleculeMoleculePairList);
     }
 
+    /**
+     * Circular SMILES of the atoms of the formed and cleaved bonds, by level
+     *
+     * @return level to fingerprint
+     * @throws CDKException
+     */
+    @Override
+    public synchronized Map<Integer, IPatternFingerprinter> getReactionCenterFormedCleavedFingerprint() throws CDKException {
+        computeReactionCentres();
+        return unmodifiableMap(reactionCenterFormedCleavedFingerprint);
+    }
+
+    /**
+     * Circular SMILES of the atoms of the bonds with an order change, by level
+     *
+     * @return level to fingerprint
+     * @throws CDKException
+     */
+    @Override
+    public synchronized Map<Integer, IPatternFingerprinter> getReactionCenterOrderChangeFingerprint() throws CDKException {
+        computeReactionCentres();
+        return unmodifiableMap(reactionCenterOrderChangeFingerprint);
+    }
+
+    /**
+     * Circular SMILES of the atoms with a stereo change, by level
+     *
+     * @return level to fingerprint
+     * @throws CDKException
+     */
+    @Override
+    public synchronized Map<Integer, IPatternFingerprinter> getReactionCenterStereoChangeFingerprint() throws CDKException {
+        computeReactionCentres();
+        return unmodifiableMap(reactionCenterStereoChangeFingerprint);
+    }
+
     /**
      *
      * @return
      */
     @Override
-    public Map<String, Collection<String>> getMoleculeMoleculeTransformationPairs() {
+    public Map<String, Collection<String>> getMoleculeMoleculeTransformationPairs() throws CDKException {
         Map<String, Collection<String>> uniqueRPAIRS = new TreeMap<>();
         this.getReactionCentreTransformationPairs().stream().map((MoleculeMoleculePair m) -> {
             if (!uniqueRPAIRS.containsKey(m.getName().toString())) {
@@ -894,21 +1054,6 @@ public class BondChangeCalculator extends AbstractChangeCalculator implements IB
         return uniqueRPAIRS;
     }
 
-    private int chipTheBondCountSmallestFragmentSize(IAtomContainer cloneContainer, int chippedBondIndex) {
-        int size = cloneContainer.getAtomCount();
-        cloneContainer.removeBond(chippedBondIndex);
-        boolean fragmentFlag = isConnected(cloneContainer);
-        if (!fragmentFlag) {
-            IAtomContainerSet partitionIntoMolecules = partitionIntoMolecules(cloneContainer);
-            for (IAtomContainer ac : partitionIntoMolecules.atomContainers()) {
-                if (size > ac.getAtomCount()) {
-                    size = ac.getAtomCount();
-                }
-            }
-        }
-        return size;
-    }
-
     /**
      * @return the totalSmallestFragmentSize
      */
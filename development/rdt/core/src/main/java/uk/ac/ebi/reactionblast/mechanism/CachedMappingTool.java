@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mechanism;
+
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.openscience.cdk.CDKConstants.MAPPED;
+import org.openscience.cdk.interfaces.IReaction;
+import uk.ac.ebi.reactionblast.interfaces.IStandardizer;
+import uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MAPPING_CACHE_HITS;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.REACTIONS;
+import uk.ac.ebi.reactionblast.mechanism.helper.CachedMapping;
+import static uk.ac.ebi.reactionblast.mechanism.helper.ReactionSignature.getSignature;
+import uk.ac.ebi.reactionblast.mechanism.interfaces.IMappingCache;
+
+/**
+ * Maps reactions with the {@link ReactionMechanismTool} behind a mapping
+ * cache: a reaction with the same signature as one mapped before is answered
+ * from the cache. Reactions annotated with their own (user defined) mappings
+ * bypass the cache. A hit returns the mapped reaction stored for the
+ * signature (see {@link CachedMapping}), the atoms of the reaction passed in
+ * are not mapped.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class CachedMappingTool {
+
+    private static final Logger LOG = getLogger(CachedMappingTool.class.getName());
+    private final IMappingCache cache;
+
+    /**
+     *
+     * @param cache mapping cache, null to map every reaction
+     */
+    public CachedMappingTool(IMappingCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     *
+     * @param reaction
+     * @param forcedMapping force re-mapping of the reactions
+     * @param standardizer
+     * @param metrics metrics the timings and counters of the reaction are
+     * added to
+     * @return the mapping result or null if no valid mapping was found
+     * @throws Exception
+     */
+    public CachedMapping map(IReaction reaction, boolean forcedMapping, IStandardizer standardizer,
+            MappingMetrics metrics) throws Exception {
+        String signature = null;
+        if (cache != null && (forcedMapping || !reaction.getFlag(MAPPED))) {
+            signature = getSignature(reaction);
+        }
+        if (signature != null) {
+            CachedMapping mapping = cache.get(signature);
+            if (mapping != null) {
+                metrics.count(REACTIONS);
+                metrics.count(MAPPING_CACHE_HITS);
+                return mapping;
+            }
+        }
+        ReactionMechanismTool rmt = new ReactionMechanismTool(reaction, forcedMapping, standardizer);
+        metrics.merge(rmt.getMetrics());
+        MappingSolution solution = rmt.getSelectedSolution();
+        if (solution == null) {
+            return null;
+        }
+        CachedMapping mapping = CachedMapping.of(solution);
+        if (signature != null) {
+            cache.put(signature, mapping);
+        }
+        return mapping;
+    }
+
+    /**
+     * @return the mapping cache, null if none
+     */
+    public IMappingCache getCache() {
+        return cache;
+    }
+}
@@ -25,6 +25,7 @@ import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
 import org.openscience.cdk.interfaces.IReaction;
 import uk.ac.ebi.reactionblast.mapping.Reactor;
+import uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
 
 /**
@@ -52,6 +53,7 @@ public class MappingSolution implements Serializable {
     private final IBondChangeCalculator bondChangeCalculator;
     private boolean generate3D;
     private boolean generate2D;
+    private MappingMetrics metrics;
 
     /**
      *
@@ -206,6 +208,20 @@ public class MappingSolution implements Serializable {
         this.chosen = chosen;
     }
 
+    /**
+     * @return timings and counters of the mapping of the reaction
+     */
+    public MappingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param metrics timings and counters of the mapping of the reaction
+     */
+    void setMetrics(MappingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * @return the generate3D
      */
@@ -30,6 +30,7 @@ import static java.util.Collections.unmodifiableCollection;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinTask;
 import static java.util.logging.Level.SEVERE;
 import java.util.logging.Logger;
 import static org.openscience.cdk.CDKConstants.ATOM_ATOM_MAPPING;
@@ -51,16 +52,29 @@ import org.openscience.cdk.tools.ILoggingTool;
 import static org.openscience.cdk.tools.LoggingToolFactory.createLoggingTool;
 import static org.openscience.cdk.tools.manipulator.AtomContainerSetManipulator.getAllAtomContainers;
 import static org.openscience.cdk.tools.manipulator.AtomContainerSetManipulator.getAtomCount;
-import org.openscience.smsd.tools.BondEnergies;
-import static org.openscience.smsd.tools.BondEnergies.getInstance;
 import uk.ac.ebi.reactionblast.fingerprints.interfaces.IFeature;
 import uk.ac.ebi.reactionblast.fingerprints.interfaces.IPatternFingerprinter;
 import uk.ac.ebi.reactionblast.interfaces.IStandardizer;
 import uk.ac.ebi.reactionblast.mapping.CallableAtomMappingTool;
 import uk.ac.ebi.reactionblast.mapping.Reactor;
+import uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MODELS_SKIPPED;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.REACTION_CENTRES_SKIPPED;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.REACTIONS;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Stage.BOND_CHANGES;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Stage.TOTAL;
+import uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.StageTimer;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
+import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MAX;
+import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MIN;
+import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MIX;
+import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.RINGS;
 import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.USER_DEFINED;
+import uk.ac.ebi.reactionblast.mechanism.helper.BondChangeLowerBound;
+import uk.ac.ebi.reactionblast.mechanism.interfaces.IMappingOptimality;
+import uk.ac.ebi.reactionblast.tools.BondEnergyTable;
 import uk.ac.ebi.reactionblast.tools.StandardizeReaction;
+import static java.lang.Boolean.getBoolean;
 import static java.lang.Integer.parseInt;
 import static java.lang.Math.abs;
 import static java.lang.System.getProperty;
@@ -80,8 +94,21 @@ public class ReactionMechanismTool implements Serializable {
             = createLoggingTool(ReactionMechanismTool.class);
     private static final long serialVersionUID = 07342630505L;
     private static final Logger LOG = getLogger(ReactionMechanismTool.class.getName());
+
+    /**
+     * System property to map in fast mode (see
+     * {@link #ReactionMechanismTool(IReaction, boolean, IStandardizer, IMappingOptimality)})
+     * with the {@link BondChangeLowerBound} test
+     */
+    public static final String FAST_MODE_PROPERTY = "rdt.mapping.fast";
+    /*
+     * Order in which the models are evaluated in fast mode, the same order in
+     * which the solutions are compared otherwise
+     */
+    private static final IMappingAlgorithm[] MODEL_PRIORITY = {MIN, MAX, MIX, RINGS};
     private MappingSolution selectedMapping;
     private Collection<MappingSolution> allSolutions;
+    private final MappingMetrics metrics;
 
     /**
      *
@@ -103,9 +130,53 @@ public class ReactionMechanismTool implements Serializable {
      * @throws Exception
      */
     public ReactionMechanismTool(IReaction reaction, boolean forcedMapping, IStandardizer standardizer) throws CDKException, AssertionError, Exception {
+        this(reaction, forcedMapping, standardizer,
+                getBoolean(FAST_MODE_PROPERTY) ? new BondChangeLowerBound() : null);
+    }
+
+    /**
+     * In fast mode (optimality test given) the mapping models are started
+     * together in priority order and evaluated in that order as they finish;
+     * the remaining ones are cancelled as soon as the selected solution passes
+     * the optimality test. Otherwise all the models are run in parallel and
+     * compared.
+     *
+     * @param reaction
+     * @param forcedMapping
+     * @param standardizer
+     * @param optimality optimality test for fast mode, null to run all the
+     * models
+     * @throws CDKException
+     * @throws AssertionError
+     * @throws Exception
+     */
+    public ReactionMechanismTool(IReaction reaction, boolean forcedMapping, IStandardizer standardizer,
+            IMappingOptimality optimality) throws CDKException, AssertionError, Exception {
         this.allSolutions = synchronizedList(new ArrayList<MappingSolution>());
         this.selectedMapping = null;
+        this.metrics = new MappingMetrics();
+        metrics.count(REACTIONS);
 
+        StageTimer timer = metrics.start(TOTAL);
+        try {
+            annotate(reaction, forcedMapping, standardizer, optimality);
+        } finally {
+            timer.stop();
+        }
+        /*
+         * Only the selected solution builds its reaction centres, on demand
+         */
+        for (MappingSolution solution : this.allSolutions) {
+            if (solution != this.selectedMapping
+                    && solution.getBondChangeCalculator() instanceof BondChangeCalculator
+                    && !((BondChangeCalculator) solution.getBondChangeCalculator()).isReactionCentreComputed()) {
+                metrics.count(REACTION_CENTRES_SKIPPED);
+            }
+        }
+    }
+
+    private void annotate(IReaction reaction, boolean forcedMapping, IStandardizer standardizer,
+            IMappingOptimality optimality) throws CDKException {
         if (!isBalanced(reaction)) {
             logger.info("Atoms not balanced in the input reaction: {0}; "
                     + "unbalanced reaction may result in erroneous bond change assumptions!", reaction.getID());
@@ -155,30 +226,38 @@ public class ReactionMechanismTool implements Serializable {
                 }
 
                 boolean onlyCoreMappingByMCS = true;
-                CallableAtomMappingTool amt
-                        = new CallableAtomMappingTool(reaction, standardizer, onlyCoreMappingByMCS);
-                Map<IMappingAlgorithm, Reactor> solutions = amt.getSolutions();
-                logger.info("!!!!Calculating Best Mapping Model!!!!");
-                boolean selected;
-                for (IMappingAlgorithm algorithm : solutions.keySet()) {
-                    Reactor reactor = solutions.get(algorithm);
-
-                    if (DEBUG) {
-                        SmilesGenerator withAtomClasses = unique().aromatic().withAtomClasses();
-                        out.println("reaction mapped " + withAtomClasses.createReactionSMILES(reactor.getReactionWithAtomAtomMapping()));
+                if (optimality == null) {
+                    CallableAtomMappingTool amt
+                            = new CallableAtomMappingTool(reaction, standardizer, onlyCoreMappingByMCS, metrics);
+                    Map<IMappingAlgorithm, Reactor> solutions = amt.getSolutions();
+                    logger.info("!!!!Calculating Best Mapping Model!!!!");
+                    for (IMappingAlgorithm algorithm : solutions.keySet()) {
+                        evaluateSolution(algorithm, solutions.get(algorithm));
                     }
-                    int atomCountR = getNonHydrogenMappingAtomCount(reactor.getReactionWithAtomAtomMapping().getReactants());
-                    int atomCountP = getNonHydrogenMappingAtomCount(reactor.getReactionWithAtomAtomMapping().getProducts());
-
-                    if (atomCountR != atomCountP) {
-                        logger.warn("ERROR in Mapping " + reactor.toString());
-                        String newline = getProperty("line.separator");
-                        logger.warn("Unmapped atoms present in this reaction" + "(" + algorithm + ") algorithm.");
-//                        throw new AssertionError(newline + "Unmapped atoms present in the reaction mapped by AAM "
-//                                + "(" + algorithm + ") algorithm." + newline);
+                } else {
+                    CallableAtomMappingTool amt
+                            = new CallableAtomMappingTool(reaction, standardizer, onlyCoreMappingByMCS, metrics, false);
+                    logger.info("!!!!Calculating Mapping Models in Priority Order!!!!");
+                    Map<IMappingAlgorithm, ForkJoinTask<Reactor>> jobs = amt.start(MODEL_PRIORITY);
+                    try {
+                        int evaluated = 0;
+                        for (Map.Entry<IMappingAlgorithm, ForkJoinTask<Reactor>> job : jobs.entrySet()) {
+                            evaluated++;
+                            Reactor reactor = amt.collect(job.getValue());
+                            if (reactor == null) {
+                                continue;
+                            }
+                            evaluateSolution(job.getKey(), reactor);
+                            if (this.selectedMapping != null && optimality.isOptimal(this.selectedMapping)) {
+                                metrics.count(MODELS_SKIPPED, jobs.size() - evaluated);
+                                break;
+                            }
+                        }
+                    } finally {
+                        for (ForkJoinTask<Reactor> job : jobs.values()) {
+                            job.cancel(false);
+                        }
                     }
-                    selected = isMappingSolutionAcceptable(solutions.get(algorithm), algorithm, reactor.getReactionWithAtomAtomMapping());
-                    logger.info("is solution: " + algorithm + " selected: " + selected);
                 }
                 gc();
             } catch (Exception e) {
@@ -189,6 +268,25 @@ public class ReactionMechanismTool implements Serializable {
         }
     }
 
+    private void evaluateSolution(IMappingAlgorithm algorithm, Reactor reactor) throws Exception {
+        if (DEBUG) {
+            SmilesGenerator withAtomClasses = unique().aromatic().withAtomClasses();
+            out.println("reaction mapped " + withAtomClasses.createReactionSMILES(reactor.getReactionWithAtomAtomMapping()));
+        }
+        int atomCountR = getNonHydrogenMappingAtomCount(reactor.getReactionWithAtomAtomMapping().getReactants());
+        int atomCountP = getNonHydrogenMappingAtomCount(reactor.getReactionWithAtomAtomMapping().getProducts());
+
+        if (atomCountR != atomCountP) {
+            logger.warn("ERROR in Mapping " + reactor.toString());
+            String newline = getProperty("line.separator");
+            logger.warn("Unmapped atoms present in this reaction" + "(" + algorithm + ") algorithm.");
+//            throw new AssertionError(newline + "Unmapped atoms present in the reaction mapped by AAM "
+//                    + "(" + algorithm + ") algorithm." + newline);
+        }
+        boolean selected = isMappingSolutionAcceptable(reactor, algorithm, reactor.getReactionWithAtomAtomMapping());
+        logger.info("is solution: " + algorithm + " selected: " + selected);
+    }
+
     private boolean isBalanced(IReaction r) {
 
         Map<String, Integer> atomUniqueCounter1 = new TreeMap<>();
@@ -271,7 +369,9 @@ public class ReactionMechanismTool implements Serializable {
             IBondChangeCalculator bcc;
             int fragmentDeltaChanges;
             if (reactor == null && ma.equals(USER_DEFINED)) {
+                StageTimer timer = metrics.start(BOND_CHANGES);
                 bcc = new BondChangeCalculator(reaction);
+                timer.stop();
                 fragmentDeltaChanges = 0;
                 int bondChange = (int) getTotalBondChange(bcc.getFormedCleavedWFingerprint());
                 bondChange += getTotalBondChange(bcc.getOrderChangesWFingerprint());
@@ -294,6 +394,7 @@ public class ReactionMechanismTool implements Serializable {
                         totalSmallestFragmentCount,
                         localScore,
                         bcc.getEnergyDelta());
+                mappingSolution.setMetrics(metrics);
 
                 chosen = true;
                 mappingSolution.setChosen(chosen);
@@ -303,7 +404,9 @@ public class ReactionMechanismTool implements Serializable {
                 if (reactor == null) {
                     throw new CDKException("Reactor is NULL");
                 }
+                StageTimer timer = metrics.start(BOND_CHANGES);
                 bcc = new BondChangeCalculator(reactor.getReactionWithAtomAtomMapping());
+                timer.stop();
                 fragmentDeltaChanges = reactor.getDelta();
 
                 int bondCleavedFormed = (int) getTotalBondChange(bcc.getFormedCleavedWFingerprint());
@@ -338,6 +441,7 @@ public class ReactionMechanismTool implements Serializable {
                         totalSmallestFragmentCount,
                         localScore,
                         bcc.getEnergyDelta());
+                mappingSolution.setMetrics(metrics);
 
                 if (ma == null) {
                     throw new CDKException("Model is pointing to NULL");
@@ -564,7 +668,7 @@ public class ReactionMechanismTool implements Serializable {
     private synchronized int getTotalBondChangeEnergy(IPatternFingerprinter fingerprint, boolean skipHydrogen) {
         int total = 0;
         try {
-            BondEnergies be = getInstance();
+            BondEnergyTable be = BondEnergyTable.getInstance();
             for (IFeature feature : fingerprint.getFeatures()) {
                 double val = feature.getWeight();
                 String key = feature.getPattern();
@@ -654,6 +758,14 @@ public class ReactionMechanismTool implements Serializable {
         return unmodifiableCollection(this.allSolutions);
     }
 
+    /**
+     *
+     * @return timings and counters of the mapping of the reaction
+     */
+    public MappingMetrics getMetrics() {
+        return metrics;
+    }
+
     private int getNonHydrogenMappingAtomCount(IAtomContainerSet mol) {
         int count = MIN_VALUE;
         List<IAtomContainer> allAtomContainers = getAllAtomContainers(mol);
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mechanism.helper;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainerSet;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IReaction;
+import uk.ac.ebi.reactionblast.mechanism.MappingSolution;
+import uk.ac.ebi.reactionblast.mechanism.interfaces.IMappingOptimality;
+
+/**
+ * A solution is optimal if its bond changes reach a lower bound derived from
+ * the reaction alone: each bond formed or cleaved changes the number of bonds
+ * between one pair of elements by one (order changes leave it as it is), so a
+ * mapping needs at least the summed difference of these numbers between the
+ * reactants and the products. Bonds to hydrogen are left out. No bound is
+ * given for reactions whose heavy atoms are not balanced.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class BondChangeLowerBound implements IMappingOptimality, Serializable {
+
+    private static final long serialVersionUID = 0x4c6f77657242L;
+    private static final Logger LOG = getLogger(BondChangeLowerBound.class.getName());
+
+    @Override
+    public boolean isOptimal(MappingSolution solution) {
+        if (solution == null || solution.getReaction() == null) {
+            return false;
+        }
+        int bound = getLowerBound(solution.getReaction());
+        return bound >= 0 && solution.getTotalBondChanges() <= bound;
+    }
+
+    /**
+     *
+     * @param reaction
+     * @return minimum number of bonds formed and cleaved by any mapping of
+     * this reaction, -1 if the heavy atoms are not balanced
+     */
+    public static int getLowerBound(IReaction reaction) {
+        Map<String, Integer> atoms = new HashMap<>();
+        Map<String, Integer> bonds = new HashMap<>();
+        count(reaction.getReactants(), atoms, bonds, 1);
+        count(reaction.getProducts(), atoms, bonds, -1);
+        for (Integer difference : atoms.values()) {
+            if (difference != 0) {
+                return -1;
+            }
+        }
+        int bound = 0;
+        for (Integer difference : bonds.values()) {
+            bound += Math.abs(difference);
+        }
+        return bound;
+    }
+
+    private static void count(IAtomContainerSet molecules,
+            Map<String, Integer> atoms, Map<String, Integer> bonds, int sign) {
+        for (IAtomContainer mol : molecules.atomContainers()) {
+            int copies = molecules.getMultiplier(mol) == null ? 1 : molecules.getMultiplier(mol).intValue();
+            for (int i = 0; i < mol.getAtomCount(); i++) {
+                String symbol = mol.getAtom(i).getSymbol();
+                if (!symbol.equals("H")) {
+                    atoms.merge(symbol, sign * copies, Integer::sum);
+                }
+            }
+            for (IBond bond : mol.bonds()) {
+                String a = bond.getAtom(0).getSymbol();
+                String b = bond.getAtom(1).getSymbol();
+                if (a.equals("H") || b.equals("H")) {
+                    continue;
+                }
+                String key = a.compareTo(b) <= 0 ? a + "-" + b : b + "-" + a;
+                bonds.merge(key, sign * copies, Integer::sum);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mechanism.helper;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import uk.ac.ebi.reactionblast.mapping.container.CompiledMolecule;
+
+/**
+ * Size of the smallest fragment left when one bond of a molecule is broken,
+ * for all its bonds at once. Bridges are found by a depth first search
+ * (Tarjan's low links); breaking a bridge splits its component into the
+ * subtree below it and the rest, any other bond leaves the molecule as it
+ * is. The bridges are read from the {@link CompiledMolecule} of the
+ * molecule, which is not modified.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public final class BridgeFragments {
+
+    private static final Logger LOG = getLogger(BridgeFragments.class.getName());
+    private final Map<IBond, Integer> bondIndex;
+    private final int[] smallestFragment;
+
+    /**
+     *
+     * @param container
+     */
+    public BridgeFragments(IAtomContainer container) {
+        CompiledMolecule molecule = CompiledMolecule.of(container);
+        int m = molecule.getBondCount();
+        this.bondIndex = new IdentityHashMap<>(2 * m);
+        this.smallestFragment = new int[m];
+        for (int k = 0; k < m; k++) {
+            bondIndex.put(container.getBond(k), k);
+            smallestFragment[k] = molecule.getSmallestFragmentSize(k);
+        }
+    }
+
+    /**
+     *
+     * @param bond a bond of the molecule
+     * @return atom count of the smallest molecule left once the bond is
+     * removed, -1 if the bond is not in the molecule
+     */
+    public int getSmallestFragmentSize(IBond bond) {
+        Integer k = bondIndex.get(bond);
+        return k == null ? -1 : smallestFragment[k];
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mechanism.helper;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringWriter;
+import static java.lang.System.getProperty;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.interfaces.IReaction;
+import static org.openscience.cdk.smiles.SmilesGenerator.generic;
+import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
+import uk.ac.ebi.reactionblast.mechanism.MappingSolution;
+import uk.ac.ebi.reactionblast.mechanism.interfaces.IBondChangeCalculator;
+import uk.ac.ebi.reactionblast.tools.rxnfile.MDLV2000RXNWriter;
+
+/**
+ * Mapping result of a reaction as kept by an
+ * {@link uk.ac.ebi.reactionblast.mechanism.interfaces.IMappingCache}: the
+ * selected model and its scores, the mapped reaction (RXN and mapped SMILES)
+ * and the bond change fingerprints, all in text form so that an entry can be
+ * stored off heap and served without mapping the reaction again.
+ * <p>
+ * The mapped reaction is the one mapped first for a signature, the canonical
+ * representative of every reaction with that signature: a cache hit returns
+ * its molecules, atom order and coordinates, not a mapping of the atoms of the
+ * reaction looked up.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class CachedMapping implements Serializable {
+
+    private static final long serialVersionUID = 0x5a3c1e7f92d4L;
+    private static final Logger LOG = getLogger(CachedMapping.class.getName());
+    private static final String NEW_LINE = getProperty("line.separator");
+    /*
+     * RXN name line written by the MDLV2000RXNWriter for a reaction without ID
+     */
+    private static final String RXN_NAME = "  EC-BLAST     ";
+
+    private final IMappingAlgorithm algorithm;
+    private final String mappedRXN;
+    private final String mappedSMILES;
+    private final int totalBondChanges;
+    private final int totalFragmentChanges;
+    private final int smallestFragmentCount;
+    private final int totalCarbonBondChanges;
+    private final int totalStereoChanges;
+    private final double bondEnergySum;
+    private final double energyDelta;
+    private final String formedCleavedFingerprint;
+    private final String orderChangesFingerprint;
+    private final String stereoChangesFingerprint;
+    private final String reactionCenterFingerprint;
+
+    /**
+     *
+     * @param solution selected mapping solution of a reaction
+     * @return the mapping result of this solution
+     * @throws Exception
+     */
+    public static CachedMapping of(MappingSolution solution) throws Exception {
+        IBondChangeCalculator bcc = solution.getBondChangeCalculator();
+        IReaction mappedReaction = bcc.getReaction();
+        String id = mappedReaction.getID();
+        StringWriter rxn = new StringWriter();
+        try {
+            /*
+             The reaction ID is added back by getMappedRXN()
+             */
+            mappedReaction.setID(null);
+            try (MDLV2000RXNWriter writer = new MDLV2000RXNWriter(rxn)) {
+                writer.write(mappedReaction);
+            }
+        } finally {
+            mappedReaction.setID(id);
+        }
+        String smiles = generic().aromatic().withAtomClasses()
+                .createReactionSMILES(bcc.getReactionWithCompressUnChangedHydrogens());
+        return new CachedMapping(
+                solution.getAlgorithmID(),
+                rxn.toString(),
+                smiles,
+                solution.getTotalBondChanges(),
+                solution.getTotalFragmentChanges(),
+                solution.getSmallestFragmentCount(),
+                solution.getTotalCarbonBondChanges(),
+                solution.getTotalStereoChanges(),
+                solution.getBondEnergySum(),
+                solution.getEnergyDelta(),
+                bcc.getFormedCleavedWFingerprint().getFeatures().toString(),
+                bcc.getOrderChangesWFingerprint().getFeatures().toString(),
+                bcc.getStereoChangesWFingerprint().getFeatures().toString(),
+                bcc.getReactionCenterWFingerprint().getFeatures().toString());
+    }
+
+    private CachedMapping(IMappingAlgorithm algorithm, String mappedRXN, String mappedSMILES,
+            int totalBondChanges, int totalFragmentChanges, int smallestFragmentCount,
+            int totalCarbonBondChanges, int totalStereoChanges, double bondEnergySum, double energyDelta,
+            String formedCleavedFingerprint, String orderChangesFingerprint,
+            String stereoChangesFingerprint, String reactionCenterFingerprint) {
+        this.algorithm = algorithm;
+        this.mappedRXN = mappedRXN;
+        this.mappedSMILES = mappedSMILES;
+        this.totalBondChanges = totalBondChanges;
+        this.totalFragmentChanges = totalFragmentChanges;
+        this.smallestFragmentCount = smallestFragmentCount;
+        this.totalCarbonBondChanges = totalCarbonBondChanges;
+        this.totalStereoChanges = totalStereoChanges;
+        this.bondEnergySum = bondEnergySum;
+        this.energyDelta = energyDelta;
+        this.formedCleavedFingerprint = formedCleavedFingerprint;
+        this.orderChangesFingerprint = orderChangesFingerprint;
+        this.stereoChangesFingerprint = stereoChangesFingerprint;
+        this.reactionCenterFingerprint = reactionCenterFingerprint;
+    }
+
+    /**
+     * Read a mapping result written by {@link #writeTo(DataOutput)}
+     *
+     * @param in
+     * @return the mapping result
+     * @throws IOException
+     */
+    public static CachedMapping readFrom(DataInput in) throws IOException {
+        return new CachedMapping(
+                IMappingAlgorithm.valueOf(readString(in)),
+                readString(in),
+                readString(in),
+                in.readInt(),
+                in.readInt(),
+                in.readInt(),
+                in.readInt(),
+                in.readInt(),
+                in.readDouble(),
+                in.readDouble(),
+                readString(in),
+                readString(in),
+                readString(in),
+                readString(in));
+    }
+
+    /**
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        writeString(out, algorithm.name());
+        writeString(out, mappedRXN);
+        writeString(out, mappedSMILES);
+        out.writeInt(totalBondChanges);
+        out.writeInt(totalFragmentChanges);
+        out.writeInt(smallestFragmentCount);
+        out.writeInt(totalCarbonBondChanges);
+        out.writeInt(totalStereoChanges);
+        out.writeDouble(bondEnergySum);
+        out.writeDouble(energyDelta);
+        writeString(out, formedCleavedFingerprint);
+        writeString(out, orderChangesFingerprint);
+        writeString(out, stereoChangesFingerprint);
+        writeString(out, reactionCenterFingerprint);
+    }
+
+    /*
+     * DataOutput.writeUTF is limited to 64K, too short for large RXN blocks
+     */
+    private static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * @return the selected mapping model
+     */
+    public IMappingAlgorithm getAlgorithmID() {
+        return algorithm;
+    }
+
+    /**
+     *
+     * @param reactionID
+     * @return the mapped representative reaction as an RXN block named after
+     * reactionID
+     */
+    public String getMappedRXN(String reactionID) {
+        String name = NEW_LINE + RXN_NAME + NEW_LINE;
+        int index = mappedRXN.indexOf(name);
+        if (index < 0 || reactionID == null) {
+            return mappedRXN;
+        }
+        String line = RXN_NAME + reactionID;
+        if (line.length() > 80) {
+            line = line.substring(0, 80);
+        }
+        return mappedRXN.substring(0, index) + NEW_LINE + line + NEW_LINE
+                + mappedRXN.substring(index + name.length());
+    }
+
+    /**
+     * @return mapped SMILES (with atom classes) of the representative
+     * reaction where the unchanged hydrogens are implicit
+     */
+    public String getMappedSMILES() {
+        return mappedSMILES;
+    }
+
+    /**
+     * @return total number of bonds formed, cleaved or changing order
+     */
+    public int getTotalBondChanges() {
+        return totalBondChanges;
+    }
+
+    /**
+     * @return fragment changes of the selected model
+     */
+    public int getTotalFragmentChanges() {
+        return totalFragmentChanges;
+    }
+
+    /**
+     * @return smallest fragment count
+     */
+    public int getSmallestFragmentCount() {
+        return smallestFragmentCount;
+    }
+
+    /**
+     * @return carbon bond changes
+     */
+    public int getTotalCarbonBondChanges() {
+        return totalCarbonBondChanges;
+    }
+
+    /**
+     * @return stereo changes
+     */
+    public int getTotalStereoChanges() {
+        return totalStereoChanges;
+    }
+
+    /**
+     * @return bond energy of the formed and cleaved bonds
+     */
+    public double getBondEnergySum() {
+        return bondEnergySum;
+    }
+
+    /**
+     * @return energy delta
+     */
+    public double getEnergyDelta() {
+        return energyDelta;
+    }
+
+    /**
+     * @return features of the formed/cleaved bond fingerprint
+     */
+    public String getFormedCleavedFingerprint() {
+        return formedCleavedFingerprint;
+    }
+
+    /**
+     * @return features of the order change fingerprint
+     */
+    public String getOrderChangesFingerprint() {
+        return orderChangesFingerprint;
+    }
+
+    /**
+     * @return features of the stereo change fingerprint
+     */
+    public String getStereoChangesFingerprint() {
+        return stereoChangesFingerprint;
+    }
+
+    /**
+     * @return features of the reaction centre fingerprint
+     */
+    public String getReactionCenterFingerprint() {
+        return reactionCenterFingerprint;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mechanism.helper;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import uk.ac.ebi.reactionblast.mapping.container.CompiledMolecule;
+import static uk.ac.ebi.reactionblast.mechanism.helper.ReactionMappingUtility.getAtomIndexByID;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.cloneWithIDs;
+
+/**
+ * Canonical SMILES of the circular environments of atoms, as
+ * {@link ReactionMappingUtility#getCircularSMILES} makes them, for one
+ * reaction. The atom distances are found by one breadth first search per
+ * atom and give the environments of all the radii. An environment is cut
+ * out of the molecule and canonicalised once, atoms whose environments are
+ * the same atoms (e.g. the whole molecule) share the SMILES. The molecules
+ * must not be changed while the generator is in use.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public final class CircularSMILESGenerator {
+
+    private static final Logger LOG = getLogger(CircularSMILESGenerator.class.getName());
+    private final boolean removeAAM;
+    private final Map<IAtomContainer, Environments> environments;
+
+    /**
+     *
+     * @param removeAAM remove the atom-atom mapping from the SMILES
+     */
+    public CircularSMILESGenerator(boolean removeAAM) {
+        this.removeAAM = removeAAM;
+        this.environments = new IdentityHashMap<>();
+    }
+
+    /**
+     *
+     * @param mol molecule of the atom
+     * @param atom atom, matched by ID
+     * @param radius bonds from the atom, -1 for the whole molecule
+     * @return canonical SMILES of the atoms within radius of the atom
+     * @throws Exception
+     */
+    public synchronized String getCircularSMILES(IAtomContainer mol, IAtom atom, int radius) throws Exception {
+        Environments env = environments.get(mol);
+        if (env == null) {
+            env = new Environments(mol);
+            environments.put(mol, env);
+        }
+        return env.getSMILES(getAtomIndexByID(mol, atom), radius);
+    }
+
+    /*
+     * Environments of the atoms of one molecule
+     */
+    private final class Environments {
+
+        private final IAtomContainer mol;
+        private final CompiledMolecule molecule;
+        /*
+         * SMILES by root atom and radius, radius -1 stored last
+         */
+        private final Map<Integer, String[]> smilesOfAtom;
+        private final Map<Integer, int[]> distances;
+        private final Map<BitSet, String> smilesOfAtoms;
+
+        Environments(IAtomContainer mol) {
+            this.mol = mol;
+            this.molecule = CompiledMolecule.of(mol);
+            this.smilesOfAtom = new HashMap<>();
+            this.distances = new HashMap<>();
+            this.smilesOfAtoms = new HashMap<>();
+        }
+
+        String getSMILES(int root, int radius) throws Exception {
+            String[] smiles = smilesOfAtom.get(root);
+            int slot = radius < 0 ? 0 : radius + 1;
+            if (smiles == null || smiles.length <= slot) {
+                smiles = smiles == null ? new String[slot + 1] : Arrays.copyOf(smiles, slot + 1);
+                smilesOfAtom.put(root, smiles);
+            }
+            if (smiles[slot] == null) {
+                smiles[slot] = getSMILES(atomsWithin(root, radius));
+            }
+            return smiles[slot];
+        }
+
+        /*
+         * Atoms at most radius bonds away from the root, breadth first
+         */
+        private BitSet atomsWithin(int root, int radius) {
+            int[] distance = distances.get(root);
+            if (distance == null) {
+                distance = new int[molecule.getAtomCount()];
+                Arrays.fill(distance, -1);
+                int[] queue = new int[distance.length];
+                int head = 0;
+                int tail = 0;
+                distance[root] = 0;
+                queue[tail++] = root;
+                while (head < tail) {
+                    int i = queue[head++];
+                    for (int k = 0; k < molecule.getDegree(i); k++) {
+                        int j = molecule.getNeighbour(i, k);
+                        if (distance[j] == -1) {
+                            distance[j] = distance[i] + 1;
+                            queue[tail++] = j;
+                        }
+                    }
+                }
+                distances.put(root, distance);
+            }
+            BitSet atoms = new BitSet(distance.length);
+            for (int i = 0; i < distance.length; i++) {
+                if (distance[i] != -1 && (radius < 0 || distance[i] <= radius)) {
+                    atoms.set(i);
+                }
+            }
+            return atoms;
+        }
+
+        private String getSMILES(BitSet atoms) throws Exception {
+            String smiles = smilesOfAtoms.get(atoms);
+            if (smiles == null) {
+                IAtomContainer fragment = cloneWithIDs(mol);
+                for (int i = fragment.getAtomCount() - 1; i >= 0; i--) {
+                    if (!atoms.get(i)) {
+                        fragment.removeAtomAndConnectedElectronContainers(fragment.getAtom(i));
+                    }
+                }
+                smiles = ReactionMappingUtility.getSMILES(fragment, removeAAM);
+                smilesOfAtoms.put(atoms, smiles);
+            }
+            return smiles;
+        }
+    }
+}
@@ -29,7 +29,7 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.smiles.SmilesParser;
 import static org.openscience.cdk.smiles.smarts.parser.SMARTSParser.parse;
 import org.openscience.smsd.algorithm.vflib.substructure.VF2;
-import org.openscience.smsd.helper.MoleculeInitializer;
+import uk.ac.ebi.reactionblast.tools.MoleculeInitializer;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.removeHydrogensExceptSingleAndPreserveAtomID;
 
 /**
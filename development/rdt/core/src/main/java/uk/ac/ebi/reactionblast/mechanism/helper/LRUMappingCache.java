@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mechanism.helper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import uk.ac.ebi.reactionblast.mechanism.interfaces.IMappingCache;
+
+/**
+ * In-memory mapping cache holding the most recently used reactions. It can
+ * sit in front of a larger (e.g. {@link MemoryMappedMappingCache}) store: a
+ * miss is looked up in the backing store and the results are written through
+ * to it.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class LRUMappingCache implements IMappingCache {
+
+    private static final Logger LOG = getLogger(LRUMappingCache.class.getName());
+
+    private final Map<String, CachedMapping> entries;
+    private final IMappingCache backingStore;
+
+    /**
+     *
+     * @param capacity maximum number of reactions kept in memory
+     */
+    public LRUMappingCache(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     *
+     * @param capacity maximum number of reactions kept in memory
+     * @param backingStore store consulted on a miss, null if none
+     */
+    public LRUMappingCache(final int capacity, IMappingCache backingStore) {
+        this.entries = new LinkedHashMap<String, CachedMapping>(16, 0.75f, true) {
+            private static final long serialVersionUID = 0x2f6a1b3c4d5eL;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedMapping> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.backingStore = backingStore;
+    }
+
+    @Override
+    public CachedMapping get(String signature) {
+        CachedMapping mapping;
+        synchronized (entries) {
+            mapping = entries.get(signature);
+        }
+        if (mapping == null && backingStore != null) {
+            mapping = backingStore.get(signature);
+            if (mapping != null) {
+                synchronized (entries) {
+                    entries.put(signature, mapping);
+                }
+            }
+        }
+        return mapping;
+    }
+
+    @Override
+    public void put(String signature, CachedMapping mapping) {
+        synchronized (entries) {
+            entries.put(signature, mapping);
+        }
+        if (backingStore != null) {
+            backingStore.put(signature, mapping);
+        }
+    }
+
+    /**
+     * @return number of reactions held in memory
+     */
+    @Override
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mechanism.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.HashMap;
+import java.util.Map;
+import static java.util.logging.Level.WARNING;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import uk.ac.ebi.reactionblast.mechanism.interfaces.IMappingCache;
+
+/**
+ * On-disk mapping cache, an append-only file mapped in memory so that the
+ * mapping results survive the JVM and are shared by successive runs.
+ *
+ * The file starts with a header (magic number, version and end of the data)
+ * followed by the records: signature length, signature (UTF-8), entry length
+ * and the entry written by {@link CachedMapping#writeTo(java.io.DataOutput)}.
+ * The signatures are indexed in memory when the file is opened, the entries
+ * are read from the mapped file on demand. The file is mapped at its full
+ * capacity up front (sparse on most file systems); once it is full, new
+ * entries are dropped.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MemoryMappedMappingCache implements IMappingCache, Closeable {
+
+    private static final Logger LOG = getLogger(MemoryMappedMappingCache.class.getName());
+
+    /**
+     * Default size (bytes) of the cache file
+     */
+    public static final long DEFAULT_CAPACITY = 256L * 1024 * 1024;
+    private static final int MAGIC = 0x52445443;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int END_OFFSET = 8;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final Map<String, Integer> index;
+    private int end;
+    private boolean full;
+
+    /**
+     *
+     * @param cacheFile cache file, created if it does not exist
+     * @throws IOException
+     */
+    public MemoryMappedMappingCache(File cacheFile) throws IOException {
+        this(cacheFile, DEFAULT_CAPACITY);
+    }
+
+    /**
+     *
+     * @param cacheFile cache file, created if it does not exist
+     * @param capacity size (bytes) of the cache file, at most 2 GB
+     * @throws IOException
+     */
+    public MemoryMappedMappingCache(File cacheFile, long capacity) throws IOException {
+        if (capacity <= HEADER_SIZE || capacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid cache capacity: " + capacity);
+        }
+        this.file = new RandomAccessFile(cacheFile, "rw");
+        this.channel = file.getChannel();
+        this.index = new HashMap<>();
+        this.full = false;
+        boolean created = channel.size() == 0;
+        try {
+            this.buffer = channel.map(READ_WRITE, 0, Math.max(capacity, channel.size()));
+            if (created) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                this.end = HEADER_SIZE;
+                buffer.putLong(END_OFFSET, end);
+            } else {
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                    throw new IOException("Not a mapping cache file: " + cacheFile);
+                }
+                this.end = (int) buffer.getLong(END_OFFSET);
+                load();
+            }
+        } catch (IOException | RuntimeException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /*
+     * Index the signatures of the records already in the file
+     */
+    private void load() {
+        ByteBuffer records = buffer.duplicate();
+        records.position(HEADER_SIZE);
+        while (records.position() < end) {
+            byte[] key = new byte[records.getInt()];
+            records.get(key);
+            int entryOffset = records.position();
+            index.put(new String(key, UTF_8), entryOffset);
+            records.position(entryOffset + 4 + records.getInt(entryOffset));
+        }
+    }
+
+    @Override
+    public synchronized CachedMapping get(String signature) {
+        Integer offset = index.get(signature);
+        if (offset == null) {
+            return null;
+        }
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset);
+        byte[] entry = new byte[record.getInt()];
+        record.get(entry);
+        try {
+            return CachedMapping.readFrom(new DataInputStream(new ByteArrayInputStream(entry)));
+        } catch (IOException ex) {
+            LOG.log(WARNING, "Unable to read cached mapping", ex);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void put(String signature, CachedMapping mapping) {
+        if (full || index.containsKey(signature)) {
+            return;
+        }
+        byte[] key = signature.getBytes(UTF_8);
+        ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        try {
+            mapping.writeTo(new DataOutputStream(entry));
+        } catch (IOException ex) {
+            LOG.log(WARNING, "Unable to write cached mapping", ex);
+            return;
+        }
+        long recordEnd = (long) end + 8 + key.length + entry.size();
+        if (recordEnd > buffer.capacity()) {
+            LOG.log(WARNING, "Mapping cache full, new mappings are not cached");
+            full = true;
+            return;
+        }
+        ByteBuffer record = buffer.duplicate();
+        record.position(end);
+        record.putInt(key.length);
+        record.put(key);
+        int entryOffset = record.position();
+        record.putInt(entry.size());
+        record.put(entry.toByteArray());
+        /*
+         The end is moved once the record is complete
+         */
+        end = (int) recordEnd;
+        buffer.putLong(END_OFFSET, end);
+        index.put(signature, entryOffset);
+    }
+
+    @Override
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Flush the cache to disk and close the file
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+        file.close();
+    }
+}
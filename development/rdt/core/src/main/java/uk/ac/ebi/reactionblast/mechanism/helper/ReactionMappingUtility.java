@@ -46,6 +46,7 @@ import static org.openscience.cdk.smiles.SmilesGenerator.unique;
 import uk.ac.ebi.reactionblast.fingerprints.Feature;
 import uk.ac.ebi.reactionblast.fingerprints.PatternFingerprinter;
 import uk.ac.ebi.reactionblast.fingerprints.interfaces.IPatternFingerprinter;
+import uk.ac.ebi.reactionblast.mapping.helper.AtomIndex;
 import uk.ac.ebi.reactionblast.mechanism.interfaces.EnumSubstrateProduct;
 import uk.ac.ebi.reactionblast.signature.RBlastMoleculeSignature;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.cloneWithIDs;
@@ -62,7 +63,7 @@ import static org.openscience.cdk.CDKConstants.ISINRING;
 import static java.lang.System.err;
 import static org.openscience.cdk.CDKConstants.REACTIVE_CENTER;
 import org.openscience.cdk.ringsearch.SSSRFinder;
-import org.openscience.smsd.helper.MoleculeInitializer;
+import uk.ac.ebi.reactionblast.tools.MoleculeInitializer;
 import static uk.ac.ebi.reactionblast.mechanism.interfaces.ECBLAST_BOND_CHANGE_FLAGS.BOND_STEREO;
 import static uk.ac.ebi.reactionblast.mechanism.interfaces.ECBLAST_FLAGS.ATOM_STEREO_CHANGE_INFORMATION;
 import static uk.ac.ebi.reactionblast.mechanism.interfaces.ECBLAST_FLAGS.BOND_CHANGE_INFORMATION;
@@ -84,7 +85,6 @@ import static java.lang.Math.min;
 import static java.util.Arrays.sort;
 import static java.util.Collections.sort;
 import static java.util.logging.Logger.getLogger;
-import org.openscience.cdk.Reaction;
 import static org.openscience.cdk.tools.manipulator.AtomContainerManipulator.getBondArray;
 import uk.ac.ebi.reactionblast.mechanism.StereoChange;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeCDK;
@@ -110,76 +110,54 @@ public abstract class ReactionMappingUtility implements Serializable {
             IAtom productAtom,
             IAtomContainer atomContainerR,
             IAtomContainer atomContainerP) throws Exception {
+        return getMolMolPair(reactantAtom, productAtom, atomContainerR, atomContainerP,
+                new CircularSMILESGenerator(true));
+    }
 
-        int atomIndexR = getAtomIndexByID(atomContainerR, reactantAtom);
+    /**
+     *
+     * @param reactantAtom
+     * @param productAtom
+     * @param atomContainerR
+     * @param atomContainerP
+     * @param circularSMILES circular SMILES of the reaction, without AAM
+     * @return
+     * @throws Exception
+     */
+    protected static MoleculeMoleculePair getMolMolPair(
+            IAtom reactantAtom,
+            IAtom productAtom,
+            IAtomContainer atomContainerR,
+            IAtomContainer atomContainerP,
+            CircularSMILESGenerator circularSMILES) throws Exception {
 
         String signatureR1 = getSignature(atomContainerR, reactantAtom, 1);
         String signatureR2 = getSignature(atomContainerR, reactantAtom, 2);
         String signatureR3 = getSignature(atomContainerR, reactantAtom, 3);
         String signatureR = getSignature(atomContainerR, reactantAtom, -1);
 
-        IAtomContainer fragR1 = getCircularFragment(atomContainerR, atomIndexR, 1);
-        IAtomContainer fragR2 = getCircularFragment(atomContainerR, atomIndexR, 2);
-        IAtomContainer fragR3 = getCircularFragment(atomContainerR, atomIndexR, 3);
-        IAtomContainer fragR = getCircularFragment(atomContainerR, atomIndexR, -1);
-
         String signatureP1 = getSignature(atomContainerP, productAtom, 1);
         String signatureP2 = getSignature(atomContainerP, productAtom, 2);
         String signatureP3 = getSignature(atomContainerP, productAtom, 3);
         String signatureP = getSignature(atomContainerP, productAtom, -1);
 
-        int atomIndexP = getAtomIndexByID(atomContainerP, productAtom);
-
-        IAtomContainer fragP1 = getCircularFragment(atomContainerP, atomIndexP, 1);
-        IAtomContainer fragP2 = getCircularFragment(atomContainerP, atomIndexP, 2);
-        IAtomContainer fragP3 = getCircularFragment(atomContainerP, atomIndexP, 3);
-        IAtomContainer fragP = getCircularFragment(atomContainerP, atomIndexP, -1);
-
-        IReaction reaction1 = new Reaction();
-        reaction1.addReactant(fragR1, 1.0);
-        reaction1.addProduct(fragP1, 1.0);
-
-        IReaction reaction2 = new Reaction();
-        reaction2.addReactant(fragR2, 1.0);
-        reaction2.addProduct(fragP2, 1.0);
-
-        IReaction reaction3 = new Reaction();
-        reaction3.addReactant(fragR3, 1.0);
-        reaction3.addProduct(fragP3, 1.0);
-
-        IReaction reaction = new Reaction();
-        reaction.addReactant(fragR, 1.0);
-        reaction.addProduct(fragP, 1.0);
-
-        String smirks;
-        String smirks1;
-        String smirks2;
-        String smirks3;
+        String smartsR = circularSMILES.getCircularSMILES(atomContainerR, reactantAtom, -1);
+        String smartsR1 = circularSMILES.getCircularSMILES(atomContainerR, reactantAtom, 1);
+        String smartsR2 = circularSMILES.getCircularSMILES(atomContainerR, reactantAtom, 2);
+        String smartsR3 = circularSMILES.getCircularSMILES(atomContainerR, reactantAtom, 3);
 
-        smirks = getSMILES(reaction, true);
-        smirks1 = getSMILES(reaction1, true);
-        smirks2 = getSMILES(reaction2, true);
-        smirks3 = getSMILES(reaction3, true);
+        String smartsP = circularSMILES.getCircularSMILES(atomContainerP, productAtom, -1);
+        String smartsP1 = circularSMILES.getCircularSMILES(atomContainerP, productAtom, 1);
+        String smartsP2 = circularSMILES.getCircularSMILES(atomContainerP, productAtom, 2);
+        String smartsP3 = circularSMILES.getCircularSMILES(atomContainerP, productAtom, 3);
 
-        String smartsR;
-        String smartsR1;
-        String smartsR2;
-        String smartsR3;
-
-        smartsR = getSMILES(fragR, true);
-        smartsR1 = getSMILES(fragR1, true);
-        smartsR2 = getSMILES(fragR2, true);
-        smartsR3 = getSMILES(fragR3, true);
-
-        String smartsP;
-        String smartsP1;
-        String smartsP2;
-        String smartsP3;
-
-        smartsP = getSMILES(fragP, true);
-        smartsP1 = getSMILES(fragP1, true);
-        smartsP2 = getSMILES(fragP2, true);
-        smartsP3 = getSMILES(fragP3, true);
+        /*
+         * SMIRKS of the one reactant, one product fragment reactions
+         */
+        String smirks = smartsR + ">>" + smartsP;
+        String smirks1 = smartsR1 + ">>" + smartsP1;
+        String smirks2 = smartsR2 + ">>" + smartsP2;
+        String smirks3 = smartsR3 + ">>" + smartsP3;
 
         ReactantProductPair rrpName = new ReactantProductPair(atomContainerR.getID(), atomContainerP.getID());
         ReactantProductPair rrpSMARTS = new ReactantProductPair(smartsR, smartsP);
@@ -843,49 +821,24 @@ public abstract class ReactionMappingUtility implements Serializable {
         HashMap<IAtom, IAtom> mappings = new HashMap<>();
 
         /*
-         * Find mapped atoms in reactants
+         * Mapped atoms in reactants by mapping number
          */
-        for (IAtomContainer container : ExtReactionManipulatorTool.getAllReactants(mappedReaction).atomContainers()) {
-            for (IAtom a : container.atoms()) {
-                Integer mappingNumber = a.getProperty(ATOM_ATOM_MAPPING);
-                if (mappingNumber != null) {
-                    mappings.put(a, null);
-                }
-            }
-        }
+        AtomIndex reactantIndex = AtomIndex.ofReactants(mappedReaction);
         /*
-         * Find mapped atoms in products
+         * Pair them with the mapped atoms in products, unpaired atoms are left
+         * out
          */
         for (IAtomContainer container : ExtReactionManipulatorTool.getAllProducts(mappedReaction).atomContainers()) {
             for (IAtom a : container.atoms()) {
                 Integer mappingNumber = a.getProperty(ATOM_ATOM_MAPPING);
                 if (mappingNumber != null) {
-                    for (IAtom mappedAtom : mappings.keySet()) {
-                        Integer storedAtomMappingNumber = mappedAtom.getProperty(ATOM_ATOM_MAPPING);
-                        if (mappingNumber.intValue() == storedAtomMappingNumber) {
-                            mappings.put(mappedAtom, a);
-                            break;
-                        }
+                    IAtom mappedAtom = reactantIndex.getAtomByMappingNumber(mappingNumber);
+                    if (mappedAtom != null) {
+                        mappings.put(mappedAtom, a);
                     }
                 }
             }
         }
-
-        /*
-         * Find mapping pairs
-         */
-        Set<IAtom> unMappedAtomsToBeRemoved = new HashSet<>();
-        mappings.entrySet().stream().filter((map) -> (map.getValue() == null)).forEach((map) -> {
-            unMappedAtomsToBeRemoved.add(map.getKey());
-        });
-
-        /*
-         * Removed unpaired atoms
-         */
-        unMappedAtomsToBeRemoved.stream().forEach((removeAtom) -> {
-            mappings.remove(removeAtom);
-        });
-
         return mappings;
     }
 
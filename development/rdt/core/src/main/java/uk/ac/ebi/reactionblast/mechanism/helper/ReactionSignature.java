@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mechanism.helper;
+
+import java.util.Map;
+import java.util.TreeMap;
+import static java.util.logging.Level.WARNING;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.openscience.cdk.CDKConstants.ATOM_ATOM_MAPPING;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainerSet;
+import org.openscience.cdk.interfaces.IReaction;
+import static org.openscience.cdk.smiles.SmilesGenerator.absolute;
+import static org.openscience.cdk.tools.manipulator.AtomContainerManipulator.suppressHydrogens;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeDayLight;
+
+/**
+ * Canonical, stoichiometry aware signature of a reaction used as key of the
+ * mapping cache: the isomeric canonical SMILES (hydrogens and atom atom
+ * mappings removed, stereo and isotopes kept) of each molecule with its
+ * coefficient, sorted on each side. The same molecule listed twice on one side
+ * counts as one molecule with the coefficients summed up. Stereoisomers have
+ * different signatures, as their stereo changes differ.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public final class ReactionSignature {
+
+    private static final Logger LOG = getLogger(ReactionSignature.class.getName());
+
+    private ReactionSignature() {
+    }
+
+    /**
+     *
+     * @param reaction
+     * @return signature of the reaction or null if a molecule has no
+     * canonical SMILES
+     */
+    public static String getSignature(IReaction reaction) {
+        String reactants = getSignature(reaction.getReactants());
+        if (reactants == null) {
+            return null;
+        }
+        String products = getSignature(reaction.getProducts());
+        if (products == null) {
+            return null;
+        }
+        return reactants + ">>" + products;
+    }
+
+    private static String getSignature(IAtomContainerSet molecules) {
+        Map<String, Double> coefficients = new TreeMap<>();
+        for (int i = 0; i < molecules.getAtomContainerCount(); i++) {
+            String smiles;
+            try {
+                smiles = getIsomericSMILES(molecules.getAtomContainer(i));
+            } catch (CloneNotSupportedException | CDKException ex) {
+                LOG.log(WARNING, "Unable to generate the SMILES of " + molecules.getAtomContainer(i).getID(), ex);
+                return null;
+            }
+            if (smiles == null) {
+                return null;
+            }
+            Double multiplier = molecules.getMultiplier(i);
+            coefficients.merge(smiles, multiplier == null ? 1.0 : multiplier, Double::sum);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Double> e : coefficients.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(" + ");
+            }
+            sb.append(e.getValue()).append(' ').append(e.getKey());
+        }
+        return sb.toString();
+    }
+
+    private static String getIsomericSMILES(IAtomContainer molecule)
+            throws CloneNotSupportedException, CDKException {
+        IAtomContainer copy = suppressHydrogens(molecule.clone());
+        if (copy.getAtomCount() == 0) {
+            return null;
+        }
+        for (IAtom a : copy.atoms()) {
+            a.removeProperty(ATOM_ATOM_MAPPING);
+        }
+        aromatizeDayLight(copy);
+        return absolute().aromatic().create(copy);
+    }
+}
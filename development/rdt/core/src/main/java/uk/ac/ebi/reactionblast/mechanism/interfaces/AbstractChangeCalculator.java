@@ -44,9 +44,9 @@ public abstract class AbstractChangeCalculator extends ReactionMappingUtility {
      */
     /**
      *
-     * @return
+     * @return @throws CDKException
      */
-    public abstract Map<String, Collection<String>> getMoleculeMoleculeTransformationPairs();
+    public abstract Map<String, Collection<String>> getMoleculeMoleculeTransformationPairs() throws CDKException;
 
     /**
      * @return bond(s) cleaved at reactant side and with reactant ID
@@ -135,8 +135,8 @@ public abstract class AbstractChangeCalculator extends ReactionMappingUtility {
     /**
      * Return the list of Molecule Molecule Transformation List
      *
-     * @return
+     * @return @throws CDKException
      */
-    public abstract Collection<MoleculeMoleculePair> getReactionCentreTransformationPairs();
+    public abstract Collection<MoleculeMoleculePair> getReactionCentreTransformationPairs() throws CDKException;
 
 }
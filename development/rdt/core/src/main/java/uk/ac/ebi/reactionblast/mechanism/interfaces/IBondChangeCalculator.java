@@ -62,9 +62,9 @@ public interface IBondChangeCalculator {
 
     /**
      *
-     * @return
+     * @return @throws CDKException
      */
-    Map<String, Collection<String>> getMoleculeMoleculeTransformationPairs();
+    Map<String, Collection<String>> getMoleculeMoleculeTransformationPairs() throws CDKException;
 
     /**
      *
@@ -93,7 +93,31 @@ public interface IBondChangeCalculator {
      */
     IPatternFingerprinter getReactionCenterWFingerprint() throws CDKException;
 
-    Collection<MoleculeMoleculePair> getReactionCentreTransformationPairs();
+    /**
+     * Reaction centre fingerprints of the formed and cleaved bonds
+     *
+     * @return level to fingerprint
+     * @throws CDKException
+     */
+    Map<Integer, IPatternFingerprinter> getReactionCenterFormedCleavedFingerprint() throws CDKException;
+
+    /**
+     * Reaction centre fingerprints of the bond order changes
+     *
+     * @return level to fingerprint
+     * @throws CDKException
+     */
+    Map<Integer, IPatternFingerprinter> getReactionCenterOrderChangeFingerprint() throws CDKException;
+
+    /**
+     * Reaction centre fingerprints of the stereo changes
+     *
+     * @return level to fingerprint
+     * @throws CDKException
+     */
+    Map<Integer, IPatternFingerprinter> getReactionCenterStereoChangeFingerprint() throws CDKException;
+
+    Collection<MoleculeMoleculePair> getReactionCentreTransformationPairs() throws CDKException;
 
     /**
      *
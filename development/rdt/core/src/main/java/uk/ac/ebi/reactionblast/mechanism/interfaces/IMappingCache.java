@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mechanism.interfaces;
+
+import uk.ac.ebi.reactionblast.mechanism.helper.CachedMapping;
+
+/**
+ * Store of reaction mapping results keyed by a canonical reaction signature
+ * (see {@link uk.ac.ebi.reactionblast.mechanism.helper.ReactionSignature}),
+ * so that a reaction seen before is not mapped again. Implementations must be
+ * safe for use by concurrent mapping jobs.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public interface IMappingCache {
+
+    /**
+     *
+     * @param signature reaction signature
+     * @return the cached mapping result or null if this reaction is not
+     * cached
+     */
+    CachedMapping get(String signature);
+
+    /**
+     *
+     * @param signature reaction signature
+     * @param mapping mapping result of the reaction
+     */
+    void put(String signature, CachedMapping mapping);
+
+    /**
+     * @return number of cached reactions
+     */
+    int size();
+}
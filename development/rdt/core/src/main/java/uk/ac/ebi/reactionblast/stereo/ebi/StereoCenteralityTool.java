@@ -32,6 +32,8 @@ import uk.ac.ebi.centres.descriptor.Trigonal;
 import uk.ac.ebi.reactionblast.mechanism.helper.ReactionMappingUtility;
 import uk.ac.ebi.reactionblast.stereo.IStereoAndConformation;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.removeHydrogensExceptSingleAndPreserveAtomID;
+import static uk.ac.ebi.reactionblast.tools.LayoutCheck.isLazyLayout;
+import static uk.ac.ebi.reactionblast.tools.LayoutCheck.layout2D;
 
 /**
  * Tool for comparing chiralities.
@@ -67,6 +69,9 @@ public abstract class StereoCenteralityTool extends ReactionMappingUtility {
         Map<IAtom, IStereoAndConformation> chiralityMap = new HashMap<>();
         CDKPerceptor perceptor = new CDKPerceptor();
         for (IAtomContainer ac : reaction.getReactants().atomContainers()) {
+            if (isLazyLayout()) {
+                layout2D(ac);
+            }
             IAtomContainer containerWithoutH = removeHydrogensExceptSingleAndPreserveAtomID(ac);
 //            System.err.println("R 2D CDK based stereo perception for " + ac.getID());
             Map<IAtom, IStereoAndConformation> chirality2D = getChirality2D(containerWithoutH, perceptor);
@@ -82,6 +87,9 @@ public abstract class StereoCenteralityTool extends ReactionMappingUtility {
             }
         }
         for (IAtomContainer ac : reaction.getProducts().atomContainers()) {
+            if (isLazyLayout()) {
+                layout2D(ac);
+            }
             IAtomContainer containerWithoutH = removeHydrogensExceptSingleAndPreserveAtomID(ac);
 //            System.err.println("P 2D CDK based stereo perception for " + ac.getID());
             Map<IAtom, IStereoAndConformation> chirality2D = getChirality2D(containerWithoutH, perceptor);
@@ -19,16 +19,14 @@
 package uk.ac.ebi.reactionblast.tools;
 
 import static java.lang.System.currentTimeMillis;
-import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IReaction;
-import org.openscience.cdk.layout.StructureDiagramGenerator;
 import uk.ac.ebi.reactionblast.interfaces.IStandardizer;
 import uk.ac.ebi.reactionblast.mapping.container.CDKReactionBuilder;
 import static uk.ac.ebi.reactionblast.mapping.helper.MappingHandler.cleanMapping;
 import static java.util.logging.Logger.getLogger;
-import static org.openscience.cdk.geometry.GeometryTools.has2DCoordinates;
+import static uk.ac.ebi.reactionblast.tools.LayoutCheck.isLazyLayout;
+import static uk.ac.ebi.reactionblast.tools.LayoutCheck.layout2D;
 
 /**
  *
@@ -63,22 +61,15 @@ public class StandardizeReaction implements IStandardizer {
         }
         CDKReactionBuilder rBuilder = new CDKReactionBuilder();
         IReaction standardizedReaction = rBuilder.standardize(reaction);
-        ExtReactionManipulatorTool.getAllAtomContainers(reaction).stream().filter((mol) -> (!has2DCoordinates(mol))).forEach((mol) -> {
-
-            /*
-             * Clone it else it will loose mol ID
-             */
-            try {
-                StructureDiagramGenerator sdg = new StructureDiagramGenerator();
-                sdg.setMolecule(mol, false);
-                sdg.generateCoordinates();
-            } catch (CDKException ex) {
-                Logger.getLogger(StandardizeReaction.class.getName()).log(Level.SEVERE, null, ex);
-            }
-        });
         /*
-         * Generate 2D Diagram without cloning
+         * Generate 2D Diagram without cloning, unless it is left to the
+         * images and the stereo perception
          */
+        if (!isLazyLayout()) {
+            ExtReactionManipulatorTool.getAllAtomContainers(reaction).stream().forEach((mol) -> {
+                layout2D(mol);
+            });
+        }
         return standardizedReaction;
     }
 }
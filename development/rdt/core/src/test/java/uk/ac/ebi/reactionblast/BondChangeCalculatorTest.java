@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IReaction;
+import static uk.ac.ebi.reactionblast.TestUtility.RHEA_RXN_DIR;
+import uk.ac.ebi.reactionblast.fingerprints.interfaces.IFeature;
+import uk.ac.ebi.reactionblast.fingerprints.interfaces.IPatternFingerprinter;
+import uk.ac.ebi.reactionblast.mechanism.BondChangeCalculator;
+import uk.ac.ebi.reactionblast.mechanism.MappingSolution;
+import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+import uk.ac.ebi.reactionblast.mechanism.helper.MoleculeMoleculePair;
+import uk.ac.ebi.reactionblast.mechanism.interfaces.IBondChangeCalculator;
+import uk.ac.ebi.reactionblast.tools.StandardizeReaction;
+
+/**
+ * The fingerprints of BondChangeCalculator are built on first access: read
+ * in any order, one at a time, they must be those read all at once right
+ * after the bond changes are computed.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class BondChangeCalculatorTest extends MappingUtility {
+
+    private static final Logger LOG = getLogger(BondChangeCalculatorTest.class.getName());
+
+    private static final String[] RHEA_REACTIONS = {"10050", "11150", "14163"};
+
+    @Test
+    public void LazyAsEager() throws Exception {
+        for (String reactionID : RHEA_REACTIONS) {
+            IReaction reaction = getSelectedSolution(reactionID).getReaction();
+            String eager = readAll(new BondChangeCalculator(reaction));
+
+            /*
+             * Reaction centres first, then the bond changes in reverse
+             */
+            BondChangeCalculator lazy = new BondChangeCalculator(reaction);
+            assertFalse(reactionID, lazy.isReactionCentreComputed());
+            String stereoLevels = patterns(lazy.getReactionCenterStereoChangeFingerprint());
+            assertTrue(reactionID, lazy.isReactionCentreComputed());
+            String stereo = patterns(lazy.getStereoChangesWFingerprint());
+            String order = patterns(lazy.getOrderChangesWFingerprint());
+            String formedCleaved = patterns(lazy.getFormedCleavedWFingerprint());
+            assertEquals(reactionID, eager, readAll(lazy));
+            assertTrue(reactionID, eager.startsWith(formedCleaved + order + stereo));
+            assertTrue(reactionID, eager.contains(stereoLevels));
+        }
+    }
+
+    @Test
+    public void SelectedAsEager() throws Exception {
+        int features = 0;
+        for (String reactionID : RHEA_REACTIONS) {
+            MappingSolution s = getSelectedSolution(reactionID);
+            String eager = readAll(new BondChangeCalculator(s.getReaction()));
+            assertEquals(reactionID, eager, readAll(s.getBondChangeCalculator()));
+            features += s.getBondChangeCalculator().getFormedCleavedWFingerprint().getFeatureCount();
+            features += s.getBondChangeCalculator().getOrderChangesWFingerprint().getFeatureCount();
+        }
+        assertTrue(features > 0);
+    }
+
+    /*
+     * Every fingerprint and transformation, bond changes first
+     */
+    private static String readAll(IBondChangeCalculator bcc) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append(patterns(bcc.getFormedCleavedWFingerprint()));
+        sb.append(patterns(bcc.getOrderChangesWFingerprint()));
+        sb.append(patterns(bcc.getStereoChangesWFingerprint()));
+        sb.append(patterns(bcc.getReactionCenterWFingerprint()));
+        sb.append(patterns(bcc.getReactionCenterFormedCleavedFingerprint()));
+        sb.append(patterns(bcc.getReactionCenterOrderChangeFingerprint()));
+        sb.append(patterns(bcc.getReactionCenterStereoChangeFingerprint()));
+        sb.append(transformations(bcc));
+        return sb.toString();
+    }
+
+    private static String transformations(IBondChangeCalculator bcc) throws Exception {
+        Set<String> smirks = new TreeSet<>();
+        for (MoleculeMoleculePair m : bcc.getReactionCentreTransformationPairs()) {
+            smirks.add(m.getName() + " " + m.getSmirks());
+        }
+        return smirks.toString();
+    }
+
+    private static String patterns(Map<Integer, IPatternFingerprinter> levels) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, IPatternFingerprinter> level : levels.entrySet()) {
+            sb.append(level.getKey()).append(patterns(level.getValue()));
+        }
+        return sb.toString();
+    }
+
+    private static String patterns(IPatternFingerprinter fp) {
+        Set<String> patterns = new TreeSet<>();
+        for (IFeature feature : fp.getFeatures()) {
+            patterns.add(feature.getPattern() + ":" + feature.getWeight());
+        }
+        return fp.getFingerprintID() + patterns;
+    }
+
+    private MappingSolution getSelectedSolution(String reactionID) throws Exception {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(RHEA_RXN_DIR + reactionID + ".rxn");
+        IReaction reaction = readReactionFile(reactionID, ins, false, false);
+        ReactionMechanismTool rmt = new ReactionMechanismTool(reaction, true, new StandardizeReaction());
+        return rmt.getSelectedSolution();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast;
+
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.config.Elements;
+import static org.openscience.cdk.config.Elements.ofNumber;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IBond.Order;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AnyAtom;
+import org.openscience.cdk.silent.Atom;
+import org.openscience.cdk.silent.Bond;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.smsd.tools.BondEnergies;
+import uk.ac.ebi.reactionblast.tools.BondEnergyTable;
+
+/**
+ * The bond energy table must give the energies of the SMSD
+ * {@link BondEnergies} look ups.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class BondEnergyTableTest {
+
+    private static final Logger LOG = getLogger(BondEnergyTableTest.class.getName());
+
+    @Test
+    public void symbolsOfAllElements() throws Exception {
+        BondEnergies bondEnergies = BondEnergies.getInstance();
+        BondEnergyTable table = BondEnergyTable.getInstance();
+        int known = 0;
+        for (int z1 = 1; z1 < Elements.values().length; z1++) {
+            String symbol1 = ofNumber(z1).symbol();
+            for (int z2 = 1; z2 < Elements.values().length; z2++) {
+                String symbol2 = ofNumber(z2).symbol();
+                for (Order order : Order.values()) {
+                    int expected = bondEnergies.getEnergies(symbol1, symbol2, order);
+                    assertEquals(symbol1 + order + symbol2, expected, table.getEnergies(symbol1, symbol2, order));
+                    if (expected > 0) {
+                        known++;
+                    }
+                }
+            }
+        }
+        assertEquals(true, known > 100);
+    }
+
+    @Test
+    public void symbolLookUps() throws Exception {
+        BondEnergies bondEnergies = BondEnergies.getInstance();
+        BondEnergyTable table = BondEnergyTable.getInstance();
+        String[][] pairs = {
+            {"C", "O"}, {"c", "o"}, {"CL", "c"}, {"R", "O"}, {"r", "C"}, {"R", "R"},
+            {"Sb", "Cl"}, {"Cl", "Sb"}, {"Xe", "F"}, {"At", "At"}, {"C", "Fe"},
+            {"C", "Xx"}, {"*", "C"}, {"", "C"}};
+        for (String[] pair : pairs) {
+            for (Order order : Order.values()) {
+                assertEquals(pair[0] + order + pair[1],
+                        bondEnergies.getEnergies(pair[0], pair[1], order),
+                        table.getEnergies(pair[0], pair[1], order));
+            }
+            assertEquals(pair[0] + pair[1],
+                    bondEnergies.getEnergies(pair[0], pair[1], null),
+                    table.getEnergies(pair[0], pair[1], null));
+        }
+    }
+
+    @Test
+    public void atomAndBondLookUps() throws Exception {
+        BondEnergies bondEnergies = BondEnergies.getInstance();
+        BondEnergyTable table = BondEnergyTable.getInstance();
+        String[] symbols = {"H", "C", "N", "O", "P", "S", "Cl", "Br", "I", "F", "Se", "Fe", "R"};
+        for (String symbol1 : symbols) {
+            for (String symbol2 : symbols) {
+                for (Order order : new Order[]{Order.SINGLE, Order.DOUBLE, Order.TRIPLE, Order.QUADRUPLE}) {
+                    IAtom a1 = new Atom(symbol1);
+                    IAtom a2 = new Atom(symbol2);
+                    IBond bond = new Bond(a1, a2, order);
+                    assertEquals(symbol1 + order + symbol2,
+                            bondEnergies.getEnergies(a1, a2, order), table.getEnergies(a1, a2, order));
+                    assertEquals(symbol1 + order + symbol2,
+                            bondEnergies.getEnergies(bond), table.getEnergies(bond));
+                }
+            }
+        }
+        IQueryAtom any = new AnyAtom(SilentChemObjectBuilder.getInstance());
+        IAtom carbon = new Atom("C");
+        assertEquals(bondEnergies.getEnergies(any, carbon, Order.SINGLE), table.getEnergies(any, carbon, Order.SINGLE));
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast;
+
+import java.io.InputStream;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import static org.openscience.cdk.graph.ConnectivityChecker.isConnected;
+import static org.openscience.cdk.graph.ConnectivityChecker.partitionIntoMolecules;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainerSet;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+import static uk.ac.ebi.reactionblast.TestUtility.KEGG_RXN_DIR;
+import static uk.ac.ebi.reactionblast.TestUtility.RHEA_RXN_DIR;
+import uk.ac.ebi.reactionblast.mechanism.helper.BridgeFragments;
+
+/**
+ * The smallest fragment sizes from the bridges must be those found by
+ * removing the bond from a copy of the molecule and partitioning it.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class BridgeFragmentsTest extends MappingUtility {
+
+    private static final Logger LOG = getLogger(BridgeFragmentsTest.class.getName());
+
+    @Test
+    public void Bridges() throws Exception {
+        assertSmiles("C");
+        assertSmiles("CC");
+        assertSmiles("CCO");
+        assertSmiles("CC(C)(C)C");
+        assertSmiles("CCCCCCCCCC(=O)O");
+        assertSmiles("OP(=O)(O)OP(=O)(O)O");
+    }
+
+    @Test
+    public void RingBonds() throws Exception {
+        assertSmiles("C1CC1");
+        assertSmiles("c1ccccc1");
+        assertSmiles("c1ccc2ccccc2c1");
+        assertSmiles("C1CC2CCC1C2");
+        assertSmiles("C1CCC11CCCC1");
+        assertSmiles("c1ccccc1-c1ccccc1");
+        assertSmiles("OCC1OC(O)C(O)C(O)C1O");
+        assertSmiles("C1CC1CCC1CCCC1CN");
+    }
+
+    @Test
+    public void DisconnectedMolecules() throws Exception {
+        assertSmiles("CCO.O");
+        assertSmiles("CC.CCC");
+        assertSmiles("[Na+].[Cl-]");
+        assertSmiles("c1ccccc1.CCCC");
+        assertSmiles("C1CC1.CC.O");
+        assertSmiles("CC(=O)[O-].[Na+].c1ccccc1O");
+    }
+
+    @Test
+    public void ReactionMolecules() throws Exception {
+        String[] rhea = {"10050", "11150", "14163", "10001", "10002"};
+        for (String reactionID : rhea) {
+            assertReaction(getReaction(RHEA_RXN_DIR, reactionID));
+        }
+        String[] kegg = {"R03165", "R01194", "R00004"};
+        for (String reactionID : kegg) {
+            assertReaction(getReaction(KEGG_RXN_DIR, reactionID));
+        }
+    }
+
+    @Test
+    public void ForeignBond() throws Exception {
+        IAtomContainer molecule = parse("CCO");
+        IAtomContainer other = parse("CCO");
+        assertEquals(-1, new BridgeFragments(molecule).getSmallestFragmentSize(other.getBond(0)));
+    }
+
+    private static void assertSmiles(String smiles) throws Exception {
+        assertMolecule(smiles, parse(smiles));
+    }
+
+    private static void assertReaction(IReaction reaction) {
+        for (IAtomContainer molecule : reaction.getReactants().atomContainers()) {
+            assertMolecule(reaction.getID(), molecule);
+        }
+        for (IAtomContainer molecule : reaction.getProducts().atomContainers()) {
+            assertMolecule(reaction.getID(), molecule);
+        }
+    }
+
+    private static void assertMolecule(String name, IAtomContainer molecule) {
+        int atoms = molecule.getAtomCount();
+        int bonds = molecule.getBondCount();
+        BridgeFragments fragments = new BridgeFragments(molecule);
+        for (IBond bond : molecule.bonds()) {
+            int k = molecule.getBondNumber(bond);
+            IAtomContainer copy = molecule.getBuilder().newInstance(IAtomContainer.class, molecule);
+            assertEquals(name + " bond " + k,
+                    chipTheBondCountSmallestFragmentSize(copy, k),
+                    fragments.getSmallestFragmentSize(bond));
+        }
+        assertEquals(name, atoms, molecule.getAtomCount());
+        assertEquals(name, bonds, molecule.getBondCount());
+    }
+
+    /*
+     * The clone and partition code this replaced in BondChangeCalculator
+     */
+    private static int chipTheBondCountSmallestFragmentSize(IAtomContainer cloneContainer, int chippedBondIndex) {
+        int size = cloneContainer.getAtomCount();
+        cloneContainer.removeBond(chippedBondIndex);
+        boolean fragmentFlag = isConnected(cloneContainer);
+        if (!fragmentFlag) {
+            IAtomContainerSet partitionIntoMolecules = partitionIntoMolecules(cloneContainer);
+            for (IAtomContainer ac : partitionIntoMolecules.atomContainers()) {
+                if (size > ac.getAtomCount()) {
+                    size = ac.getAtomCount();
+                }
+            }
+        }
+        return size;
+    }
+
+    private static IAtomContainer parse(String smiles) throws Exception {
+        return new SmilesParser(SilentChemObjectBuilder.getInstance()).parseSmiles(smiles);
+    }
+
+    private IReaction getReaction(String dir, String reactionID) throws Exception {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(dir + reactionID + ".rxn");
+        return readReactionFile(reactionID, ins, false, false);
+    }
+}
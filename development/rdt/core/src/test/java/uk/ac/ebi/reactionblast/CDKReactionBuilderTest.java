@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast;
+
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+import uk.ac.ebi.reactionblast.fingerprints.FingerprintGenerator;
+import uk.ac.ebi.reactionblast.mapping.container.CDKReactionBuilder;
+
+/**
+ * Molecules with the same fingerprint share an ID only if they are
+ * identical: two cyclododecanes are one reactant of stoichiometry 2, the
+ * cyclotridecane (the same ECFP4) gets an ID of its own.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class CDKReactionBuilderTest {
+
+    private static final Logger LOG = getLogger(CDKReactionBuilderTest.class.getName());
+    private static final SmilesParser SMILES_PARSER = new SmilesParser(SilentChemObjectBuilder.getInstance());
+
+    private static final String C12 = "C1CCCCCCCCCCC1";
+    private static final String C13 = "C1CCCCCCCCCCCC1";
+
+    @Test
+    public void MoleculeIDs() throws Exception {
+        assertEquals(new FingerprintGenerator().getFingerprint(SMILES_PARSER.parseSmiles(C12)),
+                new FingerprintGenerator().getFingerprint(SMILES_PARSER.parseSmiles(C13)));
+
+        IReaction reaction = SMILES_PARSER.parseReactionSmiles(C12 + "." + C12 + ">>" + C13);
+        IReaction standardized = new CDKReactionBuilder().standardize(reaction);
+
+        assertEquals(1, standardized.getReactantCount());
+        IAtomContainer reactant = standardized.getReactants().getAtomContainer(0);
+        assertEquals("M00001", reactant.getID());
+        assertEquals(2.0, standardized.getReactantCoefficient(reactant), 0.0);
+
+        assertEquals(1, standardized.getProductCount());
+        IAtomContainer product = standardized.getProducts().getAtomContainer(0);
+        assertEquals("M00002", product.getID());
+        assertEquals(1.0, standardized.getProductCoefficient(product), 0.0);
+        assertNotEquals(reactant.getID(), product.getID());
+    }
+
+    @Test
+    public void IdenticalAcrossSides() throws Exception {
+        IReaction reaction = SMILES_PARSER.parseReactionSmiles(C12 + "." + C13 + ">>" + C13 + "." + C12);
+        IReaction standardized = new CDKReactionBuilder().standardize(reaction);
+
+        assertEquals(2, standardized.getReactantCount());
+        assertEquals(2, standardized.getProductCount());
+        for (IAtomContainer reactant : standardized.getReactants().atomContainers()) {
+            int found = 0;
+            for (IAtomContainer product : standardized.getProducts().atomContainers()) {
+                if (product.getID().equals(reactant.getID())) {
+                    assertEquals(reactant.getAtomCount(), product.getAtomCount());
+                    found++;
+                }
+            }
+            assertEquals(reactant.getID(), 1, found);
+        }
+    }
+}
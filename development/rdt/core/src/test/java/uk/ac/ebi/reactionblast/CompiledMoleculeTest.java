@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import static java.util.Collections.sort;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.openscience.cdk.CDKConstants.UNSET;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+import static uk.ac.ebi.reactionblast.TestUtility.KEGG_RXN_DIR;
+import static uk.ac.ebi.reactionblast.TestUtility.RHEA_RXN_DIR;
+import uk.ac.ebi.reactionblast.mapping.container.CompiledMolecule;
+import uk.ac.ebi.reactionblast.mapping.graph.MCSCache;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
+
+/**
+ * The element and atom type histograms of {@link CompiledMolecule} give the
+ * same MCS prefilter answers as the symbol maps and lists they replace, and
+ * a snapshot is compiled again only once its molecule is modified.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class CompiledMoleculeTest extends MappingUtility {
+
+    private static final Logger LOG = getLogger(CompiledMoleculeTest.class.getName());
+    private static final SmilesParser SMILES_PARSER = new SmilesParser(SilentChemObjectBuilder.getInstance());
+
+    @Test
+    public void ElementSubsetAsSymbolMaps() throws Exception {
+        List<IAtomContainer> molecules = getMolecules();
+        for (IAtomContainer q : molecules) {
+            for (IAtomContainer t : molecules) {
+                assertEquals(q.getID() + " " + t.getID(), isElementSubset(q, t),
+                        CompiledMolecule.of(q).isElementSubsetOf(CompiledMolecule.of(t)));
+            }
+        }
+    }
+
+    @Test
+    public void AtomTypesInAsRetainAll() throws Exception {
+        List<IAtomContainer> molecules = getMolecules();
+        for (IAtomContainer q : molecules) {
+            for (IAtomContainer t : molecules) {
+                assertEquals(q.getID() + " " + t.getID(), countAtomTypesIn(q, t),
+                        CompiledMolecule.of(q).countAtomTypesIn(CompiledMolecule.of(t)));
+            }
+        }
+    }
+
+    /*
+     * A snapshot is of the molecule as it was compiled
+     */
+    @Test
+    public void SnapshotOfModifiedMolecule() throws Exception {
+        IAtomContainer molecule = SMILES_PARSER.parseSmiles("CCO");
+        CompiledMolecule before = CompiledMolecule.of(molecule);
+        molecule.getAtom(2).setSymbol("N");
+        molecule.getAtom(2).setAtomicNumber(7);
+        CompiledMolecule after = CompiledMolecule.of(molecule);
+        assertEquals(8, before.getAtomicNumber(2));
+        assertEquals(7, after.getAtomicNumber(2));
+        assertEquals(CompiledMolecule.code("O"), before.getElement(2));
+        assertEquals(CompiledMolecule.code("N"), after.getElement(2));
+    }
+
+    /*
+     * The MCS cache of a reaction keeps one snapshot per molecule until the
+     * molecule is modified, as the matcher does by removing matched atoms
+     */
+    @Test
+    public void SnapshotPerRevision() throws Exception {
+        MCSCache cache = new MCSCache(0, 0);
+        IAtomContainer molecule = SMILES_PARSER.parseSmiles("OC1CCCCC1C(=O)O");
+        IAtomContainer copy = molecule.clone();
+        CompiledMolecule first = cache.getCompiled(molecule);
+        assertTrue(first.isSnapshotOf(molecule));
+        assertFalse(first.isSnapshotOf(copy));
+        assertSame(first, cache.getCompiled(molecule));
+        assertNotSame(first, cache.getCompiled(copy));
+        assertEquals(first.getAtomCount(), cache.getCompiled(copy).getAtomCount());
+
+        molecule.removeAtomAndConnectedElectronContainers(molecule.getAtom(0));
+        assertFalse(first.isSnapshotOf(molecule));
+        CompiledMolecule second = cache.getCompiled(molecule);
+        assertNotSame(first, second);
+        assertSame(second, cache.getCompiled(molecule));
+        assertEquals(10, first.getAtomCount());
+        assertEquals(9, second.getAtomCount());
+        /*
+         * the bridges of each snapshot are of its own revision: the hydroxyl
+         * bond of the first, a ring bond of the second
+         */
+        assertFalse(first.isRingBond(0));
+        assertEquals(1, first.getSmallestFragmentSize(0));
+        assertTrue(second.isRingBond(0));
+        assertEquals(9, second.getSmallestFragmentSize(0));
+
+        molecule.getBond(0).setOrder(IBond.Order.DOUBLE);
+        assertFalse(second.isSnapshotOf(molecule));
+        CompiledMolecule third = cache.getCompiled(molecule);
+        assertEquals(2, third.getBondOrder(0));
+
+        /*
+         * a field read by the snapshot, changed in place
+         */
+        molecule.getAtom(0).setSymbol("N");
+        assertFalse(third.isSnapshotOf(molecule));
+        assertEquals(CompiledMolecule.code("N"), cache.getCompiled(molecule).getElement(0));
+    }
+
+    private List<IAtomContainer> getMolecules() throws Exception {
+        List<IAtomContainer> molecules = new ArrayList<>();
+        for (String reactionID : new String[]{"10050", "11150", "14163"}) {
+            addMolecules(molecules, reactionID, getReaction(RHEA_RXN_DIR, reactionID));
+        }
+        for (String reactionID : new String[]{"R03165", "R09907"}) {
+            addMolecules(molecules, reactionID, getReaction(KEGG_RXN_DIR, reactionID));
+        }
+        /*
+         * no atom types: the element symbols are the keys
+         */
+        for (String smiles : new String[]{"CC(=O)O", "OCC", "CC(=O)OCC", "O", "NC(C)C(=O)O", "ClCCl", "P(=O)(O)(O)O"}) {
+            IAtomContainer molecule = SMILES_PARSER.parseSmiles(smiles);
+            molecule.setID(smiles);
+            molecules.add(molecule);
+        }
+        IAtomContainer empty = SilentChemObjectBuilder.getInstance().newInstance(IAtomContainer.class);
+        empty.setID("empty");
+        molecules.add(empty);
+        return molecules;
+    }
+
+    private IReaction getReaction(String dir, String reactionID) throws Exception {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(dir + reactionID + ".rxn");
+        return readReactionFile(reactionID, ins, false, false);
+    }
+
+    private static void addMolecules(List<IAtomContainer> molecules, String reactionID, IReaction reaction) throws Exception {
+        int i = 0;
+        for (IAtomContainer molecule : reaction.getReactants().atomContainers()) {
+            molecule.setID(reactionID + "E" + i++);
+            percieveAtomTypesAndConfigureAtoms(molecule);
+            molecules.add(molecule);
+        }
+        i = 0;
+        for (IAtomContainer molecule : reaction.getProducts().atomContainers()) {
+            molecule.setID(reactionID + "P" + i++);
+            percieveAtomTypesAndConfigureAtoms(molecule);
+            molecules.add(molecule);
+        }
+    }
+
+    /*
+     * Reference: every symbol of q found in t at least as many times, by
+     * symbol count maps
+     */
+    private static boolean isElementSubset(IAtomContainer q, IAtomContainer t) {
+        Map<String, Integer> atomUniqueCounter1 = new TreeMap<>();
+        Map<String, Integer> atomUniqueCounter2 = new TreeMap<>();
+        for (IAtom a : q.atoms()) {
+            atomUniqueCounter1.merge(a.getSymbol(), 1, Integer::sum);
+        }
+        for (IAtom b : t.atoms()) {
+            atomUniqueCounter2.merge(b.getSymbol(), 1, Integer::sum);
+        }
+        if (atomUniqueCounter1.size() > atomUniqueCounter2.size()) {
+            return false;
+        }
+        List<String> difference = new LinkedList<>(atomUniqueCounter1.keySet());
+        difference.removeAll(atomUniqueCounter2.keySet());
+        if (difference.isEmpty()) {
+            if (!atomUniqueCounter1.keySet().stream().noneMatch((k) -> (atomUniqueCounter1.get(k) > atomUniqueCounter2.get(k)))) {
+                return false;
+            }
+        }
+        return difference.isEmpty();
+    }
+
+    /*
+     * Reference: atoms of q whose type key is in t, by retainAll
+     */
+    private static int countAtomTypesIn(IAtomContainer q, IAtomContainer t) {
+        List<String> atomUniqueCounter1 = new ArrayList<>();
+        List<String> atomUniqueCounter2 = new ArrayList<>();
+        for (IAtom a : q.atoms()) {
+            atomUniqueCounter1.add(a.getHybridization() == UNSET ? a.getSymbol() : a.getAtomTypeName());
+        }
+        for (IAtom b : t.atoms()) {
+            atomUniqueCounter2.add(b.getHybridization() == UNSET ? b.getSymbol() : b.getAtomTypeName());
+        }
+        sort(atomUniqueCounter1);
+        sort(atomUniqueCounter2);
+        if (atomUniqueCounter1.isEmpty()) {
+            return 0;
+        }
+        List<String> common = new LinkedList<>(atomUniqueCounter1);
+        common.retainAll(atomUniqueCounter2);
+        return common.size();
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast;
+
+import java.io.InputStream;
+import static java.lang.Double.MIN_VALUE;
+import static java.lang.String.valueOf;
+import static java.lang.System.clearProperty;
+import static java.lang.System.setProperty;
+import static java.util.Arrays.asList;
+import java.util.BitSet;
+import static java.util.Collections.emptySet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IMapping;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import static org.openscience.cdk.smiles.SmilesGenerator.unique;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.AtomAtomMapping;
+import static uk.ac.ebi.reactionblast.TestUtility.RHEA_RXN_DIR;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.BaseGameTheory.FULL_UPDATE_PROPERTY;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.GameTheoryFactory.make;
+import uk.ac.ebi.reactionblast.mapping.algorithm.GameTheoryMatrix;
+import uk.ac.ebi.reactionblast.mapping.algorithm.Holder;
+import uk.ac.ebi.reactionblast.mapping.container.BestMatchContainer;
+import uk.ac.ebi.reactionblast.mapping.container.HydrogenFreeFingerPrintContainer;
+import uk.ac.ebi.reactionblast.mapping.container.ReactionContainer;
+import uk.ac.ebi.reactionblast.mapping.graph.Combination;
+import static uk.ac.ebi.reactionblast.mapping.graph.GraphMatcher.matcher;
+import uk.ac.ebi.reactionblast.mapping.graph.MCSCache;
+import uk.ac.ebi.reactionblast.mapping.graph.MCSSolutionStore;
+import uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.GAME_THEORY_ITERATIONS;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MATRIX_CELLS_REEVALUATED;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MCS_DEFERRED;
+import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
+import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MAX;
+import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MIN;
+import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MIX;
+import uk.ac.ebi.reactionblast.mechanism.MappingSolution;
+import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+import uk.ac.ebi.reactionblast.tools.ExtReactionManipulatorTool;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
+import uk.ac.ebi.reactionblast.tools.StandardizeReaction;
+
+/**
+ * The game theory models only update the matrix rows and columns of the
+ * molecules modified in a round and defer the MCS jobs which can not beat a
+ * kept cell of their row or column; the cells must be scored as with a full
+ * update of the matrices and the mappings must be the same.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class GameTheoryUpdateTest extends MappingUtility {
+
+    private static final Logger LOG = getLogger(GameTheoryUpdateTest.class.getName());
+
+    /*
+     * Rhea reactions with three or more molecules on one side
+     */
+    private static final String[] RHEA_REACTIONS = {
+        "10050", "10086", "10137", "10253", "10561", "10566", "11121", "11125",
+        "11150", "11253", "11270", "11533", "11554", "11622", "11705", "11813",
+        "11910", "11994", "12473", "12682", "12879", "13314", "13782", "14163",
+        "14503", "14551", "14603", "14838"};
+
+    /*
+     * Reactions whose games run several winner selection rounds and defer
+     * MCS jobs: an ester and a sugar phosphate hydrolysis, each next to an
+     * unrelated pair
+     */
+    private static final String[] DEFERRING_REACTIONS = {
+        "CCCCCCCCCC(=O)OC.O.CCN>>CCCCCCCCCC(=O)O.CO.CC=N",
+        "OCC1OC(OP(O)(O)=O)C(O)C(O)C1O.O.CCCCCC(N)C(O)=O>>OCC1OC(O)C(O)C(O)C1O.OP(O)(O)=O.CCCCCC(=O)C(O)=O.N"};
+
+    private static final SmilesParser SMILES_PARSER = new SmilesParser(SilentChemObjectBuilder.getInstance());
+    /*
+     * the game models add their atom mappings with the default builder
+     */
+    private static final SmilesParser REACTION_PARSER = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+
+    @Test
+    public void RheaIncrementalUpdate() throws Exception {
+        for (String reactionID : RHEA_REACTIONS) {
+            MappingMetrics incrementalMetrics = new MappingMetrics();
+            Map<IMappingAlgorithm, String> incremental = getMappedReactions(reactionID, incrementalMetrics);
+            MappingMetrics fullMetrics = new MappingMetrics();
+            Map<IMappingAlgorithm, String> full;
+            setProperty(FULL_UPDATE_PROPERTY, "true");
+            try {
+                full = getMappedReactions(reactionID, fullMetrics);
+            } finally {
+                clearProperty(FULL_UPDATE_PROPERTY);
+            }
+            assertEquals(reactionID, full, incremental);
+            assertEquals(reactionID, fullMetrics.getCount(GAME_THEORY_ITERATIONS),
+                    incrementalMetrics.getCount(GAME_THEORY_ITERATIONS));
+            assertTrue(reactionID, incrementalMetrics.getCount(MATRIX_CELLS_REEVALUATED)
+                    <= fullMetrics.getCount(MATRIX_CELLS_REEVALUATED));
+        }
+    }
+
+    /*
+     * Ethylamine shares carbon with citrate but its MCS can neither score as
+     * high as the citrate pair kept in the column nor cover ethylamine; the
+     * job is deferred and matched in the next round
+     */
+    @Test
+    public void DeferredPairSharingElements() throws Exception {
+        String citrate = "OC(=O)CC(O)(CC(O)=O)C(O)=O";
+        ReactionContainer container = new ReactionContainer();
+        container.putEduct(0, parse(citrate, "E0"));
+        container.putEduct(1, parse("CCN", "E1"));
+        container.putProduct(0, parse(citrate, "P0"));
+        container.putProduct(1, parse("CC=N", "P1"));
+
+        HydrogenFreeFingerPrintContainer fingerprints = new HydrogenFreeFingerPrintContainer();
+        List<String> educts = asList("E0", "E1");
+        List<String> products = asList("P0", "P1");
+        for (int i = 0; i < 2; i++) {
+            BitSet fp = container.getFingerPrintofEduct(i);
+            fingerprints.put(educts.get(i), fp);
+            fp = container.getFingerPrintofProduct(i);
+            fingerprints.put(products.get(i), fp);
+        }
+        Holder holder = new Holder(MAX, "deferral", educts, products, container, new BestMatchContainer(), fingerprints);
+        MappingMetrics metrics = new MappingMetrics();
+        holder.setMCSCache(new MCSCache(metrics));
+
+        /*
+         * the citrate pair is kept from the last round, ethylamine was modified
+         */
+        IAtomContainer educt = container.getEduct(0);
+        IAtomContainer product = container.getProduct(0);
+        AtomAtomMapping identity = new AtomAtomMapping(educt, product);
+        for (int k = 0; k < educt.getAtomCount(); k++) {
+            identity.put(educt.getAtom(k), product.getAtom(k));
+        }
+        holder.getBestMatchContainer().putBestMapping(0, 0, identity);
+        container.setEductModified(1, true);
+
+        Set<Combination> deferredCells = new TreeSet<>();
+        MCSSolutionStore solutions = matcher(holder, emptySet(), deferredCells);
+        assertEquals(1, deferredCells.size());
+        assertTrue(deferredCells.contains(new Combination(1, 0)));
+        assertEquals(1, metrics.getCount(MCS_DEFERRED));
+        assertNull(solutions.get(1, 0, container.getEduct(1), container.getProduct(0)));
+        assertNotNull(solutions.get(1, 1, container.getEduct(1), container.getProduct(1)));
+
+        container.setEductModified(1, false);
+        Set<Combination> next = new TreeSet<>();
+        solutions = matcher(holder, deferredCells, next);
+        assertTrue(next.isEmpty());
+        assertEquals(1, metrics.getCount(MCS_DEFERRED));
+        assertNotNull(solutions.get(1, 0, container.getEduct(1), container.getProduct(0)));
+    }
+
+    /*
+     * A modified educt or product only re-evaluates its row or column; a full
+     * update scores every cell as restored from the first fill
+     */
+    @Test
+    public void ModifiedRowAndColumnUpdate() throws Exception {
+        for (String reactionID : new String[]{"10050", "11150", "14163"}) {
+            MappingMetrics metrics = new MappingMetrics();
+            GameTheoryMatrix matrix = new GameTheoryMatrix(MAX, getReaction(reactionID), true, new MCSCache(metrics));
+            Holder holder = matrix.getMatrixHolder();
+            ReactionContainer container = holder.getReactionContainer();
+            int rows = container.getEductCount();
+            int columns = container.getProductCount();
+            assertEquals(reactionID, rows * columns, metrics.getCount(MATRIX_CELLS_REEVALUATED));
+            matrix.UpdateMatrix(holder, true);
+            assertEquals(reactionID, rows * columns, metrics.getCount(MATRIX_CELLS_REEVALUATED));
+            double[][] clique = holder.getCliqueMatrix().getArrayCopy();
+            double[][] similarity = holder.getGraphSimilarityMatrix().getArrayCopy();
+            double[][] fpSimilarity = holder.getFPSimilarityMatrix().getArrayCopy();
+            double[][] stereo = holder.getStereoMatrix().getArrayCopy();
+            double[][] fragment = holder.getFragmentMatrix().getArrayCopy();
+            double[][] energy = holder.getEnergyMatrix().getArrayCopy();
+
+            container.setEductModified(rows - 1, true);
+            matrix.UpdateMatrix(holder, true);
+            assertEquals(reactionID, rows * columns + columns, metrics.getCount(MATRIX_CELLS_REEVALUATED));
+
+            container.setProductModified(0, true);
+            matrix.UpdateMatrix(holder, true);
+            assertEquals(reactionID, rows * columns + columns + rows, metrics.getCount(MATRIX_CELLS_REEVALUATED));
+
+            setProperty(FULL_UPDATE_PROPERTY, "true");
+            try {
+                matrix.UpdateMatrix(holder, true);
+            } finally {
+                clearProperty(FULL_UPDATE_PROPERTY);
+            }
+            assertEquals(reactionID, 2 * rows * columns + columns + rows, metrics.getCount(MATRIX_CELLS_REEVALUATED));
+
+            for (int i = 0; i < rows; i++) {
+                assertArrayEquals(reactionID, clique[i], holder.getCliqueMatrix().getArrayCopy()[i], 0.0);
+                assertArrayEquals(reactionID, similarity[i], holder.getGraphSimilarityMatrix().getArrayCopy()[i], 0.0);
+                assertArrayEquals(reactionID, fpSimilarity[i], holder.getFPSimilarityMatrix().getArrayCopy()[i], 0.0);
+                assertArrayEquals(reactionID, stereo[i], holder.getStereoMatrix().getArrayCopy()[i], 0.0);
+                assertArrayEquals(reactionID, fragment[i], holder.getFragmentMatrix().getArrayCopy()[i], 0.0);
+                assertArrayEquals(reactionID, energy[i], holder.getEnergyMatrix().getArrayCopy()[i], 0.0);
+            }
+        }
+    }
+
+    /*
+     * The cells of unmodified molecules keep the scores they were restored
+     * with, also in a clone of the holder with modified matrices, as the
+     * rules and the isomorphism checks make
+     */
+    @Test
+    public void KeptCellsUpdate() throws Exception {
+        for (String reactionID : new String[]{"10050", "11150", "14163"}) {
+            MappingMetrics metrics = new MappingMetrics();
+            GameTheoryMatrix matrix = new GameTheoryMatrix(MAX, getReaction(reactionID), true, new MCSCache(metrics));
+            Holder holder = matrix.getMatrixHolder();
+            int rows = holder.getReactionContainer().getEductCount();
+            matrix.UpdateMatrix(holder, true);
+            double[][] similarity = holder.getGraphSimilarityMatrix().getArrayCopy();
+            double[][] clique = holder.getCliqueMatrix().getArrayCopy();
+
+            matrix.UpdateMatrix(holder, true);
+            Holder clone = (Holder) holder.clone();
+            clone.getGraphSimilarityMatrix().setValue(0, 0, MIN_VALUE);
+            clone.getCliqueMatrix().setValue(0, 0, MIN_VALUE);
+            matrix.UpdateMatrix(clone, true);
+            for (int i = 0; i < rows; i++) {
+                assertArrayEquals(reactionID, similarity[i], holder.getGraphSimilarityMatrix().getArrayCopy()[i], 0.0);
+                assertArrayEquals(reactionID, clique[i], holder.getCliqueMatrix().getArrayCopy()[i], 0.0);
+                assertArrayEquals(reactionID, similarity[i], clone.getGraphSimilarityMatrix().getArrayCopy()[i], 0.0);
+                assertArrayEquals(reactionID, clique[i], clone.getCliqueMatrix().getArrayCopy()[i], 0.0);
+            }
+        }
+    }
+
+    /*
+     * A new best mapping for the cell of unmodified molecules, as the
+     * isomorphism checks put, is scored in the next update of the holder
+     */
+    @Test
+    public void PutBestMappingUpdate() throws Exception {
+        for (String reactionID : new String[]{"10050", "11150", "14163"}) {
+            GameTheoryMatrix matrix = new GameTheoryMatrix(MAX, getReaction(reactionID), true, new MCSCache(new MappingMetrics()));
+            Holder holder = matrix.getMatrixHolder();
+            ReactionContainer container = holder.getReactionContainer();
+            matrix.UpdateMatrix(holder, true);
+            int cells = 0;
+            for (int i = 0; i < container.getEductCount(); i++) {
+                for (int j = 0; j < container.getProductCount(); j++) {
+                    if (holder.getCliqueMatrix().getValue(i, j) > 0) {
+                        long revision = holder.getBestMatchContainer().getRevision(i, j);
+                        holder.getBestMatchContainer().putBestMapping(i, j,
+                                new AtomAtomMapping(container.getEduct(i), container.getProduct(j)));
+                        assertTrue(reactionID, holder.getBestMatchContainer().getRevision(i, j) > revision);
+                        matrix.UpdateMatrix(holder, true);
+                        assertEquals(reactionID, 0.0, holder.getCliqueMatrix().getValue(i, j), 0.0);
+                        assertEquals(reactionID, 0.0, holder.getGraphSimilarityMatrix().getValue(i, j), 0.0);
+                        cells++;
+                    }
+                }
+            }
+            assertTrue(reactionID, cells > 0);
+        }
+    }
+
+    /*
+     * The MCS jobs deferred in the rounds of the MAX, MIN and MIX games give
+     * the atom mappings of a full update. The cells matched in a round are
+     * scored 0, so a game started from the first fill of the matrices stops
+     * after its first selection; here the matrices are restored from their
+     * best matches before the game starts.
+     */
+    @Test
+    public void DeferredRoundsAsFull() throws Exception {
+        for (IMappingAlgorithm theory : new IMappingAlgorithm[]{MAX, MIN, MIX}) {
+            long deferred = 0;
+            for (String smiles : DEFERRING_REACTIONS) {
+                MappingMetrics incrementalMetrics = new MappingMetrics();
+                String incremental = getGameMappings(smiles, theory, incrementalMetrics);
+                MappingMetrics fullMetrics = new MappingMetrics();
+                String full;
+                setProperty(FULL_UPDATE_PROPERTY, "true");
+                try {
+                    full = getGameMappings(smiles, theory, fullMetrics);
+                } finally {
+                    clearProperty(FULL_UPDATE_PROPERTY);
+                }
+                assertEquals(theory + " " + smiles, full, incremental);
+                assertEquals(theory + " " + smiles, fullMetrics.getCount(GAME_THEORY_ITERATIONS),
+                        incrementalMetrics.getCount(GAME_THEORY_ITERATIONS));
+                assertTrue(theory + " " + smiles, incrementalMetrics.getCount(GAME_THEORY_ITERATIONS) > 2);
+                assertEquals(theory + " " + smiles, 0, fullMetrics.getCount(MCS_DEFERRED));
+                deferred += incrementalMetrics.getCount(MCS_DEFERRED);
+            }
+            assertTrue(theory.toString(), deferred > 0);
+        }
+    }
+
+    /*
+     * Atom mappings of the game, reactant to product atom IDs
+     */
+    private String getGameMappings(String smiles, IMappingAlgorithm theory, MappingMetrics metrics) throws Exception {
+        IReaction reaction = REACTION_PARSER.parseReactionSmiles(smiles);
+        reaction.setID(theory.name());
+        Map<Integer, IAtomContainer> educts = new TreeMap<>();
+        for (IAtomContainer molecule : reaction.getReactants().atomContainers()) {
+            molecule.setID("E" + educts.size());
+            educts.put(educts.size(), molecule);
+        }
+        Map<Integer, IAtomContainer> products = new TreeMap<>();
+        for (IAtomContainer molecule : reaction.getProducts().atomContainers()) {
+            molecule.setID("P" + products.size());
+            products.put(products.size(), molecule);
+        }
+        labelAtoms(educts.values());
+        labelAtoms(products.values());
+
+        GameTheoryMatrix matrix = new GameTheoryMatrix(theory, reaction, true, new MCSCache(metrics));
+        matrix.UpdateMatrix(matrix.getMatrixHolder(), true);
+        int delta = make(theory, reaction, true, educts, products, matrix).getDelta();
+        Set<String> mappings = new TreeSet<>();
+        for (IMapping mapping : reaction.mappings()) {
+            mappings.add(mapping.getChemObject(0).getID() + ">" + mapping.getChemObject(1).getID());
+        }
+        return delta + " " + mappings;
+    }
+
+    private Map<IMappingAlgorithm, String> getMappedReactions(String reactionID, MappingMetrics metrics) throws Exception {
+        IReaction cdkReaction = getReaction(reactionID);
+        ExtReactionManipulatorTool.addExplicitH(cdkReaction);
+        ReactionMechanismTool rmt = new ReactionMechanismTool(cdkReaction, true, new StandardizeReaction());
+        Map<IMappingAlgorithm, String> mappedReactions = new EnumMap<>(IMappingAlgorithm.class);
+        for (MappingSolution solution : rmt.getAllSolutions()) {
+            mappedReactions.put(solution.getAlgorithmID(),
+                    unique().withAtomClasses().createReactionSMILES(solution.getReaction()));
+        }
+        metrics.merge(rmt.getMetrics());
+        return mappedReactions;
+    }
+
+    private IReaction getReaction(String reactionID) throws Exception {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(RHEA_RXN_DIR + reactionID + ".rxn");
+        IReaction reaction = readReactionFile(reactionID, ins, false, false);
+        labelAtoms(reaction.getReactants().atomContainers());
+        labelAtoms(reaction.getProducts().atomContainers());
+        return reaction;
+    }
+
+    private static IAtomContainer parse(String smiles, String id) throws Exception {
+        IAtomContainer molecule = SMILES_PARSER.parseSmiles(smiles);
+        molecule.setID(id);
+        for (int k = 0; k < molecule.getAtomCount(); k++) {
+            molecule.getAtom(k).setID(id + "." + k);
+        }
+        percieveAtomTypesAndConfigureAtoms(molecule);
+        return molecule;
+    }
+
+    /*
+     * Molecule and atom IDs, as the reactor sets them
+     */
+    private static void labelAtoms(Iterable<IAtomContainer> molecules) throws Exception {
+        int moleculeCounter = 1;
+        int atomCounter = 1;
+        for (IAtomContainer molecule : molecules) {
+            if (molecule.getID() == null) {
+                molecule.setID("M" + moleculeCounter);
+            }
+            moleculeCounter++;
+            for (int k = 0; k < molecule.getAtomCount(); k++) {
+                molecule.getAtom(k).setID(valueOf(atomCounter++));
+                molecule.getAtom(k).setProperty("index", k);
+            }
+            percieveAtomTypesAndConfigureAtoms(molecule);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast;
+
+import java.io.InputStream;
+import static java.lang.String.valueOf;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IReaction;
+import static uk.ac.ebi.reactionblast.TestUtility.RHEA_RXN_DIR;
+import uk.ac.ebi.reactionblast.mapping.algorithm.GameTheoryMatrix;
+import uk.ac.ebi.reactionblast.mapping.algorithm.Holder;
+import uk.ac.ebi.reactionblast.mapping.graph.MCSCache;
+import uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MCS_APPROXIMATE;
+import static uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics.Counter.MCS_CALLS;
+import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MAX;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
+
+/**
+ * The MCS time budget: searches running past the budget are given up and the
+ * pairs approximated, without a budget nothing is approximated.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MCSTimeBudgetTest extends MappingUtility {
+
+    private static final Logger LOG = getLogger(MCSTimeBudgetTest.class.getName());
+
+    private static final String[] RHEA_REACTIONS = {"10050", "11150", "14163"};
+
+    @Test
+    public void NoBudget() throws Exception {
+        for (String reactionID : RHEA_REACTIONS) {
+            MappingMetrics metrics = new MappingMetrics();
+            fill(reactionID, new MCSCache(0, 0, metrics));
+            assertTrue(reactionID, metrics.getCount(MCS_CALLS) > 0);
+            assertEquals(reactionID, 0, metrics.getCount(MCS_APPROXIMATE));
+        }
+    }
+
+    /*
+     * A budget of 1 ms per pair stops the searches still running
+     */
+    @Test
+    public void PairBudgetSpent() throws Exception {
+        long approximate = 0;
+        for (String reactionID : RHEA_REACTIONS) {
+            MappingMetrics metrics = new MappingMetrics();
+            Holder holder = fill(reactionID, new MCSCache(1, 0, metrics));
+            int rows = holder.getReactionContainer().getEductCount();
+            assertEquals(reactionID, rows, holder.getCliqueMatrix().getRowDimension());
+            approximate += metrics.getCount(MCS_APPROXIMATE);
+        }
+        assertTrue(approximate > 0);
+    }
+
+    /*
+     * Every search starts after the deadline of the reaction
+     */
+    @Test
+    public void ReactionBudgetSpent() throws Exception {
+        for (String reactionID : RHEA_REACTIONS) {
+            MappingMetrics metrics = new MappingMetrics();
+            MCSCache cache = new MCSCache(0, 1, metrics);
+            Thread.sleep(5);
+            fill(reactionID, cache);
+            assertEquals(reactionID, metrics.getCount(MCS_CALLS), metrics.getCount(MCS_APPROXIMATE));
+        }
+    }
+
+    private Holder fill(String reactionID, MCSCache cache) throws Exception {
+        GameTheoryMatrix matrix = new GameTheoryMatrix(MAX, getReaction(reactionID), true, cache);
+        return matrix.getMatrixHolder();
+    }
+
+    private IReaction getReaction(String reactionID) throws Exception {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(RHEA_RXN_DIR + reactionID + ".rxn");
+        IReaction reaction = readReactionFile(reactionID, ins, false, false);
+        labelAtoms(reaction.getReactants().atomContainers());
+        labelAtoms(reaction.getProducts().atomContainers());
+        return reaction;
+    }
+
+    /*
+     * Molecule and atom IDs, as the reactor sets them
+     */
+    private static void labelAtoms(Iterable<IAtomContainer> molecules) throws Exception {
+        int moleculeCounter = 1;
+        int atomCounter = 1;
+        for (IAtomContainer molecule : molecules) {
+            if (molecule.getID() == null) {
+                molecule.setID("M" + moleculeCounter);
+            }
+            moleculeCounter++;
+            for (int k = 0; k < molecule.getAtomCount(); k++) {
+                molecule.getAtom(k).setID(valueOf(atomCounter++));
+                molecule.getAtom(k).setProperty("index", k);
+            }
+            percieveAtomTypesAndConfigureAtoms(molecule);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+import uk.ac.ebi.reactionblast.mechanism.helper.CachedMapping;
+import uk.ac.ebi.reactionblast.mechanism.helper.LRUMappingCache;
+import uk.ac.ebi.reactionblast.mechanism.helper.MemoryMappedMappingCache;
+import uk.ac.ebi.reactionblast.mechanism.helper.ReactionSignature;
+import uk.ac.ebi.reactionblast.tools.StandardizeReaction;
+
+/**
+ * Reaction signatures and the in-memory and memory mapped mapping caches.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MappingCacheTest extends MappingUtility {
+
+    private static final Logger LOG = getLogger(MappingCacheTest.class.getName());
+    private static final SmilesParser SMILES_PARSER = new SmilesParser(SilentChemObjectBuilder.getInstance());
+
+    private static CachedMapping esterification;
+    private static CachedMapping hydration;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        esterification = getMapping("CC(=O)O.OCC>>CC(=O)OCC.O");
+        hydration = getMapping("CC=C.O>>CC(C)O");
+    }
+
+    private static CachedMapping getMapping(String smiles) throws Exception {
+        IReaction reaction = SMILES_PARSER.parseReactionSmiles(smiles);
+        ReactionMechanismTool rmt = new ReactionMechanismTool(reaction, true, new StandardizeReaction());
+        return CachedMapping.of(rmt.getSelectedSolution());
+    }
+
+    @Test
+    public void signatureIgnoresOrder() throws Exception {
+        String signature = ReactionSignature.getSignature(SMILES_PARSER.parseReactionSmiles("CC(=O)O.OCC>>CC(=O)OCC.O"));
+        assertNotNull(signature);
+        assertEquals(signature, ReactionSignature.getSignature(SMILES_PARSER.parseReactionSmiles("C(C)O.OC(C)=O>>O.O=C(OCC)C")));
+        assertEquals(signature, ReactionSignature.getSignature(SMILES_PARSER.parseReactionSmiles("[CH3:1]C(=O)O.OCC>>CC(=O)OCC.O")));
+    }
+
+    @Test
+    public void signatureKeepsStereo() throws Exception {
+        assertNotEquals(
+                ReactionSignature.getSignature(SMILES_PARSER.parseReactionSmiles("C/C=C/C.[H][H]>>CCCC")),
+                ReactionSignature.getSignature(SMILES_PARSER.parseReactionSmiles("C/C=C\\C.[H][H]>>CCCC")));
+        assertNotEquals(
+                ReactionSignature.getSignature(SMILES_PARSER.parseReactionSmiles("N[C@@H](C)C(=O)O>>NCC(=O)O.C")),
+                ReactionSignature.getSignature(SMILES_PARSER.parseReactionSmiles("N[C@H](C)C(=O)O>>NCC(=O)O.C")));
+    }
+
+    @Test
+    public void signatureCountsStoichiometry() throws Exception {
+        assertEquals(
+                ReactionSignature.getSignature(SMILES_PARSER.parseReactionSmiles("O.O.CC=C>>CC(C)O.O")),
+                ReactionSignature.getSignature(SMILES_PARSER.parseReactionSmiles("O.CC=C.O>>O.CC(C)O")));
+        assertNotEquals(
+                ReactionSignature.getSignature(SMILES_PARSER.parseReactionSmiles("O.O.CC=C>>CC(C)O.O")),
+                ReactionSignature.getSignature(SMILES_PARSER.parseReactionSmiles("O.CC=C>>CC(C)O")));
+    }
+
+    @Test
+    public void lruRoundTrip() {
+        LRUMappingCache cache = new LRUMappingCache(2);
+        assertNull(cache.get("a"));
+        cache.put("a", esterification);
+        cache.put("b", hydration);
+        assertSame(esterification, cache.get("a"));
+        assertSame(hydration, cache.get("b"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void lruEvictsLeastRecentlyUsed() {
+        LRUMappingCache cache = new LRUMappingCache(2);
+        cache.put("a", esterification);
+        cache.put("b", hydration);
+        cache.get("a");
+        cache.put("c", hydration);
+        assertEquals(2, cache.size());
+        assertSame(esterification, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertSame(hydration, cache.get("c"));
+    }
+
+    @Test
+    public void lruReadsThroughBackingStore() {
+        LRUMappingCache store = new LRUMappingCache(10);
+        LRUMappingCache cache = new LRUMappingCache(1, store);
+        cache.put("a", esterification);
+        cache.put("b", hydration);
+        assertEquals(1, cache.size());
+        assertEquals(2, store.size());
+        assertSame(esterification, cache.get("a"));
+        assertSame(hydration, cache.get("b"));
+    }
+
+    @Test
+    public void memoryMappedRoundTrip() throws IOException {
+        File file = folder.newFile("cache.bin");
+        file.delete();
+        try (MemoryMappedMappingCache cache = new MemoryMappedMappingCache(file, 1 << 20)) {
+            assertNull(cache.get("a"));
+            cache.put("a", esterification);
+            cache.put("b", hydration);
+            cache.put("a", hydration);
+            assertEquals(2, cache.size());
+            assertMappingEquals(esterification, cache.get("a"));
+            assertMappingEquals(hydration, cache.get("b"));
+        }
+    }
+
+    @Test
+    public void memoryMappedReopen() throws IOException {
+        File file = folder.newFile("cache.bin");
+        file.delete();
+        try (MemoryMappedMappingCache cache = new MemoryMappedMappingCache(file, 1 << 20)) {
+            cache.put("a", esterification);
+            cache.put("b", hydration);
+        }
+        try (MemoryMappedMappingCache cache = new MemoryMappedMappingCache(file, 1 << 20)) {
+            assertEquals(2, cache.size());
+            assertMappingEquals(esterification, cache.get("a"));
+            assertMappingEquals(hydration, cache.get("b"));
+            cache.put("c", esterification);
+        }
+        try (MemoryMappedMappingCache cache = new MemoryMappedMappingCache(file, 1 << 20)) {
+            assertEquals(3, cache.size());
+            assertMappingEquals(esterification, cache.get("c"));
+        }
+    }
+
+    @Test
+    public void memoryMappedFull() throws IOException {
+        File file = folder.newFile("cache.bin");
+        file.delete();
+        /*
+         Room for the header and one record only
+         */
+        long capacity = 16 + recordSize("a", esterification) + recordSize("b", esterification) - 1;
+        try (MemoryMappedMappingCache cache = new MemoryMappedMappingCache(file, capacity)) {
+            cache.put("a", esterification);
+            cache.put("b", esterification);
+            cache.put("c", esterification);
+            assertEquals(1, cache.size());
+            assertMappingEquals(esterification, cache.get("a"));
+            assertNull(cache.get("b"));
+        }
+        try (MemoryMappedMappingCache cache = new MemoryMappedMappingCache(file, capacity)) {
+            assertEquals(1, cache.size());
+            assertMappingEquals(esterification, cache.get("a"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void memoryMappedRejectsOtherFiles() throws IOException {
+        File file = folder.newFile("other.bin");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("not a mapping cache".getBytes(UTF_8));
+        }
+        new MemoryMappedMappingCache(file, 1 << 20).close();
+    }
+
+    private static int recordSize(String signature, CachedMapping mapping) throws IOException {
+        ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        mapping.writeTo(new DataOutputStream(entry));
+        return 8 + signature.getBytes(UTF_8).length + entry.size();
+    }
+
+    private static void assertMappingEquals(CachedMapping expected, CachedMapping actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getAlgorithmID(), actual.getAlgorithmID());
+        assertEquals(expected.getMappedRXN("R1"), actual.getMappedRXN("R1"));
+        assertEquals(expected.getMappedSMILES(), actual.getMappedSMILES());
+        assertEquals(expected.getTotalBondChanges(), actual.getTotalBondChanges());
+        assertEquals(expected.getTotalFragmentChanges(), actual.getTotalFragmentChanges());
+        assertEquals(expected.getSmallestFragmentCount(), actual.getSmallestFragmentCount());
+        assertEquals(expected.getTotalCarbonBondChanges(), actual.getTotalCarbonBondChanges());
+        assertEquals(expected.getTotalStereoChanges(), actual.getTotalStereoChanges());
+        assertEquals(expected.getBondEnergySum(), actual.getBondEnergySum(), 0.0);
+        assertEquals(expected.getEnergyDelta(), actual.getEnergyDelta(), 0.0);
+        assertEquals(expected.getFormedCleavedFingerprint(), actual.getFormedCleavedFingerprint());
+        assertEquals(expected.getOrderChangesFingerprint(), actual.getOrderChangesFingerprint());
+        assertEquals(expected.getStereoChangesFingerprint(), actual.getStereoChangesFingerprint());
+        assertEquals(expected.getReactionCenterFingerprint(), actual.getReactionCenterFingerprint());
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import static java.util.Arrays.asList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.Substructure;
+import static uk.ac.ebi.reactionblast.TestUtility.KEGG_RXN_DIR;
+import uk.ac.ebi.reactionblast.mapping.algorithm.Holder;
+import uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules;
+import uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.ACETATE;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.ACETYL_COA;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.ADP;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.ATP;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.C00003;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.C00004;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.C00005;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.C00006;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.COA;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.D_GLUTAMATE;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.L_GLUTAMATE;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.L_GLUTAMINE;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.PHOSPHATE;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.SULPHATE;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.TWO_OXOGLUTARATE;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Cofactor.WATER;
+import static uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.getRules;
+import uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.PairRule;
+import uk.ac.ebi.reactionblast.mapping.algorithm.checks.MappingRules.Signature;
+import uk.ac.ebi.reactionblast.mapping.algorithm.checks.RuleBasedMappingHandler;
+import uk.ac.ebi.reactionblast.mapping.container.HydrogenFreeFingerPrintContainer;
+import uk.ac.ebi.reactionblast.mapping.container.ReactionContainer;
+import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MIN;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.removeHydrogens;
+
+/**
+ * The signature prefilter of the mapping rules must never reject a pair the
+ * substructure search accepts, every built in rule must still match its
+ * cofactor pair, and pair rules read from a file must be applied.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MappingRulesTest extends MappingUtility {
+
+    private static final Logger LOG = getLogger(MappingRulesTest.class.getName());
+    private static final SmilesParser SMILES_PARSER = new SmilesParser(SilentChemObjectBuilder.getInstance());
+    /*
+     * Glucose, matches none of the rules
+     */
+    private static final String[] REACTIONS = {
+        "R00002", "R00012", "R00014", "R00019", "R00025", "R00090", "R00114",
+        "R00344", "R01188", "R02918", "R03187", "R09907"};
+    private static final String DECOY = "OC[C@H]1OC(O)[C@H](O)[C@@H](O)[C@@H]1O";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /*
+     * Every rule molecule against every cofactor and the molecules of KEGG
+     * reactions with water, phosphate, glutamate, ATP, CoA and NAD(P)(H)
+     */
+    @Test
+    public void signatureNeverRejectsMatch() throws Exception {
+        List<IAtomContainer> molecules = new ArrayList<>();
+        for (Cofactor cofactor : Cofactor.values()) {
+            molecules.add(hydrogenFree(reversed(parse(cofactor.getSmiles()))));
+        }
+        for (String reactionID : REACTIONS) {
+            IReaction reaction = getReaction(reactionID);
+            for (IAtomContainer ac : reaction.getReactants().atomContainers()) {
+                molecules.add(hydrogenFree(ac));
+            }
+            for (IAtomContainer ac : reaction.getProducts().atomContainers()) {
+                molecules.add(hydrogenFree(ac));
+            }
+        }
+
+        int matches = 0;
+        for (Cofactor cofactor : Cofactor.values()) {
+            MappingRules.Rule rule = getRules().getRule(cofactor);
+            IAtomContainer query = rule.newQuery();
+            for (IAtomContainer molecule : molecules) {
+                if (molecule.getAtomCount() == 0) {
+                    continue;
+                }
+                Signature signature = new Signature(molecule);
+                boolean match;
+                boolean mayMatch;
+                if (query.getAtomCount() <= molecule.getAtomCount()) {
+                    match = new Substructure(query, molecule, true, true, false, false).isSubgraph();
+                    mayMatch = rule.getSignature().mayBeSubgraphOf(signature);
+                } else {
+                    match = new Substructure(molecule, query, true, true, false, false).isSubgraph();
+                    mayMatch = signature.mayBeSubgraphOf(rule.getSignature());
+                }
+                if (match) {
+                    matches++;
+                    assertTrue(cofactor + " in " + molecule.getID(), mayMatch);
+                }
+            }
+        }
+        LOG.info("substructure matches " + matches);
+        assertTrue(matches > molecules.size());
+    }
+
+    @Test
+    public void waterPhosphate() throws Exception {
+        assertRule(WATER, PHOSPHATE);
+        assertRule(PHOSPHATE, WATER);
+    }
+
+    @Test
+    public void waterSulphate() throws Exception {
+        assertRule(WATER, SULPHATE);
+        assertRule(SULPHATE, WATER);
+    }
+
+    @Test
+    public void glutamate() throws Exception {
+        assertRule(L_GLUTAMATE, L_GLUTAMINE);
+        assertRule(L_GLUTAMINE, L_GLUTAMATE);
+        assertRule(D_GLUTAMATE, TWO_OXOGLUTARATE);
+        assertRule(TWO_OXOGLUTARATE, D_GLUTAMATE);
+    }
+
+    @Test
+    public void waterAcetate() throws Exception {
+        assertRule(WATER, ACETATE);
+        assertRule(ACETATE, WATER);
+    }
+
+    @Test
+    public void atpAdp() throws Exception {
+        assertRule(ATP, ADP);
+    }
+
+    @Test
+    public void coenzymeA() throws Exception {
+        assertRule(COA, ACETYL_COA);
+    }
+
+    @Test
+    public void nicotinamides() throws Exception {
+        assertRule(C00003, C00006);
+        assertRule(C00004, C00005);
+    }
+
+    @Test
+    public void noRuleNoMatch() throws Exception {
+        RuleBasedMappingHandler handler = handler(DECOY, "CCO");
+        assertFalse(handler.isMatchFound());
+    }
+
+    /*
+     * A pair rule read from a file, of elements in none of the other tests
+     */
+    @Test
+    public void ruleFile() throws Exception {
+        assertFalse(handler("F[Xe]F", "F[Xe](F)(F)F").isMatchFound());
+
+        File file = folder.newFile("rules.txt");
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("# name educt product\n");
+            writer.write("\n");
+            writer.write("XENON_FLUORIDES F[Xe]F F[Xe](F)(F)F\n");
+        }
+        MappingRules.addRules(file);
+
+        boolean found = false;
+        for (PairRule rule : getRules().getPairRules()) {
+            if (rule.getName().equals("XENON_FLUORIDES")) {
+                assertEquals(3, rule.getEduct().getAtomCount());
+                assertEquals(5, rule.getProduct().getAtomCount());
+                found = true;
+            }
+        }
+        assertTrue(found);
+
+        RuleBasedMappingHandler handler = handler("F[Xe]F", "F[Xe](F)(F)F");
+        assertTrue(handler.isMatchFound());
+        assertEquals(1.0, handler.getMatrixHolder().getGraphSimilarityMatrix().getValue(0, 0), 0.0);
+        assertEquals(Double.MIN_VALUE, handler.getMatrixHolder().getGraphSimilarityMatrix().getValue(1, 1), 0.0);
+    }
+
+    @Test
+    public void malformedRuleFile() throws Exception {
+        MappingRules before = getRules();
+        File file = folder.newFile("malformed.txt");
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("MISSING_PRODUCT CC(=O)O\n");
+        }
+        try {
+            MappingRules.addRules(file);
+            fail("rule without a product accepted");
+        } catch (CDKException ex) {
+            LOG.fine(ex.getMessage());
+        }
+        assertSame(before, getRules());
+    }
+
+    /*
+     * The cofactor pair in the first cell, with its atoms in a different
+     * order than the rule molecule, and a decoy pair in the second
+     */
+    private void assertRule(Cofactor educt, Cofactor product) throws Exception {
+        String name = educt + " and " + product;
+        RuleBasedMappingHandler handler = handler(educt.getSmiles(), product.getSmiles());
+        assertTrue(name, handler.isMatchFound());
+        Holder holder = handler.getMatrixHolder();
+        assertEquals(name, 1.0, holder.getGraphSimilarityMatrix().getValue(0, 0), 0.0);
+        assertEquals(name, Double.MIN_VALUE, holder.getGraphSimilarityMatrix().getValue(0, 1), 0.0);
+        assertEquals(name, Double.MIN_VALUE, holder.getGraphSimilarityMatrix().getValue(1, 0), 0.0);
+        assertEquals(name, Double.MIN_VALUE, holder.getGraphSimilarityMatrix().getValue(1, 1), 0.0);
+    }
+
+    private RuleBasedMappingHandler handler(String educt, String product) throws Exception {
+        ReactionContainer reactionContainer = new ReactionContainer();
+        reactionContainer.putEduct(0, reversed(parse(educt)));
+        reactionContainer.putEduct(1, parse(DECOY));
+        reactionContainer.putProduct(0, reversed(parse(product)));
+        reactionContainer.putProduct(1, parse(DECOY));
+
+        HydrogenFreeFingerPrintContainer fingerprints = new HydrogenFreeFingerPrintContainer();
+        List<String> educts = asList("E0", "E1");
+        List<String> products = asList("P0", "P1");
+        for (int i = 0; i < 2; i++) {
+            BitSet fp = reactionContainer.getFingerPrintofEduct(i);
+            fingerprints.put(educts.get(i), fp);
+            fp = reactionContainer.getFingerPrintofProduct(i);
+            fingerprints.put(products.get(i), fp);
+        }
+        Holder holder = new Holder(MIN, "rules", educts, products, reactionContainer, null, fingerprints);
+        for (int i = 0; i < 2; i++) {
+            for (int j = 0; j < 2; j++) {
+                holder.getCliqueMatrix().setValue(i, j, 1.0);
+                holder.getGraphSimilarityMatrix().setValue(i, j, 0.5);
+            }
+        }
+        return new RuleBasedMappingHandler(holder, educts, products);
+    }
+
+    private IReaction getReaction(String reactionID) throws Exception {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(KEGG_RXN_DIR + reactionID + ".rxn");
+        IReaction reaction = readReactionFile(reactionID, ins, false, false);
+        int i = 0;
+        for (IAtomContainer ac : reaction.getReactants().atomContainers()) {
+            ac.setID(reactionID + "E" + i++);
+        }
+        i = 0;
+        for (IAtomContainer ac : reaction.getProducts().atomContainers()) {
+            ac.setID(reactionID + "P" + i++);
+        }
+        return reaction;
+    }
+
+    private static IAtomContainer parse(String smiles) throws Exception {
+        IAtomContainer ac = SMILES_PARSER.parseSmiles(smiles);
+        ac.setID(smiles);
+        percieveAtomTypesAndConfigureAtoms(ac);
+        return ac;
+    }
+
+    private static IAtomContainer hydrogenFree(IAtomContainer ac) throws CDKException {
+        IAtomContainer container = removeHydrogens(new AtomContainer(ac));
+        container.setID(ac.getID());
+        return container;
+    }
+
+    /*
+     * The same molecule with its atoms in the reverse order
+     */
+    private static IAtomContainer reversed(IAtomContainer ac) {
+        IAtom[] atoms = new IAtom[ac.getAtomCount()];
+        for (int i = 0; i < atoms.length; i++) {
+            atoms[i] = ac.getAtom(atoms.length - 1 - i);
+        }
+        IAtomContainer container = new AtomContainer(ac);
+        container.setAtoms(atoms);
+        container.setID(ac.getID());
+        return container;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import static org.openscience.cdk.CDKConstants.ISALIPHATIC;
+import static org.openscience.cdk.CDKConstants.ISAROMATIC;
+import static org.openscience.cdk.CDKConstants.ISINRING;
+import static org.openscience.cdk.CDKConstants.RING_CONNECTIONS;
+import static org.openscience.cdk.CDKConstants.RING_SIZES;
+import static org.openscience.cdk.CDKConstants.SMALLEST_RINGS;
+import static org.openscience.cdk.CDKConstants.TOTAL_CONNECTIONS;
+import static org.openscience.cdk.CDKConstants.TOTAL_H_COUNT;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.interfaces.IRingSet;
+import static uk.ac.ebi.reactionblast.TestUtility.KEGG_RXN_DIR;
+import static uk.ac.ebi.reactionblast.TestUtility.RHEA_RXN_DIR;
+import uk.ac.ebi.reactionblast.tools.MoleculeInitializer;
+import uk.ac.ebi.reactionblast.tools.PerceivedRings;
+
+/**
+ * The RDT {@link MoleculeInitializer} sets the same atom and bond properties
+ * as the SMSD one, also when the rings of a clone come from a ring cache.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MoleculeInitializerTest extends MappingUtility {
+
+    private static final Logger LOG = getLogger(MoleculeInitializerTest.class.getName());
+
+    @Test
+    public void SameAsSMSDInitializer() throws Exception {
+        PerceivedRings.Cache rings = new PerceivedRings.Cache();
+        for (IAtomContainer molecule : getMolecules()) {
+            IAtomContainer expected = molecule.clone();
+            org.openscience.smsd.helper.MoleculeInitializer.initializeMolecule(expected);
+
+            IAtomContainer actual = molecule.clone();
+            MoleculeInitializer.initializeMolecule(actual);
+            assertSameProperties(molecule.getID(), expected, actual);
+            /*
+             * the second clone reads its rings from the cache
+             */
+            for (int i = 0; i < 2; i++) {
+                actual = molecule.clone();
+                MoleculeInitializer.initializeMolecule(actual, rings);
+                assertSameProperties(molecule.getID(), expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void RingsPerceivedOncePerMolecule() throws Exception {
+        PerceivedRings.Cache rings = new PerceivedRings.Cache();
+        List<IAtomContainer> molecules = getMolecules();
+        for (IAtomContainer molecule : molecules) {
+            MoleculeInitializer.initializeMolecule(molecule.clone(), rings);
+        }
+        int perceived = rings.size();
+        for (IAtomContainer molecule : molecules) {
+            MoleculeInitializer.initializeMolecule(molecule.clone(), rings);
+        }
+        assertEquals(perceived, rings.size());
+        assertEquals(0, new PerceivedRings.Cache().size());
+    }
+
+    private static void assertSameProperties(String id, IAtomContainer expected, IAtomContainer actual) {
+        for (int i = 0; i < expected.getAtomCount(); i++) {
+            IAtom e = expected.getAtom(i);
+            IAtom a = actual.getAtom(i);
+            String atom = id + " atom " + i;
+            assertEquals(atom, e.getFlag(ISINRING), a.getFlag(ISINRING));
+            assertEquals(atom, e.getFlag(ISALIPHATIC), a.getFlag(ISALIPHATIC));
+            assertEquals(atom, e.getFlag(ISAROMATIC), a.getFlag(ISAROMATIC));
+            assertEquals(atom, (Object) e.getProperty(RING_SIZES), (Object) a.getProperty(RING_SIZES));
+            assertEquals(atom, (Object) e.getProperty("SMALLEST_RING_SIZE"), (Object) a.getProperty("SMALLEST_RING_SIZE"));
+            assertEquals(atom, (Object) e.getProperty(TOTAL_CONNECTIONS), (Object) a.getProperty(TOTAL_CONNECTIONS));
+            assertEquals(atom, (Object) e.getProperty(TOTAL_H_COUNT), (Object) a.getProperty(TOTAL_H_COUNT));
+            assertEquals(atom, (Object) e.getProperty(RING_CONNECTIONS), (Object) a.getProperty(RING_CONNECTIONS));
+            assertEquals(atom, e.getValency(), a.getValency());
+            assertEquals(atom, e.getAtomTypeName(), a.getAtomTypeName());
+            assertEquals(atom, ringCount(e.getProperty(SMALLEST_RINGS)), ringCount(a.getProperty(SMALLEST_RINGS)));
+        }
+        for (int k = 0; k < expected.getBondCount(); k++) {
+            IBond e = expected.getBond(k);
+            IBond a = actual.getBond(k);
+            String bond = id + " bond " + k;
+            assertEquals(bond, e.getFlag(ISINRING), a.getFlag(ISINRING));
+            assertEquals(bond, e.getFlag(ISALIPHATIC), a.getFlag(ISALIPHATIC));
+            assertEquals(bond, e.getFlag(ISAROMATIC), a.getFlag(ISAROMATIC));
+            assertEquals(bond, e.getOrder(), a.getOrder());
+        }
+    }
+
+    private static int ringCount(Object rings) {
+        return rings == null ? -1 : ((IRingSet) rings).getAtomContainerCount();
+    }
+
+    private List<IAtomContainer> getMolecules() throws Exception {
+        List<IAtomContainer> molecules = new ArrayList<>();
+        for (String reactionID : new String[]{"10050", "11150", "14163"}) {
+            addMolecules(molecules, reactionID, getReaction(RHEA_RXN_DIR, reactionID));
+        }
+        for (String reactionID : new String[]{"R03165", "R09907", "R06466"}) {
+            addMolecules(molecules, reactionID, getReaction(KEGG_RXN_DIR, reactionID));
+        }
+        return molecules;
+    }
+
+    private IReaction getReaction(String dir, String reactionID) throws Exception {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(dir + reactionID + ".rxn");
+        return readReactionFile(reactionID, ins, false, false);
+    }
+
+    private static void addMolecules(List<IAtomContainer> molecules, String reactionID, IReaction reaction) {
+        int i = 0;
+        for (IAtomContainer molecule : reaction.getReactants().atomContainers()) {
+            molecule.setID(reactionID + "E" + i++);
+            molecules.add(molecule);
+        }
+        i = 0;
+        for (IAtomContainer molecule : reaction.getProducts().atomContainers()) {
+            molecule.setID(reactionID + "P" + i++);
+            molecules.add(molecule);
+        }
+    }
+}
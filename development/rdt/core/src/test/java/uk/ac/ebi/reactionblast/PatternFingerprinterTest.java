@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast;
+
+import static java.lang.System.clearProperty;
+import static java.lang.System.setProperty;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import uk.ac.ebi.reactionblast.fingerprints.Feature;
+import uk.ac.ebi.reactionblast.fingerprints.PatternFingerprinter;
+import static uk.ac.ebi.reactionblast.fingerprints.PatternFingerprinter.HASH_PROPERTY;
+import uk.ac.ebi.reactionblast.fingerprints.interfaces.IFeature;
+import static uk.ac.ebi.reactionblast.tools.MurmurHash.hash32;
+import uk.ac.ebi.reactionblast.tools.RandomNumber;
+
+/**
+ * The weighted hashed fingerprint must place the features by MurmurHash3 (the
+ * values of Guava's murmur3_32().hashUnencodedChars()), at the Mersenne
+ * Twister positions of earlier releases with {@value PatternFingerprinter#HASH_PROPERTY}
+ * set to "mersenne", and must be rebuilt after a feature is added.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class PatternFingerprinterTest {
+
+    private static final Logger LOG = getLogger(PatternFingerprinterTest.class.getName());
+
+    private static final String[] PATTERNS = {
+        "C-C", "C=O", "C-O", "C%N", "O-P", "c1ccccc1", "C(=O)O", "[O-]P(=O)([O-])O", "N-H*C", "Hello, world!"};
+
+    /*
+     * Guava 17 murmur3_32(seed).hashUnencodedChars(text).asInt()
+     */
+    @Test
+    public void murmurKnownAnswers() {
+        assertEquals(0, hash32("", 0));
+        assertEquals(142593372, hash32("", 42));
+        assertEquals(1867108634, hash32("a", 0));
+        assertEquals(2024861961, hash32("a", 42));
+        assertEquals(374890698, hash32("ab", 0));
+        assertEquals(627382360, hash32("ab", 42));
+        assertEquals(1118836419, hash32("abc", 0));
+        assertEquals(758957582, hash32("abc", 42));
+        assertEquals(-559884839, hash32("C-C", 0));
+        assertEquals(1100020238, hash32("C-C", 42));
+        assertEquals(776348321, hash32("c1ccccc1", 0));
+        assertEquals(-2122122222, hash32("c1ccccc1", 42));
+        assertEquals(-2059456153, hash32("C(=O)O", 0));
+        assertEquals(-1538607552, hash32("C(=O)O", 42));
+        assertEquals(935567512, hash32("Hello, world!", 0));
+        assertEquals(-1616061784, hash32("Hello, world!", 42));
+        assertEquals(-1654120319, hash32("\u03b1\u03b2\u03b3", 0));
+        assertEquals(-1648928030, hash32("\u03b1\u03b2\u03b3", 42));
+    }
+
+    @Test
+    public void murmurPositions() throws Exception {
+        PatternFingerprinter fp = fingerprint(1024);
+        double[] expected = new double[1024];
+        for (IFeature feature : fp.getFeatures()) {
+            expected[(int) ((hash32(feature.getPattern(), 0) & 0xffffffffL) % 1024)] += feature.getWeight();
+        }
+        assertArrayEquals(expected, fp.getWeightedHashedFingerPrint(), 0.0);
+    }
+
+    /*
+     * The positions of the earlier releases: a Mersenne Twister seeded with
+     * the feature hash code, reseeded for every feature
+     */
+    @Test
+    public void mersennePositions() throws Exception {
+        setProperty(HASH_PROPERTY, "mersenne");
+        try {
+            for (int size : new int[]{64, 1024, 4096}) {
+                PatternFingerprinter fp = fingerprint(size);
+                double[] expected = new double[size];
+                for (IFeature feature : fp.getFeatures()) {
+                    long hashCode = feature.hashCode();
+                    int position = new RandomNumber().generateMersenneTwisterRandomNumber(size, hashCode);
+                    expected[position] += feature.getWeight();
+                }
+                assertArrayEquals("size " + size, expected, fp.getWeightedHashedFingerPrint(), 0.0);
+                /*
+                 * memoized positions
+                 */
+                assertArrayEquals("size " + size, expected, fingerprint(size).getWeightedHashedFingerPrint(), 0.0);
+            }
+        } finally {
+            clearProperty(HASH_PROPERTY);
+        }
+    }
+
+    @Test
+    public void addInvalidatesVector() throws Exception {
+        PatternFingerprinter fp = new PatternFingerprinter(1024);
+        fp.add(new Feature("C-C", 1.0));
+        double[] before = fp.getWeightedHashedFingerPrint();
+        int position = (int) ((hash32("C-C", 0) & 0xffffffffL) % 1024);
+        assertEquals(1.0, before[position], 0.0);
+
+        /*
+         * the returned vector is a copy
+         */
+        before[position] = 7.0;
+        assertEquals(1.0, fp.getWeightedHashedFingerPrint()[position], 0.0);
+
+        fp.add(new Feature("C-C", 2.0));
+        assertEquals(3.0, fp.getWeightedHashedFingerPrint()[position], 0.0);
+
+        fp.add(new Feature("C=O", 1.0));
+        int other = (int) ((hash32("C=O", 0) & 0xffffffffL) % 1024);
+        double[] after = fp.getWeightedHashedFingerPrint();
+        assertEquals(position == other ? 4.0 : 1.0, after[other], 0.0);
+
+        PatternFingerprinter more = new PatternFingerprinter(1024);
+        more.add(new Feature("C-O", 5.0));
+        fp.add(more);
+        int third = (int) ((hash32("C-O", 0) & 0xffffffffL) % 1024);
+        assertTrue(fp.getWeightedHashedFingerPrint()[third] >= 5.0);
+        assertEquals(9.0, sum(fp.getWeightedHashedFingerPrint()), 0.0);
+    }
+
+    @Test
+    public void switchingHashRebuildsVector() throws Exception {
+        PatternFingerprinter fp = fingerprint(1024);
+        double[] murmur = fp.getWeightedHashedFingerPrint();
+        setProperty(HASH_PROPERTY, "mersenne");
+        double[] mersenne;
+        try {
+            mersenne = fp.getWeightedHashedFingerPrint();
+        } finally {
+            clearProperty(HASH_PROPERTY);
+        }
+        assertArrayEquals(murmur, fp.getWeightedHashedFingerPrint(), 0.0);
+        assertEquals(sum(murmur), sum(mersenne), 0.0);
+    }
+
+    private static PatternFingerprinter fingerprint(int size) throws Exception {
+        PatternFingerprinter fp = new PatternFingerprinter(size);
+        for (int i = 0; i < PATTERNS.length; i++) {
+            fp.add(new Feature(PATTERNS[i], i + 1.0));
+        }
+        return fp;
+    }
+
+    private static double sum(double[] values) {
+        double sum = 0.0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
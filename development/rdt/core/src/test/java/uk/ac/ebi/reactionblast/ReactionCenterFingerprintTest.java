@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IReaction;
+import static uk.ac.ebi.reactionblast.TestUtility.RHEA_RXN_DIR;
+import uk.ac.ebi.reactionblast.fingerprints.interfaces.IFeature;
+import uk.ac.ebi.reactionblast.fingerprints.interfaces.IPatternFingerprinter;
+import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+import uk.ac.ebi.reactionblast.mechanism.interfaces.IBondChangeCalculator;
+import uk.ac.ebi.reactionblast.tools.StandardizeReaction;
+
+/**
+ * The reaction centre fingerprints by level: one fingerprint per level of the
+ * circular SMILES, built once per reaction.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class ReactionCenterFingerprintTest extends MappingUtility {
+
+    private static final Logger LOG = getLogger(ReactionCenterFingerprintTest.class.getName());
+
+    private static final String[] RHEA_REACTIONS = {"10050", "11150", "14163"};
+
+    @Test
+    public void FormedCleavedLevels() throws Exception {
+        for (String reactionID : RHEA_REACTIONS) {
+            IBondChangeCalculator bcc = getBondChangeCalculator(reactionID);
+            Map<Integer, IPatternFingerprinter> levels = bcc.getReactionCenterFormedCleavedFingerprint();
+            assertLevels(reactionID, "Formed/Cleaved", levels, bcc);
+            if (!levels.isEmpty()) {
+                assertTrue(reactionID, bcc.getFormedCleavedWFingerprint().getFeatureCount() > 0);
+            }
+        }
+    }
+
+    @Test
+    public void OrderChangeLevels() throws Exception {
+        for (String reactionID : RHEA_REACTIONS) {
+            IBondChangeCalculator bcc = getBondChangeCalculator(reactionID);
+            Map<Integer, IPatternFingerprinter> levels = bcc.getReactionCenterOrderChangeFingerprint();
+            assertLevels(reactionID, "Order Change", levels, bcc);
+            if (!levels.isEmpty()) {
+                assertTrue(reactionID, bcc.getOrderChangesWFingerprint().getFeatureCount() > 0);
+            }
+        }
+    }
+
+    @Test
+    public void StereoChangeLevels() throws Exception {
+        for (String reactionID : RHEA_REACTIONS) {
+            IBondChangeCalculator bcc = getBondChangeCalculator(reactionID);
+            Map<Integer, IPatternFingerprinter> levels = bcc.getReactionCenterStereoChangeFingerprint();
+            assertLevels(reactionID, "Stereo Change", levels, bcc);
+        }
+    }
+
+    @Test
+    public void SomeLevels() throws Exception {
+        int levels = 0;
+        for (String reactionID : RHEA_REACTIONS) {
+            IBondChangeCalculator bcc = getBondChangeCalculator(reactionID);
+            levels += bcc.getReactionCenterFormedCleavedFingerprint().size();
+            levels += bcc.getReactionCenterOrderChangeFingerprint().size();
+        }
+        assertTrue(levels > 0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void ReadOnlyLevels() throws Exception {
+        IBondChangeCalculator bcc = getBondChangeCalculator(RHEA_REACTIONS[0]);
+        bcc.getReactionCenterFormedCleavedFingerprint().clear();
+    }
+
+    /*
+     * Levels 0, 1 and 2 or none, the same on every call
+     */
+    private static void assertLevels(String reactionID, String name,
+            Map<Integer, IPatternFingerprinter> levels, IBondChangeCalculator bcc) throws Exception {
+        if (levels.isEmpty()) {
+            return;
+        }
+        assertEquals(reactionID, "[0, 1, 2]", levels.keySet().toString());
+        for (Map.Entry<Integer, IPatternFingerprinter> level : levels.entrySet()) {
+            IPatternFingerprinter fp = level.getValue();
+            assertTrue(reactionID, fp.getFeatureCount() > 0);
+            assertTrue(reactionID, fp.getFingerprintID().endsWith(
+                    ":" + name + " Reaction Center at Level: " + level.getKey()));
+        }
+        assertEquals(reactionID, patterns(levels), patterns(levels(bcc, name)));
+    }
+
+    private static Map<Integer, IPatternFingerprinter> levels(IBondChangeCalculator bcc, String name) throws Exception {
+        switch (name) {
+            case "Formed/Cleaved":
+                return bcc.getReactionCenterFormedCleavedFingerprint();
+            case "Order Change":
+                return bcc.getReactionCenterOrderChangeFingerprint();
+            default:
+                return bcc.getReactionCenterStereoChangeFingerprint();
+        }
+    }
+
+    private static String patterns(Map<Integer, IPatternFingerprinter> levels) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, IPatternFingerprinter> level : levels.entrySet()) {
+            sb.append(level.getKey()).append(patterns(level.getValue()));
+        }
+        return sb.toString();
+    }
+
+    private static Set<String> patterns(IPatternFingerprinter fp) {
+        Set<String> patterns = new TreeSet<>();
+        for (IFeature feature : fp.getFeatures()) {
+            patterns.add(feature.getPattern());
+        }
+        return patterns;
+    }
+
+    private IBondChangeCalculator getBondChangeCalculator(String reactionID) throws Exception {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(RHEA_RXN_DIR + reactionID + ".rxn");
+        IReaction reaction = readReactionFile(reactionID, ins, false, false);
+        ReactionMechanismTool rmt = new ReactionMechanismTool(reaction, true, new StandardizeReaction());
+        return rmt.getSelectedSolution().getBondChangeCalculator();
+    }
+}
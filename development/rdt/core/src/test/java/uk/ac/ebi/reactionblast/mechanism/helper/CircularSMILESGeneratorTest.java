@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mechanism.helper;
+
+import java.io.InputStream;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.openscience.cdk.CDKConstants.ATOM_ATOM_MAPPING;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IReaction;
+import uk.ac.ebi.reactionblast.MappingUtility;
+import static uk.ac.ebi.reactionblast.TestUtility.MACIE_RXN;
+import static uk.ac.ebi.reactionblast.TestUtility.RHEA_RXN_DIR;
+import static uk.ac.ebi.reactionblast.mechanism.helper.ReactionMappingUtility.getCircularSMILES;
+
+/**
+ * The circular SMILES shared by CircularSMILESGenerator must be those the
+ * circular fragment of each atom and radius gives, with and without the
+ * atom-atom mapping.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class CircularSMILESGeneratorTest extends MappingUtility {
+
+    private static final Logger LOG = getLogger(CircularSMILESGeneratorTest.class.getName());
+
+    private static final String[] MACIE_REACTIONS = {
+        "M0001.ov", "M0002.ov", "M0003.ov", "M0004.ov", "M0005.ov", "M0006.ov", "0001.stg02", "0005.stg02"};
+    private static final String[] RHEA_REACTIONS = {"10001", "10002", "10050", "11150", "14163"};
+
+    @Test
+    public void MACIEReactions() throws Exception {
+        for (String reactionID : MACIE_REACTIONS) {
+            compare(getReaction(MACIE_RXN, reactionID));
+        }
+    }
+
+    @Test
+    public void RheaReactions() throws Exception {
+        for (String reactionID : RHEA_REACTIONS) {
+            compare(getReaction(RHEA_RXN_DIR, reactionID));
+        }
+    }
+
+    /*
+     * One generator per reaction, as BondChangeCalculator uses it; radius -1
+     * is the whole molecule, shared by its atoms
+     */
+    private static void compare(IReaction reaction) throws Exception {
+        for (boolean removeAAM : new boolean[]{true, false}) {
+            CircularSMILESGenerator generator = new CircularSMILESGenerator(removeAAM);
+            int compared = 0;
+            for (IAtomContainer mol : reaction.getReactants().atomContainers()) {
+                compared += compare(reaction.getID(), generator, mol, removeAAM);
+            }
+            for (IAtomContainer mol : reaction.getProducts().atomContainers()) {
+                compared += compare(reaction.getID(), generator, mol, removeAAM);
+            }
+            assertTrue(reaction.getID(), compared > 0);
+        }
+    }
+
+    private static int compare(String reactionID, CircularSMILESGenerator generator,
+            IAtomContainer mol, boolean removeAAM) throws Exception {
+        int compared = 0;
+        for (IAtom atom : mol.atoms()) {
+            for (int radius = -1; radius <= 2; radius++) {
+                String expected = getCircularSMILES(mol, atom, radius, removeAAM);
+                assertEquals(reactionID + " " + atom.getID() + " radius " + radius,
+                        expected, generator.getCircularSMILES(mol, atom, radius));
+                compared++;
+            }
+        }
+        return compared;
+    }
+
+    /*
+     * Atom IDs and mapping numbers, as a mapped reaction has them
+     */
+    private IReaction getReaction(String dir, String reactionID) throws Exception {
+        InputStream ins = this.getClass().getClassLoader().getResourceAsStream(dir + reactionID + ".rxn");
+        IReaction reaction = readReactionFile(reactionID, ins, false, false);
+        reaction.setID(reactionID);
+        int atomCounter = 1;
+        for (IAtomContainer mol : reaction.getReactants().atomContainers()) {
+            for (IAtom atom : mol.atoms()) {
+                atom.setID(String.valueOf(atomCounter));
+                atom.setProperty(ATOM_ATOM_MAPPING, atomCounter++);
+            }
+        }
+        for (IAtomContainer mol : reaction.getProducts().atomContainers()) {
+            for (IAtom atom : mol.atoms()) {
+                atom.setID(String.valueOf(atomCounter));
+                atom.setProperty(ATOM_ATOM_MAPPING, atomCounter++);
+            }
+        }
+        return reaction;
+    }
+}
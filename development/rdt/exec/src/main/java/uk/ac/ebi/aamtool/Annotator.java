@@ -48,9 +48,12 @@ import org.w3c.dom.Element;
 import uk.ac.ebi.reactionblast.fingerprints.PatternFingerprinter;
 import uk.ac.ebi.reactionblast.fingerprints.ReactionFingerprinter;
 import uk.ac.ebi.reactionblast.fingerprints.interfaces.IPatternFingerprinter;
-import uk.ac.ebi.reactionblast.mechanism.BondChangeCalculator;
+import uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics;
+import uk.ac.ebi.reactionblast.mechanism.interfaces.IBondChangeCalculator;
+import uk.ac.ebi.reactionblast.mechanism.CachedMappingTool;
 import uk.ac.ebi.reactionblast.mechanism.MappingSolution;
 import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+import uk.ac.ebi.reactionblast.mechanism.helper.CachedMapping;
 import uk.ac.ebi.reactionblast.mechanism.helper.MoleculeMoleculePair;
 import static uk.ac.ebi.reactionblast.tools.ReactionSimilarityTool.getSimilarity;
 import uk.ac.ebi.reactionblast.tools.StandardizeReaction;
@@ -119,16 +122,35 @@ public class Annotator extends Helper {
      */
     protected ReactionMechanismTool getReactionMechanismTool(IReaction cdkReaction, boolean reMap) throws Exception {
         ReactionMechanismTool rmt;
-        /*
-         Check if the reaction is already mapped
-         */
+        setMappedFlag(cdkReaction);
+        rmt = new ReactionMechanismTool(cdkReaction, reMap, new StandardizeReaction());
+        return rmt;
+    }
+
+    /**
+     *
+     * @param mappingTool
+     * @param cdkReaction
+     * @param reMap
+     * @param metrics
+     * @return mapping result, null if no valid mapping was found
+     * @throws Exception
+     */
+    protected CachedMapping getMappingResult(CachedMappingTool mappingTool, IReaction cdkReaction,
+            boolean reMap, MappingMetrics metrics) throws Exception {
+        setMappedFlag(cdkReaction);
+        return mappingTool.map(cdkReaction, reMap, new StandardizeReaction(), metrics);
+    }
+
+    /*
+     Check if the reaction is already mapped
+     */
+    private static void setMappedFlag(IReaction cdkReaction) {
         if (getAtomCount(cdkReaction.getReactants()) == cdkReaction.getMappingCount()) {
             cdkReaction.setFlag(MAPPED, true);
         } else {
             cdkReaction.setFlag(MAPPED, false);
         }
-        rmt = new ReactionMechanismTool(cdkReaction, reMap, new StandardizeReaction());
-        return rmt;
     }
 
     /**
@@ -232,7 +254,7 @@ public class Annotator extends Helper {
 
     }
 
-    private void printRPAIRPatternAsText(MappingSolution s, StringBuilder sb) throws CloneNotSupportedException {
+    private void printRPAIRPatternAsText(MappingSolution s, StringBuilder sb) throws CloneNotSupportedException, CDKException {
         Map<String, Collection<String>> moleculeMoleculeTransformationPairs = s.getBondChangeCalculator().getMoleculeMoleculeTransformationPairs();
 
         StringBuilder sbcomp = new StringBuilder();
@@ -347,7 +369,7 @@ public class Annotator extends Helper {
         sb.append(NEW_LINE);
     }
 
-    private void printRPAIRPatternAsXML(MappingSolution s, org.w3c.dom.Document doc, org.w3c.dom.Element rootElement) {
+    private void printRPAIRPatternAsXML(MappingSolution s, org.w3c.dom.Document doc, org.w3c.dom.Element rootElement) throws CDKException {
 
         Map<Integer, IPatternFingerprinter> reactionCenterFormedCleavedFingerprint = s.getBondChangeCalculator().getReactionCenterFormedCleavedFingerprint();
         Map<Integer, IPatternFingerprinter> reactionCenterOrderChangeFingerprint = s.getBondChangeCalculator().getReactionCenterOrderChangeFingerprint();
@@ -763,12 +785,12 @@ public class Annotator extends Helper {
         Element query = doc.createElement("QUERY");
         element.appendChild(query);
         annotateReactionAsXML(annotateRXNQ, reactionQID, doc, query);
-        BondChangeCalculator bondChangeCalculatorQ = annotateRXNQ.getSelectedSolution().getBondChangeCalculator();
+        IBondChangeCalculator bondChangeCalculatorQ = annotateRXNQ.getSelectedSolution().getBondChangeCalculator();
         //Start of Fingerprint elements
         Element target = doc.createElement("TARGET");
         element.appendChild(target);
         annotateReactionAsXML(annotateRXNT, reactionTID, doc, target);
-        BondChangeCalculator bondChangeCalculatorT = annotateRXNT.getSelectedSolution().getBondChangeCalculator();
+        IBondChangeCalculator bondChangeCalculatorT = annotateRXNT.getSelectedSolution().getBondChangeCalculator();
         IPatternFingerprinter fpQ = new PatternFingerprinter();
         fpQ.add(bondChangeCalculatorQ.getFormedCleavedWFingerprint());
         fpQ.add(bondChangeCalculatorQ.getOrderChangesWFingerprint());
@@ -833,8 +855,8 @@ public class Annotator extends Helper {
         NumberFormat myFormatter = NumberFormat.getInstance();
         myFormatter.setMinimumFractionDigits(2);
         myFormatter.setMaximumFractionDigits(2);
-        BondChangeCalculator bondChangeCalculatorQ = annotateRXNQ.getSelectedSolution().getBondChangeCalculator();
-        BondChangeCalculator bondChangeCalculatorT = annotateRXNT.getSelectedSolution().getBondChangeCalculator();
+        IBondChangeCalculator bondChangeCalculatorQ = annotateRXNQ.getSelectedSolution().getBondChangeCalculator();
+        IBondChangeCalculator bondChangeCalculatorT = annotateRXNT.getSelectedSolution().getBondChangeCalculator();
         IPatternFingerprinter fpQ = new PatternFingerprinter();
         fpQ.add(bondChangeCalculatorQ.getFormedCleavedWFingerprint());
         fpQ.add(bondChangeCalculatorQ.getOrderChangesWFingerprint());
@@ -872,12 +894,12 @@ public class Annotator extends Helper {
         sb.append(NEW_LINE);
         sb.append("Annotating Query Reaction ").append(reactionQID).append(NEW_LINE);
         annotateReactionAsText(annotateRXNQ, reactionQID, sb);
-        BondChangeCalculator bondChangeCalculatorQ = annotateRXNQ.getSelectedSolution().getBondChangeCalculator();
+        IBondChangeCalculator bondChangeCalculatorQ = annotateRXNQ.getSelectedSolution().getBondChangeCalculator();
         sb.append(NEW_LINE).append("//");
         sb.append(NEW_LINE);
         sb.append("Annotating Target Reaction ").append(reactionTID).append(NEW_LINE);
         annotateReactionAsText(annotateRXNT, reactionTID, sb);
-        BondChangeCalculator bondChangeCalculatorT = annotateRXNT.getSelectedSolution().getBondChangeCalculator();
+        IBondChangeCalculator bondChangeCalculatorT = annotateRXNT.getSelectedSolution().getBondChangeCalculator();
         IPatternFingerprinter fpQ = new PatternFingerprinter();
         fpQ.add(bondChangeCalculatorQ.getFormedCleavedWFingerprint());
         fpQ.add(bondChangeCalculatorQ.getOrderChangesWFingerprint());
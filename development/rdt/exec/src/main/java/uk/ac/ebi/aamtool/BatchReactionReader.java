@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.aamtool;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import static java.lang.System.err;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import static java.util.logging.Level.SEVERE;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.Reaction;
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.io.MDLRXNV2000Reader;
+import org.openscience.cdk.smiles.SmilesParser;
+import static uk.ac.ebi.aamtool.Annotator.NEW_LINE;
+
+/**
+ * Streams reactions one at a time from a reaction SMILES file (one reaction
+ * per line, optionally followed by an identifier), a multi-record RDF file or
+ * a directory of RXN files. Only the current record is held in memory, so
+ * arbitrarily large inputs can be mapped in a single JVM.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+class BatchReactionReader implements Iterator<IReaction>, Closeable {
+
+    private static final Logger LOG = getLogger(BatchReactionReader.class.getName());
+
+    /**
+     * Supported batch input types
+     */
+    enum Format {
+
+        SMI, RDF, RXN
+    }
+
+    private final Format format;
+    private final BufferedReader reader;
+    private final Iterator<File> rxnFiles;
+    private final SmilesParser smilesParser;
+    private IReaction next;
+    private String lookAhead;
+    private int recordIndex;
+    private IOException readError;
+
+    /**
+     *
+     * @param format input type
+     * @param input reaction SMILES file, RDF file or RXN directory
+     * @throws IOException
+     */
+    BatchReactionReader(Format format, File input) throws IOException {
+        this.format = format;
+        this.recordIndex = 0;
+        this.lookAhead = null;
+        this.smilesParser = new SmilesParser(getInstance());
+        if (format == Format.RXN) {
+            this.reader = null;
+            List<File> files = new ArrayList<>();
+            if (input.isDirectory()) {
+                File[] listFiles = input.listFiles((File dir, String name) -> name.toLowerCase().endsWith(".rxn"));
+                if (listFiles != null) {
+                    Arrays.sort(listFiles);
+                    files.addAll(Arrays.asList(listFiles));
+                }
+            } else if (input.isFile()) {
+                files.add(input);
+            } else {
+                throw new IOException("RXN file or directory not found! " + input.getName());
+            }
+            this.rxnFiles = files.iterator();
+        } else {
+            if (!input.isFile()) {
+                throw new IOException(format + " file not found! " + input.getName());
+            }
+            this.rxnFiles = null;
+            this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(input), "UTF-8"));
+        }
+        this.next = readNext();
+    }
+
+    /**
+     *
+     * @return true if there is another reaction
+     * @throws UncheckedIOException if the input could not be read to its end
+     */
+    @Override
+    public boolean hasNext() {
+        if (next == null && readError != null) {
+            throw new UncheckedIOException("Unable to read " + format
+                    + " input after record " + recordIndex, readError);
+        }
+        return next != null;
+    }
+
+    @Override
+    public IReaction next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        IReaction current = next;
+        next = readNext();
+        return current;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return number of records consumed so far (including unreadable ones)
+     */
+    int getRecordCount() {
+        return recordIndex;
+    }
+
+    private IReaction readNext() {
+        try {
+            switch (format) {
+                case SMI:
+                    return readSMILES();
+                case RDF:
+                    return readRDF();
+                case RXN:
+                    return readRXN();
+                default:
+                    return null;
+            }
+        } catch (IOException ex) {
+            /*
+             Reported by hasNext once the reactions read so far are consumed
+             */
+            LOG.log(SEVERE, null, ex);
+            readError = ex;
+        }
+        return null;
+    }
+
+    private IReaction readSMILES() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            recordIndex++;
+            String[] split = line.split("\\s+", 2);
+            /*
+             reactants>agents>products, the agents may be empty
+             */
+            if (split[0].split(">", -1).length != 3) {
+                err.println("Not a valid reaction SMILES at record " + recordIndex);
+                continue;
+            }
+            try {
+                IReaction reaction = smilesParser.parseReactionSmiles(split[0]);
+                reaction.setID(split.length > 1 ? split[1].trim() : "smiles_" + recordIndex);
+                return reaction;
+            } catch (InvalidSmilesException ex) {
+                err.println("Invalid reaction SMILES at record " + recordIndex + NEW_LINE + ex);
+            }
+        }
+        return null;
+    }
+
+    private IReaction readRXN() {
+        while (rxnFiles.hasNext()) {
+            File file = rxnFiles.next();
+            recordIndex++;
+            try (MDLRXNV2000Reader rxnReader = new MDLRXNV2000Reader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+                IReaction reaction = rxnReader.read(new Reaction());
+                reaction.setID(file.getName().split("(?i)\\.rxn$")[0]);
+                return reaction;
+            } catch (Exception ex) {
+                err.println("ERROR in Reading Reaction file " + file + NEW_LINE + ex);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * An RDF record starts with $RFMT (or directly with $RXN) and its data
+     * fields ($DTYPE/$DATUM) follow the embedded RXN block.
+     */
+    private IReaction readRDF() throws IOException {
+        String line;
+        while ((line = nextLine()) != null) {
+            if (!line.startsWith("$RFMT") && !line.startsWith("$RXN")) {
+                continue;
+            }
+            recordIndex++;
+            String registryID = null;
+            if (line.startsWith("$RFMT")) {
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens.length > 2) {
+                    registryID = tokens[2];
+                }
+                line = nextLine();
+                while (line != null && !line.startsWith("$RXN")) {
+                    line = nextLine();
+                }
+                if (line == null) {
+                    return null;
+                }
+            }
+            StringBuilder rxnBlock = new StringBuilder();
+            rxnBlock.append(line).append(NEW_LINE);
+            while ((line = nextLine()) != null
+                    && !line.startsWith("$RFMT")
+                    && !line.startsWith("$DTYPE")) {
+                rxnBlock.append(line).append(NEW_LINE);
+            }
+            /*
+             Skip the data fields of this record
+             */
+            while (line != null && !line.startsWith("$RFMT")) {
+                line = nextLine();
+            }
+            lookAhead = line;
+
+            try (MDLRXNV2000Reader rxnReader = new MDLRXNV2000Reader(new StringReader(rxnBlock.toString()))) {
+                IReaction reaction = rxnReader.read(new Reaction());
+                if (registryID != null) {
+                    reaction.setID(registryID);
+                } else {
+                    reaction.setID("rdf_" + recordIndex);
+                }
+                return reaction;
+            } catch (Exception ex) {
+                err.println("ERROR in Reading RDF record " + recordIndex + NEW_LINE + ex);
+            }
+        }
+        return null;
+    }
+
+    private String nextLine() throws IOException {
+        if (lookAhead != null) {
+            String line = lookAhead;
+            lookAhead = null;
+            return line;
+        }
+        return reader.readLine();
+    }
+}
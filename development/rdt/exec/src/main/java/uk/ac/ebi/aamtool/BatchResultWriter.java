@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.aamtool;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static uk.ac.ebi.aamtool.Annotator.NEW_LINE;
+import static uk.ac.ebi.aamtool.Annotator.TAB;
+import uk.ac.ebi.reactionblast.mapping.helper.MappingMetrics;
+import uk.ac.ebi.reactionblast.mechanism.helper.CachedMapping;
+
+/**
+ * Streams batch mapping results into a single output: either one mapped
+ * reaction SMILES per line, or an RDF file with a companion annotation TSV.
+ * The mapping metrics of all the reactions are summed up and written as JSON
+ * next to the output when the writer is closed.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+class BatchResultWriter implements Closeable {
+
+    private static final Logger LOG = getLogger(BatchResultWriter.class.getName());
+
+    /**
+     * Supported batch output types
+     */
+    enum Format {
+
+        SMI, RDF
+    }
+
+    private final Format format;
+    private final File outputFile;
+    private final File metricsFile;
+    private final MappingMetrics metrics;
+    private final Writer writer;
+    private final Writer annotationWriter;
+    private int written;
+    private int failed;
+
+    /**
+     *
+     * @param format output type
+     * @param jobFileName output file name without extension
+     * @throws IOException
+     */
+    BatchResultWriter(Format format, String jobFileName) throws IOException {
+        this.format = format;
+        this.written = 0;
+        this.failed = 0;
+        this.metrics = new MappingMetrics();
+        this.metricsFile = new File(jobFileName + "_metrics.json");
+        if (format == Format.RDF) {
+            this.outputFile = new File(jobFileName + ".rdf");
+            this.writer = open(outputFile);
+            this.annotationWriter = open(new File(jobFileName + ".tsv"));
+            writer.write("$RDFILE 1" + NEW_LINE);
+            writer.write("$DATM    " + new SimpleDateFormat("MM/dd/yy HH:mm").format(new Date()) + NEW_LINE);
+            annotationWriter.write("ID" + TAB + "ALGORITHM" + TAB + "BOND_CHANGES"
+                    + TAB + "FRAGMENT_CHANGES" + TAB + "SMALLEST_FRAGMENT"
+                    + TAB + "CARBON_BOND_CHANGES" + TAB + "STEREO_CHANGES"
+                    + TAB + "ENERGY" + TAB + "DELTA"
+                    + TAB + "FORMED_CLEAVED" + TAB + "ORDER_CHANGED" + NEW_LINE);
+        } else {
+            this.outputFile = new File(jobFileName + ".smi");
+            this.writer = open(outputFile);
+            this.annotationWriter = null;
+        }
+    }
+
+    private static Writer open(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    }
+
+    /**
+     * Write the selected solution of a mapped reaction
+     *
+     * @param reactionID
+     * @param result mapping result, null if mapping failed
+     * @return true if a result was written
+     * @throws IOException
+     */
+    synchronized boolean write(String reactionID, CachedMapping result) throws IOException {
+        if (result == null) {
+            failed++;
+            return false;
+        }
+        if (format == Format.RDF) {
+            writer.write("$RFMT $RIREG " + reactionID + NEW_LINE);
+            writer.write(result.getMappedRXN(reactionID));
+            annotationWriter.write(reactionID
+                    + TAB + result.getAlgorithmID().description()
+                    + TAB + result.getTotalBondChanges()
+                    + TAB + result.getTotalFragmentChanges()
+                    + TAB + result.getSmallestFragmentCount()
+                    + TAB + result.getTotalCarbonBondChanges()
+                    + TAB + result.getTotalStereoChanges()
+                    + TAB + result.getBondEnergySum()
+                    + TAB + result.getEnergyDelta()
+                    + TAB + result.getFormedCleavedFingerprint()
+                    + TAB + result.getOrderChangesFingerprint()
+                    + NEW_LINE);
+        } else {
+            writer.write(result.getMappedSMILES() + TAB + reactionID + NEW_LINE);
+        }
+        written++;
+        return true;
+    }
+
+    /**
+     * @return the main output file
+     */
+    File getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * @return the mapping metrics file
+     */
+    File getMetricsFile() {
+        return metricsFile;
+    }
+
+    /**
+     * @return mapping metrics summed over the batch, the mapping jobs add
+     * theirs
+     */
+    MappingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return number of reactions written
+     */
+    synchronized int getWrittenCount() {
+        return written;
+    }
+
+    /**
+     * @return number of reactions without a valid mapping
+     */
+    synchronized int getFailedCount() {
+        return failed;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        /*
+         * The metrics are written first, then both outputs are closed even if
+         * one step fails; the first failure is thrown, the later ones are
+         * added to it as suppressed
+         */
+        IOException failure = null;
+        try (Writer metricsWriter = open(metricsFile)) {
+            metricsWriter.write(metrics.toJSON() + NEW_LINE);
+        } catch (IOException ex) {
+            failure = ex;
+        }
+        failure = close(writer, failure);
+        failure = close(annotationWriter, failure);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /*
+     * Close a writer, a null one is skipped
+     */
+    private static IOException close(Writer w, IOException failure) {
+        if (w == null) {
+            return failure;
+        }
+        try {
+            w.close();
+        } catch (IOException ex) {
+            if (failure == null) {
+                return ex;
+            }
+            failure.addSuppressed(ex);
+        }
+        return failure;
+    }
+}
@@ -93,4 +93,22 @@ public class CommandLineOptions {
         return optionsCompare;
     }
 
+    /**
+     *
+     * @return
+     */
+    protected Options createBatchOptions() {
+        Options optionsBatch = new Options();
+        optionsBatch.addOption("h", "help", false, "Help page for command usage");
+        optionsBatch.addOption("Q", "formatQ", true, "Query Type (SMI file/RDF file/RXN directory)");
+        optionsBatch.addOption("q", "query", true, "Query file or directory");
+        optionsBatch.addOption("j", "job", true, "Task (BATCH)");
+        optionsBatch.addOption("u", "premap", false, "use user defined mappings");
+        optionsBatch.addOption("p", "prefix", true, "Job prefix");
+        optionsBatch.addOption("n", "threads", true, "Number of reactions mapped in parallel");
+        optionsBatch.addOption("f", "formatO", true, "Output format (SMI/RDF)");
+        optionsBatch.addOption("c", "cache", true, "Mapping cache file, reused across runs; repeated reactions are written as first mapped");
+        return optionsBatch;
+    }
+
 }
@@ -23,13 +23,22 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import static java.lang.Integer.parseInt;
+import static java.lang.Runtime.getRuntime;
 import static java.lang.System.err;
 import static java.lang.System.out;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.logging.Level.SEVERE;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
@@ -51,7 +60,11 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.openscience.cdk.interfaces.IReaction;
 import org.w3c.dom.Document;
+import uk.ac.ebi.reactionblast.mechanism.CachedMappingTool;
 import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+import uk.ac.ebi.reactionblast.mechanism.helper.CachedMapping;
+import uk.ac.ebi.reactionblast.mechanism.helper.LRUMappingCache;
+import uk.ac.ebi.reactionblast.mechanism.helper.MemoryMappedMappingCache;
 
 /**
  * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
@@ -61,6 +74,10 @@ public class ReactionDecoder extends Annotator {
 
     private final static boolean DEBUG = false;
     private static final Logger LOG = getLogger(ReactionDecoder.class.getName());
+    /*
+     Number of mapped reactions kept in memory by the batch mode
+     */
+    private static final int CACHED_REACTIONS = 10000;
 
     /**
      * @param args the command line areactionWithLayoutgumentheaderString
@@ -71,6 +88,7 @@ public class ReactionDecoder extends Annotator {
             Options createAAMOptions = cmd.createAAMOptions();
             Options createCompareOptions = cmd.createCompareOptions();
             Options createAnnotateOptions = cmd.createAnnotateOptions();
+            Options createBatchOptions = cmd.createBatchOptions();
 
             DefaultParser parser1 = new DefaultParser();
             CommandLine aamLine = parser1.parse(createAAMOptions, args, true);
@@ -78,6 +96,8 @@ public class ReactionDecoder extends Annotator {
             CommandLine compareLine = parser2.parse(createCompareOptions, args, true);
             DefaultParser parser3 = new DefaultParser();
             CommandLine annotateLine = parser3.parse(createAnnotateOptions, args, true);
+            DefaultParser parser4 = new DefaultParser();
+            CommandLine batchLine = parser4.parse(createBatchOptions, args, true);
 
             /*
              * Print the Header
@@ -108,6 +128,14 @@ public class ReactionDecoder extends Annotator {
                 ReactionDecoder rxn = new ReactionDecoder();
                 rxn.AnnotateTask(annotateLine, createAnnotateOptions);
 
+            } else if (batchLine.hasOption('j') && batchLine.getOptionValue("j").equalsIgnoreCase("BATCH")
+                    && batchLine.hasOption('Q') && batchLine.hasOption('q')
+                    && batchLine.hasOption('f')) {
+
+                out.println("-- BATCH AAM --");
+                ReactionDecoder rxn = new ReactionDecoder();
+                rxn.BatchTask(batchLine, createBatchOptions);
+
             } else if (aamLine.hasOption('j') && aamLine.getOptionValue("j").equalsIgnoreCase("AAM")) {
                 out.println("-- AAM USAGE --");
                 printHelp(out, createAAMOptions);
@@ -117,10 +145,14 @@ public class ReactionDecoder extends Annotator {
             } else if (compareLine.hasOption('j') && compareLine.getOptionValue("j").equalsIgnoreCase("ANNOTATE")) {
                 out.println("-- REACTION ANNOTATION USAGE --");
                 printHelp(out, createAnnotateOptions);
+            } else if (batchLine.hasOption('j') && batchLine.getOptionValue("j").equalsIgnoreCase("BATCH")) {
+                out.println("-- BATCH AAM USAGE --");
+                printHelp(out, createBatchOptions);
             } else {
                 out.println("-- REACTION DECODER HELP --");
                 Map<String, Options> options = new TreeMap<>();
                 options.put("Atom-Atom Mapping (AAM-Tool)", createAAMOptions);
+                options.put("Batch Atom-Atom Mapping (AAM-Tool)", createBatchOptions);
                 options.put("Reaction Annotation (RA-Tool)", createAnnotateOptions);
                 options.put("Reaction Comparison (RC-Tool)", createCompareOptions);
                 printHelp(options, 80, "EC-BLAST", "End of Help",
@@ -563,4 +595,115 @@ public class ReactionDecoder extends Annotator {
         }
     }
 
+    private void BatchTask(CommandLine batchLine, Options createBatchOptions)
+            throws Exception {
+
+        String optionValue = batchLine.getOptionValue("q");
+
+        if (batchLine.hasOption('p')) {
+            PREFIX = batchLine.getOptionValue("p");
+        }
+
+        if (batchLine.hasOption('u')) {
+            REMAP = false;
+        }
+
+        int threads = getRuntime().availableProcessors();
+        if (batchLine.hasOption('n')) {
+            threads = parseInt(batchLine.getOptionValue("n"));
+        }
+        if (threads < 1) {
+            threads = 1;
+        }
+
+        BatchReactionReader.Format inputFormat;
+        BatchResultWriter.Format outputFormat;
+        try {
+            inputFormat = BatchReactionReader.Format.valueOf(batchLine.getOptionValue("Q").toUpperCase());
+            outputFormat = BatchResultWriter.Format.valueOf(batchLine.getOptionValue("f").toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            displayBlankLines(2, out);
+            out.println("-- USAGE --");
+            printHelp(out, createBatchOptions);
+            return;
+        }
+
+        String jobFileName;
+        if (!PREFIX.isEmpty()) {
+            jobFileName = PREFIX + "_ECBLAST_BATCH_AAM";
+        } else {
+            jobFileName = "ECBLAST_BATCH_AAM";
+        }
+
+        /*
+         Reactions are read lazily and at most 2 x threads reactions are in
+         flight, results are written in the input order as soon as the
+         oldest pending reaction is mapped
+         */
+        int capacity = 2 * threads;
+        ExecutorService executor = newFixedThreadPool(threads);
+        Deque<String> pendingIDs = new ArrayDeque<>(capacity);
+        Deque<Future<CachedMapping>> pendingJobs = new ArrayDeque<>(capacity);
+
+        /*
+         With a cache file, repeated reactions are answered from an in-memory
+         cache backed by that file. A hit is written as the reaction first
+         mapped for the signature (its molecule and atom order), so without a
+         cache file every reaction is mapped as read.
+         */
+        try (MemoryMappedMappingCache cacheFile = batchLine.hasOption('c')
+                ? new MemoryMappedMappingCache(new File(batchLine.getOptionValue("c"))) : null;
+                BatchReactionReader reader = new BatchReactionReader(inputFormat, new File(optionValue));
+                BatchResultWriter writer = new BatchResultWriter(outputFormat, jobFileName)) {
+            final CachedMappingTool mappingTool
+                    = new CachedMappingTool(cacheFile == null ? null : new LRUMappingCache(CACHED_REACTIONS, cacheFile));
+            IOException readError = null;
+            try {
+                while (reader.hasNext()) {
+                    final IReaction reaction = reader.next();
+                    pendingIDs.add(reaction.getID());
+                    pendingJobs.add(executor.submit(()
+                            -> getMappingResult(mappingTool, reaction, REMAP, writer.getMetrics())));
+                    if (pendingJobs.size() >= capacity) {
+                        writeBatchResult(writer, pendingIDs.poll(), pendingJobs.poll());
+                    }
+                }
+            } catch (UncheckedIOException ex) {
+                readError = ex.getCause();
+            }
+            /*
+             The reactions read before an input error are still written
+             */
+            while (!pendingJobs.isEmpty()) {
+                writeBatchResult(writer, pendingIDs.poll(), pendingJobs.poll());
+            }
+            out.println("Reactions read: " + reader.getRecordCount()
+                    + ", mapped: " + writer.getWrittenCount()
+                    + ", failed: " + writer.getFailedCount());
+            out.println("Output is presented in " + outputFormat + " format: "
+                    + writer.getOutputFile().getAbsolutePath());
+            out.println("Mapping metrics: " + writer.getMetricsFile().getAbsolutePath());
+            if (readError != null) {
+                throw new IOException("Batch input " + optionValue + " could not be read to its end", readError);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void writeBatchResult(BatchResultWriter writer, String reactionID,
+            Future<CachedMapping> job) throws IOException, InterruptedException {
+        CachedMapping result = null;
+        boolean mapped = false;
+        try {
+            result = job.get();
+            mapped = true;
+        } catch (ExecutionException ex) {
+            err.println("Unable to map reaction " + reactionID + NEW_LINE + ex.getCause());
+        }
+        if (!writer.write(reactionID, result) && mapped) {
+            err.println("No valid solution found for reaction " + reactionID);
+        }
+    }
+
 }
@@ -289,7 +289,7 @@ class MultiReactionContainer extends ReactionMappingUtility {
                         getLogger(MultiReactionContainer.class.getName()).log(SEVERE, null, ex);
                     }
                 }
-            } catch (CloneNotSupportedException ex) {
+            } catch (Exception ex) {
                 getLogger(MultiReactionContainer.class.getName()).log(SEVERE, null, ex);
             }
         }
@@ -320,7 +320,7 @@ class MultiReactionContainer extends ReactionMappingUtility {
                         getLogger(MultiReactionContainer.class.getName()).log(SEVERE, null, ex);
                     }
                 }
-            } catch (CloneNotSupportedException ex) {
+            } catch (Exception ex) {
                 getLogger(MultiReactionContainer.class.getName()).log(SEVERE, null, ex);
             }
         }
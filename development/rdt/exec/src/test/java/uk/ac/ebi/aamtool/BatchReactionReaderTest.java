@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.aamtool;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.smiles.SmilesParser;
+import static uk.ac.ebi.aamtool.Annotator.NEW_LINE;
+import uk.ac.ebi.reactionblast.tools.rxnfile.MDLV2000RXNWriter;
+
+/**
+ * The batch reader: reactions in input order, bad records skipped and
+ * counted, reaction SMILES with and without agents.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class BatchReactionReaderTest {
+
+    private static final Logger LOG = getLogger(BatchReactionReaderTest.class.getName());
+
+    private static final String ESTER = "CC(=O)O.OCC>>CC(=O)OCC.O";
+    private static final String ESTER_WITH_AGENT = "CC(=O)O.OCC>[H+]>CC(=O)OCC.O";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void SMILESInInputOrder() throws Exception {
+        File input = write("order.smi",
+                "CCO>>CC=O r3",
+                "C=C.O>>CCO r1",
+                "CC(=O)O>>CC(=O)[O-].[H+] r2");
+        assertEquals("[r3, r1, r2]", readIDs(BatchReactionReader.Format.SMI, input).toString());
+    }
+
+    @Test
+    public void SMILESWithAgents() throws Exception {
+        File input = write("agents.smi", ESTER + " plain", ESTER_WITH_AGENT + " agent");
+        try (BatchReactionReader reader = new BatchReactionReader(BatchReactionReader.Format.SMI, input)) {
+            IReaction plain = reader.next();
+            IReaction agent = reader.next();
+            assertFalse(reader.hasNext());
+            assertEquals("plain", plain.getID());
+            assertEquals("agent", agent.getID());
+            assertEquals(0, plain.getAgents().getAtomContainerCount());
+            assertEquals(1, agent.getAgents().getAtomContainerCount());
+            assertEquals(plain.getReactantCount(), agent.getReactantCount());
+            assertEquals(plain.getProductCount(), agent.getProductCount());
+            assertEquals(2, agent.getReactantCount());
+            assertEquals(2, agent.getProductCount());
+        }
+    }
+
+    /*
+     * Comments and blank lines are not records, bad records are counted and
+     * skipped, unnamed reactions are named after their record
+     */
+    @Test
+    public void SMILESBadLines() throws Exception {
+        File input = write("bad.smi",
+                "# comment",
+                "",
+                "CCO>>CC=O first",
+                "CCO.CC=O",
+                "C>C>C>C too_many",
+                "C1CC>>CCC unclosed_ring",
+                ESTER_WITH_AGENT,
+                "C=C.O>>CCO last");
+        try (BatchReactionReader reader = new BatchReactionReader(BatchReactionReader.Format.SMI, input)) {
+            List<String> ids = new ArrayList<>();
+            while (reader.hasNext()) {
+                ids.add(reader.next().getID());
+            }
+            assertEquals("[first, smiles_5, last]", ids.toString());
+            assertEquals(6, reader.getRecordCount());
+        }
+    }
+
+    @Test
+    public void RDFInInputOrder() throws Exception {
+        File input = folder.newFile("order.rdf");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(input), "UTF-8")) {
+            writer.write("$RDFILE 1" + NEW_LINE);
+            writer.write("$DATM    10/17/26 10:00" + NEW_LINE);
+            writer.write("$RFMT $RIREG r2" + NEW_LINE);
+            writer.write(rxn("CCO>>CC=O"));
+            writer.write("$DTYPE NAME" + NEW_LINE);
+            writer.write("$DATUM oxidation" + NEW_LINE);
+            writer.write("$RFMT $RIREG r1" + NEW_LINE);
+            writer.write(rxn(ESTER));
+            writer.write("$RFMT" + NEW_LINE);
+            writer.write(rxn("C=C.O>>CCO"));
+        }
+        try (BatchReactionReader reader = new BatchReactionReader(BatchReactionReader.Format.RDF, input)) {
+            List<IReaction> reactions = new ArrayList<>();
+            while (reader.hasNext()) {
+                reactions.add(reader.next());
+            }
+            assertEquals(3, reactions.size());
+            assertEquals("r2", reactions.get(0).getID());
+            assertEquals("r1", reactions.get(1).getID());
+            assertEquals("rdf_3", reactions.get(2).getID());
+            assertEquals(2, reactions.get(1).getReactantCount());
+            assertEquals(2, reactions.get(1).getProductCount());
+        }
+    }
+
+    /*
+     * A truncated record is skipped, the records after it are read
+     */
+    @Test
+    public void RDFBadRecord() throws Exception {
+        File input = write("bad.rdf",
+                "$RDFILE 1",
+                "$RFMT $RIREG truncated",
+                "$RXN",
+                "$RFMT $RIREG r1");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(input, true), "UTF-8")) {
+            writer.write(rxn("CCO>>CC=O"));
+        }
+        try (BatchReactionReader reader = new BatchReactionReader(BatchReactionReader.Format.RDF, input)) {
+            List<String> ids = new ArrayList<>();
+            while (reader.hasNext()) {
+                ids.add(reader.next().getID());
+            }
+            assertEquals("[r1]", ids.toString());
+            assertEquals(2, reader.getRecordCount());
+        }
+    }
+
+    /*
+     * The RXN files of a directory are read by name
+     */
+    @Test
+    public void RXNDirectoryInNameOrder() throws Exception {
+        File dir = folder.newFolder("rxn");
+        String[] names = {"b", "c", "a"};
+        for (String name : names) {
+            try (Writer writer = new FileWriter(new File(dir, name + ".rxn"))) {
+                writer.write(rxn("CCO>>CC=O"));
+            }
+        }
+        try (Writer writer = new FileWriter(new File(dir, "notes.txt"))) {
+            writer.write("not a reaction" + NEW_LINE);
+        }
+        try (Writer writer = new FileWriter(new File(dir, "broken.rxn"))) {
+            writer.write("not a reaction" + NEW_LINE);
+        }
+        try (BatchReactionReader reader = new BatchReactionReader(BatchReactionReader.Format.RXN, dir)) {
+            List<String> ids = new ArrayList<>();
+            while (reader.hasNext()) {
+                ids.add(reader.next().getID());
+            }
+            assertEquals("[a, b, c]", ids.toString());
+            assertEquals(4, reader.getRecordCount());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void MissingInput() throws Exception {
+        new BatchReactionReader(BatchReactionReader.Format.SMI, new File(folder.getRoot(), "missing.smi"));
+    }
+
+    private File write(String name, String... lines) throws IOException {
+        File file = folder.newFile(name);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+            for (String line : lines) {
+                writer.write(line + NEW_LINE);
+            }
+        }
+        return file;
+    }
+
+    private static List<String> readIDs(BatchReactionReader.Format format, File input) throws IOException {
+        List<String> ids = new ArrayList<>();
+        try (BatchReactionReader reader = new BatchReactionReader(format, input)) {
+            while (reader.hasNext()) {
+                ids.add(reader.next().getID());
+            }
+        }
+        return ids;
+    }
+
+    private static String rxn(String smiles) throws Exception {
+        IReaction reaction = new SmilesParser(getInstance()).parseReactionSmiles(smiles);
+        StringWriter rxn = new StringWriter();
+        try (MDLV2000RXNWriter writer = new MDLV2000RXNWriter(rxn)) {
+            writer.write(reaction);
+        }
+        return rxn.toString();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.aamtool;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.readAllLines;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static uk.ac.ebi.aamtool.Annotator.TAB;
+import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MIN;
+import uk.ac.ebi.reactionblast.mechanism.helper.CachedMapping;
+
+/**
+ * The batch writer: results in the order they are written, failed reactions
+ * counted but not written, metrics written on close.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class BatchResultWriterTest {
+
+    private static final Logger LOG = getLogger(BatchResultWriterTest.class.getName());
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void SMILESInWriteOrder() throws Exception {
+        String jobFileName = new File(folder.getRoot(), "job").getPath();
+        try (BatchResultWriter writer = new BatchResultWriter(BatchResultWriter.Format.SMI, jobFileName)) {
+            assertTrue(writer.write("r3", result("[CH3:1][CH2:2][OH:3]>>[CH3:1][CH:2]=[O:3]")));
+            assertFalse(writer.write("r1", null));
+            assertTrue(writer.write("r2", result("[CH2:1]=[CH2:2]>>[CH3:1][CH3:2]")));
+            assertEquals(2, writer.getWrittenCount());
+            assertEquals(1, writer.getFailedCount());
+        }
+        List<String> lines = readAllLines(new File(jobFileName + ".smi").toPath(), UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals("[CH3:1][CH2:2][OH:3]>>[CH3:1][CH:2]=[O:3]" + TAB + "r3", lines.get(0));
+        assertEquals("[CH2:1]=[CH2:2]>>[CH3:1][CH3:2]" + TAB + "r2", lines.get(1));
+        assertMetrics(jobFileName);
+    }
+
+    @Test
+    public void RDFInWriteOrder() throws Exception {
+        String jobFileName = new File(folder.getRoot(), "job").getPath();
+        try (BatchResultWriter writer = new BatchResultWriter(BatchResultWriter.Format.RDF, jobFileName)) {
+            writer.write("r2", result("CC>>CC"));
+            writer.write("r3", null);
+            writer.write("r1", result("CO>>CO"));
+        }
+        List<String> records = new ArrayList<>();
+        List<String> lines = readAllLines(new File(jobFileName + ".rdf").toPath(), UTF_8);
+        assertEquals("$RDFILE 1", lines.get(0));
+        assertTrue(lines.get(1).startsWith("$DATM"));
+        for (String line : lines) {
+            if (line.startsWith("$RFMT")) {
+                records.add(line);
+            }
+        }
+        assertEquals("[$RFMT $RIREG r2, $RFMT $RIREG r1]", records.toString());
+
+        List<String> annotations = readAllLines(new File(jobFileName + ".tsv").toPath(), UTF_8);
+        assertEquals(3, annotations.size());
+        assertTrue(annotations.get(0).startsWith("ID" + TAB + "ALGORITHM"));
+        assertTrue(annotations.get(1).startsWith("r2" + TAB));
+        assertTrue(annotations.get(2).startsWith("r1" + TAB));
+        assertEquals(annotations.get(0).split(TAB).length, annotations.get(1).split(TAB).length);
+        assertMetrics(jobFileName);
+    }
+
+    private static void assertMetrics(String jobFileName) throws IOException {
+        List<String> metrics = readAllLines(new File(jobFileName + "_metrics.json").toPath(), UTF_8);
+        assertEquals(1, metrics.size());
+        assertTrue(metrics.get(0).startsWith("{\"stages\":{"));
+    }
+
+    /*
+     * A mapping result as the mapping cache stores it
+     */
+    private static CachedMapping result(String mappedSMILES) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            String[] strings = {MIN.name(), "$RXN" + System.lineSeparator(), mappedSMILES};
+            for (String s : strings) {
+                writeString(out, s);
+            }
+            for (int i = 0; i < 5; i++) {
+                out.writeInt(i);
+            }
+            out.writeDouble(1.0);
+            out.writeDouble(0.5);
+            for (int i = 0; i < 4; i++) {
+                writeString(out, "[]");
+            }
+        }
+        return CachedMapping.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -18,6 +18,7 @@
  */
 package uk.ac.ebi.reactionblast.tools;
 
+import static java.lang.Boolean.getBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
@@ -38,8 +39,39 @@ import static org.openscience.cdk.tools.manipulator.MoleculeSetManipulator.getAl
  */
 public class LayoutCheck {
 
+    /**
+     * System property to skip the 2D layout of the mapped molecules, the
+     * coordinates are then generated only when needed (images, 2D stereo)
+     */
+    public static final String LAZY_LAYOUT_PROPERTY = "rdt.layout.lazy";
     private static final Logger LOG = getLogger(LayoutCheck.class.getName());
 
+    /**
+     *
+     * @return true if the 2D layout is generated only on demand
+     */
+    public static boolean isLazyLayout() {
+        return getBoolean(LAZY_LAYOUT_PROPERTY);
+    }
+
+    /**
+     * Generate 2D coordinates in place (the atoms keep their IDs) if the
+     * molecule has none
+     *
+     * @param mol
+     */
+    public static void layout2D(IAtomContainer mol) {
+        if (!has2DCoordinates(mol)) {
+            try {
+                StructureDiagramGenerator sdg = new StructureDiagramGenerator();
+                sdg.setMolecule(mol, false);
+                sdg.generateCoordinates();
+            } catch (CDKException ex) {
+                Logger.getLogger(LayoutCheck.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
     /**
      *
      * @param mol
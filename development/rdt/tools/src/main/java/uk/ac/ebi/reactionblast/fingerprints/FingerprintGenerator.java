@@ -18,17 +18,13 @@
  */
 package uk.ac.ebi.reactionblast.fingerprints;
 
-import static java.lang.System.err;
 import java.util.BitSet;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.fingerprint.CircularFingerprinter;
 import static org.openscience.cdk.fingerprint.CircularFingerprinter.CLASS_ECFP4;
-import static org.openscience.cdk.geometry.GeometryTools.has2DCoordinates;
-import static org.openscience.cdk.graph.ConnectivityChecker.isConnected;
 import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.layout.StructureDiagramGenerator;
 import uk.ac.ebi.reactionblast.fingerprints.interfaces.IFingerprintGenerator;
 
 /**
@@ -69,16 +65,9 @@ public class FingerprintGenerator implements IFingerprintGenerator {
      */
     @Override
     public synchronized BitSet getFingerprint(IAtomContainer mol) throws CDKException {
-        if (!has2DCoordinates(mol)) {
-            StructureDiagramGenerator structureDiagramGenerator = new StructureDiagramGenerator();
-            structureDiagramGenerator.setMolecule(mol, true);
-            if (isConnected(mol)) {
-                structureDiagramGenerator.generateCoordinates();
-                mol = structureDiagramGenerator.getMolecule();
-            } else {
-                err.println("Disconnected components needs to be layout separately");
-            }
-        }
+        /*
+         * ECFP4 is computed on the graph, no 2D layout needed
+         */
         return fingerprinter.getBitFingerprint(mol).asBitSet();
     }
 
@@ -33,6 +33,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import static java.util.logging.Level.SEVERE;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
@@ -41,6 +42,7 @@ import static uk.ac.ebi.reactionblast.fingerprints.FingerprintGenerator.getFinge
 import static uk.ac.ebi.reactionblast.fingerprints.PatternComparators.overallComparator;
 import uk.ac.ebi.reactionblast.fingerprints.interfaces.IFeature;
 import uk.ac.ebi.reactionblast.fingerprints.interfaces.IPatternFingerprinter;
+import static uk.ac.ebi.reactionblast.tools.MurmurHash.hash32;
 import uk.ac.ebi.reactionblast.tools.RandomNumber;
 
 
@@ -56,6 +58,18 @@ public class PatternFingerprinter implements Cloneable, IPatternFingerprinter,
     private static final long serialVersionUID = 0156306561546552043757L;
     private static final Logger LOG = getLogger(PatternFingerprinter.class.getName());
 
+    /**
+     * System property for the hash placing the features in the hashed
+     * fingerprints: "murmur" (default) or "mersenne" for the bit positions of
+     * earlier releases
+     */
+    public static final String HASH_PROPERTY = "rdt.fingerprint.hash";
+    private static final int MAX_CACHED_POSITIONS = 100000;
+    /*
+     * Mersenne Twister positions by (feature hash code, fingerprint size)
+     */
+    private static final Map<Long, Integer> MERSENNE_POSITIONS = new ConcurrentHashMap<>();
+
     /**
      *
      * @param map
@@ -86,6 +100,11 @@ public class PatternFingerprinter implements Cloneable, IPatternFingerprinter,
     private final Set<IFeature> featureSet;    
     private String fingerprintID = "?";
     private int fingerprintSize;
+    /*
+     * weighted hashed fingerprint, built on demand and dropped by add()
+     */
+    private transient double[] hashedFingerPrint;
+    private transient boolean hashedWithMersenne;
 
     /**
      *
@@ -160,7 +179,8 @@ public class PatternFingerprinter implements Cloneable, IPatternFingerprinter,
         if (featureSet == null) {
             throw new CDKException("Cannot perform PatternFingerprint.add() as Fingerprint not initialized");
         }
-        
+        hashedFingerPrint = null;
+
         if (!this.featureSet.contains(feature)) {
             this.featureSet.add(new Feature(feature.getPattern(), feature.getWeight()));
         } else {
@@ -187,6 +207,7 @@ public class PatternFingerprinter implements Cloneable, IPatternFingerprinter,
         if (fngp.getFingerprintSize() != this.fingerprintSize) {
             throw new CDKException("Cannot perform PatternFingerprint.add() as Fingerprint size not equal");
         }
+        hashedFingerPrint = null;
         for (IFeature feature : fngp.getFeatures()) {
             if (!this.featureSet.contains(feature)) {
                 this.featureSet.add(new Feature(feature.getPattern(), feature.getWeight()));
@@ -249,25 +270,55 @@ public class PatternFingerprinter implements Cloneable, IPatternFingerprinter,
     }
     
     /**
+     * The features are placed by a MurmurHash of their pattern, or as in
+     * earlier releases by a Mersenne Twister seeded with their hash code if
+     * {@value #HASH_PROPERTY} is "mersenne". The fingerprint is computed once
+     * and kept until the next add().
      *
-     * @return
+     * @return copy of the weighted hashed fingerprint
      */
     @Override
-    public double[] getWeightedHashedFingerPrint() {
-        RandomNumber randomNumberGen = new RandomNumber();
-        double[] hashedFingerPrint = new double[this.fingerprintSize];
-        for (int i = 0; i < hashedFingerPrint.length; i++) {
-            hashedFingerPrint[i] = 0.;
+    public synchronized double[] getWeightedHashedFingerPrint() {
+        boolean mersenne = "mersenne".equalsIgnoreCase(getProperty(HASH_PROPERTY));
+        if (hashedFingerPrint == null || hashedWithMersenne != mersenne) {
+            double[] weights = new double[this.fingerprintSize];
+            RandomNumber randomNumberGen = null;
+            for (final IFeature feature : this.getFeatures()) {
+                int position;
+                if (mersenne) {
+                    if (randomNumberGen == null) {
+                        randomNumberGen = new RandomNumber();
+                    }
+                    position = mersennePosition(randomNumberGen, feature.hashCode(), this.fingerprintSize);
+                } else {
+                    int hash = hash32(feature.getPattern(), 0);
+                    position = (int) ((hash & 0xffffffffL) % this.fingerprintSize);
+                }
+                weights[position] += feature.getWeight();
+            }
+            hashedFingerPrint = weights;
+            hashedWithMersenne = mersenne;
         }
-        Collection<IFeature> features = this.getFeatures();
-        for (final IFeature feature : features) {
-            long hashCode = feature.hashCode();
-            int randomNumber = randomNumberGen.generateMersenneTwisterRandomNumber(this.fingerprintSize, hashCode);
-            hashedFingerPrint[randomNumber] += feature.getWeight();
+        return hashedFingerPrint.clone();
+    }
+
+    /*
+     * Reseeding the twister is the costly part, positions are shared by all
+     * the fingerprints
+     */
+    private static int mersennePosition(RandomNumber randomNumberGen, int hashCode, int size) {
+        Long key = ((long) hashCode << 32) | size;
+        Integer position = MERSENNE_POSITIONS.get(key);
+        if (position == null) {
+            position = randomNumberGen.generateMersenneTwisterRandomNumber(size, hashCode);
+            if (MERSENNE_POSITIONS.size() >= MAX_CACHED_POSITIONS) {
+                MERSENNE_POSITIONS.clear();
+            }
+            MERSENNE_POSITIONS.put(key, position);
         }
-        return hashedFingerPrint;
+        return position;
     }
-    
+
     @Override
     public String toString() {
         StringBuilder result = new StringBuilder();
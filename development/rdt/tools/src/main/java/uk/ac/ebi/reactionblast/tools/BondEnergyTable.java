@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools;
+
+import static java.util.Arrays.fill;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.config.Elements;
+import static org.openscience.cdk.config.Elements.ofNumber;
+import static org.openscience.cdk.config.Elements.ofString;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IBond.Order;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
+import org.openscience.smsd.tools.BondEnergies;
+
+/**
+ * Bond energies of the SMSD {@link BondEnergies} as a table indexed by the
+ * atomic numbers and the bond order. The table is read once from
+ * {@link BondEnergies} for every pair of elements, after that a look up is an
+ * array read without the lock and the linear scan of the SMSD look ups. The
+ * values are those of {@link BondEnergies}: -1 for an unknown bond, 0 for a
+ * query atom and R read as carbon in the atom and symbol look ups.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class BondEnergyTable {
+
+    private static final Logger LOG = getLogger(BondEnergyTable.class.getName());
+    private static final Order[] ORDERS = Order.values();
+    private static final int ELEMENTS = Elements.values().length;
+    private static volatile BondEnergyTable instance;
+
+    /**
+     *
+     * @return bond energy table
+     * @throws CDKException if the SMSD bond energies can not be read
+     */
+    public static BondEnergyTable getInstance() throws CDKException {
+        BondEnergyTable table = instance;
+        if (table == null) {
+            synchronized (BondEnergyTable.class) {
+                table = instance;
+                if (table == null) {
+                    table = new BondEnergyTable(BondEnergies.getInstance());
+                    instance = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    /*
+     * energies by (atomic number, atomic number, bond order), -1 if unknown
+     */
+    private final int[] energies;
+
+    private BondEnergyTable(BondEnergies bondEnergies) {
+        energies = new int[ELEMENTS * ELEMENTS * ORDERS.length];
+        fill(energies, -1);
+        for (int z1 = 1; z1 < ELEMENTS; z1++) {
+            String symbol1 = ofNumber(z1).symbol();
+            for (int z2 = z1; z2 < ELEMENTS; z2++) {
+                String symbol2 = ofNumber(z2).symbol();
+                for (Order order : ORDERS) {
+                    int energy = bondEnergies.getEnergies(symbol1, symbol2, order);
+                    energies[index(z1, z2, order)] = energy;
+                    energies[index(z2, z1, order)] = energy;
+                }
+            }
+        }
+    }
+
+    private static int index(int z1, int z2, Order order) {
+        return (z1 * ELEMENTS + z2) * ORDERS.length + order.ordinal();
+    }
+
+    /*
+     * Case insensitive as the SMSD look ups, 0 for an unknown symbol
+     */
+    private static int atomicNumber(String symbol, boolean carbonForR) {
+        if (symbol == null) {
+            return 0;
+        }
+        if (carbonForR && symbol.equalsIgnoreCase("R")) {
+            return 6;
+        }
+        return ofString(symbol).number();
+    }
+
+    private int lookup(int z1, int z2, Order order) {
+        if (order == null || z1 <= 0 || z2 <= 0) {
+            return -1;
+        }
+        return energies[index(z1, z2, order)];
+    }
+
+    /**
+     *
+     * @param sourceAtom
+     * @param targetAtom
+     * @param bondOrder
+     * @return bond energy (kJ/mol), 0 for a query atom, -1 if unknown
+     */
+    public int getEnergies(IAtom sourceAtom, IAtom targetAtom, Order bondOrder) {
+        if (sourceAtom instanceof IQueryAtom) {
+            return 0;
+        }
+        return getEnergies(sourceAtom.getSymbol(), targetAtom.getSymbol(), bondOrder);
+    }
+
+    /**
+     *
+     * @param sourceAtom element symbol, R for carbon
+     * @param targetAtom element symbol, R for carbon
+     * @param bondOrder
+     * @return bond energy (kJ/mol), -1 if unknown
+     */
+    public int getEnergies(String sourceAtom, String targetAtom, Order bondOrder) {
+        return lookup(atomicNumber(sourceAtom, true), atomicNumber(targetAtom, true), bondOrder);
+    }
+
+    /**
+     *
+     * @param bond
+     * @return bond energy (kJ/mol), -1 if unknown
+     */
+    public int getEnergies(IBond bond) {
+        return lookup(atomicNumber(bond.getAtom(0).getSymbol(), false),
+                atomicNumber(bond.getAtom(1).getSymbol(), false), bond.getOrder());
+    }
+}
@@ -179,15 +179,29 @@ public class ExtAtomContainerManipulator extends AtomContainerManipulator implem
      * @param mol input molecule
      */
     public static void aromatizeMolecule(IAtomContainer mol) {
+        // need to find rings and aromaticity again since added H's
+        IRingSet ringSet = null;
         try {
-            // need to find rings and aromaticity again since added H's
-            IRingSet ringSet = null;
-            try {
-                AllRingsFinder arf = new AllRingsFinder();
-                ringSet = arf.findAllRings(mol);
+            AllRingsFinder arf = new AllRingsFinder();
+            ringSet = arf.findAllRings(mol);
+        } catch (CDKException e) {
+            logger.log(Level.WARNING, "Error in find and assigning rings in the molecule. ", mol.getID());
+        }
+        aromatizeMolecule(mol, ringSet);
+    }
+
+    /**
+     * This function uses aromaticity detection code to aromatize the molecule
+     * with rings already perceived.
+     *
+     * @param mol input molecule
+     * @param ringSet all the rings of the molecule, null if ring perception
+     * failed
+     */
+    public static void aromatizeMolecule(IAtomContainer mol, IRingSet ringSet) {
+        try {
+            if (ringSet != null) {
                 RingSetManipulator.markAromaticRings(ringSet);
-            } catch (CDKException e) {
-                logger.log(Level.WARNING, "Error in find and assigning rings in the molecule. ", mol.getID());
             }
 
             try {
@@ -242,7 +256,14 @@ public class ExtAtomContainerManipulator extends AtomContainerManipulator implem
      */
     public static IAtomContainer cloneWithIDs(IAtomContainer container) throws CloneNotSupportedException {
         //setNullHCountToZero(container);
-        IAtomContainer ac = new AtomContainer(container).clone();/*Set IDs as CDK clone doesn't*/
+        /*
+         * Wrapping registers the wrapper as a listener on the atoms and bonds
+         * of the container; CDK AtomContainers are cloned as they are so that
+         * the container is only read
+         */
+        IAtomContainer ac = container.getClass() == AtomContainer.class
+                ? container.clone()
+                : new AtomContainer(container).clone();/*Set IDs as CDK clone doesn't*/
         for (int i = 0; i < ac.getAtomCount(); i++) {
             ac.getAtom(i).setID(container.getAtom(i).getID());
             if (ac.getAtom(i).getProperties() == null) {
@@ -39,13 +39,14 @@ public class ExtReactionManipulatorTool extends ReactionManipulator {
     private static final Logger LOG = getLogger(ExtReactionManipulatorTool.class.getName());
 
     /**
+     * The reaction is only read, several threads may clone it at once.
      *
      * @param reaction
      * @return deep clone of the reactions with mol IDs set and reaction ids set
      * plus flags copied
      * @throws CloneNotSupportedException
      */
-    public static synchronized IReaction deepClone(IReaction reaction) throws CloneNotSupportedException {
+    public static IReaction deepClone(IReaction reaction) throws CloneNotSupportedException {
         IReaction clone = reaction.getBuilder().newInstance(IReaction.class);
         // clone the reactants, products and agents
 
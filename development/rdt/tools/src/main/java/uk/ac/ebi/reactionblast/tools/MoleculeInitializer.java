@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools;
+
+import java.util.ArrayList;
+import static java.util.Collections.sort;
+import static java.util.Collections.unmodifiableMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.openscience.cdk.CDKConstants.ISALIPHATIC;
+import static org.openscience.cdk.CDKConstants.ISINRING;
+import static org.openscience.cdk.CDKConstants.RING_CONNECTIONS;
+import static org.openscience.cdk.CDKConstants.RING_SIZES;
+import static org.openscience.cdk.CDKConstants.SMALLEST_RINGS;
+import static org.openscience.cdk.CDKConstants.TOTAL_CONNECTIONS;
+import static org.openscience.cdk.CDKConstants.TOTAL_H_COUNT;
+import static org.openscience.cdk.CDKConstants.UNSET;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeMolecule;
+
+/**
+ * Ring, connection and valence properties of the atoms and bonds of a
+ * molecule, as set by the SMSD MoleculeInitializer, for the molecules RDT
+ * prepares itself.
+ *
+ * Unlike the SMSD class it takes no class lock, it only modifies the container
+ * it is given. Rings can be looked up in a {@link PerceivedRings.Cache}, so
+ * the clones of a molecule share one ring perception, and the ring set is
+ * handed on to the aromaticity detection instead of being perceived again.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MoleculeInitializer {
+
+    private static final Logger LOG = getLogger(MoleculeInitializer.class.getName());
+    private static final String SMALLEST_RING_SIZE = "SMALLEST_RING_SIZE";
+    /*
+     * valence electrons by element
+     */
+    private static final Map<String, Integer> VALENCES;
+
+    static {
+        Map<String, Integer> valencesTable = new HashMap<>();
+        valencesTable.put("H", 1);
+        valencesTable.put("Li", 1);
+        valencesTable.put("Be", 2);
+        valencesTable.put("B", 3);
+        valencesTable.put("C", 4);
+        valencesTable.put("N", 5);
+        valencesTable.put("O", 6);
+        valencesTable.put("F", 7);
+        valencesTable.put("Na", 1);
+        valencesTable.put("Mg", 2);
+        valencesTable.put("Al", 3);
+        valencesTable.put("Si", 4);
+        valencesTable.put("P", 5);
+        valencesTable.put("S", 6);
+        valencesTable.put("Cl", 7);
+        valencesTable.put("K", 1);
+        valencesTable.put("Ca", 2);
+        valencesTable.put("Ga", 3);
+        valencesTable.put("Ge", 4);
+        valencesTable.put("As", 5);
+        valencesTable.put("Se", 6);
+        valencesTable.put("Br", 7);
+        valencesTable.put("Rb", 1);
+        valencesTable.put("Sr", 2);
+        valencesTable.put("In", 3);
+        valencesTable.put("Sn", 4);
+        valencesTable.put("Sb", 5);
+        valencesTable.put("Te", 6);
+        valencesTable.put("I", 7);
+        valencesTable.put("Cs", 1);
+        valencesTable.put("Ba", 2);
+        valencesTable.put("Tl", 3);
+        valencesTable.put("Pb", 4);
+        valencesTable.put("Bi", 5);
+        valencesTable.put("Po", 6);
+        valencesTable.put("At", 7);
+        valencesTable.put("Fr", 1);
+        valencesTable.put("Ra", 2);
+        valencesTable.put("Cu", 2);
+        valencesTable.put("Mn", 2);
+        valencesTable.put("Co", 2);
+        VALENCES = unmodifiableMap(valencesTable);
+    }
+
+    /**
+     * Prepare the molecule for analysis: ring perception, ring and connection
+     * properties, valences and aromaticity.
+     *
+     * @param atomContainer Atom container where rings are to be marked
+     * @throws CDKException if there is a problem in ring perception or
+     * aromaticity detection, which is usually related to a timeout in the ring
+     * finding code.
+     */
+    public static void initializeMolecule(IAtomContainer atomContainer) throws CDKException {
+        initializeMolecule(atomContainer, null);
+    }
+
+    /**
+     * Prepare the molecule for analysis, with its rings looked up in the
+     * cache.
+     *
+     * @param atomContainer Atom container where rings are to be marked
+     * @param ringCache rings of the molecules seen before, null to perceive
+     * them
+     * @throws CDKException if there is a problem in ring perception or
+     * aromaticity detection
+     */
+    public static void initializeMolecule(IAtomContainer atomContainer, PerceivedRings.Cache ringCache) throws CDKException {
+        if (atomContainer instanceof IQueryAtomContainer) {
+            return;
+        }
+        PerceivedRings rings = ringCache == null
+                ? PerceivedRings.of(atomContainer) : ringCache.get(atomContainer);
+        IRingSet allRings = rings.getAllRings(atomContainer);
+        IRingSet sssr = rings.getEssentialRings(atomContainer);
+
+        for (IAtom atom : atomContainer.atoms()) {
+            /*
+             * sizes of the rings the atom belongs to, and its smallest rings
+             */
+            if (allRings != null && allRings.contains(atom)) {
+                atom.setFlag(ISINRING, true);
+                atom.setFlag(ISALIPHATIC, false);
+                List<Integer> ringsizes = new ArrayList<>();
+                IRingSet currentRings = allRings.getRings(atom);
+                int min = 0;
+                for (int i = 0; i < currentRings.getAtomContainerCount(); i++) {
+                    int size = currentRings.getAtomContainer(i).getAtomCount();
+                    if (min > size) {
+                        min = size;
+                    }
+                    ringsizes.add(size);
+                }
+                sort(ringsizes);
+                atom.setProperty(RING_SIZES, ringsizes);
+                atom.setProperty(SMALLEST_RINGS, sssr.getRings(atom));
+                atom.setProperty(SMALLEST_RING_SIZE, min);
+            } else {
+                atom.setFlag(ISINRING, false);
+                atom.setFlag(ISALIPHATIC, true);
+                atom.setProperty(SMALLEST_RING_SIZE, 0);
+            }
+
+            int hCount = Objects.equals(atom.getImplicitHydrogenCount(), UNSET)
+                    ? 0 : atom.getImplicitHydrogenCount();
+            List<IAtom> connectedAtoms = atomContainer.getConnectedAtomsList(atom);
+            int total = hCount + connectedAtoms.size();
+            for (IAtom connectedAtom : connectedAtoms) {
+                if (connectedAtom.getSymbol().equals("H")) {
+                    hCount++;
+                }
+            }
+            atom.setProperty(TOTAL_CONNECTIONS, total);
+            atom.setProperty(TOTAL_H_COUNT, hCount);
+
+            Integer valency = VALENCES.get(atom.getSymbol());
+            if (valency != null) {
+                int formalCharge = Objects.equals(atom.getFormalCharge(), UNSET) ? 0 : atom.getFormalCharge();
+                atom.setValency(valency - formalCharge);
+            }
+        }
+
+        for (IBond bond : atomContainer.bonds()) {
+            if (allRings != null && allRings.getRings(bond).getAtomContainerCount() > 0) {
+                bond.setFlag(ISINRING, true);
+                bond.setFlag(ISALIPHATIC, false);
+            }
+        }
+
+        for (IAtom atom : atomContainer.atoms()) {
+            int counter = 0;
+            for (IAtom connectedAtom : atomContainer.getConnectedAtomsList(atom)) {
+                if (connectedAtom.getFlag(ISINRING)) {
+                    counter++;
+                }
+            }
+            atom.setProperty(RING_CONNECTIONS, counter);
+        }
+
+        aromatizeMolecule(atomContainer, allRings);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools;
+
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+
+/**
+ * 32 bit MurmurHash3 (x86 variant) of the UTF-16 code units of a string.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public final class MurmurHash {
+
+    private static final Logger LOG = getLogger(MurmurHash.class.getName());
+    private static final int C1 = 0xcc9e2d51;
+    private static final int C2 = 0x1b873593;
+
+    private MurmurHash() {
+    }
+
+    /**
+     *
+     * @param text
+     * @param seed
+     * @return 32 bit hash of the text
+     */
+    public static int hash32(CharSequence text, int seed) {
+        int h = seed;
+        int length = text.length();
+        int i = 1;
+        for (; i < length; i += 2) {
+            int k = text.charAt(i - 1) | (text.charAt(i) << 16);
+            h ^= mixK(k);
+            h = Integer.rotateLeft(h, 13);
+            h = h * 5 + 0xe6546b64;
+        }
+        if ((length & 1) == 1) {
+            h ^= mixK(text.charAt(length - 1));
+        }
+        h ^= 2 * length;
+        return fmix(h);
+    }
+
+    private static int mixK(int k) {
+        k *= C1;
+        k = Integer.rotateLeft(k, 15);
+        return k * C2;
+    }
+
+    private static int fmix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
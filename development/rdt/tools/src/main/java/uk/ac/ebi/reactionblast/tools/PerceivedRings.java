@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2007-2015 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import static java.util.logging.Level.WARNING;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IRing;
+import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.ringsearch.AllRingsFinder;
+import org.openscience.cdk.ringsearch.SSSRFinder;
+
+/**
+ * All rings and essential rings of a molecule, stored as atom and bond
+ * indices.
+ *
+ * Ring perception only depends on the connectivity, and clones keep the atom
+ * and bond order, so the rings perceived once can be looked up by the
+ * connectivity of the molecule and rebuilt on the atoms and bonds of each
+ * container asking for them. A {@link Cache} does that for the molecules of
+ * its owner, e.g. the {@code MCSCache} of a reaction; it holds no reference
+ * to a container and lives as long as its owner.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public final class PerceivedRings {
+
+    private static final Logger LOG = getLogger(PerceivedRings.class.getName());
+
+    /*
+     * null if all ring perception failed
+     */
+    private final int[][] allRingAtoms;
+    private final int[][] allRingBonds;
+    private final int[][] essentialRingAtoms;
+    private final int[][] essentialRingBonds;
+
+    private PerceivedRings(IRingSet allRings, IRingSet essentialRings, Connectivity connectivity) {
+        if (allRings == null) {
+            this.allRingAtoms = null;
+            this.allRingBonds = null;
+        } else {
+            this.allRingAtoms = atomIndices(allRings, connectivity.atomIndex);
+            this.allRingBonds = bondIndices(allRings, connectivity.bondIndex);
+        }
+        this.essentialRingAtoms = atomIndices(essentialRings, connectivity.atomIndex);
+        this.essentialRingBonds = bondIndices(essentialRings, connectivity.bondIndex);
+    }
+
+    /**
+     * @param atomContainer
+     * @return rings of the molecule, perceived
+     */
+    public static PerceivedRings of(IAtomContainer atomContainer) {
+        return perceive(atomContainer, new Connectivity(atomContainer));
+    }
+
+    private static PerceivedRings perceive(IAtomContainer atomContainer, Connectivity connectivity) {
+        IRingSet allRings = null;
+        try {
+            allRings = new AllRingsFinder().findAllRings(atomContainer);
+        } catch (CDKException e) {
+            LOG.log(WARNING, "Error in find and assigning rings in the molecule. ", e);
+        }
+        IRingSet essentialRings = new SSSRFinder(atomContainer).findEssentialRings();
+        return new PerceivedRings(allRings, essentialRings, connectivity);
+    }
+
+    /**
+     * @param atomContainer molecule these rings were perceived for
+     * @return all the rings on the atoms and bonds of the molecule, null if
+     * ring perception failed
+     */
+    IRingSet getAllRings(IAtomContainer atomContainer) {
+        if (allRingAtoms == null) {
+            return null;
+        }
+        return toRingSet(atomContainer, allRingAtoms, allRingBonds);
+    }
+
+    /**
+     * @param atomContainer molecule these rings were perceived for
+     * @return the essential rings on the atoms and bonds of the molecule
+     */
+    IRingSet getEssentialRings(IAtomContainer atomContainer) {
+        return toRingSet(atomContainer, essentialRingAtoms, essentialRingBonds);
+    }
+
+    private static IRingSet toRingSet(IAtomContainer atomContainer, int[][] atoms, int[][] bonds) {
+        IChemObjectBuilder builder = atomContainer.getBuilder();
+        IRingSet ringSet = builder.newInstance(IRingSet.class);
+        for (int r = 0; r < atoms.length; r++) {
+            IRing ring = builder.newInstance(IRing.class);
+            for (int i : atoms[r]) {
+                ring.addAtom(atomContainer.getAtom(i));
+            }
+            for (int i : bonds[r]) {
+                ring.addBond(atomContainer.getBond(i));
+            }
+            ringSet.addAtomContainer(ring);
+        }
+        return ringSet;
+    }
+
+    private static int[][] atomIndices(IRingSet ringSet, Map<IAtom, Integer> index) {
+        int[][] rings = new int[ringSet.getAtomContainerCount()][];
+        for (int r = 0; r < rings.length; r++) {
+            IAtomContainer ring = ringSet.getAtomContainer(r);
+            rings[r] = new int[ring.getAtomCount()];
+            for (int i = 0; i < ring.getAtomCount(); i++) {
+                rings[r][i] = index.get(ring.getAtom(i));
+            }
+        }
+        return rings;
+    }
+
+    private static int[][] bondIndices(IRingSet ringSet, Map<IBond, Integer> index) {
+        int[][] rings = new int[ringSet.getAtomContainerCount()][];
+        for (int r = 0; r < rings.length; r++) {
+            IAtomContainer ring = ringSet.getAtomContainer(r);
+            rings[r] = new int[ring.getBondCount()];
+            for (int i = 0; i < ring.getBondCount(); i++) {
+                rings[r][i] = index.get(ring.getBond(i));
+            }
+        }
+        return rings;
+    }
+
+    /**
+     * Rings of the molecules seen so far, by connectivity. Perception runs
+     * outside the lock, two threads asking for a new molecule at once may
+     * both perceive it.
+     */
+    public static final class Cache {
+
+        private final Map<Connectivity, PerceivedRings> rings = new HashMap<>();
+
+        /**
+         * @param atomContainer
+         * @return rings of the molecule, perceived unless a molecule of the
+         * same connectivity was seen before
+         */
+        public PerceivedRings get(IAtomContainer atomContainer) {
+            Connectivity key = new Connectivity(atomContainer);
+            PerceivedRings perceived;
+            synchronized (this) {
+                perceived = rings.get(key);
+            }
+            if (perceived == null) {
+                perceived = perceive(atomContainer, key);
+                key.release();
+                synchronized (this) {
+                    rings.put(key, perceived);
+                }
+            }
+            return perceived;
+        }
+
+        /**
+         * @return number of molecules (by connectivity) whose rings are kept
+         */
+        public synchronized int size() {
+            return rings.size();
+        }
+    }
+
+    /*
+     * Atom count and the atom indices of each bond, in bond order
+     */
+    private static final class Connectivity {
+
+        private final int[] graph;
+        private final int hash;
+        private Map<IAtom, Integer> atomIndex;
+        private Map<IBond, Integer> bondIndex;
+
+        Connectivity(IAtomContainer atomContainer) {
+            atomIndex = new IdentityHashMap<>(atomContainer.getAtomCount());
+            bondIndex = new IdentityHashMap<>(atomContainer.getBondCount());
+            for (int i = 0; i < atomContainer.getAtomCount(); i++) {
+                atomIndex.put(atomContainer.getAtom(i), i);
+            }
+            graph = new int[1 + 2 * atomContainer.getBondCount()];
+            graph[0] = atomContainer.getAtomCount();
+            for (int i = 0; i < atomContainer.getBondCount(); i++) {
+                IBond bond = atomContainer.getBond(i);
+                bondIndex.put(bond, i);
+                graph[1 + 2 * i] = index(bond.getAtom(0));
+                graph[2 + 2 * i] = index(bond.getAtom(1));
+            }
+            hash = Arrays.hashCode(graph);
+        }
+
+        private int index(IAtom atom) {
+            Integer i = atomIndex.get(atom);
+            return i == null ? -1 : i;
+        }
+
+        /*
+         * the cached key must not hold on to the container
+         */
+        void release() {
+            atomIndex = null;
+            bondIndex = null;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Connectivity)) {
+                return false;
+            }
+            Connectivity other = (Connectivity) obj;
+            return hash == other.hash && Arrays.equals(graph, other.graph);
+        }
+    }
+}